@@ -0,0 +1,133 @@
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+
+/**
+ * Tracks the text buffers that one job takes from a ParsingEngine, so they can be given back deterministically.<br><br>
+ *
+ * A Boss allocates every large buffer it needs from its arena. A buffer can be released as soon as the stage using it
+ * finishes. Closing the arena releases every buffer that is still outstanding, even if the job was cancelled or failed,
+ * so no stage has to rely on the garbage collector to reclaim a job's text.<br><br>
+ *
+ * Use in a try-with-resources statement. Buffers must not be used after they are released or the arena is closed.
+ */
+public class ParsingArena implements AutoCloseable {
+
+    /**
+     * The engine that the arena's buffers come from. Can't be null
+     */
+    final private ParsingEngine engine;
+
+    /**
+     * Buffers that were allocated from this arena and not yet released. Can't be null
+     */
+    final private ArrayList<CharBuffer> outstandingBuffers;
+
+
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Creates a new, empty ParsingArena that takes its buffers from `engine`.
+     * @param engine the engine to take buffers from. Can't be null
+     */
+    public ParsingArena(ParsingEngine engine) {
+        if(engine==null) {
+            throw new AssertionError("Engine cannot be null");
+        }
+
+        this.engine = engine;
+        this.outstandingBuffers = new ArrayList<>();
+    }
+
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Returns the longest buffer, in characters, that the arena can allocate
+     * @return maximum buffer length
+     */
+    public int maxBufferLength() {
+        return engine.maxBufferLength();
+    }
+
+    /**
+     * Returns a String containing representations of the Arena's fields.
+     * @return String representation of fields
+     */
+    @Override
+    public synchronized String toString() {
+        return "Arena with " + outstandingBuffers.size() + " outstanding buffers";
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Returns a buffer of at least `minLength` characters from the arena's engine, and records it as outstanding.<br><br>
+     *
+     * The buffer is on or off the heap, depending on the engine's mode. Its previous contents are not cleared.
+     *
+     * @param minLength minimum length of the buffer. Must be on the interval [0, engine.maxBufferLength()]
+     * @return buffer of at least `minLength` characters
+     */
+    public synchronized CharBuffer allocate(int minLength) {
+        CharBuffer buffer = engine.acquireBuffer(minLength);
+        outstandingBuffers.add(buffer);
+        return buffer;
+    }
+
+
+    /**
+     * Returns room for `length` packed letters, stored in a buffer from the arena's engine.<br><br>
+     *
+     * The buffer is outstanding until `release` is called on the letters' `words()` buffer, or the arena is closed.
+     *
+     * @param length number of letters to hold. Must be on the interval [0, 3*engine.maxBufferLength()]
+     * @return packed letters of length `length`. Their previous contents are not cleared
+     */
+    public ParsingPackedLetters allocateLetters(int length) {
+        return new ParsingPackedLetters(allocate(ParsingPackedLetters.wordsFor(length)), length);
+    }
+
+
+    /**
+     * Releases every outstanding buffer back to the arena's engine.<br><br>
+     *
+     * Safe to call more than once.
+     */
+    @Override
+    public synchronized void close() {
+        for(CharBuffer buffer : outstandingBuffers) {
+            engine.releaseBuffer(buffer);
+        }
+        outstandingBuffers.clear();
+    }
+
+
+    /**
+     * Releases `buffer`, which must have been allocated from this arena, back to the arena's engine.<br><br>
+     *
+     * Releasing a buffer that is not outstanding (i.e. one that was already released) does nothing.
+     *
+     * @param buffer the buffer to release. Can't be null
+     */
+    public synchronized void release(CharBuffer buffer) {
+        if(buffer==null) {
+            throw new AssertionError("Buffer cannot be null");
+        }
+
+        //Buffers' equals() compares their contents, so look for this exact buffer by identity
+        for(int i=0; i<outstandingBuffers.size(); i++) {
+            if(outstandingBuffers.get(i) == buffer) {
+                outstandingBuffers.remove(i);
+                engine.releaseBuffer(buffer);
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,344 @@
+import javax.swing.*;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Worker thread that places one Operations Worker's output in its region of its Boss's output: a range of the output
+ * buffer, or a range of bytes in the output file.<br><br>
+ *
+ * Each Operations Worker writes its output to the start of its own piece of the text buffer, so the outputs have gaps
+ * between them. Once the Workers before a piece have finished, the piece's output length fixes where its output goes.
+ * An Assembly Worker then copies it there, while the other outputs are still being processed or copied.
+ * The regions don't overlap, and the text buffer is only read, so the outputs are assembled in parallel instead of being
+ * moved together one after another by the Boss.<br><br>
+ *
+ * A Worker that writes to a file encodes its range and writes it with positional writes, starting at a byte position that
+ * the Boss computed from the encoded lengths of the outputs before it. The output is never built in memory first.
+ * If an output's encoded length is not simply its number of characters, a Worker without a file measures it first.
+ * A Worker may also take its range from a job's packed letters, which it unpacks a window at a time.<br><br>
+ *
+ * The work is done `COPY_LENGTH` characters at a time, so a cancelled Worker stops soon.
+ */
+public class ParsingAssemblyWorker extends SwingWorker<Long,Void> {
+
+    /**
+     * Number of characters copied, or bytes encoded, between checks for cancellation. Must be positive
+     */
+    final private static int COPY_LENGTH = 1 << 16;
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * The output file's channel, shared with the Boss and the other Assembly Workers. The Worker only writes the bytes
+     * of its own range. Null if the Worker copies to `destination`, or if it only measures its range's encoded length
+     */
+    final private FileChannel channel;
+
+    /**
+     * The charset that the Worker's range is encoded in. Null if and only if `destination` is not null
+     */
+    final private Charset charset;
+
+    /**
+     * The Boss's output buffer, shared with the Boss and the other Assembly Workers. The Worker only writes to indices
+     * [destinationStart, destinationStart + length). May be on or off the heap. Null if the Worker encodes its range
+     */
+    final private CharBuffer destination;
+
+    /**
+     * Index of `destination` that the first character is copied to, or the byte of the file that the first encoded byte is
+     * written to. Cannot be negative
+     */
+    final private long destinationStart;
+
+    /**
+     * The Boss's packed letters, if its output is letters only. The Worker reads letters [sourceStart, sourceStart + length).
+     * Null if and only if `source` is not null
+     */
+    final private ParsingPackedLetters letters;
+
+    /**
+     * Number of characters to copy or encode. Cannot be negative
+     */
+    final private int length;
+
+    /**
+     * The name of the Worker, mostly for debugging purposes. Cannot be null or the string "null".
+     */
+    final private String name;
+
+    /**
+     * The Boss's text buffer, shared with the Boss and the other Workers. The Worker only reads indices
+     * [sourceStart, sourceStart + length). May be on or off the heap. Null if and only if `letters` is not null
+     */
+    final private CharBuffer source;
+
+    /**
+     * Index of the first character of the Worker's range, in `source` or `letters`. Cannot be negative
+     */
+    final private int sourceStart;
+
+
+    /**
+     * Creates a ParsingAssemblyWorker called `name` that copies `length` characters of `source`, starting at `sourceStart`,
+     * to `destination`, starting at `destinationStart`. Its result is `length`.<br><br>
+     *
+     * Neither buffer is copied, because the Worker writes its result into `destination`.
+     *
+     * @param source buffer to copy from. Non-null, and not the same buffer as `destination`
+     * @param sourceStart index of the first character to copy. Must be on the interval [0, source.capacity() - length]
+     * @param destination buffer to copy to. Non-null
+     * @param destinationStart index to copy the first character to. Must be on the interval [0, destination.capacity() - length]
+     * @param length number of characters to copy. Cannot be negative
+     * @param name custom name for this Worker. Non-null and cannot equal the string "null"
+     */
+    public ParsingAssemblyWorker(CharBuffer source, int sourceStart, CharBuffer destination, int destinationStart,
+                                 int length, String name) {
+        if(source==null || destination==null) {
+            throw new AssertionError("Source and destination cannot be null");
+        }
+        if(source==destination) {
+            throw new AssertionError("Source and destination must be different buffers");
+        }
+        if(length<0 || sourceStart<0 || sourceStart>source.capacity()-length
+        || destinationStart<0 || destinationStart>destination.capacity()-length) {
+            throw new AssertionError("Both ranges must fit inside their buffers");
+        }
+        if(name==null || name.equals("null")) {
+            throw new AssertionError("Name cannot be null or equal the string \"null\"");
+        }
+
+        this.source = source;
+        this.letters = null;
+        this.sourceStart = sourceStart;
+        this.destination = destination;
+        this.channel = null;
+        this.charset = null;
+        this.destinationStart = destinationStart;
+        this.length = length;
+        this.name = name;
+    }
+
+    /**
+     * Creates a ParsingAssemblyWorker called `name` that encodes `length` characters of `source`, starting at `sourceStart`,
+     * in `charset`, and writes them to `channel` starting at byte `position`. If `channel` is null, the Worker writes nothing,
+     * and only measures the encoded length. Either way, its result is the number of encoded bytes.<br><br>
+     *
+     * Characters that can't be encoded are replaced by the charset's replacement bytes.
+     *
+     * @param source buffer to encode from. Non-null
+     * @param sourceStart index of the first character to encode. Must be on the interval [0, source.capacity() - length]
+     * @param length number of characters to encode. Cannot be negative
+     * @param charset charset to encode in. Non-null
+     * @param channel output file to write to, open for writing, or null to only measure
+     * @param position byte of the file to write the first encoded byte to. Cannot be negative
+     * @param name custom name for this Worker. Non-null and cannot equal the string "null"
+     */
+    public ParsingAssemblyWorker(CharBuffer source, int sourceStart, int length, Charset charset, FileChannel channel,
+                                 long position, String name) {
+        if(source==null || charset==null) {
+            throw new AssertionError("Source and charset cannot be null");
+        }
+        if(length<0 || sourceStart<0 || sourceStart>source.capacity()-length || position<0) {
+            throw new AssertionError("The range must fit inside the source, and the position cannot be negative");
+        }
+        if(name==null || name.equals("null")) {
+            throw new AssertionError("Name cannot be null or equal the string \"null\"");
+        }
+
+        this.source = source;
+        this.letters = null;
+        this.sourceStart = sourceStart;
+        this.destination = null;
+        this.channel = channel;
+        this.charset = charset;
+        this.destinationStart = position;
+        this.length = length;
+        this.name = name;
+    }
+
+    /**
+     * Creates a ParsingAssemblyWorker called `name` that encodes letters [`sourceStart`, `sourceStart` + `length`) of
+     * `letters` in `charset`, and writes them to `channel` starting at byte `position`. If `channel` is null, the Worker
+     * writes nothing, and only measures the encoded length. Either way, its result is the number of encoded bytes.
+     *
+     * @param letters packed letters to encode from. Non-null
+     * @param sourceStart index of the first letter to encode. Must be on the interval [0, letters.length() - length]
+     * @param length number of letters to encode. Cannot be negative
+     * @param charset charset to encode in. Non-null
+     * @param channel output file to write to, open for writing, or null to only measure
+     * @param position byte of the file to write the first encoded byte to. Cannot be negative
+     * @param name custom name for this Worker. Non-null and cannot equal the string "null"
+     */
+    public ParsingAssemblyWorker(ParsingPackedLetters letters, int sourceStart, int length, Charset charset,
+                                 FileChannel channel, long position, String name) {
+        if(letters==null || charset==null) {
+            throw new AssertionError("Letters and charset cannot be null");
+        }
+        if(length<0 || sourceStart<0 || sourceStart>letters.length()-length || position<0) {
+            throw new AssertionError("The range must fit inside the letters, and the position cannot be negative");
+        }
+        if(name==null || name.equals("null")) {
+            throw new AssertionError("Name cannot be null or equal the string \"null\"");
+        }
+
+        this.source = null;
+        this.letters = letters;
+        this.sourceStart = sourceStart;
+        this.destination = null;
+        this.channel = channel;
+        this.charset = charset;
+        this.destinationStart = position;
+        this.length = length;
+        this.name = name;
+    }
+
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Returns a String representation of the Worker.
+     * @return String representation of the Worker's fields
+     */
+    @Override
+    public String toString() {
+        String target;
+        if(destination!=null) {
+            target = "destination=" + destinationStart;
+        }
+        else if(channel!=null) {
+            target = "file position=" + destinationStart;
+        }
+        else {
+            target = "measuring";
+        }
+
+        return "Assembly Worker \"" + name + "\", source=" + sourceStart + ", " + target + ", length=" + length;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Copies the Worker's range of the source to its region of the destination buffer, or encodes it and writes it to
+     * its region of the output file.<br><br>
+     *
+     * WARNING: Any exceptions thrown in this method are SILENT. They will not stop the program and produce no error messages.
+     *
+     * @return the number of characters copied, or the number of encoded bytes. 0 if cancelled
+     * @throws IOException if the output file can't be written
+     */
+    @Override
+    protected Long doInBackground() throws IOException {
+        if(destination!=null) {
+            for(int copied=0; copied<length; copied+=COPY_LENGTH) {
+                if(isCancelled()) {
+                    return 0L;
+                }
+
+                int copyLength = Math.min(COPY_LENGTH, length - copied);
+                destination.put((int) destinationStart + copied, source, sourceStart + copied, copyLength);
+            }
+            return (long) length;
+        }
+
+        CharsetEncoder encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        ByteBuffer bytes = ByteBuffer.allocate(COPY_LENGTH);
+        long encodedLength = 0;
+
+        //Text is encoded straight from the text buffer, so a surrogate pair is never split between two windows.
+        //Packed letters are unpacked a window at a time
+        if(source!=null) {
+            CharBuffer range = source.duplicate();
+            range.limit(sourceStart + length).position(sourceStart);
+            encodedLength = encode(range, true, encoder, bytes, encodedLength);
+        }
+        else {
+            char[] window = new char[COPY_LENGTH];
+            for(int unpacked=0; unpacked<length && !isCancelled(); unpacked+=COPY_LENGTH) {
+                int windowLength = Math.min(COPY_LENGTH, length - unpacked);
+                letters.unpack(sourceStart + unpacked, sourceStart + unpacked + windowLength, window, 0);
+                encodedLength = encode(CharBuffer.wrap(window, 0, windowLength), unpacked + windowLength == length,
+                        encoder, bytes, encodedLength);
+            }
+        }
+
+        if(isCancelled()) {
+            return 0L;
+        }
+
+        while(encoder.flush(bytes).isOverflow()) {
+            encodedLength = writeBytes(bytes, encodedLength);
+        }
+        return writeBytes(bytes, encodedLength);
+    }
+
+
+
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+
+
+
+    /**
+     * Encodes all of `input` with `encoder`, writing the bytes to the Worker's range of the file each time `bytes` fills,
+     * and returns the number of bytes encoded so far.<br><br>
+     *
+     * Bytes that are left in `bytes` at the end are written by the next call, or by the Worker's final flush.<br><br>
+     *
+     * Helper to doInBackground.
+     *
+     * @param input characters to encode. Non-null
+     * @param endOfInput true if `input` holds the last of the Worker's characters
+     * @param encoder encoder of the Worker's charset, replacing characters it can't encode. Non-null
+     * @param bytes buffer of encoded bytes not yet written, in write mode. Non-null
+     * @param encodedLength number of bytes encoded and written before `bytes`' contents. Cannot be negative
+     * @return number of bytes encoded and written before `bytes`' contents, after encoding `input`.
+     * Returns `encodedLength` unchanged if cancelled
+     * @throws IOException if the output file can't be written
+     */
+    private long encode(CharBuffer input, boolean endOfInput, CharsetEncoder encoder, ByteBuffer bytes, long encodedLength)
+            throws IOException {
+        while(encoder.encode(input, bytes, endOfInput).isOverflow()) {
+            if(isCancelled()) {
+                return encodedLength;
+            }
+            encodedLength = writeBytes(bytes, encodedLength);
+        }
+        return encodedLength;
+    }
+
+
+    /**
+     * Writes the contents of `bytes` to the Worker's range of the file, right after the `encodedLength` bytes written before
+     * them, then clears `bytes`. Returns the number of bytes written in total. Writes nothing if the Worker only measures.<br><br>
+     *
+     * Helper to doInBackground and encode.
+     *
+     * @param bytes buffer of encoded bytes to write, in write mode. Non-null
+     * @param encodedLength number of the Worker's bytes written before `bytes`' contents. Cannot be negative
+     * @return `encodedLength` plus the number of bytes in `bytes`
+     * @throws IOException if the output file can't be written
+     */
+    private long writeBytes(ByteBuffer bytes, long encodedLength) throws IOException {
+        bytes.flip();
+        long written = encodedLength + bytes.remaining();
+        if(channel!=null) {
+            while(bytes.hasRemaining()) {
+                channel.write(bytes, destinationStart + written - bytes.remaining());
+            }
+        }
+        bytes.clear();
+        return written;
+    }
+}
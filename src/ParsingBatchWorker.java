@@ -0,0 +1,152 @@
+import javax.swing.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Worker thread that processes a batch of small, independent requests one after another, each with its own key and mode.
+ * The Worker's result is the number of requests that it processed.<br><br>
+ *
+ * Each request's text is processed like a whole file: it is decoded in the platform's default charset, its line breaks
+ * become "\n", and its last line gets a "\n". One Operations Worker then processes all of it, run on this Worker's
+ * own thread instead of being scheduled, so a batch costs one handoff to the engine's pool instead of one per request,
+ * and each text stays on one warm thread from start to end.<br>
+ * Each request is completed as soon as its own output is ready, so its client doesn't wait for the rest of the batch.
+ * A request that fails is completed with its failure, and the Worker moves on to the next.<br><br>
+ *
+ * A Batch Worker never waits on other tasks, so it runs on an engine's worker pool with `engine.execute`.
+ */
+public class ParsingBatchWorker extends SwingWorker<Integer,Void> {
+
+    /**
+     * The name of the Worker, mostly for debugging purposes. Cannot be null or the string "null".
+     */
+    final private String name;
+
+    /**
+     * The requests to process, in order. Shared with their clients, so only the array is copied. Can't be null
+     */
+    final private StepperRequest[] requests;
+
+
+    /**
+     * Creates a ParsingBatchWorker called `name`, which processes `requests` in order.
+     * @param requests the requests to process. Can't be null or hold null
+     * @param name custom name for this Worker. Non-null and cannot equal the string "null"
+     */
+    public ParsingBatchWorker(StepperRequest[] requests, String name) {
+        if(requests==null) {
+            throw new AssertionError("Requests cannot be null");
+        }
+        for(StepperRequest request : requests) {
+            if(request==null) {
+                throw new AssertionError("No request can be null");
+            }
+        }
+        if(name==null || name.equals("null")) {
+            throw new AssertionError("Name cannot be null or equal the string \"null\"");
+        }
+
+        //The requests are how the Worker hands back each output, so they are shared, not copied
+        this.requests = requests.clone();
+        this.name = name;
+    }
+
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Returns a String representation of the Worker.
+     * @return String representation of the Worker's fields
+     */
+    @Override
+    public String toString() {
+        return "Batch Worker \"" + name + "\", " + requests.length + " requests";
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Processes each request in order, and completes it with its output or its failure. If the Worker is cancelled,
+     * the requests that are left are completed with a CancellationException.<br><br>
+     *
+     * WARNING: Any exceptions thrown in this method are SILENT. They will not stop the program and produce no error messages.
+     *
+     * @return number of requests processed
+     */
+    @Override
+    protected Integer doInBackground() {
+        int processed = 0;
+        for(StepperRequest request : requests) {
+            if(isCancelled()) {
+                request.output().completeExceptionally(new CancellationException("The batch was cancelled"));
+                continue;
+            }
+
+            try {
+                request.output().complete(processRequest(request));
+                processed++;
+            }
+            catch(Throwable t) {
+                request.output().completeExceptionally(t);
+            }
+        }
+        return processed;
+    }
+
+
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+
+
+    /**
+     * Returns the output of processing `request`'s text, in the platform's default charset.<br><br>
+     *
+     * Line breaks become "\n": "\r\n", "\r", "\u2028", "\u2029", and "\u0085" are line breaks. A text that doesn't end with
+     * a line break gets one, unless it is empty.<br><br>
+     *
+     * Helper to doInBackground.
+     *
+     * @param request the request to process. Can't be null
+     * @return the request's output
+     * @throws ExecutionException if the Operations Worker failed
+     * @throws InterruptedException if interrupted while waiting for the Operations Worker's result
+     */
+    private byte[] processRequest(StepperRequest request) throws ExecutionException, InterruptedException {
+        CharBuffer decoded = Charset.defaultCharset().decode(ByteBuffer.wrap(request.input()));
+
+        //Normalizing only ever shortens the text, so it fits with the final line break
+        char[] chars = new char[decoded.remaining() + 1];
+        int decodedLength = decoded.remaining();
+        decoded.get(chars, 0, decodedLength);
+        int length = ParsingDiacriticsWorker.normalizeLineBreaks(chars, 0, decodedLength, false);
+        if(length > 0 && chars[length-1] != '\n') {
+            chars[length] = '\n';
+            length++;
+        }
+        if(length == 0) {
+            return new byte[0];
+        }
+
+        CharBuffer text = CharBuffer.wrap(chars);
+        ParsingCharIndex index = new ParsingCharIndex(length);
+        boolean ascii = ParsingDiacriticsWorker.classifyNormalized(text, index, 0, length);
+        index.updateRanks();
+
+        //Run on this thread. The whole text is one piece, so it starts at the first block and number
+        ParsingOperationsWorker worker = new ParsingOperationsWorker(text, index, 0, length, (char)0, (char)0, !ascii,
+                request.key(), request.encrypting(), request.punctMode(), 0, 0, name);
+        worker.run();
+        int outputLength = worker.get();
+
+        ByteBuffer output = Charset.defaultCharset().encode(CharBuffer.wrap(chars, 0, outputLength));
+        byte[] outputBytes = new byte[output.remaining()];
+        output.get(outputBytes);
+        return outputBytes;
+    }
+}
@@ -1,10 +1,34 @@
 import javax.swing.*;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.security.SecureRandom;
-import java.util.Arrays;
-import java.util.Scanner;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
 
 
 /**
@@ -15,10 +39,68 @@ import java.util.concurrent.ExecutionException;
  *
  * All private helper methods must continuously check if the Boss is cancelled. If so, the method should return
  * the empty string, unless the specification states otherwise. Methods that run quickly and in O(1) time, i.e. where its runtime
- * doesn't depend on an arbitrary input length, do not need to check if the Boss is cancelled.
+ * doesn't depend on an arbitrary input length, do not need to check if the Boss is cancelled.<br><br>
+ *
+ * The Boss keeps its text in one buffer from a ParsingArena. Workers process pieces of the buffer, given by start and end
+ * indices, and the buffer is released as soon as no stage needs it. Memory is never reclaimed with `System.gc()`.<br>
+ * The pieces' outputs are copied into one output buffer in parallel, and the output goes to the App in one String.<br>
+ * The text is classified into a ParsingCharIndex, so piece boundaries and letter and number counts come from rank and select
+ * instead of rescanning the text. Large UTF-8 input files are memory-mapped, decoded in parallel, and classified as they
+ * are decoded.<br>
+ * Files can also be streamed through a ParsingPipeline, in segment-aligned chunks, so memory stays bounded by a few chunks.<br>
+ * Streamed files may be gzip or zlib compressed, and are inflated and deflated on their own threads as part of the pipeline.<br>
+ * Any input and output streams, such as standard input and output, can be streamed the same way.<br>
+ * Files and streams are processed without an App through the static `processFile`, `processFileStreaming`, and
+ * `processStream`. A whole-file job runs on a Boss of its own, which is never executed.<br>
+ * If the output will be letters only, the letters are packed at 5 bits each, with diacritics removed, and the text buffer
+ * is released. The rest of the job works on the packed letters.
  */
 public class ParsingBoss extends SwingWorker<Void,Void> {
 
+    /**
+     * Number of characters of output that are copied out of the text buffer at once. Must be positive
+     */
+    final private static int LOAD_SIZE = 10000;
+
+    /**
+     * Relative cost for an Operations Worker to process one letter. Must be positive.<br><br>
+     *
+     * The three costs were calibrated by timing Operations Workers on mixed texts of letters, digits, spaces and punctuation,
+     * and fitting a cost per character class. In mixed text, a letter takes about 25 ns on one core, other characters
+     * a little more (the letter scans branch on them), and digits about twice as much, since the number pass runs too.
+     */
+    final public static int LETTER_COST = 3;
+
+    /**
+     * Relative cost for an Operations Worker to process one digit. Must be positive. See `LETTER_COST`
+     */
+    final public static int DIGIT_COST = 7;
+
+    /**
+     * Relative cost for an Operations Worker to process one character that is neither a letter nor a digit.
+     * Must be positive. See `LETTER_COST`
+     */
+    final public static int OTHER_COST = 4;
+
+    /**
+     * Size, in bytes, from which a UTF-8 input file is memory-mapped and loaded by several Loading Workers at once.
+     * Smaller files are read by the Boss alone, since splitting them costs more than it saves. Must be positive
+     */
+    final private static int PARALLEL_LOAD_BYTES = 1 << 20;
+
+    /**
+     * Number of byte blocks that circulate between a streaming job's pipeline and each of its Stream Workers. Must be positive
+     */
+    final public static int STREAM_BLOCKS = 4;
+
+    /**
+     * Length, in bytes, of the blocks that a Reading Stream Worker reads into, and of a compressed stream's buffer.
+     * Writing Stream Workers use the pipeline's output block length instead. Must be positive
+     */
+    final private static int STREAM_BLOCK_LENGTH = 1 << 16;
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
 
     /**
      * The parent app that the Boss works for.
@@ -26,6 +108,16 @@ public class ParsingBoss extends SwingWorker<Void,Void> {
      */
     final private StepperApp app;
 
+    /**
+     * True if the Boss's text is pure 7-bit ASCII. Only meaningful while `charIndex` is not null
+     */
+    private boolean asciiText;
+
+    /**
+     * Index of the letters and numbers in `text`. Null when no stage is using it
+     */
+    private ParsingCharIndex charIndex;
+
 
     /**
      * True if the boss is encrypting, false otherwise
@@ -58,10 +150,30 @@ public class ParsingBoss extends SwingWorker<Void,Void> {
     final private byte punctMode;
 
 
+    /**
+     * The Boss's working letters, packed, if the output is letters only. Its words come from the job's arena.<br><br>
+     *
+     * Null when no stage is using packed letters. At most one of `packedText` and `text` is not null
+     */
+    private ParsingPackedLetters packedText;
+
+    /**
+     * The Boss's working text, in a buffer from the job's arena. Only indices [0, textLength) hold text.<br><br>
+     *
+     * On or off the heap, depending on the App's engine. Null when no stage is using the text
+     */
+    private CharBuffer text;
+
+    /**
+     * Number of characters at the start of `text` that hold text. Cannot be negative
+     */
+    private int textLength;
+
+
     /**
      * The worker threads that this Boss employs. The array's length may vary depending on the number of threads used
      */
-    private SwingWorker<String,Void>[] workerThreads;
+    private SwingWorker<?,Void>[] workerThreads;
 
 
     /////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
@@ -103,6 +215,28 @@ public class ParsingBoss extends SwingWorker<Void,Void> {
         this.filepath=null;
     }
 
+    /**
+     * Creates a new ParsingBoss for one file job without an App. Only created, and never executed, by `processFile`.
+     * @param encrypting true if the Boss will encrypt its input, false if decrypting
+     * @param punctMode 0 if including punctuation, 1 if excluding spaces, 2 if alphabetic characters only. Any other value is not allowed
+     * @param filepath path of the input file. Can't be null
+     */
+    private ParsingBoss(boolean encrypting, byte punctMode, String filepath) {
+        if(!(punctMode>=0 && punctMode<=2)) {
+            throw new AssertionError("Punctuation mode out of valid range");
+        }
+        if(filepath==null) {
+            throw new AssertionError("Filepath cannot be null");
+        }
+
+        this.app=null;
+        this.encrypting=encrypting;
+        this.filepath=filepath;
+        this.punctMode=punctMode;
+
+        this.errorMessage = "";
+    }
+
 
     /////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
 
@@ -165,207 +299,91 @@ public class ParsingBoss extends SwingWorker<Void,Void> {
         //Switch the screen. At this point, the text on the Processing screen says "Loading input..."
         app.setScreen("PROCESSING");
 
+        //A text typed in the App is small and the user is waiting on it, so its Workers go ahead of batch Workers.
+        //The Boss's thread is reused, so it is unbound once the job ends
+        app.engine().bindJob(this, StepperAppFields.TEXT_LOAD_SIGNAL.equals(filepath));
 
-        /////////////////////////////////////////////////////
-        //TAKE THE INPUT
-
-
-        //Get the input, depending on if loading from text or file
-        String rawText;
-        //Load from the text inputs if the text load signal is given as a filepath
-        if (StepperAppFields.TEXT_LOAD_SIGNAL.equals(filepath)) {
-            rawText = app.topTextInputValue();
-        }
-        //Otherwise, load from file
-        else {
-            try {
-                rawText = getTextFromFile(filepath); //getTextFromFile gives a descriptive error message
-            }
-            //If file loading goes wrong, load the error message with the error message
-            catch(FileNotFoundException e) {
-                errorMessage = e.getMessage();
-                return null;
-            }
-            //If anything else goes wrong, stop
-            catch (Throwable t) {
-                System.err.println("Exception thrown in text loading- " + t.toString());
-                return null;
-            }
-        }
-
-
-        //Convert the input into a StringBuilder for faster loading
-        StringBuilder text = new StringBuilder(rawText);
-
-        //Remove text to save memory
-        rawText = null;
-
-
-        System.gc();
-        app.setProcessingStepText((app.fields().threadCount()<=1) ?
-                "Formatting 1 thread, " + text.length() + " characters..." :
-                "Formatting " + app.fields().threadCount() + " threads, " + text.length() + " characters...");
-
+        //Every large buffer of the job comes from this arena. Closing it gives them all back to the engine,
+        //even if the job is cancelled or fails, so no stage relies on the garbage collector to reclaim the text
+        try(ParsingArena arena = new ParsingArena(app.engine())) {
 
-        /////////////////////////////////////////////////////
-        //REMOVE DIACRITICS USING ALL THREADS
-
-
-        //Create text pieces
-        String[] textPieces = setWorkerLoads(text.toString(),
-        app.fields().threadCount(),
-        StepperAppFields.BLOCK_LENGTH);
-
-        //Create worker threads and assign them a workload
-        workerThreads = new ParsingDiacriticsWorker[textPieces.length];
-        for(int i=0; i<workerThreads.length; i++) {
-            workerThreads[i] = new ParsingDiacriticsWorker(textPieces[i], Integer.toString(i));
-        }
+            /////////////////////////////////////////////////////
+            //TAKE THE INPUT
 
 
-        //Take output from each worker thread
-        textPieces = new String[workerThreads.length];
-        try {
-            //Execute workers
-            for(SwingWorker<String,Void> workerThread : workerThreads) {
-                workerThread.execute();
+            //Load from the text inputs if the text load signal is given as a filepath
+            if (StepperAppFields.TEXT_LOAD_SIGNAL.equals(filepath)) {
+                String rawText = app.topTextInputValue();
+                textLength = rawText.length();
+                text = arena.allocate(textLength);
+                text.put(rawText).rewind();
             }
-            for(int i = 0; i < workerThreads.length; i++) {
-                textPieces[i] = workerThreads[i].get();
-            }
-        }
-        catch (InterruptedException | ExecutionException e) {
-            for(SwingWorker<String,Void> workerThread : workerThreads) {
-                workerThread.cancel(true);
+            //Otherwise, load from file
+            else {
+                try {
+                    loadTextFromFile(filepath, arena, app.engine(), app.fields().threadCount()); //loadTextFromFile gives a descriptive error message
+                }
+                //If file loading goes wrong, load the error message with the error message
+                catch(FileNotFoundException e) {
+                    errorMessage = e.getMessage();
+                    return null;
+                }
+                //If the Boss was cancelled while the file loaded, stop quietly
+                catch(InterruptedIOException e) {
+                    return null;
+                }
+                //If anything else goes wrong, stop
+                catch (Throwable t) {
+                    System.err.println("Exception thrown in text loading- " + t.toString());
+                    return null;
+                }
             }
-            return null;
-        }
-        catch (Exception e) {
-            System.err.println("Exception in Boss during diacritics removal- " + e);
-            return null;
-        }
-
-        //Reload the text with the results
-        text = new StringBuilder();
-        for(int i=0; i<workerThreads.length; i++) {
-            text.append(textPieces[i]);
-        }
-
-
-        /////////////////////////////////////////////////////
-        //OPERATION
 
 
-        System.gc();
-        app.setProcessingStepText((app.fields().threadCount()<=1) ?
-                "Loading 1 thread, " + text.length() + " characters..." :
-                "Loading " + app.fields().threadCount() + " threads, " + text.length() + " characters...");
-
-        //Format the key
-        byte[][] operationsKey = createKeyBlocks(
-        app.bottomTextInputValue(), StepperAppFields.BLOCK_COUNT, StepperAppFields.BLOCK_LENGTH
-        );
-
-        //Assign workloads to threads
-        textPieces = setWorkerLoads(
-        text.toString(),
-        app.fields().threadCount(),
-        StepperAppFields.BLOCK_LENGTH
-        );
-
-        //Make the worker threads: one index for each piece of the text
-        workerThreads = new ParsingOperationsWorker[textPieces.length];
-        int startingBlock = 0;
-        int numberCount = 0;
-        for (int i = 0; i < workerThreads.length; i++) {
-            workerThreads[i] = new ParsingOperationsWorker(
-            textPieces[i], operationsKey, encrypting, punctMode, startingBlock, numberCount, Integer.toString(i)
+            //Format the key
+            byte[][] operationsKey = createKeyBlocks(
+            app.bottomTextInputValue(), StepperAppFields.BLOCK_COUNT, StepperAppFields.BLOCK_LENGTH
             );
 
-            int[] charCounts = countAlphaAndNumericChars(textPieces[i]);
-            startingBlock += charCounts[0] / StepperAppFields.BLOCK_LENGTH;
-            numberCount += charCounts[1];
-        }
-        textPieces = null;
-
-//        for(SwingWorker w : workerThreads) {
-//            System.out.println(w);
-//        }
-
-        System.gc();
-
-
-        //Make array to hold the result. Put the results from each thread into the result
-        textPieces = new String[workerThreads.length];
-        Arrays.fill(textPieces, "");
-        try {
-            //Start each worker thread
-            for(SwingWorker<String,Void> workerThread : workerThreads) {
-                workerThread.execute();
-            }
-
-            for (int i = 0; i < workerThreads.length; i++) {
-                textPieces[i] = workerThreads[i].get();
-            }
-        }
-        //If interrupted, stop all the workers
-        catch (InterruptedException | ExecutionException e) {
-            for(SwingWorker<String,Void> workerThread : workerThreads) {
-                workerThread.cancel(true);
+            //Process the text in place. The output goes to the start of the text buffer, or to the packed letters
+            int outputLength = processText(app.engine(), arena, operationsKey, encrypting, punctMode, app.fields().threadCount(), null);
+            if(outputLength < 0) {
+                return null;
             }
-            return null;
-        }
-        catch (Exception e) {
-            System.err.println("Boss thread: Error during execution- " + e);
-            return null;
-        }
-
-
-        workerThreads = null;
-        System.gc();
-
-
-        app.setProcessingStepText("Executing...");
-
-        //Load the output into the parent App (this is a thread-safe operation) in chunks
-        final int LOAD_SIZE = 10000;
-        int charsLoaded = 0;
-
-        //Load from each thread
-        for(int t=0; t<textPieces.length; t++) {
 
-            //Load the next LOAD_SIZE characters from the current thread
-            for(int c=0; c<textPieces[t].length(); c+=LOAD_SIZE) {
 
-                //If less than LOAD_SIZE characters left, load all remaining characters
-                if(c+LOAD_SIZE >= textPieces[t].length()) {
-                    app.setOutputTextArea(textPieces[t].substring(c), true);
-                    charsLoaded += textPieces[t].substring(c).length();
-                }
-                //Otherwise, load LOAD_SIZE characters
-                else {
-                    app.setOutputTextArea(textPieces[t].substring(c, c + LOAD_SIZE), true);
-                    charsLoaded += textPieces[t].substring(c, c+LOAD_SIZE).length();
-                }
+            app.setProcessingStepText("Executing...");
 
-                //Update the progress
-                app.setProcessingProgressText(String.valueOf(charsLoaded) + " characters processed" );
+            //Load the output into the parent App (this is a thread-safe operation) all at once
+            app.setOutputTextArea(outputString(outputLength), false);
+            app.setProcessingProgressText(String.valueOf(outputLength) + " characters processed");
 
-                if(isCancelled()) {
-                    return null;
-                }
+            if(isCancelled()) {
+                return null;
             }
-        }
 
-        textPieces = null;
+            //The output is in the App now
+            arena.release((packedText!=null) ? packedText.words() : text);
+            text = null;
+            packedText = null;
+            charIndex = null;
 
 
-        //Load the key into the parent App (this is a thread-safe operation)
-        app.setOutputKeyArea(arrToString(operationsKey), false);
+            //Load the key into the parent App (this is a thread-safe operation)
+            app.setOutputKeyArea(arrToString(operationsKey), false);
 
-        System.gc();
-        //Screen changing occurs in the ParsingDispatcher that created this Boss
-        return null;
+            //Screen changing occurs in the ParsingDispatcher that created this Boss
+            return null;
+        }
+        //The arena has released the text buffer by now. Drop the references to it and to the Workers
+        finally {
+            text = null;
+            packedText = null;
+            charIndex = null;
+            textLength = 0;
+            workerThreads = null;
+            app.engine().bindJob(null, false);
+        }
     }
 
 
@@ -394,7 +412,7 @@ public class ParsingBoss extends SwingWorker<Void,Void> {
      * @param input array to convert to a String. Can't be null, no subarrays can be null. All indices must be on [0,25]
      * @return String containing letters represented by the input's numerical values, in order
      */
-    private String arrToString(byte[][] input) {
+    private static String arrToString(byte[][] input) {
         if(input==null) {
             throw new AssertionError("Input cannot be null");
         }
@@ -421,35 +439,192 @@ public class ParsingBoss extends SwingWorker<Void,Void> {
 
 
     /**
-     * Returns the amount of lowercase English ASCII characters in index 0 and the amount of numeric characters in index 1.
-     * If cancelled, returns {0,0}.<br><br>
+     * Waits for each Operations Worker, in order, and places its output right after the outputs before it, using
+     * Assembly Workers. Returns the output's length.<br><br>
      *
-     * Returns an array to prevent looping over the same string twice.
+     * Outputs go to the output file if `outputChannel` is not null, or else to `outputBuffer` if it is not null.
+     * If both are null, the outputs are left in their pieces.<br>
+     * An output's characters start where the outputs before it end, so its Assembly Worker starts as soon as the Workers
+     * before it have finished. In a file, an output's bytes also start there, if every character takes one byte:
+     * i.e. if the charset has one byte per character, or if the output is ASCII and the charset is UTF-8. Otherwise, each
+     * output's encoded length is measured in parallel first, and each output is written once the outputs before it
+     * are measured.<br><br>
      *
-     * @param input String to count alphabetic and numeric characters in
-     * @return {number of alphabetic chars, number of numeric chars}, or {0,0} if the Boss is cancelled
+     * Helper to processLetters and processText.
+     *
+     * @param engine the engine to run the Assembly Workers on. Can't be null
+     * @param operationsWorkers the Operations Workers, already started, in the order of their pieces. Can't be null
+     * @param pieceBounds the Workers' piece boundaries. Worker i's piece starts at pieceBounds[i]. Can't be null
+     * @param outputBuffer buffer to assemble the outputs in, or null. Must hold the outputs
+     * @param outputChannel the output file, open for writing, or null. Written in the platform's default charset
+     * @param asciiOutput true if every output character is 7-bit ASCII
+     * @return length of the output, in characters
+     * @throws InterruptedException if interrupted while waiting. Every Assembly Worker is cancelled
+     * @throws ExecutionException if a Worker failed, e.g. if the output file can't be written. Every Assembly Worker is cancelled
      */
-    private int[] countAlphaAndNumericChars(String input) {
-        int[] output = new int[] {0,0};
+    private int assembleOutput(ParsingEngine engine, ParsingOperationsWorker[] operationsWorkers, int[] pieceBounds,
+                               CharBuffer outputBuffer, FileChannel outputChannel, boolean asciiOutput)
+            throws InterruptedException, ExecutionException {
+        if(engine==null || operationsWorkers==null || pieceBounds==null) {
+            throw new AssertionError("Engine, Workers, and piece bounds cannot be null");
+        }
 
-        for(int i=0; i<input.length(); i++) {
-            //alphabetic character: +index 0
-            if((int)input.charAt(i)>=97 && (int)input.charAt(i)<=122) {
-                output[0]++;
+        Charset charset = Charset.defaultCharset();
+        boolean measuring = (outputChannel != null) && charset.newEncoder().maxBytesPerChar() != 1.0f
+                && !(asciiOutput && charset.equals(StandardCharsets.UTF_8));
+        boolean placing = (outputBuffer != null) || (outputChannel != null);
+
+        ParsingAssemblyWorker[] measuringWorkers = new ParsingAssemblyWorker[measuring ? operationsWorkers.length : 0];
+        ParsingAssemblyWorker[] assemblyWorkers = new ParsingAssemblyWorker[placing ? operationsWorkers.length : 0];
+        int[] outputLengths = new int[operationsWorkers.length];
+
+        int outputLength = 0;
+        try {
+            for(int i=0; i<operationsWorkers.length; i++) {
+                outputLengths[i] = operationsWorkers[i].get();
+
+                if(measuring) {
+                    measuringWorkers[i] = newAssemblyWorker(pieceBounds[i], outputLengths[i], null, 0, Integer.toString(i));
+                    engine.execute(measuringWorkers[i]);
+                }
+                else if(outputChannel != null) {
+                    assemblyWorkers[i] = newAssemblyWorker(pieceBounds[i], outputLengths[i], outputChannel, outputLength,
+                            Integer.toString(i));
+                    engine.execute(assemblyWorkers[i]);
+                }
+                else if(outputBuffer != null) {
+                    assemblyWorkers[i] = new ParsingAssemblyWorker(text, pieceBounds[i], outputBuffer, outputLength,
+                            outputLengths[i], Integer.toString(i));
+                    engine.execute(assemblyWorkers[i]);
+                }
+
+                outputLength += outputLengths[i];
             }
 
-            //numeric character: +index 1
-            if((int)input.charAt(i)>=48 && (int)input.charAt(i)<=57) {
-                output[1]++;
+            //Each output's bytes start where the bytes of the outputs before it end
+            long position = 0;
+            for(int i=0; i<measuringWorkers.length; i++) {
+                assemblyWorkers[i] = newAssemblyWorker(pieceBounds[i], outputLengths[i], outputChannel, position,
+                        Integer.toString(i));
+                engine.execute(assemblyWorkers[i]);
+                position += measuringWorkers[i].get();
             }
 
-            //cancel check
-            if(isCancelled()) {
-                return new int[] {0,0};
+            workerThreads = assemblyWorkers;
+            for(ParsingAssemblyWorker assemblyWorker : assemblyWorkers) {
+                assemblyWorker.get();
             }
         }
+        catch (InterruptedException | ExecutionException e) {
+            for(ParsingAssemblyWorker[] workers : new ParsingAssemblyWorker[][] {measuringWorkers, assemblyWorkers}) {
+                for(ParsingAssemblyWorker worker : workers) {
+                    if(worker != null) {
+                        worker.cancel(true);
+                    }
+                }
+            }
+            throw e;
+        }
 
-        return output;
+        return outputLength;
+    }
+
+
+    /**
+     * Returns the text index just after the letter that fills block `blocks` of the text indexed by `index`,
+     * or 0 if `blocks` is 0.<br><br>
+     *
+     * Helper to setCostLoads.
+     *
+     * @param index character index of the text, with ranks up to date. Non-null
+     * @param blocks number of whole blocks before the returned index. Must be on the interval [0, letterCount / blockLength]
+     * @param blockLength number of letters in each block. Must be positive
+     * @return index just past the end of block `blocks`
+     */
+    private int blockEnd(ParsingCharIndex index, int blocks, int blockLength) {
+        return (blocks == 0) ? 0 : index.letterSelect(blocks*blockLength - 1) + 1;
+    }
+
+
+    /**
+     * Classifies the first `textLength` characters of the Boss's text buffer into a new `charIndex`, as they will be
+     * without diacritics, and sets `asciiText`. Returns false if cancelled or a Worker failed.<br><br>
+     *
+     * The text itself is not changed.<br><br>
+     *
+     * Helper to processText.
+     *
+     * @param engine the engine to run the Workers on. Can't be null
+     * @param threads number of Workers to split the text between. Cannot be negative
+     * @return true if the text was classified, false if not
+     */
+    private boolean classifyText(ParsingEngine engine, int threads) {
+        if(engine==null || text==null) {
+            throw new AssertionError("Engine and text cannot be null");
+        }
+
+        //Classify the text as it will be without diacritics. The same pass finds out whether the text is pure ASCII.
+        //Every later stage takes its counts and boundaries from the index.
+        //The cost per character doesn't depend on its case or script, so the text is split by length. Pieces start on
+        //index words, so no two Workers classify the same word
+        charIndex = new ParsingCharIndex(textLength);
+        int[] pieceBounds = setLengthLoads(textLength, threads, ParsingCharIndex.CHARS_PER_WORD);
+
+        ParsingDiacriticsWorker[] diacriticsWorkers = new ParsingDiacriticsWorker[pieceBounds.length-1];
+        workerThreads = diacriticsWorkers;
+        for(int i=0; i<diacriticsWorkers.length; i++) {
+            diacriticsWorkers[i] = new ParsingDiacriticsWorker(
+                    text, charIndex, pieceBounds[i], pieceBounds[i+1], false, Integer.toString(i));
+        }
+
+        asciiText = true;
+        try {
+            //Execute workers on the App's warm worker pool
+            for(SwingWorker<?,Void> workerThread : diacriticsWorkers) {
+                engine.execute(workerThread);
+            }
+            for(ParsingDiacriticsWorker diacriticsWorker : diacriticsWorkers) {
+                asciiText &= diacriticsWorker.get();
+            }
+        }
+        catch (InterruptedException | ExecutionException e) {
+            for(SwingWorker<?,Void> workerThread : diacriticsWorkers) {
+                workerThread.cancel(true);
+            }
+            //Keep the interrupt, so a job run without an App can tell it from a failure
+            if(e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            return false;
+        }
+        catch (Exception e) {
+            System.err.println("Exception in Boss during classification- " + e);
+            return false;
+        }
+
+        charIndex.updateRanks();
+        return true;
+    }
+
+
+    /**
+     * Copies `length` characters of the output, starting at index `start`, into the start of `destination`.<br><br>
+     *
+     * The output is at the start of the text buffer, or in the packed letters if the output is letters only.<br><br>
+     *
+     * Helper to outputString.
+     *
+     * @param start index of the first output character to copy. Must be non-negative
+     * @param destination array to copy the characters into. Can't be null. Must hold at least `length` characters
+     * @param length number of characters to copy. The output must have at least `start` + `length` characters
+     */
+    private void copyOutput(int start, char[] destination, int length) {
+        if(packedText!=null) {
+            packedText.unpack(start, start + length, destination, 0);
+        }
+        else {
+            text.get(start, destination, 0, length);
+        }
     }
 
 
@@ -472,7 +647,7 @@ public class ParsingBoss extends SwingWorker<Void,Void> {
      * @param charsPerBlock number of indices in each of the output's subarrays. Must be positive
      * @return `blocks` by `charsPerBlock` byte[][] array loaded with text from `input`
      */
-    private byte[][] createKeyBlocks(String input, int blocks, int charsPerBlock) {
+    private static byte[][] createKeyBlocks(String input, int blocks, int charsPerBlock) {
         if(input==null) {
             throw new AssertionError("Input string cannot be null");
         }
@@ -559,21 +734,106 @@ public class ParsingBoss extends SwingWorker<Void,Void> {
 
 
     /**
-     * Returns all the text from a file whose name is `filepath`. If `filepath` is the empty string, loads from
-     * StepperFunctions.DEFAULT_INPUT_FILE.<br><br>
+     * Returns true if the first `length` bytes of `bytes`, in UTF-8, end with a line break: "\n", "\r", "\u2028", "\u2029",
+     * or "\u0085".<br><br>
+     *
+     * Helper to loadTextInParallel.
+     *
+     * @param bytes the bytes to check. Can't be null
+     * @param length number of bytes to check. Must be on the interval [0, bytes.capacity()]
+     * @return true if the bytes end with an encoded line break, false if not
+     */
+    private boolean endsWithLineBreak(ByteBuffer bytes, int length) {
+        if(length>=1 && (bytes.get(length-1) == '\n' || bytes.get(length-1) == '\r')) {
+            return true;
+        }
+        //"\u0085" is C2 85
+        if(length>=2 && bytes.get(length-2) == (byte) 0xC2 && bytes.get(length-1) == (byte) 0x85) {
+            return true;
+        }
+        //"\u2028" and "\u2029" are E2 80 A8 and E2 80 A9
+        return length>=3 && bytes.get(length-3) == (byte) 0xE2 && bytes.get(length-2) == (byte) 0x80
+                && (bytes.get(length-1) == (byte) 0xA8 || bytes.get(length-1) == (byte) 0xA9);
+    }
+
+
+    /**
+     * Returns `key` as the cipher would use it: its first BLOCK_COUNT*BLOCK_LENGTH letters, lowercase and without
+     * diacritics, padded with random letters if it has too few.<br><br>
+     *
+     * Processing any text with the output gives the same result as with `key`, if `key` needed no padding. Otherwise,
+     * the output fixes the random letters, so many files can be processed with the same padded key.
+     *
+     * @param key the key, as the user would type it. Can't be null
+     * @return the key's BLOCK_COUNT*BLOCK_LENGTH letters
+     */
+    public static String formatKey(String key) {
+        if(key==null) {
+            throw new AssertionError("Key cannot be null");
+        }
+
+        return arrToString(createKeyBlocks(key, StepperAppFields.BLOCK_COUNT, StepperAppFields.BLOCK_LENGTH));
+    }
+
+
+    /**
+     * Returns true if the file at `path` is compressed: a gzip file if it ends with ".gz", or a zlib stream if it ends
+     * with ".deflate". Such a file can only be streamed.
+     * @param path path or name of the file. Can't be null
+     * @return true if the file is compressed
+     */
+    public static boolean isCompressed(String path) {
+        return path.endsWith(".gz") || path.endsWith(".deflate");
+    }
+
+
+    /**
+     * Returns the key blocks that a job with `key` is processed with, for Workers that run without a Boss, e.g. a server's
+     * Batch Workers.<br><br>
+     *
+     * A key with too few letters is padded with random letters, like any job's key. Pass it through `formatKey` first
+     * to know the padding.
+     *
+     * @param key the key, as the user would type it. Can't be null
+     * @return the key, in BLOCK_COUNT blocks of BLOCK_LENGTH letters
+     */
+    public static byte[][] keyBlocks(String key) {
+        if(key==null) {
+            throw new AssertionError("Key cannot be null");
+        }
+
+        return createKeyBlocks(key, StepperAppFields.BLOCK_COUNT, StepperAppFields.BLOCK_LENGTH);
+    }
+
+
+    /**
+     * Loads all the text from a file whose name is `filepath` into the Boss's `text` buffer, allocated from `arena`,
+     * and sets `textLength`. If `filepath` is the empty string, loads from StepperAppFields.DEFAULT_INPUT_FILENAME.<br><br>
+     *
+     * Every line of the file ends with "\n" in the loaded text, including the last line. Line breaks are the same ones
+     * that a Scanner recognizes: "\r\n", "\n", "\r", "\u2028", "\u2029", and "\u0085".<br>
+     * The file is read straight into the buffer, without building a String of its contents.<br>
+     * Large files in UTF-8, the platform's default charset, are loaded in parallel with `loadTextInParallel`, which also
+     * classifies the text into `charIndex`. Files that aren't valid UTF-8 are read serially, like files in other charsets.<br>
      *
      * The input filepath must end with the ".txt" extension.<br>
-     * If the input filepath is empty, does not end in ".txt", or the file could not be read,
-     * throws a FileNotFoundException.<br>
+     * If the input filepath is empty, does not end in ".txt", the file could not be read,
+     * or the file is too large for one of the engine's buffers, throws a FileNotFoundException.<br>
+     * If the Boss is cancelled, loads the empty string. If the thread is interrupted while Loading Workers run, loads
+     * nothing, keeps the thread's interrupt, and throws an InterruptedIOException.
      *
      * @param filepath name of the input file. Can't be null
-     * @return contents from the given input filename, or the empty string if the Boss is cancelled
+     * @param arena the job's arena, which the text buffer is allocated from. Can't be null
+     * @param engine the engine to run the Loading Workers on. Can't be null
+     * @param threads number of Workers to split a large file between. Cannot be negative
      * @throws FileNotFoundException if the file can't be read or the filename lacks the ".txt" extension.
      * Displays a descriptive error message, which is used in the main App, if thrown.
+     * @throws InterruptedIOException if interrupted while the file is loaded in parallel. The thread's interrupt is kept
      */
-    private String getTextFromFile(String filepath) throws FileNotFoundException {
-        if(filepath==null) {
-            throw new AssertionError("Filename cannot be null");
+    private void loadTextFromFile(String filepath, ParsingArena arena, ParsingEngine engine, int threads)
+            throws FileNotFoundException, InterruptedIOException {
+        if(filepath==null || arena==null || engine==null) {
+            throw new AssertionError("Filename, arena, and engine cannot be null");
         }
 
         File inputFile;
@@ -586,52 +846,854 @@ public class ParsingBoss extends SwingWorker<Void,Void> {
             inputFile = new File(filepath);
         }
 
-        StringBuilder output = new StringBuilder();
-
         //Check if the input file ends in .txt
         if(inputFile.getName().length()<=3 || !inputFile.getName().endsWith(".txt")) {
             throw new FileNotFoundException("The input file must have a .txt extension");
         }
-        else {
-            //Read the file and load it into the fields
-            try {
-                Scanner fileReader = new Scanner(inputFile);
 
-                //Load all the lines
-                while (fileReader.hasNextLine()) {
-                    if(isCancelled()) {
-                        return "";
-                    }
+        //Every character takes at least one byte, so the file's size bounds the text's length
+        if(inputFile.length() >= arena.maxBufferLength()) {
+            throw new FileNotFoundException("The input file is too large");
+        }
 
-                    output.append(fileReader.nextLine());
-                    output.append("\n");
-                }
-            }
-            //If error, create a nicer error message and throw an exception with it
-            catch (FileNotFoundException e) {
-                String fileErrorMsg = "The input file \"";
+        //Read the file and load it into the fields
+        try(Reader fileReader = new InputStreamReader(new FileInputStream(inputFile), Charset.defaultCharset())) {
 
-                fileErrorMsg += (inputFile.getName().length() < 20) ?
-                        inputFile.getName() :
-                        inputFile.getName().substring(0, 16) + "... .txt";
+            //Decode large UTF-8 files in parallel instead
+            if(threads > 1 && inputFile.length() >= PARALLEL_LOAD_BYTES
+            && Charset.defaultCharset().equals(StandardCharsets.UTF_8) && loadTextInParallel(inputFile, arena, engine, threads)) {
+                return;
+            }
 
-                fileErrorMsg += "\" does not exist\n";
+            //One more character than the file's size fits the "\n" that may be added to the last line
+            text = arena.allocate((int) inputFile.length() + 1);
+            textLength = 0;
 
-                if(filepath.contains("\\") || filepath.contains("/")) {
-                    fileErrorMsg += "at the given absolute path";
+            char[] readBuffer = new char[8192];
+            boolean afterCarriageReturn = false;
+            int charsRead;
+            while((charsRead = fileReader.read(readBuffer)) != -1) {
+                if(isCancelled()) {
+                    textLength = 0;
+                    return;
                 }
-                else {
-                    fileErrorMsg += "in the folder containing the app";
+
+                boolean endsWithCarriageReturn = (readBuffer[charsRead-1]=='\r');
+                int normalizedLength = ParsingDiacriticsWorker.normalizeLineBreaks(readBuffer, 0, charsRead,
+                        afterCarriageReturn);
+                afterCarriageReturn = endsWithCarriageReturn;
+
+                //Only happens if the file grew while it was being read
+                if(text.capacity() - textLength < normalizedLength) {
+                    if(arena.maxBufferLength() - textLength < normalizedLength) {
+                        throw new IOException("The input file grew too large while it was read");
+                    }
+
+                    CharBuffer grownText = arena.allocate((int) Math.min(
+                            Math.max(2L*text.capacity() + 1, (long) textLength + normalizedLength), arena.maxBufferLength()));
+                    grownText.put(0, text, 0, textLength);
+                    arena.release(text);
+                    text = grownText;
                 }
 
-                throw new FileNotFoundException(fileErrorMsg);
+                text.put(textLength, readBuffer, 0, normalizedLength);
+                textLength += normalizedLength;
             }
+
+            //The last line ends with a line break, like every other line
+            if(textLength>0 && text.get(textLength-1)!='\n') {
+                text.put(textLength, '\n');
+                textLength++;
+            }
+        }
+        //If error, create a nicer error message and throw an exception with it
+        catch (FileNotFoundException e) {
+            throw new FileNotFoundException(missingFileMessage(inputFile, filepath));
+        }
+        //An interrupt is not a bad file, so it is passed on as one. An interrupted channel keeps the thread's interrupt
+        catch (InterruptedIOException e) {
+            throw e;
+        }
+        catch (ClosedByInterruptException e) {
+            throw new InterruptedIOException("Interrupted while the input file was loaded");
+        }
+        catch (IOException e) {
+            throw new FileNotFoundException("The input file could not be read");
+        }
+    }
+
+
+    /**
+     * Loads all the text from `inputFile`, which must be in UTF-8, into the Boss's `text` buffer with Loading Workers,
+     * sets `textLength`, and classifies the text into `charIndex`. Returns false, loading nothing, if the file isn't valid
+     * UTF-8.<br><br>
+     *
+     * The file is memory-mapped and split into byte ranges. Each split is moved forward so that it never cuts a UTF-8
+     * sequence or a "\r\n" line break. Counting Workers then find how many characters each range decodes to, which gives
+     * each range's place in the text buffer, and Decoding Workers decode and classify the ranges into their places
+     * in parallel. The index words that two ranges share are classified here. The text is the same as the serial loader's.<br>
+     * If the Boss is cancelled, loads the empty string. If the thread is interrupted, loads nothing and throws an
+     * InterruptedIOException, with the thread's interrupt kept.<br><br>
+     *
+     * Helper to loadTextFromFile.
+     *
+     * @param inputFile the input file. Can't be null. Must be shorter than the arena's maximum buffer length
+     * @param arena the job's arena, which the text buffer is allocated from. Can't be null
+     * @param engine the engine to run the Loading Workers on. Can't be null
+     * @param threads number of Workers to split the file between. Cannot be negative
+     * @return true if the file was loaded, or the Boss was cancelled. False if the file is not valid UTF-8
+     * @throws InterruptedIOException if interrupted while the Loading Workers run. Every Loading Worker is cancelled
+     * @throws IOException if the file can't be read or mapped
+     */
+    private boolean loadTextInParallel(File inputFile, ParsingArena arena, ParsingEngine engine, int threads)
+            throws IOException {
+        if(inputFile==null || arena==null || engine==null) {
+            throw new AssertionError("File, arena, and engine cannot be null");
+        }
+
+        try(FileInputStream inputStream = new FileInputStream(inputFile); FileChannel inputChannel = inputStream.getChannel()) {
+            int fileLength = (int) inputChannel.size();
+            MappedByteBuffer bytes = inputChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileLength);
+
+            //Move each split off continuation bytes (10xxxxxx), and off the "\n" of a "\r\n"
+            int[] byteBounds = setLengthLoads(fileLength, threads, 1);
+            for(int i=1; i<byteBounds.length-1; i++) {
+                int split = Math.max(byteBounds[i], byteBounds[i-1]);
+                while(split < fileLength && split > 0 && ((bytes.get(split) & 0xC0) == 0x80
+                || (bytes.get(split) == '\n' && bytes.get(split-1) == '\r'))) {
+                    split++;
+                }
+                byteBounds[i] = split;
+            }
+
+            ParsingLoadingWorker[] countingWorkers = new ParsingLoadingWorker[byteBounds.length-1];
+            for(int i=0; i<countingWorkers.length; i++) {
+                countingWorkers[i] = new ParsingLoadingWorker(bytes, byteBounds[i], byteBounds[i+1], Integer.toString(i));
+            }
+            ParsingLoadingWorker[] decodingWorkers = new ParsingLoadingWorker[countingWorkers.length];
+
+            try {
+                //Count each range's characters. A range's characters start where the ranges before it end
+                workerThreads = countingWorkers;
+                for(SwingWorker<?,Void> workerThread : countingWorkers) {
+                    engine.execute(workerThread);
+                }
+
+                int[] charBounds = new int[countingWorkers.length+1];
+                boolean ascii = true;
+                for(int i=0; i<countingWorkers.length; i++) {
+                    charBounds[i+1] = charBounds[i] + countingWorkers[i].get();
+                    ascii &= countingWorkers[i].ascii();
+                }
+                if(isCancelled()) {
+                    textLength = 0;
+                    text = arena.allocate(0);
+                    return true;
+                }
+
+                //The last line ends with a line break, like every other line
+                int charCount = charBounds[charBounds.length-1];
+                boolean lineBreakAdded = charCount > 0 && !endsWithLineBreak(bytes, fileLength);
+                textLength = charCount + (lineBreakAdded ? 1 : 0);
+                text = arena.allocate(textLength);
+                charIndex = new ParsingCharIndex(textLength);
+
+                //Decode and classify each range in its place
+                workerThreads = decodingWorkers;
+                for(int i=0; i<decodingWorkers.length; i++) {
+                    decodingWorkers[i] = new ParsingLoadingWorker(bytes, byteBounds[i], byteBounds[i+1], text, charIndex,
+                            charBounds[i], charBounds[i+1] - charBounds[i], Integer.toString(i));
+                    engine.execute(decodingWorkers[i]);
+                }
+                for(ParsingLoadingWorker decodingWorker : decodingWorkers) {
+                    decodingWorker.get();
+                }
+
+                if(lineBreakAdded) {
+                    text.put(charCount, '\n');
+                }
+
+                //Classify the words that two ranges share, and the last word
+                for(int i=1; i<charBounds.length-1; i++) {
+                    int wordStart = charBounds[i] - charBounds[i] % ParsingCharIndex.CHARS_PER_WORD;
+                    if(wordStart != charBounds[i]) {
+                        ParsingDiacriticsWorker.classifyNormalized(text, charIndex, wordStart,
+                                Math.min(textLength, wordStart + ParsingCharIndex.CHARS_PER_WORD));
+                    }
+                }
+                int lastWordStart = charCount - charCount % ParsingCharIndex.CHARS_PER_WORD;
+                ParsingDiacriticsWorker.classifyNormalized(text, charIndex, lastWordStart, textLength);
+
+                charIndex.updateRanks();
+                asciiText = ascii;
+            }
+            //If interrupted, stop all the workers
+            catch (InterruptedException | ExecutionException e) {
+                for(ParsingLoadingWorker[] workers : new ParsingLoadingWorker[][] {countingWorkers, decodingWorkers}) {
+                    for(ParsingLoadingWorker worker : workers) {
+                        if(worker != null) {
+                            worker.cancel(true);
+                        }
+                    }
+                }
+
+                if(text != null) {
+                    arena.release(text);
+                }
+                text = null;
+                charIndex = null;
+                textLength = 0;
+
+                //Nothing was loaded, so the job can't go on. Keep the interrupt for whoever stops the job
+                if(e instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while the input file was loaded");
+                }
+
+                //The file isn't valid UTF-8, so read it serially, replacing the bad bytes like the serial loader does.
+                //Any other failure is passed on
+                if(e.getCause() instanceof CharacterCodingException) {
+                    return false;
+                }
+                throw new IOException("The input file could not be loaded", e.getCause());
+            }
+            finally {
+                workerThreads = null;
+            }
+
+            return true;
+        }
+    }
+
+
+    /**
+     * Returns the message that the App displays when the input file `inputFile`, given as `filepath`, doesn't exist.<br><br>
+     *
+     * Long file names are shortened.<br><br>
+     *
+     * Helper to loadTextFromFile and processFileStreaming.
+     *
+     * @param inputFile the missing file. Can't be null
+     * @param filepath the path that the file was given as. Can't be null
+     * @return error message
+     */
+    private static String missingFileMessage(File inputFile, String filepath) {
+        String fileErrorMsg = "The input file \"";
+
+        fileErrorMsg += (inputFile.getName().length() < 20) ?
+                inputFile.getName() :
+                inputFile.getName().substring(0, 16) + "... .txt";
+
+        fileErrorMsg += "\" does not exist\n";
+
+        if(filepath.contains("\\") || filepath.contains("/")) {
+            fileErrorMsg += "at the given absolute path";
+        }
+        else {
+            fileErrorMsg += "in the folder containing the app";
+        }
+
+        return fileErrorMsg;
+    }
+
+
+    /**
+     * Returns an Assembly Worker that encodes `length` characters of the output, starting at `start` in the Boss's text
+     * buffer or packed letters, and writes them to `outputChannel` starting at byte `position`. If `outputChannel` is null,
+     * the Worker only measures their encoded length.<br><br>
+     *
+     * Helper to assembleOutput.
+     *
+     * @param start index of the first character, in `packedText` if it is not null, or else in `text`. Cannot be negative
+     * @param length number of characters. Cannot be negative
+     * @param outputChannel the output file, open for writing, or null to only measure. Written in the platform's default charset
+     * @param position byte of the file to write the first encoded byte to. Cannot be negative
+     * @param name name of the Worker. Non-null and cannot equal the string "null"
+     * @return new Assembly Worker
+     */
+    private ParsingAssemblyWorker newAssemblyWorker(int start, int length, FileChannel outputChannel, long position, String name) {
+        if(packedText != null) {
+            return new ParsingAssemblyWorker(packedText, start, length, Charset.defaultCharset(), outputChannel, position, name);
+        }
+        return new ParsingAssemblyWorker(text, start, length, Charset.defaultCharset(), outputChannel, position, name);
+    }
+
+
+    /**
+     * Opens the file at `outputPath` for writing, replacing it, and returns a stream that compresses what is written to it:
+     * gzip if the path ends with ".gz", or zlib otherwise.<br><br>
+     *
+     * Helper to processFileStreaming.
+     *
+     * @param outputPath path of the output file. Can't be null
+     * @return compressing stream over the output file
+     * @throws IOException if the file can't be opened
+     */
+    private static OutputStream openDeflating(String outputPath) throws IOException {
+        OutputStream fileOutput = new FileOutputStream(outputPath);
+        try {
+            return outputPath.endsWith(".gz") ?
+                    new GZIPOutputStream(fileOutput, STREAM_BLOCK_LENGTH) :
+                    new DeflaterOutputStream(new BufferedOutputStream(fileOutput, STREAM_BLOCK_LENGTH));
+        }
+        catch(IOException e) {
+            fileOutput.close();
+            throw e;
+        }
+    }
+
+
+    /**
+     * Opens `inputFile` and returns a stream that inflates it: gzip if its name ends with ".gz", or zlib otherwise.<br><br>
+     *
+     * Helper to processFileStreaming.
+     *
+     * @param inputFile the compressed input file. Can't be null
+     * @return inflating stream over the input file
+     * @throws IOException if the file can't be opened, or doesn't start with a gzip header
+     */
+    private static InputStream openInflating(File inputFile) throws IOException {
+        InputStream fileInput = new FileInputStream(inputFile);
+        try {
+            return inputFile.getName().endsWith(".gz") ?
+                    new GZIPInputStream(fileInput, STREAM_BLOCK_LENGTH) :
+                    new InflaterInputStream(new BufferedInputStream(fileInput, STREAM_BLOCK_LENGTH));
+        }
+        catch(IOException e) {
+            fileInput.close();
+            throw e;
         }
+    }
+
 
+    /**
+     * Returns the first `length` characters of the output as one String.<br><br>
+     *
+     * If the output is in an on-heap text buffer, the String is made straight from the buffer's array, with one copy.
+     * Otherwise, it is copied out `LOAD_SIZE` characters at a time, so an off-heap buffer or the packed letters are never
+     * copied to the heap whole.<br><br>
+     *
+     * Helper to doInBackground and processText_Testing.
+     *
+     * @param length number of output characters. Must be on the interval [0, output length]
+     * @return the output's first `length` characters
+     */
+    private String outputString(int length) {
+        if(packedText==null && text.hasArray()) {
+            return new String(text.array(), text.arrayOffset(), length);
+        }
+
+        StringBuilder output = new StringBuilder(length);
+        char[] chunk = new char[LOAD_SIZE];
+        for(int c=0; c<length; c+=LOAD_SIZE) {
+            int chunkLength = Math.min(LOAD_SIZE, length - c);
+            copyOutput(c, chunk, chunkLength);
+            output.append(chunk, 0, chunkLength);
+        }
         return output.toString();
     }
 
 
+    /**
+     * Processes the text file at `inputPath` with `key`, running the Workers on `engine`, and writes the output to the file
+     * at `outputPath`. Returns the output's length, in characters.<br><br>
+     *
+     * Runs the same stages as a Boss created by a Dispatcher, on a Boss of its own that has no App. The input is loaded
+     * like the App loads input files. The output is never built in memory: each piece's output is written at its own
+     * offset of the output file, in parallel, in the platform's default charset. An existing output file is replaced.
+     *
+     * @param engine the engine to run the Workers on. Can't be null
+     * @param inputPath path of the input file. Must end with ".txt". Can't be null
+     * @param outputPath path of the output file. Can't be null
+     * @param key the key, as the user would type it. Can't be null
+     * @param encrypting true if encrypting, false if decrypting
+     * @param punctMode 0 if including punctuation, 1 if excluding spaces, 2 if alphabetic characters only
+     * @param threads number of Workers to split each stage between. Must be positive
+     * @return length of the output, in characters
+     * @throws FileNotFoundException if the input file can't be read. Holds the message that the App would display
+     * @throws InterruptedIOException if interrupted while the file is processed. The thread's interrupt is kept
+     * @throws IOException if the output file can't be written
+     */
+    public static int processFile(ParsingEngine engine, String inputPath, String outputPath, String key,
+                                  boolean encrypting, byte punctMode, int threads) throws IOException {
+        if(engine==null || inputPath==null || outputPath==null || key==null) {
+            throw new AssertionError("Engine, paths, and key cannot be null");
+        }
+        if(punctMode<0 || punctMode>2 || threads<=0) {
+            throw new AssertionError("Punctuation mode must be on [0,2] and threads must be positive");
+        }
+
+        return new ParsingBoss(encrypting, punctMode, inputPath).processWholeFile(engine, outputPath, key, threads);
+    }
+
+    /**
+     * Loads the Boss's input file, processes it with `key`, and writes the output to the file at `outputPath`.
+     * Returns the output's length, in characters.<br><br>
+     *
+     * Helper to processFile.
+     *
+     * @param engine the engine to run the Workers on. Can't be null
+     * @param outputPath path of the output file. Can't be null
+     * @param key the key, as the user would type it. Can't be null
+     * @param threads number of Workers to split each stage between. Must be positive
+     * @return length of the output, in characters
+     * @throws FileNotFoundException if the input file can't be read. Holds the message that the App would display
+     * @throws InterruptedIOException if interrupted while the file is processed. The thread's interrupt is kept
+     * @throws IOException if the output file can't be written
+     */
+    private int processWholeFile(ParsingEngine engine, String outputPath, String key, int threads) throws IOException {
+        try(ParsingArena arena = new ParsingArena(engine)) {
+            loadTextFromFile(filepath, arena, engine, threads);
+
+            byte[][] operationsKey = createKeyBlocks(key, StepperAppFields.BLOCK_COUNT, StepperAppFields.BLOCK_LENGTH);
+
+            try(FileChannel outputChannel = FileChannel.open(Path.of(outputPath), StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                int outputLength = processText(engine, arena, operationsKey, encrypting, punctMode, threads, outputChannel);
+                if(outputLength < 0 && Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedIOException("Interrupted while the file was processed");
+                }
+                if(outputLength < 0) {
+                    throw new IOException("The output file could not be written");
+                }
+                return outputLength;
+            }
+        }
+        finally {
+            text = null;
+            packedText = null;
+            charIndex = null;
+            textLength = 0;
+            workerThreads = null;
+        }
+    }
+
+
+    /**
+     * Processes the text file at `inputPath` with `key` as a stream of chunks, running the Workers on `engine`, and writes
+     * the output to the file at `outputPath`. Returns the output's length, in characters.<br><br>
+     *
+     * Gives the same output file as `processFile`, but never holds the whole text: a ParsingPipeline reads the input ahead
+     * asynchronously, processes segment-aligned chunks on up to `threads` Operations Workers, and writes their outputs
+     * in order while the next chunks are read and processed. Memory stays bounded by a few chunks, whatever the file's size.
+     * An existing output file is replaced.<br>
+     * A path ending with ".gz" is a gzip file, and one ending with ".deflate" is a zlib stream. Such an input is inflated,
+     * or such an output deflated, by a Stream Worker on one of the engine's stream threads, as part of the pipeline.
+     * The uncompressed text is never staged on disk.
+     *
+     * @param engine the engine to run the Workers on. Can't be null
+     * @param inputPath path of the input file. Must end with ".txt", ".gz", or ".deflate". Can't be null
+     * @param outputPath path of the output file. Can't be null
+     * @param key the key, as the user would type it. Can't be null
+     * @param encrypting true if encrypting, false if decrypting
+     * @param punctMode 0 if including punctuation, 1 if excluding spaces, 2 if alphabetic characters only
+     * @param threads maximum number of Operations Workers to run at once. Must be positive
+     * @return length of the output, in characters
+     * @throws FileNotFoundException if the input file can't be read. Holds the message that the App would display
+     * @throws IOException if the input can't be read or inflated, or the output file can't be written
+     * @throws InterruptedException if interrupted while the file is processed
+     */
+    public static long processFileStreaming(ParsingEngine engine, String inputPath, String outputPath, String key,
+                                            boolean encrypting, byte punctMode, int threads)
+            throws IOException, InterruptedException {
+        return processFileStreaming(engine, inputPath, outputPath, key, encrypting, punctMode, threads, new AtomicLong());
+    }
+
+    /**
+     * Works like `processFileStreaming` without a counter, and adds each block of bytes read from the input to
+     * `inputBytes` as it is read, so other threads can follow the job's progress. Compressed inputs count their
+     * inflated bytes.
+     *
+     * @param engine the engine to run the Workers on. Can't be null
+     * @param inputPath path of the input file. Must end with ".txt", ".gz", or ".deflate". Can't be null
+     * @param outputPath path of the output file. Can't be null
+     * @param key the key, as the user would type it. Can't be null
+     * @param encrypting true if encrypting, false if decrypting
+     * @param punctMode 0 if including punctuation, 1 if excluding spaces, 2 if alphabetic characters only
+     * @param threads maximum number of Operations Workers to run at once. Must be positive
+     * @param inputBytes the counter to add the bytes read from the input to. Can't be null
+     * @return length of the output, in characters
+     * @throws FileNotFoundException if the input file can't be read. Holds the message that the App would display
+     * @throws IOException if the input can't be read or inflated, or the output file can't be written
+     * @throws InterruptedException if interrupted while the file is processed
+     */
+    public static long processFileStreaming(ParsingEngine engine, String inputPath, String outputPath, String key,
+                                            boolean encrypting, byte punctMode, int threads, AtomicLong inputBytes)
+            throws IOException, InterruptedException {
+        if(engine==null || inputPath==null || outputPath==null || key==null || inputBytes==null) {
+            throw new AssertionError("Engine, paths, key, and input byte counter cannot be null");
+        }
+        if(punctMode<0 || punctMode>2 || threads<=0) {
+            throw new AssertionError("Punctuation mode must be on [0,2] and threads must be positive");
+        }
+
+        File inputFile = inputPath.isEmpty() ? new File(StepperAppFields.DEFAULT_INPUT_FILENAME) : new File(inputPath);
+        boolean inflating = isCompressed(inputFile.getName());
+        if(!inflating && (inputFile.getName().length()<=3 || !inputFile.getName().endsWith(".txt"))) {
+            throw new FileNotFoundException("The input file must have a .txt, .gz, or .deflate extension");
+        }
+        if(!inputFile.isFile()) {
+            throw new FileNotFoundException(missingFileMessage(inputFile, inputPath));
+        }
+        boolean deflating = isCompressed(outputPath);
+
+        byte[][] operationsKey = createKeyBlocks(key, StepperAppFields.BLOCK_COUNT, StepperAppFields.BLOCK_LENGTH);
+
+        //Each end is either a file channel or a compressed stream. The streams are closed here too, in case their Workers
+        //never start
+        try(ParsingArena arena = new ParsingArena(engine);
+            InputStream inputStream = inflating ? openInflating(inputFile) : null;
+            AsynchronousFileChannel inputChannel = inflating ? null :
+                    AsynchronousFileChannel.open(inputFile.toPath(), StandardOpenOption.READ);
+            OutputStream outputStream = deflating ? openDeflating(outputPath) : null;
+            AsynchronousFileChannel outputChannel = deflating ? null :
+                    AsynchronousFileChannel.open(Path.of(outputPath), StandardOpenOption.CREATE,
+                            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+
+            //The output blocks fit a whole chunk's output, so the pipeline never replaces them
+            ParsingPipeline pipeline = new ParsingPipeline(engine, arena, operationsKey, encrypting, punctMode, threads,
+                    inputBytes);
+            ParsingStreamWorker inputWorker = inflating ?
+                    new ParsingStreamWorker(inputStream, STREAM_BLOCKS, STREAM_BLOCK_LENGTH, "inflating") : null;
+            ParsingStreamWorker outputWorker = deflating ?
+                    new ParsingStreamWorker(outputStream, STREAM_BLOCKS, pipeline.outputBlockLength(), "deflating") : null;
+
+            return pipeline.run(inputChannel, inputWorker, outputChannel, outputWorker);
+        }
+    }
+
+
+    /**
+     * Packs the `letterCount` letters of the Boss's text buffer into `packedText`, releases the text buffer, and processes
+     * the packed letters in place. Returns the output's length, or -1 if cancelled or a stage fails.<br><br>
+     *
+     * Only called when the output will hold nothing but the text's letters. Diacritics are removed as the letters are packed.<br>
+     * The text buffer and the packed letters are both held only while the letters are packed. After that, the job holds
+     * a third of the memory that its letters would take in the text buffer.<br>
+     * If `outputChannel` is not null, the letters are also written to the output file, each piece at its own offset.<br><br>
+     *
+     * Helper to processText.
+     *
+     * @param engine the engine to run the Workers on. Can't be null
+     * @param arena the job's arena, which holds the text buffer. Can't be null
+     * @param key the key to process the letters with. Dimensions must be `StepperAppFields.BLOCK_COUNT` by `StepperAppFields.BLOCK_LENGTH`
+     * @param encrypting true if encrypting, false if decrypting
+     * @param letterCount number of letters in the first `textLength` characters of the text buffer, once diacritics are
+     *                    removed. Cannot be negative
+     * @param threads number of Workers to split the letters between. Cannot be negative
+     * @param outputChannel the output file, open for writing, or null if the output stays in memory
+     * @return length of the output, or -1 if cancelled or a stage failed
+     */
+    private int processLetters(ParsingEngine engine, ParsingArena arena, byte[][] key, boolean encrypting,
+                               int letterCount, int threads, FileChannel outputChannel) {
+        if(engine==null || arena==null || key==null || text==null) {
+            throw new AssertionError("Engine, arena, key, and text cannot be null");
+        }
+        if(letterCount<0) {
+            throw new AssertionError("Letter count cannot be negative");
+        }
+
+        packedText = arena.allocateLetters(letterCount);
+        packedText.packLetters(text, 0, textLength);
+        arena.release(text);
+        text = null;
+        charIndex = null;
+
+        if(isCancelled()) {
+            return -1;
+        }
+
+        if(app!=null) {
+            app.setProcessingStepText((threads<=1) ?
+                    "Loading 1 thread, " + letterCount + " letters..." :
+                    "Loading " + threads + " threads, " + letterCount + " letters...");
+        }
+
+        //Pieces are whole blocks, and whole words of packed letters, so no two Workers write to the same word
+        int[] pieceBounds = setLengthLoads(letterCount, threads, StepperAppFields.BLOCK_LENGTH * ParsingPackedLetters.LETTERS_PER_WORD);
+
+        ParsingOperationsWorker[] operationsWorkers = new ParsingOperationsWorker[pieceBounds.length-1];
+        workerThreads = operationsWorkers;
+        for(int i=0; i<operationsWorkers.length; i++) {
+            operationsWorkers[i] = new ParsingOperationsWorker(
+            packedText, pieceBounds[i], pieceBounds[i+1], key, encrypting,
+            pieceBounds[i] / StepperAppFields.BLOCK_LENGTH, Integer.toString(i)
+            );
+        }
+
+        try {
+            //Start each worker thread on the App's warm worker pool
+            for(SwingWorker<?,Void> workerThread : operationsWorkers) {
+                engine.execute(workerThread);
+            }
+
+            //The letters are processed in place. Only an output file needs them placed anywhere else
+            assembleOutput(engine, operationsWorkers, pieceBounds, null, outputChannel, true);
+        }
+        //If interrupted, stop all the workers
+        catch (InterruptedException | ExecutionException e) {
+            for(SwingWorker<?,Void> workerThread : operationsWorkers) {
+                workerThread.cancel(true);
+            }
+            //Keep the interrupt, so a job run without an App can tell it from a failure
+            if(e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            return -1;
+        }
+        catch (Exception e) {
+            System.err.println("Boss thread: Error during letter execution- " + e);
+            return -1;
+        }
+
+        workerThreads = null;
+
+        if(isCancelled()) {
+            return -1;
+        }
+        return letterCount;
+    }
+
+
+    /**
+     * Processes the bytes of `input` with `key` as a stream of chunks, running the Workers on `engine`, and writes
+     * the output to `output` as each chunk is done. Returns the output's length, in characters.<br><br>
+     *
+     * Works like `processFileStreaming`, for a filter in a shell pipeline: a Reading Stream Worker reads `input` in blocks,
+     * the chunks carry their block and number offsets into the next, and a Writing Stream Worker writes and flushes each
+     * chunk's output to `output` in order. Both Stream Workers run on the engine's stream threads, so any number of
+     * streams may be processed at once. Memory stays bounded by a few chunks, and nothing is staged on disk.<br>
+     * Both streams are in the platform's default charset, and both are closed when the method returns.
+     *
+     * @param engine the engine to run the Workers on. Can't be null
+     * @param input the stream to read the text from, e.g. standard input. Can't be null
+     * @param output the stream to write the output to, e.g. standard output. Can't be null
+     * @param key the key, as the user would type it. Can't be null
+     * @param encrypting true if encrypting, false if decrypting
+     * @param punctMode 0 if including punctuation, 1 if excluding spaces, 2 if alphabetic characters only
+     * @param threads maximum number of Operations Workers to run at once. Must be positive
+     * @return length of the output, in characters
+     * @throws IOException if the input can't be read, or the output can't be written
+     * @throws InterruptedException if interrupted while the stream is processed
+     */
+    public static long processStream(ParsingEngine engine, InputStream input, OutputStream output, String key,
+                                     boolean encrypting, byte punctMode, int threads)
+            throws IOException, InterruptedException {
+        if(engine==null || input==null || output==null || key==null) {
+            throw new AssertionError("Engine, streams, and key cannot be null");
+        }
+        if(punctMode<0 || punctMode>2 || threads<=0) {
+            throw new AssertionError("Punctuation mode must be on [0,2] and threads must be positive");
+        }
+
+        byte[][] operationsKey = createKeyBlocks(key, StepperAppFields.BLOCK_COUNT, StepperAppFields.BLOCK_LENGTH);
+
+        //The streams are closed here too, in case their Workers never start
+        try(ParsingArena arena = new ParsingArena(engine);
+            InputStream inputStream = input;
+            OutputStream outputStream = output) {
+
+            ParsingPipeline pipeline = new ParsingPipeline(engine, arena, operationsKey, encrypting, punctMode, threads,
+                    new AtomicLong());
+            return pipeline.run(null,
+                    new ParsingStreamWorker(inputStream, STREAM_BLOCKS, STREAM_BLOCK_LENGTH, "reading"),
+                    null,
+                    new ParsingStreamWorker(outputStream, STREAM_BLOCKS, pipeline.outputBlockLength(), "writing"));
+        }
+    }
+
+
+    /**
+     * Processes the first `textLength` characters of the Boss's text buffer in place, and returns the output's length.
+     * The output is written to the start of `text`, which may be a new buffer by then. If cancelled or a stage fails,
+     * returns -1.<br><br>
+     *
+     * No stage copies the text. The text is classified once, as it will be once diacritics are removed, by Diacritics
+     * Workers that split it by length, unless the parallel file loader already classified it. Then each Operations
+     * Worker removes diacritics from its own piece and overwrites it with its output. Removing diacritics never moves a
+     * character, so the text is never rewritten in a separate stage.
+     * If the text is pure 7-bit ASCII, removing diacritics would only lowercase the letters, which the Operations Workers
+     * do anyway as they shift them, so the Workers skip it. The pieces' outputs are then assembled by Assembly Workers,
+     * in parallel, into one output buffer, which replaces the text buffer.
+     * The job holds two buffers only while the outputs are assembled. The text buffer is released before the App copies
+     * the output, so the job's peak stays at about twice the input's size.<br>
+     * If `outputChannel` is not null, the Assembly Workers write the outputs straight to the output file instead, each at
+     * its own offset, and the output is never assembled in memory.<br><br>
+     *
+     * If the output will be letters only, i.e. in alphabetic-only mode when the text holds no numbers, the letters are
+     * packed with diacritics removed, and processText continues with processLetters.
+     * The output is then in `packedText` instead of the text buffer.<br><br>
+     *
+     * Helper to doInBackground, processFile, and processText_Testing. Updates the App's processing step text
+     * if the Boss has an App.
+     *
+     * @param engine the engine to run the Workers on. Can't be null
+     * @param arena the job's arena, which holds the text buffer. Can't be null
+     * @param key the key to process the text with. Dimensions must be `StepperAppFields.BLOCK_COUNT` by `StepperAppFields.BLOCK_LENGTH`
+     * @param encrypting true if encrypting, false if decrypting
+     * @param punctMode 0 if including punctuation, 1 if excluding spaces, 2 if alphabetic characters only
+     * @param threads number of Workers to split each stage between. Cannot be negative
+     * @param outputChannel the output file, open for writing, or null if the output stays in memory
+     * @return length of the output, or -1 if cancelled or a stage failed
+     */
+    private int processText(ParsingEngine engine, ParsingArena arena, byte[][] key, boolean encrypting, byte punctMode,
+                            int threads, FileChannel outputChannel) {
+        if(engine==null || arena==null || key==null || text==null) {
+            throw new AssertionError("Engine, arena, key, and text cannot be null");
+        }
+
+        if(app!=null) {
+            app.setProcessingStepText((threads<=1) ?
+                    "Formatting 1 thread, " + textLength + " characters..." :
+                    "Formatting " + threads + " threads, " + textLength + " characters...");
+        }
+
+
+        /////////////////////////////////////////////////////
+        //CLASSIFY USING ALL THREADS
+
+
+        //A text loaded in parallel was classified as it was decoded
+        if(charIndex == null && !classifyText(engine, threads)) {
+            return -1;
+        }
+
+
+        /////////////////////////////////////////////////////
+        //PACK LETTER-ONLY OUTPUTS
+
+
+        //Without numbers, an alphabetic-only output holds nothing but letters. Work on them packed from here on
+        if(punctMode==2 && charIndex.digitCount()==0) {
+            return processLetters(engine, arena, key, encrypting, charIndex.letterCount(), threads, outputChannel);
+        }
+
+
+        /////////////////////////////////////////////////////
+        //OPERATION
+
+
+        if(app!=null) {
+            app.setProcessingStepText((threads<=1) ?
+                    "Loading 1 thread, " + textLength + " characters..." :
+                    "Loading " + threads + " threads, " + textLength + " characters...");
+        }
+
+        //Assign workloads to threads. Digits and punctuation cost more than letters, so balance the total cost
+        int[] pieceBounds = setCostLoads(charIndex, threads, StepperAppFields.BLOCK_LENGTH);
+
+
+        //Make the worker threads: one index for each piece of the text.
+        //Each Worker gets its piece's neighbors now, since the Workers next to it may overwrite them once they start.
+        //The neighbors are read raw, so remove their diacritics here
+        ParsingOperationsWorker[] operationsWorkers = new ParsingOperationsWorker[pieceBounds.length-1];
+        workerThreads = operationsWorkers;
+        //Every piece but the last holds whole blocks, so a piece's starting block follows from the letters before it
+        for (int i = 0; i < operationsWorkers.length; i++) {
+            char previousChar = (pieceBounds[i] > 0) ? ParsingDiacriticsWorker.normalize(text.get(pieceBounds[i]-1)) : (char)0;
+            char nextChar = (pieceBounds[i+1] < textLength) ? ParsingDiacriticsWorker.normalize(text.get(pieceBounds[i+1])) : (char)0;
+
+            operationsWorkers[i] = new ParsingOperationsWorker(
+            text, charIndex, pieceBounds[i], pieceBounds[i+1], previousChar, nextChar, !asciiText,
+            key, encrypting, punctMode, charIndex.letterRank(pieceBounds[i]) / StepperAppFields.BLOCK_LENGTH,
+            charIndex.digitRank(pieceBounds[i]), Integer.toString(i)
+            );
+        }
+
+
+        //Each Worker writes its output to the start of its piece. A lone piece's output already starts the buffer.
+        //Otherwise, the outputs are assembled in one output buffer, unless they go straight to the output file
+        CharBuffer outputBuffer = (outputChannel==null && operationsWorkers.length > 1) ? arena.allocate(textLength) : null;
+
+        int outputLength;
+        try {
+            //Start each worker thread on the App's warm worker pool
+            for(SwingWorker<?,Void> workerThread : operationsWorkers) {
+                engine.execute(workerThread);
+            }
+
+            outputLength = assembleOutput(engine, operationsWorkers, pieceBounds, outputBuffer, outputChannel, asciiText);
+        }
+        //If interrupted, stop all the workers
+        catch (InterruptedException | ExecutionException e) {
+            for(SwingWorker<?,Void> workerThread : operationsWorkers) {
+                workerThread.cancel(true);
+            }
+            //Keep the interrupt, so a job run without an App can tell it from a failure
+            if(e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            return -1;
+        }
+        catch (Exception e) {
+            System.err.println("Boss thread: Error during execution- " + e);
+            return -1;
+        }
+
+        //The output buffer takes the text buffer's place
+        if(outputBuffer != null) {
+            arena.release(text);
+            text = outputBuffer;
+        }
+
+        workerThreads = null;
+
+        if(isCancelled()) {
+            return -1;
+        }
+        return outputLength;
+    }
+
+
+    /**
+     * FOR UNIT TESTING ONLY!<br><br>
+     *
+     * Returns the result of processing `input` with `key`, running the Workers on `engine`.<br><br>
+     *
+     * Runs the same stages as a Boss created by a Dispatcher, but without an App. The input's buffer is taken from `engine`,
+     * so the engine's buffer accounting covers the job.
+     *
+     * @param engine the engine to run the Workers on. Can't be null
+     * @param input the text to process. Can't be null
+     * @param key the key, as the user would type it. Can't be null
+     * @param encrypting true if encrypting, false if decrypting
+     * @param punctMode 0 if including punctuation, 1 if excluding spaces, 2 if alphabetic characters only
+     * @param threads number of Workers to split each stage between. Must be positive
+     * @return the processed text, or the empty string if processing failed
+     */
+    public String processText_Testing(ParsingEngine engine, String input, String key,
+                                      boolean encrypting, byte punctMode, int threads) {
+        if(engine==null || input==null || key==null) {
+            throw new AssertionError("Engine, input, and key cannot be null");
+        }
+        if(punctMode<0 || punctMode>2 || threads<=0) {
+            throw new AssertionError("Punctuation mode must be on [0,2] and threads must be positive");
+        }
+
+        try(ParsingArena arena = new ParsingArena(engine)) {
+            textLength = input.length();
+            text = arena.allocate(textLength);
+            text.put(input).rewind();
+
+            byte[][] operationsKey = createKeyBlocks(key, StepperAppFields.BLOCK_COUNT, StepperAppFields.BLOCK_LENGTH);
+
+            int outputLength = processText(engine, arena, operationsKey, encrypting, punctMode, threads, null);
+            if(outputLength < 0) {
+                return "";
+            }
+
+            return outputString(outputLength);
+        }
+        finally {
+            text = null;
+            packedText = null;
+            charIndex = null;
+            textLength = 0;
+            workerThreads = null;
+        }
+    }
+
+
     /**
      * Returns a lowercase version of the input without accent marks or letter variants.<br><br>
      *
@@ -640,7 +1702,7 @@ public class ParsingBoss extends SwingWorker<Void,Void> {
      * @param input letter to remove diacritics from
      * @return copy of input without diacritics
      */
-    private char removeDiacritics(char input) {
+    private static char removeDiacritics(char input) {
 
         String a="" + input;
         a=a.toLowerCase();
@@ -689,139 +1751,143 @@ public class ParsingBoss extends SwingWorker<Void,Void> {
 
 
     /**
-     * Returns an array containing `text` split evenly into `threads` pieces.
-     * The number of alphabetic characters of each piece must be a multiple of `blockLength`, except for the last piece.<br><br>
+     * Returns the boundaries of `threads` pieces that split the text indexed by `index` so that each piece costs
+     * about as much to process. The number of alphabetic characters of each piece must be a multiple of `blockLength`,
+     * except for the last piece.<br><br>
      *
-     * -Alphabetic characters are lowercase English ASCII characters.<br>
+     * -Piece `i` holds indices [output[i], output[i+1]) of the text. The output has `threads`+1 indices. It starts with 0,
+     * ends with `index.length()`, and never decreases.<br>
      *
-     * -All indices except for the last one should have `blockLength` alphabetic characters or a multiple thereof.
-     * Non-alphabetic characters should NOT be ignored, even though the index divisions are based on the
-     * alphabetic characters.<br>
+     * -Each character costs `LETTER_COST`, `DIGIT_COST`, or `OTHER_COST`, depending on its class in `index`.<br>
      *
-     * -Any unused threads should be assigned the empty string, not null. Empty strings may occur at the beginning of the output array.<br>
+     * -Every piece except the last one ends just after the letter that fills its last block, so every piece but the
+     * first starts on a block. Boundary `i` is the block end whose cost so far is closest to `i`/`threads` of the total.
+     * Pieces may be empty.<br><br>
      *
-     * -Note: The final character of each output index (excluding the last index) should end in an alphabetic character.
+     * No characters are read. The cost up to a block end follows from the block end's letter select and digit rank,
+     * so each boundary is found by binary searching the block ends.
      *
-     * @param text the text to split. Non-null
-     * @param threads how many pieces `text` should be split into. If zero, or the Boss is cancelled, returns {""}. Cannot be negative
-     * @param blockLength number of characters, or a multiple thereof, to put in each piece. Must be positive
-     * @return array of Strings. There are `threads` total Strings whose alphabetic characters are
-     * evenly split among the output's indices
+     * @param index character index of the text to split, with ranks up to date. Non-null
+     * @param threads how many pieces the text should be split into. If zero, returns {0,0}. Cannot be negative
+     * @param blockLength number of alphabetic characters, or a multiple thereof, to put in each piece. Must be positive
+     * @return array of `threads`+1 boundaries, where the cost of the characters between consecutive boundaries is
+     * evenly split among the pieces
      */
-    private String[] setWorkerLoads(String text, int threads, int blockLength) {
-
-        //Assert preconditions
-        if (text==null || threads<0 || blockLength<=0) {
-            throw new AssertionError("No argument can be null or zero");
+    private int[] setCostLoads(ParsingCharIndex index, int threads, int blockLength) {
+        if(index==null || threads<0 || blockLength<=0) {
+            throw new AssertionError("Index cannot be null, threads cannot be negative, and the block length must be positive");
         }
 
-        //Return the empty string if threads is 0
+        //Return one empty piece if threads is 0
         if(threads==0) {
-            return new String[] {""};
+            return new int[] {0,0};
         }
 
-        //Find effective length of the text to create the blocks without wasting memory
-        int alphaChars = 0;
-        for(int i=0; i<text.length(); i++) {
-            if(text.charAt(i)>=97 && text.charAt(i)<=122) {
-                alphaChars++;
+        //Pieces may only end after a full block
+        int fullBlocks = index.letterCount() / blockLength;
+        long totalCost = textCost(index, index.length());
+
+        int[] output = new int[threads+1];
+        int blocksAssigned = 0;
+        for(int t=0; t<threads-1; t++) {
+            long targetCost = totalCost * (t+1) / threads;
+
+            //Last block end that costs at most the target
+            int low = blocksAssigned;
+            int high = fullBlocks;
+            while(low < high) {
+                int middle = (low + high + 1) >>> 1;
+                if(textCost(index, blockEnd(index, middle, blockLength)) <= targetCost) {
+                    low = middle;
+                }
+                else {
+                    high = middle-1;
+                }
             }
 
-            if(isCancelled()) {
-                return new String[] {""};
+            //The next block end may be closer to the target
+            if(low < fullBlocks && textCost(index, blockEnd(index, low+1, blockLength)) - targetCost
+                    < targetCost - textCost(index, blockEnd(index, low, blockLength))) {
+                low++;
             }
-        }
 
-
-        //CALCULATE NUMBER OF BLOCKS PER THREAD
-
-        //Number of blocks equals the number of alphabetic characters divided by the block length
-        //If there is a remainder, there is an extra block
-        int nBlocks = alphaChars / blockLength;
-        if (alphaChars % blockLength != 0) nBlocks++;
-        //Note: one block is a piece of length `blockLength` or shorter
-
-        //Create the number of characters in each thread. Temporarily holds the number of blocks
-        int[] charsPerThread = new int[threads];
-
-        //The minimum number of blocks per piece is the number of blocks divided by the number of threads
-        Arrays.fill(charsPerThread, nBlocks / threads);
-        //The number of remaining blocks equals the remainder of the number of blocks divided by the number of threads
-        for (int i = charsPerThread.length - 1; i >= charsPerThread.length - nBlocks % threads; i--) {
-            charsPerThread[i]++;
+            blocksAssigned = low;
+            output[t+1] = blockEnd(index, blocksAssigned, blockLength);
         }
 
+        //The last thread takes everything else, including any non-alphabetic characters after the last letter
+        output[threads] = index.length();
 
-        //CALCULATE NUMBER OF CHARACTERS PER THREAD
+        return output;
+    }
 
-        //Create a StringBuilder array to hold the result and load it. Also properly calculate number of characters per thread
-        StringBuilder[] threadLoads = new StringBuilder[threads];
-        for(int t=0; t<threadLoads.length; t++) {
-            threadLoads[t] = new StringBuilder();
-            charsPerThread[t] *= blockLength; //now, charsPerThread holds the number of characters per thread
 
-            //Check if cancelled, abort if so
-            if(isCancelled()) {
-                return new String[] {""};
-            }
+    /**
+     * FOR UNIT TESTING ONLY!<br><br>
+     *
+     * Returns an array containing `text` split into `threads` pieces that cost about as much to process.
+     * The number of alphabetic characters of each piece must be a multiple of `blockLength`, except for the last piece.<br><br>
+     *
+     * The pieces are cut from `text` at the boundaries that the private `setCostLoads` method finds in an index of `text`.
+     *
+     * @param text the text to split. Non-null
+     * @param threads how many pieces `text` should be split into. If zero, returns {""}. Cannot be negative
+     * @param blockLength number of alphabetic characters, or a multiple thereof, to put in each piece. Must be positive
+     * @return array of `threads` Strings, or {""} if `threads` is zero
+     */
+    public String[] setCostLoads_Testing(String text, int threads, int blockLength) {
+        if(text==null) {
+            throw new AssertionError("Text cannot be null");
         }
 
+        ParsingCharIndex index = new ParsingCharIndex(text.length());
+        index.classify(CharBuffer.wrap(text), 0, text.length());
+        index.updateRanks();
+        int[] pieceBounds = setCostLoads(index, threads, blockLength);
 
-        //LOAD THE THREADS
-
-        //Move through each thread, except for the last one, and load it
-        int currentThread = 0;
-        int currentTextIndex = 0;
-        while(currentThread < threadLoads.length) {
-
-            //If there are no more characters to load, move to the next thread
-            if(charsPerThread[currentThread] == 0) {
-                currentThread++;
-            }
-            //If not, load the character
-            else {
-                threadLoads[currentThread].append(text.charAt(currentTextIndex));
-
-                //Update number of alphabetic characters if a letter was loaded
-                if(text.charAt(currentTextIndex)>=97 && text.charAt(currentTextIndex)<=122) {
-                    charsPerThread[currentThread]--;
-                }
-
-                //Move to the next index
-                currentTextIndex++;
-            }
+        String[] output = new String[pieceBounds.length-1];
+        for(int i=0; i<output.length; i++) {
+            output[i] = text.substring(pieceBounds[i], pieceBounds[i+1]);
+        }
+        return output;
+    }
 
-            //Exit the loop if it will overrun the input text
-            if(currentTextIndex >= text.length()) {
-                break;
-            }
 
-            //Check if cancelled, abort if so
-            if(isCancelled()) {
-                return new String[] {""};
-            }
+    /**
+     * Returns the boundaries of `threads` pieces that split `length` characters evenly by count.
+     * The length of each piece must be a multiple of `blockLength`, except for the last piece.<br><br>
+     *
+     * Piece `i` holds characters [output[i], output[i+1]). The output has `threads`+1 indices. It starts with 0,
+     * ends with `length`, and never decreases. Unused threads are assigned empty pieces at the beginning of the output.<br><br>
+     *
+     * Every character weighs the same, so the boundaries are found without reading the characters. Used to split packed
+     * letters, where every character is a letter, and to split raw text for stages whose cost doesn't depend on the
+     * characters' case or script.
+     *
+     * @param length number of characters to split. Cannot be negative
+     * @param threads how many pieces the characters should be split into. If zero, returns {0,0}. Cannot be negative
+     * @param blockLength number of characters, or a multiple thereof, to put in each piece. Must be positive
+     * @return array of `threads`+1 boundaries, where the characters between consecutive boundaries are evenly split among the pieces
+     */
+    private int[] setLengthLoads(int length, int threads, int blockLength) {
+        if(length<0 || threads<0 || blockLength<=0) {
+            throw new AssertionError("Length and threads cannot be negative, and the block length must be positive");
         }
 
-        //Load any non-alphabetic character that was not yet loaded into the last thread
-        while(currentTextIndex < text.length()) {
-            threadLoads[threadLoads.length-1].append(text.charAt(currentTextIndex));
-            currentTextIndex++;
-
-            //Check if cancelled, abort if so
-            if(isCancelled()) {
-                return new String[] {""};
-            }
+        //Return one empty piece if threads is 0
+        if(threads==0) {
+            return new int[] {0,0};
         }
 
-        //Convert StringBuilders to proper strings
-        String[] output = new String[threads];
-        for(int l=0; l<threadLoads.length; l++) {
-            output[l] = threadLoads[l].toString();
+        //One block is a piece of length `blockLength` or shorter
+        int nBlocks = length / blockLength;
+        if (length % blockLength != 0) nBlocks++;
 
-            //Check if cancelled, abort if so
-            if(isCancelled()) {
-                return new String[] {""};
-            }
+        //Every thread gets the same number of blocks. The last threads get one more block each for the remainder
+        int[] output = new int[threads+1];
+        for(int t=0; t<threads; t++) {
+            int blocks = nBlocks / threads + ((t >= threads - nBlocks % threads) ? 1 : 0);
+            output[t+1] = (int) Math.min((long) output[t] + (long) blocks * blockLength, length);
         }
 
         return output;
@@ -829,28 +1895,18 @@ public class ParsingBoss extends SwingWorker<Void,Void> {
 
 
     /**
-     * FOR UNIT TESTING ONLY!<br><br>
-     *
-     * Returns an array containing `text` split evenly into `threads` pieces.
-     * The number of alphabetic characters of each piece must be a multiple of `blockLength`, except for the last piece.<br><br>
-     *
-     * -Alphabetic characters are lowercase English ASCII characters.<br>
+     * Returns the cost of processing characters [0, end) of the text indexed by `index`, weighted by `LETTER_COST`,
+     * `DIGIT_COST`, and `OTHER_COST`.<br><br>
      *
-     * -All indices except for the last one should have `blockLength` alphabetic characters or a multiple thereof.<br>
+     * Helper to setCostLoads.
      *
-     * -Any unused threads should be assigned the empty string, not null. Empty strings may occur at the beginning of the output array.<br>
-     *
-     * -Note: The final character of each output index (excluding the last index) should end in an alphabetic character.<br><br>
-     *
-     * The test cases may fail. If so, manually check if the thread loads are even in each failed test.
-     * An even distribution of work and a piece length being a multiple of `threads` are the most important aspects of the output.
-     *
-     * @param text the text to split. Non-null
-     * @param threads how many pieces `text` should be split into. If zero, or the Boss is cancelled, returns {""}. Cannot be negative
-     * @param blockLength number of characters, or a multiple thereof, to put in each piece. Must be positive
-     * @return array of Strings. There are `threads` total Strings evenly split among the output's indices
+     * @param index character index of the text, with ranks up to date. Non-null
+     * @param end index just past the last character to count. Must be on the interval [0, index.length()]
+     * @return cost of the characters before `end`
      */
-    public String[] setWorkerLoads_Testing(String text, int threads, int blockLength) {
-        return setWorkerLoads(text, threads, blockLength);
+    private long textCost(ParsingCharIndex index, int end) {
+        long letters = index.letterRank(end);
+        long digits = index.digitRank(end);
+        return LETTER_COST*letters + DIGIT_COST*digits + OTHER_COST*(end - letters - digits);
     }
 }
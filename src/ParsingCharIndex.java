@@ -0,0 +1,316 @@
+import java.nio.CharBuffer;
+
+/**
+ * Records which characters of a text are letters and which are digits, with fast rank and select.<br><br>
+ *
+ * A Boss classifies its text once, then answers every "how many letters come before index i" and "where is the k-th letter"
+ * question from the index, instead of scanning the text again. Letters are lowercase English ASCII characters, and digits
+ * are ASCII digits.<br><br>
+ *
+ * Each class is a bitmap with one bit per character, plus a running count at the start of every superblock of
+ * `SUPERBLOCK_WORDS` words. Rank reads one count and at most `SUPERBLOCK_WORDS` words. Select binary searches the counts
+ * first. The index takes about 2 bits per character.<br><br>
+ *
+ * Ranges of the text may be classified by different threads at once, as long as each range starts on a word of the
+ * bitmaps. Rank and select may only be used after `updateRanks` is called on the classified text.<br><br>
+ *
+ * Classification works a word at a time: 64 characters are copied out of the text in bulk, then classified without branches,
+ * so the JIT can unroll the loop and mixed text costs no branch mispredictions. Diacritics Workers classify each word
+ * right after normalizing it, while it is still in their cache. Classifying also reports whether the range is pure 7-bit
+ * ASCII, so the Boss can tell whether diacritics need removing without another pass over the text.
+ */
+public class ParsingCharIndex {
+
+    /**
+     * Number of characters that share one word of each bitmap
+     */
+    final public static int CHARS_PER_WORD = 64;
+
+    /**
+     * Number of bitmap words between running counts. Must be positive
+     */
+    final private static int SUPERBLOCK_WORDS = 8;
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Bit `i % 64` of word `i / 64` is set if and only if character `i` is a digit. Can't be null
+     */
+    final private long[] digitBits;
+
+    /**
+     * Number of digits before each superblock. The last index holds the total. Can't be null
+     */
+    final private int[] digitRanks;
+
+    /**
+     * Number of characters that the index covers. Cannot be negative
+     */
+    final private int length;
+
+    /**
+     * Bit `i % 64` of word `i / 64` is set if and only if character `i` is a letter. Can't be null
+     */
+    final private long[] letterBits;
+
+    /**
+     * Number of letters before each superblock. The last index holds the total. Can't be null
+     */
+    final private int[] letterRanks;
+
+
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Creates an empty ParsingCharIndex for a text of `length` characters. No character is a letter or a digit
+     * until the text is classified.
+     * @param length number of characters in the text. Cannot be negative
+     */
+    public ParsingCharIndex(int length) {
+        if(length<0) {
+            throw new AssertionError("Length cannot be negative");
+        }
+
+        int words = (int) (((long) length + CHARS_PER_WORD - 1) / CHARS_PER_WORD);
+        int superblocks = (words + SUPERBLOCK_WORDS - 1) / SUPERBLOCK_WORDS;
+
+        this.length = length;
+        this.letterBits = new long[words];
+        this.digitBits = new long[words];
+        this.letterRanks = new int[superblocks + 1];
+        this.digitRanks = new int[superblocks + 1];
+    }
+
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Returns the number of digits in the text. Only valid after `updateRanks` is called
+     * @return number of digits
+     */
+    public int digitCount() {
+        return digitRanks[digitRanks.length-1];
+    }
+
+    /**
+     * Returns the number of characters that the index covers
+     * @return length of the indexed text
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Returns the number of letters in the text. Only valid after `updateRanks` is called
+     * @return number of letters
+     */
+    public int letterCount() {
+        return letterRanks[letterRanks.length-1];
+    }
+
+    /**
+     * Returns a String containing representations of the fields.
+     * @return String representation of fields
+     */
+    @Override
+    public String toString() {
+        return "Character index, length=" + length + ", letters=" + letterCount() + ", digits=" + digitCount();
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Classifies characters [start, end) of the index from indices [start, end) of `text`, replacing anything
+     * recorded for them before. Returns true if every character in the range is 7-bit ASCII.<br><br>
+     *
+     * Every bitmap word that the range touches is overwritten, so characters that share a word with the range are
+     * cleared, unless `end` is the index's length. Rank and select are not updated until `updateRanks` is called.
+     *
+     * @param text the text to classify. Can't be null
+     * @param start index of the first character to classify. Must be a multiple of `CHARS_PER_WORD`, on the interval [0, end]
+     * @param end index just past the last character to classify. Must be a multiple of `CHARS_PER_WORD` or equal `length`.
+     *            Must also be at most text.capacity()
+     * @return true if all characters in [start, end) are on the interval [0,127], false if not
+     */
+    public boolean classify(CharBuffer text, int start, int end) {
+        if(text==null) {
+            throw new AssertionError("Text cannot be null");
+        }
+        if(start<0 || end<start || end>length || end>text.capacity()
+        || start%CHARS_PER_WORD != 0 || (end%CHARS_PER_WORD != 0 && end != length)) {
+            throw new AssertionError("Range must be on the interval [0, length], fit in the text, and not split words");
+        }
+
+        boolean ascii = true;
+        char[] chunk = new char[CHARS_PER_WORD];
+        for(int w = start/CHARS_PER_WORD; (long) w*CHARS_PER_WORD < end; w++) {
+            int wordStart = w*CHARS_PER_WORD;
+            int count = Math.min(CHARS_PER_WORD, end - wordStart);
+
+            text.get(wordStart, chunk, 0, count);
+            ascii &= classifyWord(w, chunk, count);
+        }
+        return ascii;
+    }
+
+
+    /**
+     * Classifies the characters of word `word` from the first `count` characters of `chars`, replacing anything recorded
+     * for them before. Returns true if every character of the word is 7-bit ASCII.<br><br>
+     *
+     * Character `j` of `chars` is character `word*CHARS_PER_WORD + j` of the text. The word must lie entirely in the
+     * caller's range of the text, or be the text's last word.
+     *
+     * @param word index of the word to classify. Must be on the interval [0, ceil(length / CHARS_PER_WORD))
+     * @param chars the word's characters. Can't be null
+     * @param count number of characters in the word. Must be `CHARS_PER_WORD`, or reach the end of the text if the word is
+     *              the last one. Must be at most chars.length
+     * @return true if the first `count` characters of `chars` are on the interval [0,127], false if not
+     */
+    public boolean classifyWord(int word, char[] chars, int count) {
+        if(chars==null || count>chars.length) {
+            throw new AssertionError("Characters cannot be null, and must hold the whole word");
+        }
+        if(word<0 || word>=letterBits.length
+        || (count != CHARS_PER_WORD && (long) word*CHARS_PER_WORD + count != length)) {
+            throw new AssertionError("Word must be in the index, and must be whole unless it is the last word");
+        }
+
+        //A character c is in [low, high] exactly when (c - low) and (high - c) are both non-negative,
+        //i.e. when the sign bit of their OR is 0
+        long letterWord = 0;
+        long digitWord = 0;
+        int allBits = 0;
+        for(int j=0; j<count; j++) {
+            int c = chars[j];
+            letterWord |= (long) ((((c - 97) | (122 - c)) >>> 31) ^ 1) << j;
+            digitWord |= (long) ((((c - 48) | (57 - c)) >>> 31) ^ 1) << j;
+            allBits |= c;
+        }
+
+        letterBits[word] = letterWord;
+        digitBits[word] = digitWord;
+        return allBits < 128;
+    }
+
+
+    /**
+     * Returns the number of digits in characters [0, index). Only valid after `updateRanks` is called
+     * @param index index just past the last character to count. Must be on the interval [0, length]
+     * @return number of digits before `index`
+     */
+    public int digitRank(int index) {
+        return rank(digitBits, digitRanks, index);
+    }
+
+
+    /**
+     * Returns the number of letters in characters [0, index). Only valid after `updateRanks` is called
+     * @param index index just past the last character to count. Must be on the interval [0, length]
+     * @return number of letters before `index`
+     */
+    public int letterRank(int index) {
+        return rank(letterBits, letterRanks, index);
+    }
+
+
+    /**
+     * Returns the index of the letter that has `rank` letters before it. Only valid after `updateRanks` is called.<br><br>
+     *
+     * Example: letterSelect(0) is the index of the first letter.
+     *
+     * @param rank number of letters before the letter to find. Must be on the interval [0, letterCount())
+     * @return index of the letter
+     */
+    public int letterSelect(int rank) {
+        if(rank<0 || rank>=letterCount()) {
+            throw new AssertionError("Rank must be on the interval [0, letterCount())");
+        }
+
+        //Last superblock whose running count is at most `rank`
+        int low = 0;
+        int high = letterRanks.length-2;
+        while(low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if(letterRanks[middle] <= rank) {
+                low = middle;
+            }
+            else {
+                high = middle-1;
+            }
+        }
+
+        //Find the word that holds the letter, then the letter's bit
+        int remaining = rank - letterRanks[low];
+        int w = low*SUPERBLOCK_WORDS;
+        while(Long.bitCount(letterBits[w]) <= remaining) {
+            remaining -= Long.bitCount(letterBits[w]);
+            w++;
+        }
+
+        long word = letterBits[w];
+        for(int r=0; r<remaining; r++) {
+            word &= word-1;
+        }
+        return w*CHARS_PER_WORD + Long.numberOfTrailingZeros(word);
+    }
+
+
+    /**
+     * Returns the number of set bits in bits [0, index) of `bits`, using the running counts in `ranks`.<br><br>
+     *
+     * Helper to the rank functions.
+     *
+     * @param bits bitmap to count in
+     * @param ranks running counts of `bits`, one per superblock
+     * @param index index just past the last bit to count. Must be on the interval [0, length]
+     * @return number of set bits before `index`
+     */
+    private int rank(long[] bits, int[] ranks, int index) {
+        if(index<0 || index>length) {
+            throw new AssertionError("Index must be on the interval [0, length]");
+        }
+
+        int lastWord = index / CHARS_PER_WORD;
+        int superblock = lastWord / SUPERBLOCK_WORDS;
+
+        int output = ranks[superblock];
+        for(int w=superblock*SUPERBLOCK_WORDS; w<lastWord; w++) {
+            output += Long.bitCount(bits[w]);
+        }
+        if(index % CHARS_PER_WORD != 0) {
+            output += Long.bitCount(bits[lastWord] & ((1L << (index % CHARS_PER_WORD)) - 1));
+        }
+
+        return output;
+    }
+
+
+    /**
+     * Recomputes the running counts from the bitmaps. Must be called after classifying, before rank or select is used.
+     */
+    public void updateRanks() {
+        int letters = 0;
+        int digits = 0;
+        for(int w=0; w<letterBits.length; w++) {
+            if(w % SUPERBLOCK_WORDS == 0) {
+                letterRanks[w / SUPERBLOCK_WORDS] = letters;
+                digitRanks[w / SUPERBLOCK_WORDS] = digits;
+            }
+
+            letters += Long.bitCount(letterBits[w]);
+            digits += Long.bitCount(digitBits[w]);
+        }
+
+        letterRanks[letterRanks.length-1] = letters;
+        digitRanks[digitRanks.length-1] = digits;
+    }
+}
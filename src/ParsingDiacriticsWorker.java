@@ -1,36 +1,126 @@
 import javax.swing.*;
+import java.nio.CharBuffer;
 
 /**
- * Worker thread that lowercases and removes diacritics from an input
+ * Worker thread that lowercases and removes diacritics from one piece of its Boss's text, in place, or that classifies
+ * the piece as it will be once diacritics are removed. The Worker's result is true if its piece is pure 7-bit ASCII.<br><br>
+ *
+ * The Worker shares its Boss's text buffer instead of copying its piece, so that the diacritics stage needs no memory
+ * beyond the buffer itself. Each Worker writes only inside its own piece.<br><br>
+ *
+ * If given its Boss's character index, the Worker also classifies its piece as it goes, one index word at a time.
+ * Words that the piece shares with its neighbors are left for the Boss, so no two Workers write the same word.<br><br>
+ *
+ * Removing diacritics maps each character to exactly one character, so it never moves the text. A Boss therefore doesn't
+ * rewrite its text in a diacritics stage: its Workers only classify the normalized text, with `classifyNormalized`, and each
+ * Operations Worker normalizes its own piece with `normalize` before processing it. Classifying Workers' pieces must
+ * start on index words, so they share no words, and the Boss can balance them by length alone.<br><br>
+ *
+ * Every loader normalizes its text's line breaks with `normalizeLineBreaks` before the text is classified.
  */
-public class ParsingDiacriticsWorker extends SwingWorker<String,Void> {
+public class ParsingDiacriticsWorker extends SwingWorker<Boolean,Void> {
 
     /**
-     * The text to remove diacritics from. Cannot be null
+     * Result of `removeDiacritics(char)` for every possible char value, indexed by the input char.<br><br>
+     *
+     * Built once when the class loads, so Workers do a table lookup instead of a String conversion and search per character.
+     */
+    final private static char[] DIACRITICS_TABLE = buildDiacriticsTable();
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Index just past the last character of the Worker's piece of `text`. Must be on the interval [start, text.capacity()]
      */
-    final private String text;
+    final private int end;
+
+    /**
+     * The Boss's character index of `text`, shared with the Boss and the other Workers. The Worker only writes the words
+     * that lie entirely inside its piece, or that end the text. Null if the Worker does not classify its piece
+     */
+    final private ParsingCharIndex index;
 
     /**
      * The name of the Worker, mostly for debugging purposes. Cannot be null or the string "null".
      */
     final private String name;
 
+    /**
+     * True if the Worker writes its normalized piece back to `text`, false if it only classifies the piece into `index`
+     * as it will be once normalized
+     */
+    final private boolean normalizingText;
 
     /**
-     * Creates a ParsingDiacriticsWorker called `name` and loads it with `text`
+     * Index of the first character of the Worker's piece of `text`. Must be on the interval [0, end]
+     */
+    final private int start;
+
+    /**
+     * The Boss's text buffer, shared with the Boss and the other Workers. The Worker only writes to indices [start, end).
+     * May be on or off the heap. Cannot be null
+     */
+    final private CharBuffer text;
+
+
+    /**
+     * Creates a ParsingDiacriticsWorker called `name` that removes diacritics from indices [`start`, `end`) of `text`.<br><br>
+     *
+     * Unlike other constructors, this constructor does not copy `text` or `index`, because the Worker writes its results into them.
+     *
+     * @param text buffer holding the text to remove diacritics from. Non-null
+     * @param index the Boss's character index of `text`, to classify the piece into once diacritics are removed.
+     *              Null if the piece should not be classified. Must cover at least `end` characters
+     * @param start index of the first character to process. Must be on the interval [0, end]
+     * @param end index just past the last character to process. Must be on the interval [start, text.capacity()]
+     * @param name custom name for this Worker. Non-null and cannot equal the string "null"
+     */
+    public ParsingDiacriticsWorker(CharBuffer text, ParsingCharIndex index, int start, int end, String name) {
+        this(text, index, start, end, true, name);
+    }
+
+    /**
+     * Creates a ParsingDiacriticsWorker called `name` that removes diacritics from indices [`start`, `end`) of `text`
+     * if `normalizingText` is true, or that only classifies them into `index` as they will be without diacritics
+     * if it is false.<br><br>
+     *
+     * Unlike other constructors, this constructor does not copy `text` or `index`, because the Worker writes its results into them.
      *
-     * @param text String to remove diacritics from. Non-null
+     * @param text buffer holding the text to remove diacritics from. Non-null
+     * @param index the Boss's character index of `text`. Null if the piece should not be classified, which is only allowed
+     *              when normalizing the text. Must cover at least `end` characters
+     * @param start index of the first character to process. Must be on the interval [0, end]. If only classifying, must be
+     *              a multiple of `ParsingCharIndex.CHARS_PER_WORD`
+     * @param end index just past the last character to process. Must be on the interval [start, text.capacity()]. If only
+     *            classifying, must be a multiple of `ParsingCharIndex.CHARS_PER_WORD` or equal index.length()
+     * @param normalizingText true to write the normalized piece back to `text`, false to leave `text` unchanged
      * @param name custom name for this Worker. Non-null and cannot equal the string "null"
      */
-    public ParsingDiacriticsWorker(String text, String name) {
+    public ParsingDiacriticsWorker(CharBuffer text, ParsingCharIndex index, int start, int end, boolean normalizingText,
+                                   String name) {
         if(text==null) {
             throw new AssertionError("Text cannot be null");
         }
+        if(index!=null && end>index.length()) {
+            throw new AssertionError("The index must cover the piece");
+        }
+        if(start<0 || start>end || end>text.capacity()) {
+            throw new AssertionError("The piece [" + start + ", " + end + ") must fit inside the text");
+        }
+        if(!normalizingText && (index==null || start%ParsingCharIndex.CHARS_PER_WORD != 0
+        || (end%ParsingCharIndex.CHARS_PER_WORD != 0 && end != index.length()))) {
+            throw new AssertionError("A Worker that only classifies needs an index, and its piece must not split index words");
+        }
         if(name==null || name.equals("null")) {
             throw new AssertionError("Name cannot be null or equal the string \"null\"");
         }
 
         this.text = text;
+        this.index = index;
+        this.start = start;
+        this.end = end;
+        this.normalizingText = normalizingText;
         this.name = name;
     }
 
@@ -41,6 +131,10 @@ public class ParsingDiacriticsWorker extends SwingWorker<String,Void> {
      */
     public ParsingDiacriticsWorker() {
         this.text = null;
+        this.index = null;
+        this.start = -1;
+        this.end = -1;
+        this.normalizingText = true;
         this.name = null;
     }
 
@@ -53,28 +147,34 @@ public class ParsingDiacriticsWorker extends SwingWorker<String,Void> {
      */
     @Override
     public String toString() {
-        return "Diacritics Worker \"" + name + "\", text=\"" + text + "\"";
+        return "Diacritics Worker \"" + name + "\", start=" + start + ", end=" + end
+                + (normalizingText ? "" : ", classifying only");
     }
 
     ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
 
 
     /**
-     * Removes diacritics from the input text and returns it<br><br>
+     * Removes diacritics from the Worker's piece of the text in place, or classifies the piece as it will be without them.
+     * Returns whether the piece is pure ASCII.<br><br>
      *
      * WARNING: Any exceptions thrown in this method are SILENT. They will not stop the program and produce no error messages.
      *
-     * @return version of `text` without diacritics
+     * @return true if every character of the piece, before diacritics are removed, is 7-bit ASCII. The other results are
+     * in the Boss's text buffer and index
      */
     @Override
-    protected String doInBackground() {
+    protected Boolean doInBackground() {
         //Idiot check
-        if(text==null || name==null || name.equals("null")) {
+        if(text==null || start<0 || name==null || name.equals("null")) {
             System.err.println("DIACRITICS WORKER OPERATION PRECONDITIONS ARE NOT MET. WRONG CONSTRUCTOR USED");
             throw new AssertionError("Preconditions broken");
         }
 
-        return removeDiacritics(text);
+        if(!normalizingText) {
+            return classifyNormalized(text, index, start, end);
+        }
+        return removeDiacritics(text, index, start, end);
     }
 
 
@@ -86,12 +186,172 @@ public class ParsingDiacriticsWorker extends SwingWorker<String,Void> {
 
 
 
+    /**
+     * Returns a table holding the result of `removeDiacritics(char)` for every possible char value.<br><br>
+     *
+     * Helper to the DIACRITICS_TABLE initializer
+     *
+     * @return table of length 65536, where index `c` holds `removeDiacritics(c)`
+     */
+    private static char[] buildDiacriticsTable() {
+        char[] table = new char[Character.MAX_VALUE + 1];
+        for(int c=0; c<table.length; c++) {
+            table[c] = removeDiacritics((char) c);
+        }
+        return table;
+    }
+
+
+    /**
+     * Classifies indices [start, end) of `text` into `index` as they will be once diacritics are removed, without
+     * changing `text`. Returns true if every character in the range is 7-bit ASCII.<br><br>
+     *
+     * Works a word of `index` at a time. Words of pure ASCII are lowercased without branches, and only other words
+     * are looked up in DIACRITICS_TABLE. Ranks are not updated.
+     *
+     * @param text the text to classify. Can't be null
+     * @param index index to classify the normalized text into. Can't be null
+     * @param start index of the first character to classify. Must be a multiple of `ParsingCharIndex.CHARS_PER_WORD`,
+     *              on the interval [0, end]
+     * @param end index just past the last character to classify. Must be a multiple of `ParsingCharIndex.CHARS_PER_WORD`
+     *            or equal index.length(). Must also be at most text.capacity()
+     * @return true if all characters in [start, end) are on the interval [0,127], false if not
+     */
+    public static boolean classifyNormalized(CharBuffer text, ParsingCharIndex index, int start, int end) {
+        if(text==null || index==null) {
+            throw new AssertionError("Text and index cannot be null");
+        }
+        if(start<0 || end<start || end>index.length() || end>text.capacity()
+        || start%ParsingCharIndex.CHARS_PER_WORD != 0 || (end%ParsingCharIndex.CHARS_PER_WORD != 0 && end != index.length())) {
+            throw new AssertionError("Range must be in the index, fit in the text, and not split words");
+        }
+
+        final int WORD_LENGTH = ParsingCharIndex.CHARS_PER_WORD;
+        char[] chunk = new char[WORD_LENGTH];
+
+        boolean ascii = true;
+        for(int wordStart=start; wordStart<end; wordStart+=WORD_LENGTH) {
+            int count = Math.min(WORD_LENGTH, end - wordStart);
+            text.get(wordStart, chunk, 0, count);
+
+            int allBits = 0;
+            for(int j=0; j<count; j++) {
+                allBits |= chunk[j];
+            }
+
+            if(allBits < 128) {
+                //Uppercase letters get bit 5 set. Every other ASCII character is unchanged
+                for(int j=0; j<count; j++) {
+                    int c = chunk[j];
+                    chunk[j] = (char) (c | (((((c - 65) | (90 - c)) >>> 31) ^ 1) << 5));
+                }
+            }
+            else {
+                ascii = false;
+                for(int j=0; j<count; j++) {
+                    chunk[j] = DIACRITICS_TABLE[chunk[j]];
+                }
+            }
+
+            index.classifyWord(wordStart / WORD_LENGTH, chunk, count);
+        }
+
+        return ascii;
+    }
+
+
+    /**
+     * Returns a lowercase version of `input` without accent marks or letter variants, as a Diacritics Worker would
+     * write it.
+     * @param input character to remove diacritics from
+     * @return copy of input without diacritics
+     */
+    public static char normalize(char input) {
+        return DIACRITICS_TABLE[input];
+    }
+
+
+    /**
+     * Lowercases and removes diacritics from indices [start, end) of `text`, in place, exactly as a Diacritics Worker
+     * would.<br><br>
+     *
+     * For callers that normalize a piece of text on their own thread. Works in chunks, with bulk reads and writes.
+     *
+     * @param text buffer to remove diacritics from. Can't be null
+     * @param start index of the first character to process. Must be on the interval [0, end]
+     * @param end index just past the last character to process. Must be on the interval [start, text.capacity()]
+     */
+    public static void normalize(CharBuffer text, int start, int end) {
+        if(text==null) {
+            throw new AssertionError("Text cannot be null");
+        }
+        if(start<0 || end<start || end>text.capacity()) {
+            throw new AssertionError("Bounds must be on the interval [0, text.capacity()]");
+        }
+
+        char[] chunk = new char[ParsingCharIndex.CHARS_PER_WORD];
+        for(int chunkStart=start; chunkStart<end; chunkStart+=chunk.length) {
+            int count = Math.min(chunk.length, end - chunkStart);
+
+            text.get(chunkStart, chunk, 0, count);
+            for(int j=0; j<count; j++) {
+                chunk[j] = DIACRITICS_TABLE[chunk[j]];
+            }
+            text.put(chunkStart, chunk, 0, count);
+        }
+    }
+
+
+    /**
+     * Normalizes the line breaks in indices [start, end) of `chars`, in place, and returns the index just past the
+     * normalized characters. Normalizing never lengthens the text, so the result is on the interval [start, end].<br><br>
+     *
+     * Line breaks become "\n": "\r\n", "\r", "\u2028", "\u2029", and "\u0085" are line breaks.<br>
+     * A text that is read in pieces is normalized one piece at a time. A "\r" that ends one piece and a "\n" that starts
+     * the next are one line break, so the caller reads whether a piece ends with "\r" before normalizing it, and passes
+     * that along with the next piece.
+     *
+     * @param chars the characters to normalize. Can't be null
+     * @param start index of the first character to normalize. Must be on the interval [0, end]
+     * @param end index just past the last character to normalize. Must be on the interval [start, chars.length]
+     * @param afterCarriageReturn true if the character just before `start` in the text was "\r", before it was normalized
+     * @return index just past the normalized characters
+     */
+    public static int normalizeLineBreaks(char[] chars, int start, int end, boolean afterCarriageReturn) {
+        if(chars==null) {
+            throw new AssertionError("Characters cannot be null");
+        }
+        if(start<0 || end<start || end>chars.length) {
+            throw new AssertionError("Bounds must be on the interval [0, chars.length]");
+        }
+
+        int outputEnd = start;
+        for(int i=start; i<end; i++) {
+            char currentChar = chars[i];
+
+            //"\r\n" is one line break, which was already written when the "\r" was read
+            if(currentChar=='\n' && afterCarriageReturn) {
+                afterCarriageReturn = false;
+                continue;
+            }
+            afterCarriageReturn = (currentChar=='\r');
+
+            if(currentChar=='\r' || currentChar=='\u2028' || currentChar=='\u2029' || currentChar=='\u0085') {
+                currentChar = '\n';
+            }
+            chars[outputEnd] = currentChar;
+            outputEnd++;
+        }
+        return outputEnd;
+    }
+
+
     /**
      * Returns a lowercase version of the input character without accent marks or letter variants.
      * @param input letter to remove diacritics from
      * @return copy of input without diacritics
      */
-    private char removeDiacritics(char input) {
+    private static char removeDiacritics(char input) {
 
         String a="" + input;
         a=a.toLowerCase();
@@ -130,25 +390,54 @@ public class ParsingDiacriticsWorker extends SwingWorker<String,Void> {
 
 
     /**
-     * Returns a lowercased version of `input` without diacritics or accent marks.<br><br>
+     * Lowercases and removes diacritics from indices [`start`, `end`) of `text`, in place.
+     * If the Worker is cancelled, stops early.<br><br>
      *
-     * Any character that is not transformed by the private helper method `removeDiacritics(char)` is not changed.
+     * Any character that is not transformed by the private helper method `removeDiacritics(char)` is not changed.<br>
+     * Characters are looked up in DIACRITICS_TABLE.<br>
+     * The range is processed in chunks that line up with the words of a ParsingCharIndex. If `index` is not null, every
+     * chunk that fills a whole word, or ends the indexed text, is classified into it.<br><br>
      *
-     * @param input text to remove diacritics from. Cannot be null
-     * @return lowercase version of input without diacritics
+     * Modifies `text`!
+     *
+     * @param text buffer to remove diacritics from. Cannot be null
+     * @param index character index to classify the normalized chunks into. Null if not classifying
+     * @param start index of the first character to process. Must be on the interval [0, end]
+     * @param end index just past the last character to process. Must be on the interval [start, text.capacity()]
+     * @return true if every character of the range was on the interval [0,127] before diacritics were removed
      */
-    private String removeDiacritics(String input) {
-        //Precondition is enforced in the method constructor
+    private boolean removeDiacritics(CharBuffer text, ParsingCharIndex index, int start, int end) {
+        //Preconditions are enforced in the class constructor
+
+        final int WORD_LENGTH = ParsingCharIndex.CHARS_PER_WORD;
+        char[] chunk = new char[WORD_LENGTH];
+        int allBits = 0;
 
-        StringBuilder output = new StringBuilder(input.length());
-        for(int i=0; i<input.length(); i++) {
+        int chunkStart = start;
+        while(chunkStart < end) {
             if(this.isCancelled()) {
-                return "";
+                return false;
             }
 
-            output.append(removeDiacritics(input.charAt(i)));
+            //Each chunk ends at the next word boundary, or at the end of the piece
+            int chunkEnd = Math.min(end, (chunkStart / WORD_LENGTH + 1) * WORD_LENGTH);
+            int count = chunkEnd - chunkStart;
+
+            text.get(chunkStart, chunk, 0, count);
+            for(int j=0; j<count; j++) {
+                allBits |= chunk[j];
+                chunk[j] = DIACRITICS_TABLE[chunk[j]];
+            }
+            text.put(chunkStart, chunk, 0, count);
+
+            if(index!=null && chunkStart % WORD_LENGTH == 0 && (count == WORD_LENGTH || chunkEnd == index.length())) {
+                index.classifyWord(chunkStart / WORD_LENGTH, chunk, count);
+            }
+
+            chunkStart = chunkEnd;
         }
-        return output.toString();
+
+        return allBits < 128;
     }
 
 
@@ -163,6 +452,8 @@ public class ParsingDiacriticsWorker extends SwingWorker<String,Void> {
      * @return lowercase version of input without diacritics
      */
     public String removeDiacritics_Testing(String input) {
-        return removeDiacritics(input);
+        CharBuffer text = CharBuffer.wrap(input.toCharArray());
+        removeDiacritics(text, null, 0, text.capacity());
+        return text.toString();
     }
 }
@@ -0,0 +1,717 @@
+import javax.swing.*;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Long-lived processing engine shared by every job that a StepperApp runs.<br><br>
+ *
+ * The engine keeps a warm pool of worker threads. Bosses submit their Workers to the pool instead of starting
+ * new threads for every job, so thread creation and JIT warm-up are paid once per session, not once per job.<br>
+ * Bosses take their large text buffers from the engine's buffer pool, usually through a ParsingArena, and give them back
+ * when a stage no longer needs them. Released buffers are reused by later jobs instead of being left to the garbage collector.<br>
+ * Jobs that run at once share the pool fairly. Each job's Workers wait in their own queue, and each pool thread that
+ * frees up takes the next Worker of the next job in turn, so a job that queues many Workers at once doesn't make the
+ * other jobs wait behind all of them.<br>
+ * Jobs are in one of two lanes. Interactive jobs, like a short text typed in the App, are small and someone is waiting on
+ * them, so a freed pool thread takes an interactive Worker before any batch Worker. A batch Worker that is passed over
+ * `MAX_INTERACTIVE_TURNS` times in a row gets the next turn, so a steady stream of interactive jobs can't starve batch
+ * jobs. Running Workers are never stopped, so an interactive Worker still waits for a pool thread to free up: batch jobs
+ * meet `INTERACTIVE_TARGET_NANOS` only if their Workers are split into short segments.<br><br>
+ *
+ * An engine runs in one of two modes. An on-heap engine gives out CharBuffers backed by char arrays. An off-heap engine
+ * gives out CharBuffers backed by direct memory, so that multi-gigabyte texts never live on the Java heap.
+ * Off-heap memory is freed as soon as its buffer leaves the pool, instead of whenever the garbage collector finds it.<br><br>
+ *
+ * Only Workers may be submitted to the pool. Dispatchers and Bosses block while waiting on their Workers, so they must
+ * keep running on the SwingWorker executor. Otherwise, a full pool could deadlock.<br>
+ * Stream Workers block on their streams and their pipeline, so they run on the engine's stream threads instead, one
+ * thread per Worker. The stream threads grow with the number of pipelines that run at once, so any number of pipelines
+ * may stream at once.
+ */
+public class ParsingEngine {
+
+    /**
+     * Most characters that released buffers may hold while they wait in the buffer pool. Must be positive.<br><br>
+     *
+     * Released buffers that don't fit are freed.
+     */
+    final public static long MAX_POOLED_CHARS = 1L << 24;
+
+    /**
+     * Longest that an interactive Worker should wait for a pool thread, in nanoseconds. Must be positive.<br><br>
+     *
+     * Interactive Workers that wait longer are counted as late in `laneStats()`.
+     */
+    final public static long INTERACTIVE_TARGET_NANOS = 50_000_000L;
+
+    /**
+     * Most interactive Workers that may run in a row while a batch Worker waits. Must be positive
+     */
+    final public static int MAX_INTERACTIVE_TURNS = 4;
+
+    /**
+     * Name of the system property that makes the App's engine keep its text off the heap, when set to "true"
+     */
+    final public static String OFF_HEAP_PROPERTY = "stepper.offHeap";
+
+    /**
+     * Number of seconds that an idle stream thread waits for another Stream Worker before it stops. Must be positive
+     */
+    final public static long STREAM_KEEP_ALIVE_SECONDS = 60;
+
+    /**
+     * Number of times each kernel is run on the sample text when the engine warms up. Cannot be negative
+     */
+    final public static int WARMUP_ROUNDS = 40;
+
+
+    /**
+     * `sun.misc.Unsafe.invokeCleaner`, bound to the Unsafe instance, used to free direct memory right away. Looked up
+     * once, not on every free. Null if the JVM doesn't provide one
+     */
+    final private static MethodHandle INVOKE_CLEANER = findInvokeCleaner();
+
+    /////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * The batch lane's Workers waiting for a pool thread, in one queue per job, keyed by the job that `bindJob` named.
+     * Workers of threads bound to no job are under the null key. The map's order is the order that the jobs take turns
+     * in. Holds no empty queues. Guarded by `laneLock`. Can't be null
+     */
+    final private LinkedHashMap<Object, ArrayDeque<SwingWorker<?,?>>> batchQueues;
+
+    /**
+     * The direct byte buffer behind each off-heap char buffer that the engine has allocated and not yet freed,
+     * keyed by the char buffer. Empty for on-heap engines. Can't be null
+     */
+    final private IdentityHashMap<CharBuffer, ByteBuffer> directBuffers;
+
+    /**
+     * The interactive lane's Workers waiting for a pool thread, in one queue per job, like `batchQueues`. Guarded by
+     * `laneLock`. Can't be null
+     */
+    final private LinkedHashMap<Object, ArrayDeque<SwingWorker<?,?>>> interactiveQueues;
+
+    /**
+     * True for each thread whose Workers are queued in the interactive lane, as given to `bindJob`. Can't be null
+     */
+    final private ThreadLocal<Boolean> interactiveThreads;
+
+    /**
+     * Number of interactive Workers that ran since the last batch Worker, while a batch Worker was waiting. Must be on
+     * the interval [0, MAX_INTERACTIVE_TURNS]. Guarded by `laneLock`
+     */
+    private int interactiveTurns;
+
+    /**
+     * Number of interactive Workers that ran. Guarded by `laneLock`. Cannot be negative
+     */
+    private long interactiveWorkers;
+
+    /**
+     * The job that each thread's Workers are queued under, as given to `bindJob`. Null for threads bound to no job.
+     * Can't be null
+     */
+    final private ThreadLocal<Object> jobs;
+
+    /**
+     * Lock that guards both lanes' queues and counters. Separate from the engine's own lock, so queuing a Worker never
+     * waits on the buffer pool. Can't be null
+     */
+    final private Object laneLock;
+
+    /**
+     * Number of interactive Workers that waited longer than `INTERACTIVE_TARGET_NANOS` for a pool thread. Guarded by
+     * `laneLock`. Cannot be negative
+     */
+    private long lateInteractiveWorkers;
+
+    /**
+     * Number of characters in buffers that were acquired from the pool and not yet released. Cannot be negative
+     */
+    private long liveBufferChars;
+
+    /**
+     * True if the engine's buffers are off the Java heap, false if they are backed by char arrays
+     */
+    final private boolean offHeap;
+
+    /**
+     * Highest value that `liveBufferChars` has reached since the engine was created. Cannot be negative
+     */
+    private long peakBufferChars;
+
+    /**
+     * Released buffers waiting to be reused, in no particular order. Can't be null
+     */
+    final private ArrayList<CharBuffer> pooledBuffers;
+
+    /**
+     * Total capacity of all buffers in `pooledBuffers`. Must be on the interval [0, MAX_POOLED_CHARS]
+     */
+    private long pooledBufferChars;
+
+    /**
+     * Number of threads in the worker pool. Must be positive
+     */
+    final private int poolSize;
+
+    /**
+     * Longest that an interactive Worker waited for a pool thread, in nanoseconds. Guarded by `laneLock`. Cannot be
+     * negative
+     */
+    private long peakInteractiveWaitNanos;
+
+    /**
+     * Time that each queued interactive Worker was queued at, from `System.nanoTime()`. Guarded by `laneLock`. Can't be
+     * null
+     */
+    final private IdentityHashMap<SwingWorker<?,?>, Long> queuedNanos;
+
+    /**
+     * Number of Workers in both lanes. Guarded by `laneLock`. Cannot be negative
+     */
+    private int queuedWorkers;
+
+    /**
+     * The pool that runs the pipelines' Stream Workers, one thread per Worker. Idle threads stop after
+     * `STREAM_KEEP_ALIVE_SECONDS`. Can't be null
+     */
+    final private ThreadPoolExecutor streamPool;
+
+    /**
+     * The pool that runs every Worker submitted to the engine. Can't be null
+     */
+    final private ThreadPoolExecutor workerPool;
+
+    /**
+     * The warm-up task, which runs on the worker pool. Can't be null
+     */
+    final private Future<?> warmUpTask;
+
+
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Creates a new on-heap ParsingEngine with one pool thread per available processor, then starts warming it up.
+     */
+    public ParsingEngine() {
+        this(Runtime.getRuntime().availableProcessors(), false);
+    }
+
+    /**
+     * Creates a new on-heap ParsingEngine with `poolSize` pool threads, then starts warming it up.
+     * @param poolSize number of threads in the worker pool. Must be positive
+     */
+    public ParsingEngine(int poolSize) {
+        this(poolSize, false);
+    }
+
+    /**
+     * Creates a new ParsingEngine with `poolSize` pool threads, then starts warming it up.<br><br>
+     *
+     * All pool threads are started immediately. The warm-up runs on the pool in the background,
+     * so the constructor returns without waiting for it.
+     *
+     * @param poolSize number of threads in the worker pool. Must be positive
+     * @param offHeap true if the engine's text buffers should be off the Java heap, false to back them with char arrays
+     */
+    public ParsingEngine(int poolSize, boolean offHeap) {
+        if(poolSize<=0) {
+            throw new AssertionError("Pool size must be positive");
+        }
+
+        this.poolSize = poolSize;
+        this.offHeap = offHeap;
+
+        directBuffers = new IdentityHashMap<>();
+        batchQueues = new LinkedHashMap<>();
+        interactiveQueues = new LinkedHashMap<>();
+        interactiveThreads = ThreadLocal.withInitial(() -> false);
+        jobs = new ThreadLocal<>();
+        laneLock = new Object();
+        queuedNanos = new IdentityHashMap<>();
+        pooledBuffers = new ArrayList<>();
+        liveBufferChars = 0;
+        peakBufferChars = 0;
+        pooledBufferChars = 0;
+
+        //Pool threads are daemons, so a forgotten engine never keeps the program alive
+        AtomicInteger threadNumber = new AtomicInteger(0);
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "Stepper worker " + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+
+        workerPool = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), threadFactory);
+        workerPool.prestartAllCoreThreads();
+
+        //Stream Workers block, so each one gets a thread of its own instead of waiting for one
+        AtomicInteger streamThreadNumber = new AtomicInteger(0);
+        ThreadFactory streamThreadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "Stepper stream " + streamThreadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+        streamPool = new ThreadPoolExecutor(0, Integer.MAX_VALUE, STREAM_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), streamThreadFactory);
+
+        warmUpTask = workerPool.submit(this::warmUp);
+    }
+
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Returns a one-line report of the lanes: the interactive Workers that ran, how many of them were late, and the
+     * longest that one waited, in milliseconds
+     * @return the lanes' counters
+     */
+    public String laneStats() {
+        synchronized(laneLock) {
+            return "interactive=" + interactiveWorkers + " late=" + lateInteractiveWorkers
+                    + String.format(" peakWaitMs=%.2f", peakInteractiveWaitNanos / 1e6);
+        }
+    }
+
+    /**
+     * Returns the number of characters in buffers that were acquired from the engine and not yet released
+     * @return live buffer characters
+     */
+    public synchronized long liveBufferChars() {
+        return liveBufferChars;
+    }
+
+    /**
+     * Returns the longest buffer, in characters, that the engine can give out
+     * @return maximum buffer length
+     */
+    public int maxBufferLength() {
+        //A direct buffer holds 2 bytes per character, and its size in bytes must fit in an int
+        return offHeap ? Integer.MAX_VALUE / 2 : Integer.MAX_VALUE - 8;
+    }
+
+    /**
+     * Returns whether the engine's text buffers are off the Java heap
+     * @return true if off-heap, false if backed by char arrays
+     */
+    public boolean offHeap() {
+        return offHeap;
+    }
+
+    /**
+     * Returns the highest number of characters that acquired, unreleased buffers have held at once since the engine was created.<br><br>
+     *
+     * Every large buffer of a job comes from the engine, so this bounds the memory that the engine's jobs have used for text.
+     *
+     * @return peak live buffer characters
+     */
+    public synchronized long peakBufferChars() {
+        return peakBufferChars;
+    }
+
+    /**
+     * Returns the number of threads in the engine's worker pool
+     * @return pool size
+     */
+    public int poolSize() {
+        return poolSize;
+    }
+
+    /**
+     * Returns the number of Workers that were given to `execute` and are still waiting for a pool thread
+     * @return queued Workers
+     */
+    public int queuedWorkers() {
+        synchronized(laneLock) {
+            return queuedWorkers;
+        }
+    }
+
+    /**
+     * Returns a String containing representations of the Engine's fields.<br><br>
+     *
+     * Mostly a debugging tool.
+     *
+     * @return String representation of fields
+     */
+    @Override
+    public String toString() {
+        return (offHeap ? "Off-heap engine with " : "Engine with ") + poolSize + " pool threads, "
+                + queuedWorkers() + " queued workers, " + liveBufferChars() + " live buffer chars";
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Returns a text buffer with a capacity of at least `minLength`, reusing a pooled buffer if one fits.<br><br>
+     *
+     * A pooled buffer is reused only if it is at most twice as long as needed, so small jobs don't hold on to huge buffers.<br>
+     * The buffer's position is 0 and its limit is its capacity. Its previous contents are not cleared.
+     * Every acquired buffer should be given back with `releaseBuffer`.
+     *
+     * @param minLength minimum capacity of the returned buffer. Must be on the interval [0, maxBufferLength()]
+     * @return buffer of at least `minLength` characters
+     */
+    public synchronized CharBuffer acquireBuffer(int minLength) {
+        if(minLength<0 || minLength>maxBufferLength()) {
+            throw new AssertionError("Minimum buffer length must be on the interval [0, " + maxBufferLength() + "]");
+        }
+
+        //Find the shortest pooled buffer that fits
+        int bestIndex = -1;
+        for(int i=0; i<pooledBuffers.size(); i++) {
+            int length = pooledBuffers.get(i).capacity();
+            if(length >= minLength && length <= 2L*minLength
+                    && (bestIndex==-1 || length < pooledBuffers.get(bestIndex).capacity())) {
+                bestIndex = i;
+            }
+        }
+
+        CharBuffer buffer;
+        if(bestIndex == -1) {
+            buffer = allocateBuffer(minLength);
+        }
+        else {
+            buffer = pooledBuffers.remove(bestIndex);
+            pooledBufferChars -= buffer.capacity();
+            buffer.clear();
+        }
+
+        liveBufferChars += buffer.capacity();
+        peakBufferChars = Math.max(peakBufferChars, liveBufferChars);
+        return buffer;
+    }
+
+
+    /**
+     * Returns a new buffer with a capacity of exactly `length`, in the engine's mode.<br><br>
+     *
+     * Off-heap buffers are recorded in `directBuffers`, so they can be freed later.<br><br>
+     *
+     * Helper to acquireBuffer and warmUp
+     *
+     * @param length capacity of the new buffer. Must be on the interval [0, maxBufferLength()]
+     * @return new buffer
+     */
+    private CharBuffer allocateBuffer(int length) {
+        if(!offHeap) {
+            return CharBuffer.allocate(length);
+        }
+
+        //Native byte order, so characters are read and written without swapping their bytes
+        ByteBuffer bytes = ByteBuffer.allocateDirect(2*length).order(ByteOrder.nativeOrder());
+        CharBuffer buffer = bytes.asCharBuffer();
+        synchronized(this) {
+            directBuffers.put(buffer, bytes);
+        }
+        return buffer;
+    }
+
+
+    /**
+     * Waits until the engine has finished warming up.<br><br>
+     *
+     * Jobs don't need to wait for the warm-up. Mainly useful for measurements that must not include the warm-up's work.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     * @throws ExecutionException never in practice, since the warm-up prints and ignores its exceptions
+     */
+    public void awaitWarmUp() throws InterruptedException, ExecutionException {
+        warmUpTask.get();
+    }
+
+
+    /**
+     * Queues the Workers that the calling thread gives to `execute` from now on under `job`, in the interactive lane if
+     * `interactive` is true, so they take turns with the Workers of other jobs. Bosses call this on their own thread
+     * before their first Worker.<br><br>
+     *
+     * Jobs are told apart by identity. Threads that are never bound share one queue, in the batch lane.
+     *
+     * @param job the job that the thread works for, or null to bind the thread to no job
+     * @param interactive true to queue the job's Workers ahead of batch Workers, false to queue them as batch Workers
+     */
+    public void bindJob(Object job, boolean interactive) {
+        if(job==null) {
+            jobs.remove();
+            interactiveThreads.remove();
+        }
+        else {
+            jobs.set(job);
+            interactiveThreads.set(interactive);
+        }
+    }
+
+
+    /**
+     * Schedules `worker` to run on the engine's worker pool.<br><br>
+     *
+     * Use instead of `worker.execute()`. Cancelling the worker still interrupts it, even after it starts running.<br>
+     * The worker must not wait on other tasks in the pool.<br>
+     * The worker waits in the queue of the job that the calling thread is bound to, in that job's lane. See `bindJob`.
+     *
+     * @param worker the Worker to run. Can't be null
+     */
+    public void execute(SwingWorker<?,?> worker) {
+        if(worker==null) {
+            throw new AssertionError("Worker cannot be null");
+        }
+
+        boolean interactive = interactiveThreads.get();
+        synchronized(laneLock) {
+            (interactive ? interactiveQueues : batchQueues).computeIfAbsent(jobs.get(), job -> new ArrayDeque<>()).add(worker);
+            if(interactive) {
+                queuedNanos.put(worker, System.nanoTime());
+            }
+            queuedWorkers++;
+        }
+
+        //Each task takes whichever Worker is next in turn, which need not be this one
+        workerPool.execute(this::runNextWorker);
+    }
+
+
+    /**
+     * Starts `worker` on a stream thread of its own.<br><br>
+     *
+     * Use instead of `worker.execute()`. Stream Workers wait on their streams and their pipeline, so they must never run
+     * on the worker pool, and they don't wait for each other: a stream thread is started whenever none is idle.
+     * Cancelling the worker still interrupts it, even after it starts running.
+     *
+     * @param worker the Stream Worker to run. Can't be null
+     */
+    public void executeStream(ParsingStreamWorker worker) {
+        if(worker==null) {
+            throw new AssertionError("Worker cannot be null");
+        }
+
+        streamPool.execute(worker);
+    }
+
+
+    /**
+     * Returns `sun.misc.Unsafe.invokeCleaner` bound to the Unsafe instance, or null if the JVM does not provide one.<br><br>
+     *
+     * Helper to the INVOKE_CLEANER constant
+     *
+     * @return the bound invokeCleaner method, or null
+     */
+    private static MethodHandle findInvokeCleaner() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field unsafeField = unsafeClass.getDeclaredField("theUnsafe");
+            unsafeField.setAccessible(true);
+            return MethodHandles.lookup().unreflect(unsafeClass.getMethod("invokeCleaner", ByteBuffer.class))
+                    .bindTo(unsafeField.get(null));
+        }
+        catch (Throwable t) {
+            return null;
+        }
+    }
+
+
+    /**
+     * Frees `buffer`'s memory. Off-heap memory is given back to the operating system right away,
+     * if the JVM allows it. On-heap buffers are left to the garbage collector.<br><br>
+     *
+     * Helper to releaseBuffer and shutdown
+     *
+     * @param buffer the buffer to free. Can't be null. Must not be used afterward
+     */
+    private synchronized void freeBuffer(CharBuffer buffer) {
+        ByteBuffer bytes = directBuffers.remove(buffer);
+        if(bytes==null || INVOKE_CLEANER==null) {
+            return;
+        }
+
+        try {
+            INVOKE_CLEANER.invoke(bytes);
+        }
+        //The memory is still freed once the buffer is garbage collected
+        catch (Throwable t) {
+            System.err.println("Could not free off-heap buffer- " + t);
+        }
+    }
+
+
+    /**
+     * Gives `buffer`, which must have come from `acquireBuffer`, back to the engine.<br><br>
+     *
+     * The buffer is kept for reuse if the pool has room for it. Otherwise, it is freed.<br>
+     * The caller must not use the buffer after releasing it.
+     *
+     * @param buffer the buffer to release. Can't be null
+     */
+    public synchronized void releaseBuffer(CharBuffer buffer) {
+        if(buffer==null) {
+            throw new AssertionError("Buffer cannot be null");
+        }
+
+        liveBufferChars -= buffer.capacity();
+
+        if(pooledBufferChars + buffer.capacity() <= MAX_POOLED_CHARS && !workerPool.isShutdown()) {
+            pooledBuffers.add(buffer);
+            pooledBufferChars += buffer.capacity();
+        }
+        else {
+            freeBuffer(buffer);
+        }
+    }
+
+
+    /**
+     * Runs the next queued Worker of the job whose turn it is, and moves that job to the back of its lane's turn order.
+     * <br><br>
+     *
+     * The interactive lane goes first, unless a batch Worker was passed over `MAX_INTERACTIVE_TURNS` times in a row.<br>
+     * Runs on a pool thread, once for each Worker given to `execute`, so there is always a Worker to take.<br><br>
+     *
+     * Helper to execute
+     */
+    private void runNextWorker() {
+        SwingWorker<?,?> worker;
+        synchronized(laneLock) {
+            boolean interactiveTurn = !interactiveQueues.isEmpty()
+                    && (batchQueues.isEmpty() || interactiveTurns < MAX_INTERACTIVE_TURNS);
+            LinkedHashMap<Object, ArrayDeque<SwingWorker<?,?>>> lane = interactiveTurn ? interactiveQueues : batchQueues;
+
+            Iterator<Map.Entry<Object, ArrayDeque<SwingWorker<?,?>>>> turns = lane.entrySet().iterator();
+            Map.Entry<Object, ArrayDeque<SwingWorker<?,?>>> turn = turns.next();
+            turns.remove();
+
+            worker = turn.getValue().poll();
+            queuedWorkers--;
+            if(!turn.getValue().isEmpty()) {
+                lane.put(turn.getKey(), turn.getValue());
+            }
+
+            //Only count the interactive turns that a batch Worker waited through
+            interactiveTurns = (interactiveTurn && !batchQueues.isEmpty()) ? interactiveTurns+1 : 0;
+            if(interactiveTurn) {
+                long waitNanos = System.nanoTime() - queuedNanos.remove(worker);
+                interactiveWorkers++;
+                if(waitNanos > INTERACTIVE_TARGET_NANOS) {
+                    lateInteractiveWorkers++;
+                }
+                peakInteractiveWaitNanos = Math.max(peakInteractiveWaitNanos, waitNanos);
+            }
+        }
+        worker.run();
+    }
+
+
+    /**
+     * Stops the engine and frees its pooled buffers. Queued Workers are not run, and running Workers and Stream Workers
+     * are interrupted.<br><br>
+     *
+     * The engine cannot be used after it is shut down. Buffers released afterward are freed right away.
+     */
+    public synchronized void shutdown() {
+        workerPool.shutdownNow();
+        streamPool.shutdownNow();
+        synchronized(laneLock) {
+            batchQueues.clear();
+            interactiveQueues.clear();
+            queuedNanos.clear();
+            queuedWorkers = 0;
+        }
+
+        for(CharBuffer buffer : pooledBuffers) {
+            freeBuffer(buffer);
+        }
+        pooledBuffers.clear();
+        pooledBufferChars = 0;
+    }
+
+
+    /**
+     * Runs every Worker kernel on a sample text until the JIT has compiled them.<br><br>
+     *
+     * Runs on a pool thread. The Workers run directly on the calling thread instead of being submitted to the pool,
+     * because waiting on the pool from inside the pool could deadlock.<br>
+     * The sample text is held in buffers of the engine's mode, so the kernels are compiled for the buffers they will see.<br>
+     * Any exception is printed and ignored, since a failed warm-up only costs speed.<br><br>
+     *
+     * Helper to the class constructor
+     */
+    private void warmUp() {
+        //Sample text with everything the kernels branch on: letters, digits, spaces, punctuation, and diacritics
+        StringBuilder sample = new StringBuilder();
+        for(int i=0; i<100; i++) {
+            sample.append("The Quick brown fox, n°").append(i).append(", can't jump over ").append(i*37).append(" lazy dögs!\n");
+        }
+        String sampleText = sample.toString();
+
+        //Any key with indices on [0,25] works
+        byte[][] key = new byte[StepperAppFields.BLOCK_COUNT][StepperAppFields.BLOCK_LENGTH];
+        for(int a=0; a<key.length; a++) {
+            for(int i=0; i<key[a].length; i++) {
+                key[a][i] = (byte) ((a*7 + i*3) % 26);
+            }
+        }
+
+        //The Operations Workers work in place, so each one gets a fresh copy of the sample text
+        CharBuffer sourceBuffer = allocateBuffer(sampleText.length());
+        CharBuffer sampleBuffer = allocateBuffer(sampleText.length());
+
+        try {
+            sourceBuffer.put(sampleText).clear();
+
+            for(int round=0; round<WARMUP_ROUNDS; round++) {
+                ParsingCharIndex index = new ParsingCharIndex(sourceBuffer.capacity());
+                ParsingDiacriticsWorker.classifyNormalized(sourceBuffer, index, 0, sourceBuffer.capacity());
+                index.updateRanks();
+
+                for(byte punctMode=0; punctMode<=2; punctMode++) {
+                    sampleBuffer.put(0, sourceBuffer, 0, sourceBuffer.capacity());
+                    ParsingOperationsWorker encryptWorker = new ParsingOperationsWorker(
+                            sampleBuffer, index, 0, sampleBuffer.capacity(), (char)0, (char)0, true, key, true, punctMode, round, round, "warm-up");
+                    encryptWorker.run();
+                    encryptWorker.get();
+                }
+
+                sampleBuffer.put(0, sourceBuffer, 0, sourceBuffer.capacity());
+                ParsingOperationsWorker decryptWorker = new ParsingOperationsWorker(
+                        sampleBuffer, index, 0, sampleBuffer.capacity(), (char)0, (char)0, true, key, false, (byte)0, round, round, "warm-up");
+                decryptWorker.run();
+                decryptWorker.get();
+            }
+        }
+        catch (Throwable t) {
+            System.err.println("Exception thrown during engine warm-up- " + t);
+        }
+        finally {
+            freeBuffer(sourceBuffer);
+            freeBuffer(sampleBuffer);
+        }
+    }
+}
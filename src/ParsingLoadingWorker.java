@@ -0,0 +1,298 @@
+import javax.swing.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Worker thread that loads one byte range of a UTF-8 input file, memory-mapped by its Boss. The Worker's result is the
+ * number of characters that the range decodes to, once its line breaks are normalized.<br><br>
+ *
+ * A Boss loads a large file in two passes over the mapped bytes, both split between Loading Workers:<br>
+ * -Counting Workers count the characters each range decodes to, without decoding it, and find out whether it is ASCII.
+ * The counts give each range's place in the text buffer.<br>
+ * -Decoding Workers then decode their ranges straight into their places, in parallel. As each index word of the text
+ * is filled, the Worker classifies it into the Boss's character index while it is still in cache, so the Boss's text is
+ * ready for partitioning without a separate classification stage. Words shared by two ranges are left for the Boss.<br><br>
+ *
+ * Ranges must not split a UTF-8 sequence, or a "\r\n" line break. Line breaks become "\n", like a Boss's serial loader
+ * makes them. A Decoding Worker whose range is not valid UTF-8, or doesn't decode to its counted length, throws
+ * a CharacterCodingException, so the Boss can read the file serially instead.
+ */
+public class ParsingLoadingWorker extends SwingWorker<Integer,Void> {
+
+    /**
+     * Number of characters that are decoded at once, before their line breaks are normalized into the text buffer.
+     * Must be positive
+     */
+    final private static int WINDOW_LENGTH = 8192;
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * True once a Counting Worker is done, if every byte of its range is 7-bit ASCII. Always false for Decoding Workers
+     */
+    private boolean ascii;
+
+    /**
+     * The mapped input file, shared with the Boss and the other Workers. The Worker only reads bytes [byteStart, byteEnd),
+     * through its own view of the buffer. Cannot be null
+     */
+    final private ByteBuffer bytes;
+
+    /**
+     * Index just past the last byte of the Worker's range. Must be on the interval [byteStart, bytes.capacity()]
+     */
+    final private int byteEnd;
+
+    /**
+     * Index of the first byte of the Worker's range. Must be on the interval [0, byteEnd]
+     */
+    final private int byteStart;
+
+    /**
+     * Number of characters that the range decodes to, or -1 if the Worker counts them
+     */
+    final private int charCount;
+
+    /**
+     * Index of the Boss's text buffer that the range's first character is written to. -1 if the Worker counts the
+     * characters
+     */
+    final private int charStart;
+
+    /**
+     * The Boss's character index of `text`. The Worker only writes the words that lie entirely inside its range of the text.
+     * Null if the Worker counts the characters
+     */
+    final private ParsingCharIndex index;
+
+    /**
+     * The name of the Worker, mostly for debugging purposes. Cannot be null or the string "null".
+     */
+    final private String name;
+
+    /**
+     * The Boss's text buffer, shared with the Boss and the other Workers. The Worker only writes to indices
+     * [charStart, charStart + charCount). Null if the Worker counts the characters
+     */
+    final private CharBuffer text;
+
+
+    /**
+     * Creates a Counting ParsingLoadingWorker called `name`, which counts the characters that bytes [`byteStart`, `byteEnd`)
+     * of `bytes` decode to in UTF-8, once "\r\n" line breaks become one character.<br><br>
+     *
+     * The count is only exact if the range is valid UTF-8.
+     *
+     * @param bytes the mapped input file. Non-null
+     * @param byteStart index of the first byte of the range. Must be on the interval [0, byteEnd]
+     * @param byteEnd index just past the last byte of the range. Must be on the interval [byteStart, bytes.capacity()]
+     * @param name custom name for this Worker. Non-null and cannot equal the string "null"
+     */
+    public ParsingLoadingWorker(ByteBuffer bytes, int byteStart, int byteEnd, String name) {
+        this(bytes, byteStart, byteEnd, null, null, -1, -1, name);
+    }
+
+    /**
+     * Creates a Decoding ParsingLoadingWorker called `name`, which decodes bytes [`byteStart`, `byteEnd`) of `bytes`
+     * into `text`, starting at `charStart`, and classifies the index words that lie entirely inside them into `index`.<br><br>
+     *
+     * Neither `text` nor `index` is copied, because the Worker writes its results into them.
+     *
+     * @param bytes the mapped input file. Non-null
+     * @param byteStart index of the first byte of the range. Must be on the interval [0, byteEnd]
+     * @param byteEnd index just past the last byte of the range. Must be on the interval [byteStart, bytes.capacity()]
+     * @param text the Boss's text buffer. Non-null
+     * @param index the Boss's character index of `text`. Non-null. Must cover at least `charStart` + `charCount` characters
+     * @param charStart index of `text` to write the first character to. Cannot be negative
+     * @param charCount number of characters that the range decodes to, as counted by a Counting Worker.
+     *                  Must be on the interval [0, text.capacity() - charStart]
+     * @param name custom name for this Worker. Non-null and cannot equal the string "null"
+     */
+    public ParsingLoadingWorker(ByteBuffer bytes, int byteStart, int byteEnd, CharBuffer text, ParsingCharIndex index,
+                                int charStart, int charCount, String name) {
+        if(bytes==null) {
+            throw new AssertionError("Bytes cannot be null");
+        }
+        if(byteStart<0 || byteEnd<byteStart || byteEnd>bytes.capacity()) {
+            throw new AssertionError("The byte range must fit inside the bytes");
+        }
+        if(text!=null && (index==null || charStart<0 || charCount<0 || charStart > text.capacity() - charCount
+        || charStart + charCount > index.length())) {
+            throw new AssertionError("The character range must fit inside the text and the index");
+        }
+        if(name==null || name.equals("null")) {
+            throw new AssertionError("Name cannot be null or equal the string \"null\"");
+        }
+
+        this.bytes = bytes;
+        this.byteStart = byteStart;
+        this.byteEnd = byteEnd;
+        this.text = text;
+        this.index = index;
+        this.charStart = charStart;
+        this.charCount = charCount;
+        this.name = name;
+    }
+
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Returns whether the Worker's range is pure ASCII. Only valid once a Counting Worker is done
+     * @return true if every byte of the range is 7-bit ASCII, false if not, or if the Worker decodes its range
+     */
+    public boolean ascii() {
+        return ascii;
+    }
+
+    /**
+     * Returns a String representation of the Worker.
+     * @return String representation of the Worker's fields
+     */
+    @Override
+    public String toString() {
+        return "Loading Worker \"" + name + "\", bytes=[" + byteStart + ", " + byteEnd + ")"
+                + ((text==null) ? ", counting" : ", characters=[" + charStart + ", " + (charStart + charCount) + ")");
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Counts the characters that the Worker's range decodes to, or decodes and classifies them.<br><br>
+     *
+     * WARNING: Any exceptions thrown in this method are SILENT. They will not stop the program and produce no error messages.
+     *
+     * @return the number of characters that the range decodes to. 0 if cancelled
+     * @throws CharacterCodingException if decoding, and the range is not valid UTF-8 or doesn't decode to `charCount` characters
+     */
+    @Override
+    protected Integer doInBackground() throws CharacterCodingException {
+        if(text==null) {
+            return countChars();
+        }
+        return decode();
+    }
+
+
+
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+
+
+
+    /**
+     * Returns the number of characters that the Worker's range decodes to, and sets `ascii`.<br><br>
+     *
+     * Every byte that doesn't continue a UTF-8 sequence starts a character. Four-byte sequences decode to a surrogate pair,
+     * i.e. two characters. A "\n" just after a "\r" is dropped, since "\r\n" becomes one "\n".<br><br>
+     *
+     * Helper to doInBackground.
+     *
+     * @return number of characters in the range, if it is valid UTF-8. 0 if cancelled
+     */
+    private int countChars() {
+        int count = 0;
+        int allBits = 0;
+        int previous = 0;
+        for(int i=byteStart; i<byteEnd; i++) {
+            if((i & 0xFFFF) == 0 && isCancelled()) {
+                return 0;
+            }
+
+            int b = bytes.get(i) & 0xFF;
+            allBits |= b;
+
+            //Not a continuation byte (10xxxxxx), plus one more for a four-byte lead (11110xxx), minus "\r\n" pairs
+            count += ((b & 0xC0) != 0x80) ? 1 : 0;
+            count += (b >= 0xF0) ? 1 : 0;
+            count -= (b == '\n' && previous == '\r') ? 1 : 0;
+            previous = b;
+        }
+
+        ascii = allBits < 0x80;
+        return count;
+    }
+
+
+    /**
+     * Decodes the Worker's range into its place in the text buffer, normalizing line breaks, and classifies each index
+     * word that lies entirely inside the range as soon as it is written. Returns the number of characters written.<br><br>
+     *
+     * Line breaks become "\n": "\r\n", "\r", "\u2028", "\u2029", and "\u0085" are line breaks.<br><br>
+     *
+     * Helper to doInBackground.
+     *
+     * @return number of characters written, which is `charCount`. 0 if cancelled
+     * @throws CharacterCodingException if the range is not valid UTF-8, or doesn't decode to `charCount` characters
+     */
+    private int decode() throws CharacterCodingException {
+        ByteBuffer range = bytes.duplicate();
+        range.limit(byteEnd).position(byteStart);
+
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder();
+        CharBuffer window = CharBuffer.allocate(WINDOW_LENGTH);
+
+        int charEnd = charStart + charCount;
+        int outputEnd = charStart;
+        boolean afterCarriageReturn = false;
+
+        //Words from here on are classified once they are whole. The word that starts the range is shared, unless aligned
+        int classifiedEnd = ((charStart + ParsingCharIndex.CHARS_PER_WORD - 1) / ParsingCharIndex.CHARS_PER_WORD)
+                * ParsingCharIndex.CHARS_PER_WORD;
+
+        boolean flushing = false;
+        while(true) {
+            if(isCancelled()) {
+                return 0;
+            }
+
+            CoderResult result = flushing ? decoder.flush(window) : decoder.decode(range, window, true);
+            if(result.isError()) {
+                result.throwException();
+            }
+
+            int decodedLength = window.position();
+            if(decodedLength > 0) {
+                char[] decodedChars = window.array();
+                boolean endsWithCarriageReturn = (decodedChars[decodedLength-1]=='\r');
+                int normalizedLength = ParsingDiacriticsWorker.normalizeLineBreaks(decodedChars, 0, decodedLength,
+                        afterCarriageReturn);
+                afterCarriageReturn = endsWithCarriageReturn;
+
+                if(charEnd - outputEnd < normalizedLength) {
+                    throw new CharacterCodingException();
+                }
+                text.put(outputEnd, decodedChars, 0, normalizedLength);
+                outputEnd += normalizedLength;
+            }
+            window.clear();
+
+            //Classify the words that are whole now
+            int wholeEnd = (outputEnd / ParsingCharIndex.CHARS_PER_WORD) * ParsingCharIndex.CHARS_PER_WORD;
+            if(wholeEnd > classifiedEnd) {
+                ParsingDiacriticsWorker.classifyNormalized(text, index, classifiedEnd, wholeEnd);
+                classifiedEnd = wholeEnd;
+            }
+
+            if(result.isUnderflow()) {
+                if(flushing) {
+                    break;
+                }
+                flushing = true;
+            }
+        }
+
+        if(outputEnd != charEnd) {
+            throw new CharacterCodingException();
+        }
+        return charCount;
+    }
+}
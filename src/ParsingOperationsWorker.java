@@ -1,4 +1,5 @@
 import javax.swing.*;
+import java.nio.CharBuffer;
 
 /**
  * Does a small portion of a ParsingBoss's work. Cannot have a field that can hold a StepperApp.<br><br>
@@ -6,16 +7,55 @@ import javax.swing.*;
  * The worker takes the position of the next block and amount of numbers processed so far to determine which piece of the
  * Boss's work to do.<br>
  *
+ * The worker processes its piece of the Boss's text buffer in place, without copying it. Its output is written to the
+ * start of its piece, and the Worker's result is the output's length. Since characters are only ever removed, the output
+ * always fits in the piece. Unless the Boss's text is pure ASCII, the Worker first removes diacritics from its piece,
+ * so the job needs no separate diacritics stage.<br>
+ *
+ * A Worker may instead be given a range of a job's packed letters, when the job's output is letters only. It then
+ * encrypts or decrypts the range in place, and nothing is removed.<br><br>
+ *
  * All private helper methods must continuously check if the Worker is cancelled. If so, the method should return
- * the empty string, unless the specification states otherwise. Methods that run quickly and in O(1) time, i.e. where its runtime
+ * an empty output, unless the specification states otherwise. Methods that run quickly and in O(1) time, i.e. where its runtime
  * doesn't depend on an arbitrary length, do not need to check if the Worker is cancelled.
  */
-public class ParsingOperationsWorker extends SwingWorker<String,Void> {
+public class ParsingOperationsWorker extends SwingWorker<Integer,Void> {
+
+    /**
+     * Number of blocks of packed letters that are unpacked into the Worker's window at once. Must be a positive multiple
+     * of `ParsingPackedLetters.LETTERS_PER_WORD`, so that every window starts on a word.<br><br>
+     *
+     * The window is small enough to stay in the core's cache, so the letters are only read from and written to memory
+     * in their packed form.
+     */
+    final private static int PACKED_WINDOW_BLOCKS = 192;
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * The Boss's text buffer. The Worker processes indices [start, end). Null if and only if `letters` is not null.<br><br>
+     *
+     * Shared with the Boss and the other Workers, so it is not copied. The Worker may only change its own piece.
+     * The buffer may be on or off the heap, depending on the engine that the Boss's job runs on.
+     */
+    final private CharBuffer text;
 
     /**
-     * The String to process. Can't be null
+     * The Boss's character index of its text, classified after diacritics were removed. The Worker counts its letters and
+     * numbers with it instead of scanning its piece. Null if and only if `text` is null.<br><br>
+     *
+     * Shared with the Boss and the other Workers, and never changed while the Worker runs.
      */
-    private String input;
+    final private ParsingCharIndex index;
+
+    /**
+     * The Boss's packed letters, if the Boss's output is letters only. The Worker processes letters [start, end).
+     * Null if and only if `text` is not null.<br><br>
+     *
+     * Shared with the Boss and the other Workers, so it is not copied. The Worker may only change its own range.
+     */
+    final private ParsingPackedLetters letters;
 
     /**
      * The key to process the input with. Can't be null. Dimensions must be `StepperAppFields.BLOCK_COUNT` by `StepperAppFields.BLOCK_LENGTH`.
@@ -28,21 +68,48 @@ public class ParsingOperationsWorker extends SwingWorker<String,Void> {
      */
     final private boolean encrypting;
 
+    /**
+     * Index just past the last character the Worker processes. Must be on the interval [start, text.capacity()],
+     * or [start, letters.length()] if the Worker processes packed letters
+     */
+    final private int end;
+
     /**
      * The name of the Worker (mainly for debugging purposes). Can't be null or equal the string "null"
      */
     final private String name;
 
+    /**
+     * The character just after the Worker's piece in the Boss's input, or (char)0 if the piece ends the input
+     */
+    final private char nextChar;
+
+    /**
+     * True if the Worker removes diacritics from its piece before processing it, false if the piece needs none
+     */
+    final private boolean normalizing;
+
     /**
      * The amount of numbers processed so far in the Boss's input string. Can't be negative
      */
     final private int numberStartIndex;
 
+    /**
+     * The character just before the Worker's piece in the Boss's input, or (char)0 if the piece starts the input
+     */
+    final private char previousChar;
+
     /**
      * Allowed values: 0 if including punctuation, 1 if excluding spaces, 2 if alphabetic characters only
      */
     final private byte punctMode;
 
+    /**
+     * Index of the first character the Worker processes. Must be on the interval [0, end]. If the Worker processes packed
+     * letters, must also be a multiple of `ParsingPackedLetters.LETTERS_PER_WORD`
+     */
+    final private int start;
+
     /**
      * The text block number in the Boss's input string. Can't be negative
      */
@@ -57,8 +124,20 @@ public class ParsingOperationsWorker extends SwingWorker<String,Void> {
 
 
     /**
-     * Creates a ParsingOperationsWorker and loads its fields.
-     * @param input the substring it should process. Can't be null
+     * Creates a ParsingOperationsWorker and loads its fields.<br><br>
+     *
+     * `text` is NOT copied. The Worker overwrites indices [start, end) of it with its output.<br>
+     * The neighboring characters must be read before any Worker starts, since other Workers may overwrite them.
+     *
+     * @param text the Boss's text buffer. Can't be null
+     * @param index the Boss's character index of `text`, classified as if diacritics were removed. Can't be null.
+     *              Must cover at least `end` characters
+     * @param start index of the first character to process. Must be on the interval [0, end]
+     * @param end index just past the last character to process. Must be on the interval [start, text.capacity()]
+     * @param previousChar the character just before index `start` in the Boss's input with diacritics removed,
+     *                     or (char)0 if there is none
+     * @param nextChar the character at index `end` in the Boss's input with diacritics removed, or (char)0 if there is none
+     * @param normalizing true if the Worker should remove diacritics from its piece first, false if the piece needs none
      * @param key the key to process the substring with. Can't be null, no subarrays can be null.
      *            All indices must be on [0,25]. Dimensions must be `StepperAppFields.BLOCK_COUNT` by `StepperAppFields.BLOCK_LENGTH`
      * @param encrypting true if this Worker should encrypt its text, false otherwise
@@ -67,7 +146,8 @@ public class ParsingOperationsWorker extends SwingWorker<String,Void> {
      * @param numbersPreviouslyProcessed amount of numbers encrypted so far. Cannot be negative
      * @param name custom name for this Worker. Non-null and cannot equal the string "null"
      */
-    public ParsingOperationsWorker(String input, byte[][] key, boolean encrypting,
+    public ParsingOperationsWorker(CharBuffer text, ParsingCharIndex index, int start, int end, char previousChar, char nextChar,
+                                   boolean normalizing, byte[][] key, boolean encrypting,
                                    byte punctMode, int startBlock, int numbersPreviouslyProcessed, String name) {
 
         //Check if key is null. The constructor will not work without this assertion
@@ -89,7 +169,14 @@ public class ParsingOperationsWorker extends SwingWorker<String,Void> {
         }
 
         //Load the other inputs
-        this.input=input;
+        this.text=text;
+        this.index=index;
+        this.letters=null;
+        this.start=start;
+        this.end=end;
+        this.previousChar=previousChar;
+        this.nextChar=nextChar;
+        this.normalizing=normalizing;
         this.encrypting=encrypting;
         this.punctMode=punctMode;
         this.startBlock=startBlock;
@@ -99,12 +186,74 @@ public class ParsingOperationsWorker extends SwingWorker<String,Void> {
         assertPreconditions();
     }
 
+    /**
+     * Creates a ParsingOperationsWorker that processes a range of packed letters, and loads its fields.<br><br>
+     *
+     * `letters` is NOT copied. The Worker overwrites letters [start, end) of it with their processed versions.
+     * Ranges of different Workers must not share a word, so `start` must be a multiple of `ParsingPackedLetters.LETTERS_PER_WORD`.
+     *
+     * @param letters the Boss's packed letters. Can't be null
+     * @param start index of the first letter to process. Must be a multiple of `ParsingPackedLetters.LETTERS_PER_WORD`,
+     *              on the interval [0, end]
+     * @param end index just past the last letter to process. Must be on the interval [start, letters.length()]
+     * @param key the key to process the letters with. Can't be null, no subarrays can be null.
+     *            All indices must be on [0,25]. Dimensions must be `StepperAppFields.BLOCK_COUNT` by `StepperAppFields.BLOCK_LENGTH`
+     * @param encrypting true if this Worker should encrypt its letters, false otherwise
+     * @param startBlock the block in the original input to start processing at. Cannot be negative
+     * @param name custom name for this Worker. Non-null and cannot equal the string "null"
+     */
+    public ParsingOperationsWorker(ParsingPackedLetters letters, int start, int end, byte[][] key, boolean encrypting,
+                                   int startBlock, String name) {
+
+        //Check if key is null. The constructor will not work without this assertion
+        if(key==null) {
+            throw new AssertionError("Key cannot be null");
+        }
+
+        //Make a deep copy of the key. Check if each key index is not null
+        this.key = new byte[key.length][key[0].length];
+        for(int a=0; a<key.length; a++) {
+
+            if(key[a]==null) {
+                throw new AssertionError("No index in the key can be null");
+            }
+
+            for(int i=0; i<key[0].length; i++) {
+                this.key[a][i] = key[a][i];
+            }
+        }
+
+        //Load the other inputs. Packed letters hold no punctuation or numbers, and have no neighbors to look at
+        this.text=null;
+        this.index=null;
+        this.letters=letters;
+        this.start=start;
+        this.end=end;
+        this.previousChar=0;
+        this.nextChar=0;
+        this.normalizing=false;
+        this.encrypting=encrypting;
+        this.punctMode=2;
+        this.startBlock=startBlock;
+        this.numberStartIndex=0;
+        this.name=name;
+
+        assertPreconditions();
+    }
+
     /**
      * FOR METHOD UNIT TESTING ONLY!!! Creates a new OperationsWorker and initializes its fields with garbage values.
      * BREAKS OPERATION PRECONDITIONS!
      */
     public ParsingOperationsWorker() {
-        input=null;
+        text=null;
+        index=null;
+        letters=null;
+        start=-1;
+        end=-1;
+        previousChar=0;
+        nextChar=0;
+        normalizing=false;
         key=null;
         encrypting=false;
         name=null;
@@ -121,7 +270,11 @@ public class ParsingOperationsWorker extends SwingWorker<String,Void> {
      * Helper to the class constructor not used in method unit testing.
      */
     private void assertPreconditions() {
-        if(input==null || key==null) throw new AssertionError("Input text and key cannot be null");
+        if((text==null) == (letters==null) || key==null) throw new AssertionError("Exactly one of the input text and letters must be non-null, and the key cannot be null");
+        if(text!=null && (start<0 || end<start || end>text.capacity())) throw new AssertionError("Piece bounds must be on the interval [0, text.capacity()]");
+        if(text!=null && (index==null || end>index.length())) throw new AssertionError("Character index cannot be null, and must cover the piece");
+        if(letters!=null && (start<0 || end<start || end>letters.length())) throw new AssertionError("Piece bounds must be on the interval [0, letters.length()]");
+        if(letters!=null && start%ParsingPackedLetters.LETTERS_PER_WORD != 0) throw new AssertionError("Packed pieces must start on a word");
         if(punctMode<0 || punctMode>2) throw new AssertionError("Punctuation mode must be on the interval [0,2]");
         if(startBlock<0) throw new AssertionError("Start block cannot be negative");
         if(numberStartIndex<0) throw new AssertionError("Number start index cannot be negative");
@@ -155,21 +308,25 @@ public class ParsingOperationsWorker extends SwingWorker<String,Void> {
     @Override
     public String toString() {
         return "Operations Worker \"" + name + "\", start block=" + startBlock + ", number start index="
-                + numberStartIndex + ", input=\"" + input + "\"";
+                + numberStartIndex + ", start=" + start + ", end=" + end;
     }
 
     ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
     ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
 
     /**
-     * Returns the result of the Worker's processing.<br><br>
+     * Processes the Worker's piece of the text buffer, and returns the length of the output.<br><br>
+     *
+     * The output is written to indices [start, start + output length) of the text buffer.
+     * Any characters after the output, up to `end`, are garbage.<br>
+     * If the Worker processes packed letters, every letter in its range is replaced, and the output's length is the range's.<br><br>
      *
      * WARNING: Any exceptions thrown in this method are SILENT. They will not stop the program and produce no error messages.
      *
-     * @return the Worker's results. This method should NEVER return null.
+     * @return the length of the Worker's output. This method should NEVER return null.
      */
     @Override
-    protected String doInBackground() {
+    protected Integer doInBackground() {
         //Idiot check
         try {
             assertPreconditions();
@@ -180,34 +337,53 @@ public class ParsingOperationsWorker extends SwingWorker<String,Void> {
             throw t;
         }
 
+        //Letters only. Nothing is removed
+        if(letters!=null) {
+            processLetters(letters, start, end, key, encrypting, startBlock);
+            return isCancelled() ? 0 : end - start;
+        }
+
+        //Removing diacritics maps each character to one character, so nothing moves
+        if(normalizing) {
+            ParsingDiacriticsWorker.normalize(text, start, end);
+        }
+
+        //Removing spaces doesn't change these counts
+        int letterCount = index.letterRank(end) - index.letterRank(start);
+        int numberCount = index.digitRank(end) - index.digitRank(start);
+
+        int outputEnd = end;
+
         //Remove non-alphabetic characters
         if(encrypting && punctMode==1) {
-            input = removeSpaces(input);
+            outputEnd = removeSpaces(text, start, outputEnd, previousChar, nextChar);
         }
 
-        char[] nonAlphas = findNonAlphaPositions(input);
-        input = removeNonAlphas(input);
-
-        //Do process
+        //Do process. Only the letters change. Everything else stays where it is
         if (encrypting) {
-            input = encrypt(input, key, startBlock);
+            encrypt(text, start, outputEnd, letterCount, key, startBlock);
         }
         else {
-            input = decrypt(input, key, startBlock);
+            decrypt(text, start, outputEnd, letterCount, key, startBlock);
         }
 
-        //Reinsert punctuation
-        input = recombineNonAlphas(input, nonAlphas, punctMode<=1);
+        //Remove the punctuation that is not reinserted
+        outputEnd = removePunctuation(text, start, outputEnd, punctMode<=1);
 
-        //Do the numbers
-        if(encrypting) {
-            input = encryptNumbers(input, key, numberStartIndex);
-        }
-        else {
-            input = decryptNumbers(input, key, numberStartIndex);
+        //Do the numbers, if the piece has any
+        if(numberCount > 0) {
+            if(encrypting) {
+                encryptNumbers(text, start, outputEnd, key, numberStartIndex);
+            }
+            else {
+                decryptNumbers(text, start, outputEnd, key, numberStartIndex);
+            }
         }
 
-        return input;
+        if(isCancelled()) {
+            return 0;
+        }
+        return outputEnd - start;
     }
 
 
@@ -221,17 +397,22 @@ public class ParsingOperationsWorker extends SwingWorker<String,Void> {
 
 
     /**
-     * Returns the decrypted version of `text` using the given key.
+     * Decrypts the letters in indices [start, end) of `text` in place, using the given key.
      * Operations start after `startingSegment` segments have been decrypted.<br><br>
      *
+     * Letters are English ASCII letters, and are decrypted in order as if no other characters were between them.
+     * Each letter is replaced by its lowercase decrypted version. All other characters are unchanged.<br><br>
+     *
      * Algorithm first implemented on February 26-29, 2024. Enhanced encryption finished on July 18, 2024. By Chris P Bacon
      *
-     * @param text text to decrypt. Must contain all lowercase English ASCII characters. Can't be null
+     * @param text text to decrypt. Can't be null
+     * @param start index of the first character to decrypt. Must be on the interval [0, end]
+     * @param end index just past the last character to decrypt. Must be on the interval [start, text.capacity()]
+     * @param letterCount number of letters in indices [start, end) of `text`. Cannot be negative
      * @param key key to decrypt with. Can't be null. All indices must be on [0,25]
      * @param startingSegment index to start decrypting from. Must be non-negative
-     * @return decrypted version of text
      */
-    private String decrypt(String text, byte[][] key, int startingSegment) {
+    private void decrypt(CharBuffer text, int start, int end, int letterCount, byte[][] key, int startingSegment) {
         //Enforce preconditions
 
         //Check that both inputs are not null
@@ -244,11 +425,9 @@ public class ParsingOperationsWorker extends SwingWorker<String,Void> {
             }
         }
 
-        //Check text contents: all alphabetic lowercase ASCII characters
-        for(int v=0; v<text.length(); v++) {
-            if(!(text.charAt(v)>=97 && text.charAt(v)<=122)) {
-                throw new AssertionError("Text must contain all lowercase English ASCII characters");
-            }
+        //Check the bounds
+        if(start < 0 || end < start || end > text.capacity()) {
+            throw new AssertionError("Bounds must be on the interval [0, text.capacity()]");
         }
 
         //Check key contents: all indices on [0,25]
@@ -265,58 +444,40 @@ public class ParsingOperationsWorker extends SwingWorker<String,Void> {
             throw new AssertionError("Starting segment number must be non-negative");
         }
 
+        //Check the letter count is non-negative
+        if(letterCount < 0) {
+            throw new AssertionError("Letter count cannot be negative");
+        }
+
 
         //////////////////////////
 
-        //Configure positions
-        byte[] keyBlockBasePositions=initializeKeyBlockPositions(startingSegment + text.length()/StepperAppFields.BLOCK_LENGTH);
+        //Configure positions. The letters are decrypted as if they were one string of length `letterCount`
+        byte[] keyBlockBasePositions=initializeKeyBlockPositions(startingSegment + letterCount/StepperAppFields.BLOCK_LENGTH);
 
-        StringBuilder output = new StringBuilder(text.length());
+        //Letters are decrypted back to front, a block at a time. Points to the text index of the next letter to decrypt
+        int letterPosition = end-1;
 
-        int currentChar=0;
-        int currentBlock = (startingSegment + text.length()/StepperAppFields.BLOCK_LENGTH);
+        int currentBlock = (startingSegment + letterCount/StepperAppFields.BLOCK_LENGTH);
 
-        byte[] keyBlockReadPositions=new byte[StepperAppFields.BLOCK_COUNT];
-        System.arraycopy(keyBlockBasePositions, 0, keyBlockReadPositions, 0, keyBlockReadPositions.length);
-
-        for(int m = 0; m<(text.length() % StepperAppFields.BLOCK_LENGTH); m++) {
-            for(int a=0; a<keyBlockReadPositions.length; a++) {
-                keyBlockReadPositions[a]++;
-                if(keyBlockReadPositions[a] >= StepperAppFields.BLOCK_LENGTH) {
-                    keyBlockReadPositions[a]=0;
-                }
-            }
-        }
+        //Text indices and shifts of the letters in the current block, in order
+        int[] letterPositions = new int[StepperAppFields.BLOCK_LENGTH];
+        byte[] keystream = new byte[StepperAppFields.BLOCK_LENGTH];
 
         if(isCancelled()) {
-            return "";
+            return;
         }
 
-        for(int t = text.length()-1; t>=text.length()-(text.length() % StepperAppFields.BLOCK_LENGTH); t--) {
-
-            for(int d=0; d<keyBlockReadPositions.length; d++) {
-                keyBlockReadPositions[d] -= 1;
-                if(keyBlockReadPositions[d] < 0) {
-                    keyBlockReadPositions[d] = StepperAppFields.BLOCK_LENGTH-1;
-                }
-            }
-
-            currentChar=text.charAt(t) - 97;
-            for(int k=keyBlockReadPositions.length-1; k>=0; k--) {
-                currentChar = (currentChar - key[k][keyBlockReadPositions[k]]) % 26;
-                if(currentChar < 0) {
-                    currentChar += 26;
-                }
-            }
-
-            output.append((char)(currentChar+97));
-
-        }
+        //The last block may be partial
+        int blockLetters = letterCount % StepperAppFields.BLOCK_LENGTH;
+        letterPosition = findLetters(text, letterPosition, letterPositions, blockLetters, false);
+        setKeystream(key, keyBlockBasePositions, keystream, blockLetters, false);
+        shiftLetters(text, letterPositions, keystream, blockLetters);
 
 
-        for(int seg = text.length()-(text.length() % StepperAppFields.BLOCK_LENGTH)-1; seg>=0; seg-= StepperAppFields.BLOCK_LENGTH) {
+        for(int seg = letterCount-(letterCount % StepperAppFields.BLOCK_LENGTH)-1; seg>=0; seg-= StepperAppFields.BLOCK_LENGTH) {
             if(isCancelled()) {
-                return "";
+                return;
             }
 
             currentBlock--;
@@ -333,52 +494,30 @@ public class ParsingOperationsWorker extends SwingWorker<String,Void> {
                 }
             }
 
-            System.arraycopy(keyBlockBasePositions, 0, keyBlockReadPositions, 0, keyBlockReadPositions.length);
-
-            for(int t = seg; t > seg - StepperAppFields.BLOCK_LENGTH; t--) {
-
-                for(int d=0; d<keyBlockReadPositions.length; d++) {
-                    keyBlockReadPositions[d]--;
-                    if(keyBlockReadPositions[d] < 0) {
-                        keyBlockReadPositions[d]= StepperAppFields.BLOCK_LENGTH-1;
-                    }
-                }
-
-                currentChar=(int)text.charAt(t) - 97;
-
-                for(int k=keyBlockReadPositions.length-1; k>=0; k--) {
-
-                    currentChar = (currentChar - key[k][keyBlockReadPositions[k]]) % 26;
-                    if(currentChar < 0) {
-                        currentChar += 26;
-                    }
-
-                }
-
-                output.append((char)(currentChar+97));
-
-            }
+            letterPosition = findLetters(text, letterPosition, letterPositions, StepperAppFields.BLOCK_LENGTH, false);
+            setKeystream(key, keyBlockBasePositions, keystream, StepperAppFields.BLOCK_LENGTH, false);
+            shiftLetters(text, letterPositions, keystream, StepperAppFields.BLOCK_LENGTH);
         }
-
-        output.reverse();
-
-        return output.toString();
     }
 
 
     /**
-     * Returns a copy of input, but with numbers decrypted using inputKey.<br><br>
+     * Decrypts the numbers in indices [start, end) of `text` in place, using `key`.<br><br>
      *
-     * Any non-number is unchanged in the output.
-     * @param input the input text segment
+     * Any non-number is unchanged.
+     * @param text the text buffer holding the input text segment. Can't be null
+     * @param start index of the first character of the segment. Must be on the interval [0, end]
+     * @param end index just past the last character of the segment. Must be on the interval [start, text.capacity()]
      * @param key key to decrypt with, all indices must be on the interval [0,25]
      * @param numbersPreviouslyDecrypted how many numbers were decrypted prior to this text segment
-     * @return input, but with numbers decrypted
      */
-    private String decryptNumbers(String input, byte[][] key, int numbersPreviouslyDecrypted) {
-        if(input==null || key==null) {
+    private void decryptNumbers(CharBuffer text, int start, int end, byte[][] key, int numbersPreviouslyDecrypted) {
+        if(text==null || key==null) {
             throw new AssertionError("Input and key cannot be null");
         }
+        if(start < 0 || end < start || end > text.capacity()) {
+            throw new AssertionError("Bounds must be on the interval [0, text.capacity()]");
+        }
         if(numbersPreviouslyDecrypted < 0) {
             throw new AssertionError("Numbers decrypted cannot be negative");
         }
@@ -396,19 +535,17 @@ public class ParsingOperationsWorker extends SwingWorker<String,Void> {
             }
         }
 
-        StringBuilder output = new StringBuilder(input.length());
-
         int currentInputChar;
         int keyIndex = numbersPreviouslyDecrypted % flattenedKey.length();
 
-        for(int i=0; i<input.length(); i++) {
+        for(int i=start; i<end; i++) {
             if(isCancelled()) {
-                return "";
+                return;
             }
 
-            currentInputChar=(int)input.charAt(i);
+            currentInputChar=(int)text.get(i);
 
-            //If current char is a number, decrypt it before adding it to the output
+            //If current char is a number, decrypt it in place
             if(currentInputChar>=48 && currentInputChar<=57) {
                 currentInputChar -= 48;
 
@@ -427,30 +564,33 @@ public class ParsingOperationsWorker extends SwingWorker<String,Void> {
                 if(keyIndex >= flattenedKey.length()) {
                     keyIndex = 0;
                 }
-            }
 
-            output.append((char)currentInputChar);
+                text.put(i, (char)currentInputChar);
+            }
         }
-
-        return output.toString();
     }
 
 
     /**
-     * Returns the encrypted version of `text`, using `inputKey` as the key.
+     * Encrypts the letters in indices [start, end) of `text` in place, using `key` as the key.
      * Encryption starts after `startingSegment` segments. <br><br>
      *
      * The result should be as if the entire text was encrypted, then only the substring starting after `startingSegment` is
-     * in the final result.<br><br>
+     * in the final result.<br>
+     *
+     * Letters are English ASCII letters, and are encrypted in order as if no other characters were between them.
+     * Each letter is replaced by its lowercase encrypted version. All other characters are unchanged.<br><br>
      *
      * Algorithm first implemented on February 26-29, 2024. Enhanced encryption finished on July 18, 2024. By Chris P Bacon
      *
-     * @param text text to encrypt. Must contain all lowercase English ASCII characters. Can't be null
+     * @param text text to encrypt. Can't be null
+     * @param start index of the first character to encrypt. Must be on the interval [0, end]
+     * @param end index just past the last character to encrypt. Must be on the interval [start, text.capacity()]
+     * @param letterCount number of letters in indices [start, end) of `text`. Cannot be negative
      * @param key key to encrypt with. Can't be null. All indices must be on [0,25]
      * @param startingSegment index to start encrypting from. Must be non-negative
-     * @return encrypted version of text
      */
-    private String encrypt(String text, byte[][] key, int startingSegment) {
+    private void encrypt(CharBuffer text, int start, int end, int letterCount, byte[][] key, int startingSegment) {
         //Enforce preconditions
 
         //Check that both inputs are not null
@@ -463,11 +603,9 @@ public class ParsingOperationsWorker extends SwingWorker<String,Void> {
             }
         }
 
-        //Check text contents: all alphabetic lowercase ASCII characters
-        for(int v=0; v<text.length(); v++) {
-            if(!(text.charAt(v)>=97 && text.charAt(v)<=122)) {
-                throw new AssertionError("Text must contain all lowercase English ASCII characters");
-            }
+        //Check the bounds
+        if(start < 0 || end < start || end > text.capacity()) {
+            throw new AssertionError("Bounds must be on the interval [0, text.capacity()]");
         }
 
         //Check key contents: all indices on [0,25]
@@ -484,43 +622,34 @@ public class ParsingOperationsWorker extends SwingWorker<String,Void> {
             throw new AssertionError("Starting segment number must be non-negative");
         }
 
+        //Check the letter count is non-negative
+        if(letterCount < 0) {
+            throw new AssertionError("Letter count cannot be negative");
+        }
+
 
         //////////////////////////
-        //Start the process
+        //Start the process. The letters are encrypted as if they were one string of length `letterCount`
 
         byte[] keyBlockBasePositions = initializeKeyBlockPositions(startingSegment);
-        byte[] keyBlockReadPositions = new byte[StepperAppFields.BLOCK_COUNT];
-        System.arraycopy(keyBlockBasePositions, 0, keyBlockReadPositions, 0, keyBlockReadPositions.length);
 
+        //Letters are encrypted front to back, a block at a time. Points to the text index of the next letter to encrypt
+        int letterPosition = start;
 
-        StringBuilder output = new StringBuilder(text.length());
-        int currentChar=0;
         int blocksEncrypted = startingSegment;
 
-        for(int seg = 0; seg <= (text.length() - StepperAppFields.BLOCK_LENGTH); seg += StepperAppFields.BLOCK_LENGTH) {
+        //Text indices and shifts of the letters in the current block, in order
+        int[] letterPositions = new int[StepperAppFields.BLOCK_LENGTH];
+        byte[] keystream = new byte[StepperAppFields.BLOCK_LENGTH];
+
+        for(int seg = 0; seg <= (letterCount - StepperAppFields.BLOCK_LENGTH); seg += StepperAppFields.BLOCK_LENGTH) {
             if(isCancelled()) {
-                return "";
+                return;
             }
 
-            System.arraycopy(keyBlockBasePositions, 0, keyBlockReadPositions, 0, keyBlockReadPositions.length);
-
-            for(int t = seg; t<(seg + StepperAppFields.BLOCK_LENGTH); t++) {
-
-                currentChar=(int)text.charAt(t) - 97;
-
-                for(int k=0; k<keyBlockReadPositions.length; k++) {
-                    currentChar = (currentChar + key[k][keyBlockReadPositions[k]]) % 26;
-                }
-
-                output.append((char)(currentChar+97));
-
-                for(int a=0; a<keyBlockReadPositions.length; a++) {
-                    keyBlockReadPositions[a]++;
-                    if(keyBlockReadPositions[a] >= StepperAppFields.BLOCK_LENGTH) {
-                        keyBlockReadPositions[a]=0;
-                    }
-                }
-            }
+            letterPosition = findLetters(text, letterPosition, letterPositions, StepperAppFields.BLOCK_LENGTH, true);
+            setKeystream(key, keyBlockBasePositions, keystream, StepperAppFields.BLOCK_LENGTH, true);
+            shiftLetters(text, letterPositions, keystream, StepperAppFields.BLOCK_LENGTH);
 
             for(int r=0; r<keyBlockBasePositions.length; r++) {
                 keyBlockBasePositions[r] = (byte) ((keyBlockBasePositions[r] + StepperAppFields.getKeyBlockIncrementIndex(r)) % StepperAppFields.BLOCK_LENGTH);
@@ -533,47 +662,35 @@ public class ParsingOperationsWorker extends SwingWorker<String,Void> {
             blocksEncrypted++;
         }
 
-        System.arraycopy(keyBlockBasePositions, 0, keyBlockReadPositions, 0, keyBlockReadPositions.length);
-
         if(isCancelled()) {
-            return "";
+            return;
         }
 
-        for(int t = text.length()-(text.length() % StepperAppFields.BLOCK_LENGTH); t<text.length(); t++) {
-
-            currentChar=(int)text.charAt(t) - 97;
-
-            for(int k=0; k<keyBlockReadPositions.length; k++) {
-                currentChar = (currentChar + key[k][keyBlockReadPositions[k]]) % 26;
-            }
-
-            output.append((char)(currentChar+97));
-
-            for(int a=0; a<keyBlockReadPositions.length; a++) {
-                keyBlockReadPositions[a]++;
-                if(keyBlockReadPositions[a] >= StepperAppFields.BLOCK_LENGTH) {
-                    keyBlockReadPositions[a]=0;
-                }
-            }
-        }
-
-        return output.toString();
+        //The last block may be partial
+        int blockLetters = letterCount % StepperAppFields.BLOCK_LENGTH;
+        findLetters(text, letterPosition, letterPositions, blockLetters, true);
+        setKeystream(key, keyBlockBasePositions, keystream, blockLetters, true);
+        shiftLetters(text, letterPositions, keystream, blockLetters);
     }
 
 
     /**
-     * Returns a copy of input, but with numbers encrypted using inputKey.<br><br>
+     * Encrypts the numbers in indices [start, end) of `text` in place, using `key`.<br><br>
      *
-     * Any non-number is unchanged in the output.
-     * @param input the input text segment
+     * Any non-number is unchanged.
+     * @param text the text buffer holding the input text segment. Can't be null
+     * @param start index of the first character of the segment. Must be on the interval [0, end]
+     * @param end index just past the last character of the segment. Must be on the interval [start, text.capacity()]
      * @param key key to encrypt with, all indices must be on the interval [0,25]
      * @param numbersPreviouslyEncrypted how many numbers were encrypted prior to this text segment
-     * @return input, but with numbers encrypted
      */
-    private String encryptNumbers(String input, byte[][] key, int numbersPreviouslyEncrypted) {
-        if(input==null || key==null) {
+    private void encryptNumbers(CharBuffer text, int start, int end, byte[][] key, int numbersPreviouslyEncrypted) {
+        if(text==null || key==null) {
             throw new AssertionError("Neither input can be null");
         }
+        if(start < 0 || end < start || end > text.capacity()) {
+            throw new AssertionError("Bounds must be on the interval [0, text.capacity()]");
+        }
 
         StringBuilder flattenedKey = new StringBuilder();
         for(byte[] block : key) {
@@ -588,19 +705,17 @@ public class ParsingOperationsWorker extends SwingWorker<String,Void> {
             }
         }
 
-        StringBuilder output = new StringBuilder(input.length());
-
         int currentChar;
         int keyIndex = numbersPreviouslyEncrypted % flattenedKey.length();
 
-        for(int i=0; i<input.length(); i++) {
+        for(int i=start; i<end; i++) {
             if(isCancelled()) {
-                return "";
+                return;
             }
 
-            currentChar=(int)input.charAt(i);
+            currentChar=(int)text.get(i);
 
-            //If current char is a number, encrypt it before adding it to the output
+            //If current char is a number, encrypt it in place
             if(currentChar>=48 && currentChar<=57) {
                 currentChar -= 48;
                 currentChar = (currentChar + (flattenedKey.charAt(keyIndex))) % 10;
@@ -611,52 +726,51 @@ public class ParsingOperationsWorker extends SwingWorker<String,Void> {
                 if(keyIndex >= flattenedKey.length()) {
                     keyIndex=0;
                 }
-            }
 
-            output.append((char)currentChar);
+                text.put(i, (char)currentChar);
+            }
         }
-
-        return output.toString();
     }
 
 
     /**
-     * Returns an array containing the positions of all non-alphabetic characters in `text`.
-     * If there's an alphabetic character, puts a 0 in the output index.<br><br>
+     * Finds the text indices of the next `count` letters of `text`, starting at `letterPosition`, and writes them to
+     * the first `count` indices of `letterPositions` in text order. Returns the index just past the search.<br><br>
      *
-     * Alphabetic characters are ASCII characters that belong to the English alphabet.<br>
+     * If `forward` is true, searches forward from `letterPosition`, and returns the index after the last letter found.
+     * If not, searches backward, and returns the index before the first letter found. `letterPositions` is in text order
+     * either way.<br><br>
      *
-     * Example: if the text is "a1b2c3", the output, expressed as ints, should be {0, 48, 0, 49, 0, 50}.
-     * Since indices 0, 2, and 4 in the input are alphabetic characters, the corresponding indices in the output is 0.
-     * Indices 1, 3, and 5 hold the corresponding ASCII value in the corresponding output indices
+     * Helper to the operation functions.
      *
-     * @param text text to find non-alphabetic characters in
-     * @return char array containing locations of non-alphabetic characters. Returns {'C'} if the Worker is cancelled.
+     * @param text text to search. Can't be null. Must hold at least `count` letters in the search direction
+     * @param letterPosition index to start searching at
+     * @param letterPositions array to write the letters' indices to. Can't be null. Must hold at least `count` indices
+     * @param count number of letters to find. Cannot be negative
+     * @param forward true to search forward, false to search backward
+     * @return index to continue searching from
      */
-    private char[] findNonAlphaPositions(String text) {
-        if(text==null) {
-            throw new AssertionError("Text cannot be null");
-        }
-
-        char[] nonAlphas = new char[text.length()];
-
-        for(int i=0; i<text.length(); i++) {
-            if(isCancelled()) {
-                return new char[] {'C'};
-            }
-
-            if((int)text.charAt(i)<65
-                    || ((int)text.charAt(i)>90 && (int)text.charAt(i)<97)
-                    || (int)text.charAt(i)>122) {
-
-                nonAlphas[i] = text.charAt(i);
+    private static int findLetters(CharBuffer text, int letterPosition, int[] letterPositions, int count, boolean forward) {
+        if(forward) {
+            for(int j=0; j<count; j++) {
+                while(!isLetter(text.get(letterPosition))) {
+                    letterPosition++;
+                }
+                letterPositions[j] = letterPosition;
+                letterPosition++;
             }
-            else {
-                nonAlphas[i]=(char)0;
+        }
+        else {
+            for(int j=count-1; j>=0; j--) {
+                while(!isLetter(text.get(letterPosition))) {
+                    letterPosition--;
+                }
+                letterPositions[j] = letterPosition;
+                letterPosition--;
             }
         }
 
-        return nonAlphas;
+        return letterPosition;
     }
 
 
@@ -689,183 +803,179 @@ public class ParsingOperationsWorker extends SwingWorker<String,Void> {
     }
 
 
+
+
     /**
-     * Returns text, with all characters from nonAlphas reinserted in their places<br><br>
-     *
-     * text represents an output without non-alphabetic characters.<br>
-     *
-     * nonAlphas contains characters at every index where there would normally be
-     * a non-alphabetic character in text, and a non-positive number otherwise<br>
-     *
-     * If reinsertPunctuation is true, the text returned should contain all characters from nonAlphas
-     * reinserted in their original places.
-     * If not, the text returned should contain only alphanumeric characters.<br>
-     *
-     * Example: if the text to return is 'abc defg 123' and punct is 'y' or 's':<br>
-     * text would contain [0, 1, 2, 3, 4, 5, 6], the numerical values for 'abcdefg'<br>
-     * nonAlphas would contain [0,0,0,32,0,0,0,48,49,50]<br>
-     * There is a space at the original text's index 3, so nonAlphas's index 3 is 32<br>
-     * All other indices are 0 because the original text's indices there are letters<br>
-     *
-     * If reinsertPunctuation was false, the output would be "abcdefg123".<br><br>
+     * Returns true if `c` is an English ASCII letter, uppercase or lowercase. Returns false otherwise.<br><br>
      *
-     * Undoes the separation of characters in 'removeNonAlphas'.
+     * Helper to the operation functions.
      *
-     * @param text input text without non-alphabetic characters
-     * @param nonAlphasIn array containing locations of non-alphabetic characters
-     * @param reinsertingPunctuation whether to include punctuation in the output.
-     *                            If false, the function reinserts numbers only
-     * @return version of text with non-alphabetic characters in their places
+     * @param c character to check
+     * @return whether `c` is an English ASCII letter
      */
-    private String recombineNonAlphas(String text, char[] nonAlphasIn, boolean reinsertingPunctuation) {
-        if(text==null) {
-            throw new AssertionError("Text cannot be null");
-        }
-        if(nonAlphasIn==null) {
-            throw new AssertionError("Non-alphas cannot be null");
-        }
-
-        for(int v=0; v<text.length(); v++) {
-            if(text.charAt(v)<97 || text.charAt(v)>122) {
-                throw new AssertionError("All indices in the text must be English lowercase letters");
-            }
-        }
+    private static boolean isLetter(char c) {
+        return (c>=65 && c<=90) || (c>=97 && c<=122);
+    }
 
-        //make defensive copy of nonAlphasIn
-        char[] nonAlphas = new char[nonAlphasIn.length];
-        for(int t=0; t<nonAlphas.length; t++) {
-            if(isCancelled()) {
-                return "";
-            }
 
-            nonAlphas[t]=nonAlphasIn[t];
+    /**
+     * Encrypts or decrypts letters [start, end) of `letters` in place, using `key`.
+     * Operations start after `startingSegment` segments.<br><br>
+     *
+     * The letters are unpacked into a small window, `PACKED_WINDOW_BLOCKS` blocks at a time, run through the same kernels
+     * as unpacked text, and packed back. Every window starts on a block, so each one is processed as its own segment range.
+     *
+     * @param letters packed letters to process. Can't be null
+     * @param start index of the first letter to process. Must be a multiple of `ParsingPackedLetters.LETTERS_PER_WORD`,
+     *              on the interval [0, end]
+     * @param end index just past the last letter to process. Must be on the interval [start, letters.length()]
+     * @param key key to process with. Can't be null. All indices must be on [0,25]
+     * @param encrypting true if encrypting, false if decrypting
+     * @param startingSegment index to start processing from. Must be non-negative
+     */
+    private void processLetters(ParsingPackedLetters letters, int start, int end, byte[][] key, boolean encrypting,
+                                int startingSegment) {
+        if(letters==null || key==null) {
+            throw new AssertionError("Letters and key cannot be null");
         }
-
-        StringBuilder output = new StringBuilder(text.length());
-        int textIndex=0;
-        int nonAlphasIndex=0;
-        int outputLen=text.length();
-
-        if(text.length() > nonAlphas.length) {
-            System.err.println("WARNING: does 'symbols' have blank spaces accounted for?");
+        if(start<0 || end<start || end>letters.length() || start%ParsingPackedLetters.LETTERS_PER_WORD != 0) {
+            throw new AssertionError("Bounds must be on the interval [0, letters.length()], starting on a word");
         }
 
+        final int WINDOW_LENGTH = PACKED_WINDOW_BLOCKS * StepperAppFields.BLOCK_LENGTH;
+        CharBuffer window = CharBuffer.allocate(Math.min(WINDOW_LENGTH, end - start));
 
-        //all characters from [0..nonAlphasIndex) in text should be already processed
-        //outputLen should equal the input's length, plus the number of symbols added to the output
-        while(nonAlphasIndex < outputLen) {
+        for(int windowStart=start; windowStart<end; windowStart+=WINDOW_LENGTH) {
             if(isCancelled()) {
-                return "";
+                return;
             }
 
-            //If there's a symbol in the current index
-            if(nonAlphas[nonAlphasIndex] > 0) {
-                //If not an apostrophe (ignore the compiler warning)
-                if(!(nonAlphas[nonAlphasIndex]==(char)39 || nonAlphas[nonAlphasIndex]==(char)96 || nonAlphas[nonAlphasIndex]=='’' || nonAlphas[nonAlphasIndex]=='`')) {
-
-                    if( (reinsertingPunctuation) ||
-                            (nonAlphas[nonAlphasIndex]>=48 && nonAlphas[nonAlphasIndex]<=57) ) {
-                        //add to output
-                        output.append((char)nonAlphas[nonAlphasIndex]);
-                    }
-
-                    //empty the symbol
-                    nonAlphas[nonAlphasIndex]=0;
-                }
+            int windowLength = Math.min(WINDOW_LENGTH, end - windowStart);
+            int segment = startingSegment + (windowStart - start) / StepperAppFields.BLOCK_LENGTH;
 
-                outputLen++;
+            letters.unpack(windowStart, windowStart + windowLength, window, 0);
+            if(encrypting) {
+                encrypt(window, 0, windowLength, windowLength, key, segment);
             }
-
-            //If there's no symbol
             else {
-                output.append(text.charAt(textIndex));
-                textIndex++;
-            }
-
-            nonAlphasIndex++;
-        }
-
-
-        //Add the rest of the symbols
-
-        //all characters from [0..nonAlphasIndex) in text should be already processed
-        while(nonAlphasIndex < nonAlphas.length) {
-            if(isCancelled()) {
-                return "";
-            }
-
-            if((nonAlphas[nonAlphasIndex]>0 && reinsertingPunctuation)
-                    || (nonAlphas[nonAlphasIndex])>=48 && nonAlphas[nonAlphasIndex]<=57) {
-                output.append(nonAlphas[nonAlphasIndex]);
+                decrypt(window, 0, windowLength, windowLength, key, segment);
             }
-            nonAlphasIndex++;
+            letters.pack(window, 0, windowStart, windowStart + windowLength);
         }
-
-
-        return output.toString();
     }
 
 
     /**
-     * Returns a version of text without non-alphabetic characters.
-     * The text returned is converted to lowercase.<br><br>
+     * Removes, in place, the non-alphabetic characters in indices [start, end) of `text` that do not belong in the output,
+     * and returns the index just past the last remaining character.<br><br>
+     *
+     * The remaining characters are moved to the front of the range, keeping their order.<br>
      *
-     * WARNING! Not to be confused with removeNonAlnums! This method removes all non-letters, including numbers!
+     * -Letters and numbers always remain.<br>
+     * -Apostrophes (', `, and ’) before the range's last letter are removed. The letters around them are joined,
+     * so "can't" becomes "cant".<br>
+     * -If `reinsertingPunctuation` is true, all other characters remain, including apostrophes after the last letter.
+     * If not, only letters and numbers remain.<br><br>
      *
-     * @param text original input. Can't be null
-     * @return lowercased text without non-alphabetic characters
+     * Example: if the range holds "don't 1-2!" and `reinsertingPunctuation` is true, the range starts with "dont 1-2!"
+     * afterward. If `reinsertingPunctuation` is false, it starts with "dont12".
+     *
+     * @param text text buffer to remove characters from. Can't be null
+     * @param start index of the first character of the range. Must be on the interval [0, end]
+     * @param end index just past the last character of the range. Must be on the interval [start, text.capacity()]
+     * @param reinsertingPunctuation whether to keep punctuation in the output.
+     *                            If false, the function keeps letters and numbers only
+     * @return index just past the last remaining character. Returns `start` if the Worker is cancelled
      */
-    private String removeNonAlphas(String text) {
-        if(text==null) throw new AssertionError("Text can't be null");
-
-        if(isCancelled()) {
-            return "";
+    private int removePunctuation(CharBuffer text, int start, int end, boolean reinsertingPunctuation) {
+        if(text==null) {
+            throw new AssertionError("Text cannot be null");
+        }
+        if(start < 0 || end < start || end > text.capacity()) {
+            throw new AssertionError("Bounds must be on the interval [0, text.capacity()]");
         }
 
-        text=text.toLowerCase();
+        //Find the last letter. Apostrophes before it are removed, since they are between two letters
+        int lastLetterIndex = end-1;
+        while(lastLetterIndex >= start && !isLetter(text.get(lastLetterIndex))) {
+            lastLetterIndex--;
+        }
 
-        StringBuilder output = new StringBuilder(text.length());
-        for(int i=0; i<text.length(); i++) {
+        //All characters in [start, outputEnd) are already in the output
+        int outputEnd = start;
+        for(int i=start; i<end; i++) {
             if(isCancelled()) {
-                return "";
+                return start;
+            }
+
+            char currentChar = text.get(i);
+
+            boolean keeping;
+            if(isLetter(currentChar) || (currentChar>=48 && currentChar<=57)) {
+                keeping = true;
+            }
+            //If an apostrophe (ignore the compiler warning)
+            else if(i<lastLetterIndex && (currentChar==(char)39 || currentChar==(char)96 || currentChar=='’')) {
+                keeping = false;
+            }
+            else {
+                keeping = reinsertingPunctuation;
             }
 
-            if((int)text.charAt(i)>=97 && (int)text.charAt(i)<=122) {
-                output.append(text.charAt(i));
+            if(keeping) {
+                text.put(outputEnd, currentChar);
+                outputEnd++;
             }
         }
 
-        return output.toString();
+        return outputEnd;
     }
 
 
     /**
-     * Returns a copy of `input`, but with spaces removed.<br><br>
+     * Removes, in place, every space between two letters in indices [start, end) of `text`,
+     * and returns the index just past the last remaining character.<br><br>
      *
-     * Any space between two letters is to be removed. All other spaces are to remain in the output.
+     * All other spaces are to remain in the output. A space's neighbors are its neighbors in the Boss's input,
+     * so spaces at the ends of the range use `previousChar` and `nextChar`.<br>
+     * Letters are alphabetic characters, as defined by `Character.isAlphabetic`.
      *
-     * @param input text to remove spaces from
-     * @return copy of input without spaces
+     * @param text text buffer to remove spaces from. Can't be null
+     * @param start index of the first character of the range. Must be on the interval [0, end]
+     * @param end index just past the last character of the range. Must be on the interval [start, text.capacity()]
+     * @param previousChar the character before the range in the Boss's input, or (char)0 if there is none
+     * @param nextChar the character after the range in the Boss's input, or (char)0 if there is none
+     * @return index just past the last remaining character. Returns `start` if the Worker is cancelled
      */
-    private String removeSpaces(String input) {
-        StringBuilder output = new StringBuilder(input.length());
-        output.append(input.charAt(0));
+    private int removeSpaces(CharBuffer text, int start, int end, char previousChar, char nextChar) {
+        if(text==null) {
+            throw new AssertionError("Text cannot be null");
+        }
+        if(start < 0 || end < start || end > text.capacity()) {
+            throw new AssertionError("Bounds must be on the interval [0, text.capacity()]");
+        }
 
-        for(int i=1; i<input.length()-1; i++) {
+        //Characters before index i may already be overwritten, so the original previous character is kept here
+        char previous = previousChar;
 
-            if(! (input.charAt(i)==' '
-                    && Character.isAlphabetic(input.charAt(i-1)) && Character.isAlphabetic(input.charAt(i+1)))) {
-                output.append(input.charAt(i));
+        int outputEnd = start;
+        for(int i=start; i<end; i++) {
+            char current = text.get(i);
+            char next = (i+1 < end) ? text.get(i+1) : nextChar;
+
+            if(! (current==' ' && Character.isAlphabetic(previous) && Character.isAlphabetic(next))) {
+                text.put(outputEnd, current);
+                outputEnd++;
             }
 
+            previous = current;
+
             if(isCancelled()) {
-                return "";
+                return start;
             }
         }
 
-        output.append(input.charAt( input.length()-1 ));
-
-        return output.toString();
+        return outputEnd;
     }
 
 
@@ -942,4 +1052,61 @@ public class ParsingOperationsWorker extends SwingWorker<String,Void> {
         return setKeyBlockPositions(textLength);
     }
 
+
+    /**
+     * Sets the first `count` indices of `keystream` to the shifts of the first `count` letters of a block, whose key
+     * block positions are `keyBlockBasePositions`.<br><br>
+     *
+     * The letter at index `j` of the block is shifted by the sum of key[k][(keyBlockBasePositions[k] + j) % BLOCK_LENGTH]
+     * over every key block `k`, mod 26. When decrypting, the shift is negated (mod 26), so that shifting by it undoes
+     * the encryption. Each shift is on the interval [0,25].<br><br>
+     *
+     * Adding the key blocks one at a time mod 26 gives the same result as adding them all, then taking one mod.
+     *
+     * Helper to the operation functions.
+     *
+     * @param key key to take the shifts from. Can't be null. All indices must be on [0,25]
+     * @param keyBlockBasePositions the block's key block positions. Can't be null. All indices must be on [0, BLOCK_LENGTH)
+     * @param keystream array to write the shifts to. Can't be null. Must hold at least `count` indices
+     * @param count number of letters in the block. Must be on the interval [0, BLOCK_LENGTH]
+     * @param encrypting true if encrypting, false if decrypting
+     */
+    private static void setKeystream(byte[][] key, byte[] keyBlockBasePositions, byte[] keystream, int count, boolean encrypting) {
+        for(int j=0; j<count; j++) {
+            int shift = 0;
+            for(int k=0; k<keyBlockBasePositions.length; k++) {
+                int position = keyBlockBasePositions[k] + j;
+                if(position >= StepperAppFields.BLOCK_LENGTH) {
+                    position -= StepperAppFields.BLOCK_LENGTH;
+                }
+                shift += key[k][position];
+            }
+
+            shift %= 26;
+            keystream[j] = (byte) (encrypting ? shift : (26 - shift) % 26);
+        }
+    }
+
+
+    /**
+     * Replaces each letter at indices `letterPositions[0..count)` of `text` with its lowercase version, shifted forward
+     * in the alphabet by the matching index of `keystream`, wrapping from z to a.<br><br>
+     *
+     * Helper to the operation functions.
+     *
+     * @param text text holding the letters. Can't be null
+     * @param letterPositions text indices of English ASCII letters. Can't be null. Must hold at least `count` indices
+     * @param keystream shifts of the letters, each on the interval [0,25]. Can't be null. Must hold at least `count` indices
+     * @param count number of letters to shift. Cannot be negative
+     */
+    private static void shiftLetters(CharBuffer text, int[] letterPositions, byte[] keystream, int count) {
+        for(int j=0; j<count; j++) {
+            //ASCII letters are lowercased by setting bit 5
+            int currentChar = ((text.get(letterPositions[j]) | 32) - 97) + keystream[j];
+            if(currentChar >= 26) {
+                currentChar -= 26;
+            }
+            text.put(letterPositions[j], (char) (currentChar + 97));
+        }
+    }
 }
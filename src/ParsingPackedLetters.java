@@ -0,0 +1,277 @@
+import java.nio.CharBuffer;
+
+/**
+ * Letter-only text, stored at 5 bits per letter.<br><br>
+ *
+ * Once a job's output is nothing but letters, each character is one of 26 symbols, so three of them fit in one 16-bit word.
+ * Letter `i` is held in bits [5*(i%3), 5*(i%3)+5) of word `i/3`, with a=0, b=1, c=2... z=25. A job that holds its letters
+ * packed takes a third of the memory, and a third of the memory bandwidth, of the same letters in a char buffer.<br><br>
+ *
+ * The words live in a buffer from a ParsingArena, so they are on or off the heap depending on the job's engine.<br>
+ * Writes replace whole words. Threads may write to the same instance at once only if their ranges share no words,
+ * i.e. if every range starts at a multiple of `LETTERS_PER_WORD`.
+ */
+public class ParsingPackedLetters {
+
+    /**
+     * Number of letters held in each 16-bit word
+     */
+    final public static int LETTERS_PER_WORD = 3;
+
+    /**
+     * Number of bits that each letter takes in a word
+     */
+    final private static int BITS_PER_LETTER = 5;
+
+    /**
+     * Mask that keeps the lowest letter of a word
+     */
+    final private static int LETTER_MASK = (1 << BITS_PER_LETTER) - 1;
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Number of letters held. Cannot be negative
+     */
+    final private int length;
+
+    /**
+     * The packed words. Only indices [0, wordsFor(length)) are used. Can't be null
+     */
+    final private CharBuffer words;
+
+
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Creates a ParsingPackedLetters of `length` letters, stored in `words`.<br><br>
+     *
+     * `words` is NOT copied, and its previous contents are not cleared. Its owner must keep it until the letters are no
+     * longer used.
+     *
+     * @param words buffer to store the letters in. Can't be null. Must hold at least `wordsFor(length)` characters
+     * @param length number of letters to hold. Cannot be negative
+     */
+    public ParsingPackedLetters(CharBuffer words, int length) {
+        if(words==null) {
+            throw new AssertionError("Words buffer cannot be null");
+        }
+        if(length<0 || words.capacity() < wordsFor(length)) {
+            throw new AssertionError("Length cannot be negative, and the letters must fit in the words buffer");
+        }
+
+        this.words=words;
+        this.length=length;
+    }
+
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Returns the number of letters held
+     * @return number of letters
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Returns a String containing representations of the fields.
+     * @return String representation of fields
+     */
+    @Override
+    public String toString() {
+        return "Packed letters, length=" + length + ", words=" + wordsFor(length);
+    }
+
+    /**
+     * Returns the buffer that the letters are stored in, so its owner can release it
+     * @return the words buffer
+     */
+    public CharBuffer words() {
+        return words;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Returns the lowercase letter at `index`
+     * @param index index of the letter. Must be on the interval [0, length)
+     * @return the letter, as a lowercase English ASCII character
+     */
+    public char get(int index) {
+        if(index<0 || index>=length) {
+            throw new AssertionError("Index must be on the interval [0, length)");
+        }
+
+        return (char) (((words.get(index / LETTERS_PER_WORD) >> (BITS_PER_LETTER * (index % LETTERS_PER_WORD))) & LETTER_MASK) + 97);
+    }
+
+
+    /**
+     * Packs letters [from, to) from indices [sourceStart, sourceStart + to - from) of `source`, which must hold only
+     * English ASCII letters.<br><br>
+     *
+     * Uppercase letters are stored as lowercase ones. Every word that the range touches is overwritten, so any letters
+     * that share a word with the range are lost, unless `to` is `length`.
+     *
+     * @param source letters to pack. Can't be null
+     * @param sourceStart index of the first letter in `source`. Must be on the interval [0, source.capacity() - (to - from)]
+     * @param from index of the first letter to write. Must be a multiple of `LETTERS_PER_WORD`, on the interval [0, to]
+     * @param to index just past the last letter to write. Must be a multiple of `LETTERS_PER_WORD` or equal `length`
+     */
+    public void pack(CharBuffer source, int sourceStart, int from, int to) {
+        if(source==null) {
+            throw new AssertionError("Source cannot be null");
+        }
+        if(from<0 || to<from || to>length || from%LETTERS_PER_WORD != 0 || (to%LETTERS_PER_WORD != 0 && to != length)) {
+            throw new AssertionError("Range must be on the interval [0, length] and must not split words");
+        }
+        if(sourceStart<0 || sourceStart > source.capacity() - (to-from)) {
+            throw new AssertionError("Source range must fit in the source");
+        }
+
+        int sourceIndex = sourceStart;
+        for(int w = from/LETTERS_PER_WORD; w*LETTERS_PER_WORD < to; w++) {
+            int word = 0;
+            for(int slot=0; slot<LETTERS_PER_WORD && w*LETTERS_PER_WORD + slot < to; slot++) {
+                word |= ((source.get(sourceIndex) | 32) - 97) << (BITS_PER_LETTER * slot);
+                sourceIndex++;
+            }
+            words.put(w, (char) word);
+        }
+    }
+
+
+    /**
+     * Packs every English ASCII letter in indices [start, end) of `text`, in order, into the start of the packed letters.
+     * Returns the number of letters packed. All other characters are skipped.<br><br>
+     *
+     * Uppercase letters are stored as lowercase ones. Characters outside of ASCII are taken with their diacritics removed,
+     * as by `ParsingDiacriticsWorker.normalize`, so letters like "é" are packed as their English letter.
+     *
+     * @param text text to take the letters from. Can't be null. Must not hold more than `length` letters in the range,
+     *             counted with diacritics removed
+     * @param start index of the first character of the range. Must be on the interval [0, end]
+     * @param end index just past the last character of the range. Must be on the interval [start, text.capacity()]
+     * @return number of letters packed
+     */
+    public int packLetters(CharBuffer text, int start, int end) {
+        if(text==null) {
+            throw new AssertionError("Text cannot be null");
+        }
+        if(start<0 || end<start || end>text.capacity()) {
+            throw new AssertionError("Bounds must be on the interval [0, text.capacity()]");
+        }
+
+        int letterCount = 0;
+        int word = 0;
+        int slot = 0;
+        for(int i=start; i<end; i++) {
+            char currentChar = text.get(i);
+            if(currentChar >= 128) {
+                currentChar = ParsingDiacriticsWorker.normalize(currentChar);
+            }
+            if(!((currentChar>=65 && currentChar<=90) || (currentChar>=97 && currentChar<=122))) {
+                continue;
+            }
+            if(letterCount == length) {
+                throw new AssertionError("Text holds more than `length` letters");
+            }
+
+            word |= ((currentChar | 32) - 97) << (BITS_PER_LETTER * slot);
+            letterCount++;
+            slot++;
+
+            if(slot == LETTERS_PER_WORD) {
+                words.put(letterCount/LETTERS_PER_WORD - 1, (char) word);
+                word = 0;
+                slot = 0;
+            }
+        }
+
+        //The last word may be partly filled
+        if(slot > 0) {
+            words.put(letterCount/LETTERS_PER_WORD, (char) word);
+        }
+
+        return letterCount;
+    }
+
+
+    /**
+     * Unpacks letters [from, to) into `destination` as lowercase English ASCII characters,
+     * starting at index `destinationStart`.
+     *
+     * @param from index of the first letter to unpack. Must be on the interval [0, to]
+     * @param to index just past the last letter to unpack. Must be on the interval [from, length]
+     * @param destination buffer to write the letters to. Can't be null
+     * @param destinationStart index in `destination` to write the first letter to.
+     *                         Must be on the interval [0, destination.capacity() - (to - from)]
+     */
+    public void unpack(int from, int to, CharBuffer destination, int destinationStart) {
+        if(destination==null) {
+            throw new AssertionError("Destination cannot be null");
+        }
+        if(from<0 || to<from || to>length) {
+            throw new AssertionError("Range must be on the interval [0, length]");
+        }
+        if(destinationStart<0 || destinationStart > destination.capacity() - (to-from)) {
+            throw new AssertionError("Destination range must fit in the destination");
+        }
+        if(from==to) {
+            return;
+        }
+
+        int word = words.get(from / LETTERS_PER_WORD) >> (BITS_PER_LETTER * (from % LETTERS_PER_WORD));
+        for(int i=from; i<to; i++) {
+            if(i % LETTERS_PER_WORD == 0) {
+                word = words.get(i / LETTERS_PER_WORD);
+            }
+
+            destination.put(destinationStart + i - from, (char) ((word & LETTER_MASK) + 97));
+            word >>= BITS_PER_LETTER;
+        }
+    }
+
+
+    /**
+     * Unpacks letters [from, to) into `destination` as lowercase English ASCII characters,
+     * starting at index `destinationStart`.
+     *
+     * @param from index of the first letter to unpack. Must be on the interval [0, to]
+     * @param to index just past the last letter to unpack. Must be on the interval [from, length]
+     * @param destination array to write the letters to. Can't be null
+     * @param destinationStart index in `destination` to write the first letter to.
+     *                         Must be on the interval [0, destination.length - (to - from)]
+     */
+    public void unpack(int from, int to, char[] destination, int destinationStart) {
+        if(destination==null) {
+            throw new AssertionError("Destination cannot be null");
+        }
+
+        unpack(from, to, CharBuffer.wrap(destination), destinationStart);
+    }
+
+
+    /**
+     * Returns the number of words needed to hold `length` letters
+     * @param length number of letters. Cannot be negative
+     * @return number of 16-bit words
+     */
+    public static int wordsFor(int length) {
+        if(length<0) {
+            throw new AssertionError("Length cannot be negative");
+        }
+
+        return (int) (((long) length + LETTERS_PER_WORD - 1) / LETTERS_PER_WORD);
+    }
+}
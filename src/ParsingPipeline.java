@@ -0,0 +1,936 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Streams a text file through the cipher in chunks, without ever holding the whole text. Created by a Boss for one job,
+ * and run on the Boss's thread.<br><br>
+ *
+ * The pipeline has three stages that overlap:<br>
+ * -Reading: the input file is read ahead with asynchronous reads into a ring of byte buffers. Each buffer is decoded
+ * into the chunk being filled as soon as its read completes, and is then reused for the next read.<br>
+ * -Computing: a full chunk is classified into its own ParsingCharIndex and cut just after its last block-completing
+ * letter. The chunk up to the cut goes to an Operations Worker, and the rest is carried into the next chunk. Since every
+ * chunk but the last holds whole blocks, each Worker's starting block and number count follow from the letters and digits
+ * before its chunk, exactly like the pieces of a Boss's text. Up to `threads` Workers run at once.<br>
+ * -Writing: the oldest chunk's output is encoded and written with an asynchronous write at the next offset of the output
+ * file, in order. The next chunk is encoded while that write is in flight. Its text buffer is then recycled for a new chunk.<br><br>
+ *
+ * Either end may be a stream instead of a file, e.g. a compressed file. A Stream Worker then reads or writes the stream
+ * on its own thread, and hands blocks of bytes to or from the pipeline, so inflating and deflating overlap with the
+ * other stages as well.<br><br>
+ *
+ * The output is the same as a Boss's output for the whole file, including the line break normalization and the "\n"
+ * added to the last line. A chunk that has no block end to cut at grows until it has one, so memory stays bounded unless
+ * the input has very long runs without letters.
+ */
+public class ParsingPipeline {
+
+    /**
+     * Default number of characters in one chunk, not counting the final line break. Must be positive
+     */
+    final public static int CHUNK_LENGTH = 1 << 20;
+
+    /**
+     * Number of bytes that are read from the input file at once. Must be positive
+     */
+    final private static int READ_LENGTH = 1 << 18;
+
+    /**
+     * Number of reads that are in flight at once, i.e. the length of the read-ahead ring. Must be positive
+     */
+    final private static int READ_BUFFERS = 4;
+
+    /**
+     * Number of characters that are decoded at once, before their line breaks are normalized into the chunk. Must be positive
+     */
+    final private static int WINDOW_LENGTH = 8192;
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * True if the last character decoded was "\r", so a "\n" right after it is dropped
+     */
+    private boolean afterCarriageReturn;
+
+    /**
+     * The job's arena, which every chunk buffer comes from. Can't be null
+     */
+    final private ParsingArena arena;
+
+    /**
+     * The chunk being filled. Null before the first chunk is taken
+     */
+    private CharBuffer chunk;
+
+    /**
+     * Number of characters in a full chunk. Grows if a chunk has nowhere to be cut. Must be positive
+     */
+    private int chunkCapacity;
+
+    /**
+     * Number of characters in the chunk being filled. Must be on the interval [0, chunkCapacity]
+     */
+    private int chunkEnd;
+
+    /**
+     * Number of chunks given to Operations Workers so far. Used to name the Workers
+     */
+    private long chunkNumber;
+
+    /**
+     * Decodes the input in the platform's default charset, replacing malformed input like a Boss's reader does. Can't be null
+     */
+    final private CharsetDecoder decoder;
+
+    /**
+     * Number of digits in the chunks given to Operations Workers so far
+     */
+    private long digitsBefore;
+
+    /**
+     * Encodes the output in the platform's default charset. Can't be null
+     */
+    final private CharsetEncoder encoder;
+
+    /**
+     * True if encrypting, false if decrypting
+     */
+    final private boolean encrypting;
+
+    /**
+     * Holds the next chunk's output while it is encoded. Swapped with `writingBytes` when the chunk is written.
+     * Allocated once per run, at `outputBlockLength()` bytes. Null unless the output is `outputChannel`
+     */
+    private ByteBuffer encodingBytes;
+
+    /**
+     * The engine to run the Operations Workers on. Can't be null
+     */
+    final private ParsingEngine engine;
+
+    /**
+     * Chunk buffers whose output was written, ready to hold a new chunk. Can't be null
+     */
+    final private ArrayDeque<CharBuffer> freeChunks;
+
+    /**
+     * The key blocks, as given by the Boss's createKeyBlocks. Can't be null
+     */
+    final private byte[][] key;
+
+    /**
+     * The last character decoded, after line breaks are normalized. 0 if nothing was decoded yet
+     */
+    private char lastChar;
+
+    /**
+     * Number of bytes read from the input so far. Shared with the pipeline's caller. Written only by the pipeline's
+     * thread, and read by any thread to follow the job's progress
+     */
+    final private AtomicLong inputBytes;
+
+    /**
+     * The Worker that reads the input stream. Null if the input is read from a file channel
+     */
+    private ParsingStreamWorker inputWorker;
+
+    /**
+     * Number of letters in the chunks given to Operations Workers so far. Always a multiple of the block length
+     * until the last chunk is given
+     */
+    private long lettersBefore;
+
+    /**
+     * The output file. Null if not running, or if the output goes to `outputWorker`
+     */
+    private AsynchronousFileChannel outputChannel;
+
+    /**
+     * Number of characters written to the output so far
+     */
+    private long outputChars;
+
+    /**
+     * Offset of the output file that the next chunk's output is written at
+     */
+    private long outputPosition;
+
+    /**
+     * The Worker that writes the output stream. Null if the output goes to a file channel
+     */
+    private ParsingStreamWorker outputWorker;
+
+    /**
+     * Bytes read from the input that weren't decoded yet, in write mode. Holds at most a partial character
+     * between reads. Can't be null
+     */
+    final private ByteBuffer pendingBytes;
+
+    /**
+     * The write in flight, of `writingBytes`. Null if no write is in flight
+     */
+    private Future<Integer> pendingWrite;
+
+    /**
+     * Offset of the output file that the write in flight started at
+     */
+    private long pendingWritePosition;
+
+    /**
+     * The input character just before the chunk being filled, with diacritics removed. 0 at the start of the input
+     */
+    private char previousChar;
+
+    /**
+     * 0 if including punctuation, 1 if excluding spaces, 2 if alphabetic characters only
+     */
+    final private byte punctMode;
+
+    /**
+     * Maximum number of Operations Workers that run at once. Must be positive
+     */
+    final private int threads;
+
+    /**
+     * Decoded characters whose line breaks aren't normalized yet. Can't be null
+     */
+    final private CharBuffer window;
+
+    /**
+     * The chunks that Operations Workers are processing, in input order. Index i belongs to the i-th Worker of
+     * `workers`. Can't be null
+     */
+    final private ArrayDeque<CharBuffer> workerChunks;
+
+    /**
+     * The Operations Workers that are processing chunks, in input order. Can't be null
+     */
+    final private ArrayDeque<ParsingOperationsWorker> workers;
+
+    /**
+     * Holds the output of the write in flight. Allocated once per run, at `outputBlockLength()` bytes. Null unless
+     * the output is `outputChannel`
+     */
+    private ByteBuffer writingBytes;
+
+
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Creates a ParsingPipeline that processes chunks of `CHUNK_LENGTH` characters.
+     * @param engine the engine to run the Workers on. Can't be null
+     * @param arena the job's arena. Can't be null
+     * @param key the key blocks, as given by the Boss's createKeyBlocks. Can't be null
+     * @param encrypting true if encrypting, false if decrypting
+     * @param punctMode 0 if including punctuation, 1 if excluding spaces, 2 if alphabetic characters only
+     * @param threads maximum number of Operations Workers to run at once. Must be positive
+     * @param inputBytes the counter to add the bytes read from the input to. Can't be null
+     */
+    public ParsingPipeline(ParsingEngine engine, ParsingArena arena, byte[][] key, boolean encrypting, byte punctMode,
+                           int threads, AtomicLong inputBytes) {
+        this(engine, arena, key, encrypting, punctMode, threads, CHUNK_LENGTH, inputBytes);
+    }
+
+    /**
+     * Creates a ParsingPipeline that processes chunks of `chunkLength` characters.<br><br>
+     *
+     * Small chunks are mostly useful for testing the chunk boundaries.
+     *
+     * @param engine the engine to run the Workers on. Can't be null
+     * @param arena the job's arena. Can't be null
+     * @param key the key blocks, as given by the Boss's createKeyBlocks. Can't be null
+     * @param encrypting true if encrypting, false if decrypting
+     * @param punctMode 0 if including punctuation, 1 if excluding spaces, 2 if alphabetic characters only
+     * @param threads maximum number of Operations Workers to run at once. Must be positive
+     * @param chunkLength number of characters in one chunk. Must be on the interval [1, arena.maxBufferLength())
+     * @param inputBytes the counter to add the bytes read from the input to. Can't be null
+     */
+    public ParsingPipeline(ParsingEngine engine, ParsingArena arena, byte[][] key, boolean encrypting, byte punctMode,
+                           int threads, int chunkLength, AtomicLong inputBytes) {
+        if(engine==null || arena==null || key==null || inputBytes==null) {
+            throw new AssertionError("Engine, arena, key, and input byte counter cannot be null");
+        }
+        if(punctMode<0 || punctMode>2 || threads<=0) {
+            throw new AssertionError("Punctuation mode must be on [0,2] and threads must be positive");
+        }
+        if(chunkLength<=0 || chunkLength>=arena.maxBufferLength()) {
+            throw new AssertionError("Chunk length must be on the interval [1, arena.maxBufferLength())");
+        }
+
+        //Make a deep copy of the key. The engine and arena are shared with the job, so they are not copied
+        this.key = new byte[key.length][];
+        for(int a=0; a<key.length; a++) {
+            if(key[a]==null) {
+                throw new AssertionError("No index in the key can be null");
+            }
+            this.key[a] = key[a].clone();
+        }
+
+        this.engine = engine;
+        this.arena = arena;
+        this.encrypting = encrypting;
+        this.punctMode = punctMode;
+        this.threads = threads;
+        this.chunkCapacity = chunkLength;
+        this.inputBytes = inputBytes;
+
+        this.decoder = Charset.defaultCharset().newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.encoder = Charset.defaultCharset().newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        //Room for a whole read, plus a partial character left over from the read before
+        this.pendingBytes = ByteBuffer.allocate(READ_LENGTH + 16);
+        this.window = CharBuffer.allocate(WINDOW_LENGTH);
+
+        this.freeChunks = new ArrayDeque<>();
+        this.workerChunks = new ArrayDeque<>();
+        this.workers = new ArrayDeque<>();
+    }
+
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Returns the number of bytes read from the input so far. Safe to call from any thread while the pipeline runs
+     * @return bytes read
+     */
+    public long inputBytes() {
+        return inputBytes.get();
+    }
+
+    /**
+     * Returns the number of bytes that the output of one chunk can take, once encoded. A Writing Stream Worker should
+     * circulate blocks of this length, so every chunk's output fits in the block it is handed.<br><br>
+     *
+     * Only grows if a chunk has to grow because it has no block end to cut at.
+     *
+     * @return length of an output block, in bytes
+     */
+    public int outputBlockLength() {
+        return outputBlockLength(chunkCapacity, encoder.maxBytesPerChar());
+    }
+
+    /**
+     * Returns the number of bytes that the output of one chunk of `chunkLength` characters can take, once encoded with
+     * at most `maxBytesPerChar` bytes per character. Used to estimate a pipeline's memory before it is created.
+     * @param chunkLength number of characters in one chunk. Must be positive
+     * @param maxBytesPerChar most bytes that the output's charset encodes one character to. Must be positive
+     * @return length of an output block, in bytes
+     */
+    public static int outputBlockLength(int chunkLength, float maxBytesPerChar) {
+        if(chunkLength<=0 || maxBytesPerChar<=0) {
+            throw new AssertionError("Chunk length and bytes per character must be positive");
+        }
+
+        //The chunk has room for one more character than its length, and the encoder may flush a few bytes at the end
+        return (int) Math.min(Integer.MAX_VALUE - 16, (long) Math.ceil((chunkLength + 1L) * (double) maxBytesPerChar) + 16);
+    }
+
+    /**
+     * Returns a String containing representations of the pipeline's fields.
+     * @return String representation of fields
+     */
+    @Override
+    public String toString() {
+        return "Pipeline with " + workers.size() + " of " + threads + " workers running, chunk length=" + chunkCapacity
+                + ", encrypting=" + encrypting + ", punctuation=" + punctMode + ", output characters=" + outputChars;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Processes all of the file `input` and writes the output to the file `output`, starting at its first byte. Returns
+     * the output's length, in characters.<br><br>
+     *
+     * Same as `run` with no Stream Workers.
+     *
+     * @param input the input file, open for reading. Can't be null
+     * @param output the output file, open for writing. Should be empty. Can't be null
+     * @return length of the output, in characters
+     * @throws IOException if the input can't be read, the output can't be written, or a Worker fails
+     * @throws InterruptedException if interrupted while waiting for a read, a Worker, or a write
+     */
+    public long run(AsynchronousFileChannel input, AsynchronousFileChannel output) throws IOException, InterruptedException {
+        if(input==null || output==null) {
+            throw new AssertionError("Input and output cannot be null");
+        }
+
+        return run(input, null, output, null);
+    }
+
+
+    /**
+     * Processes all of the input and writes the output, starting at the output file's first byte or the output stream's
+     * start. Returns the output's length, in characters.<br><br>
+     *
+     * The input comes from either `inputChannel`, read up to the size it has when the method is called, or `inputWorker`.
+     * The output goes to either `outputChannel` or `outputWorker`. The method starts both Stream Workers on the engine's
+     * stream threads, so reading and writing a stream (e.g. decompressing and compressing) run on their own threads,
+     * overlapping with the Operations Workers. The output Worker has finished and closed its stream when the method returns.<br>
+     * Every chunk buffer is given back to the arena before the method returns. If the method is interrupted or fails,
+     * the running Workers are cancelled.
+     *
+     * @param inputChannel the input file, open for reading. Null if and only if `inputWorker` is not null
+     * @param inputWorker a Reading Stream Worker that wasn't started. Null if and only if `inputChannel` is not null
+     * @param outputChannel the output file, open for writing. Should be empty. Null if and only if `outputWorker` is not null
+     * @param outputWorker a Writing Stream Worker that wasn't started. Null if and only if `outputChannel` is not null
+     * @return length of the output, in characters
+     * @throws IOException if the input can't be read, the output can't be written, or a Worker fails
+     * @throws InterruptedException if interrupted while waiting for a read, a Worker, or a write
+     */
+    public long run(AsynchronousFileChannel inputChannel, ParsingStreamWorker inputWorker,
+                    AsynchronousFileChannel outputChannel, ParsingStreamWorker outputWorker)
+            throws IOException, InterruptedException {
+        if((inputChannel==null) == (inputWorker==null) || (outputChannel==null) == (outputWorker==null)) {
+            throw new AssertionError("Exactly one input and one output must be given");
+        }
+
+        this.outputChannel = outputChannel;
+        this.inputWorker = inputWorker;
+        this.outputWorker = outputWorker;
+
+        //Only an output file is written from the pipeline's own blocks, which have room for the output of the longest
+        //chunk. A Writing Worker hands back its own blocks instead
+        if(outputChannel!=null) {
+            encodingBytes = ByteBuffer.allocate(outputBlockLength());
+            writingBytes = ByteBuffer.allocate(outputBlockLength());
+        }
+        try {
+            if(inputWorker!=null) {
+                engine.executeStream(inputWorker);
+            }
+            if(outputWorker!=null) {
+                engine.executeStream(outputWorker);
+            }
+
+            if(inputChannel!=null) {
+                readChannel(inputChannel);
+            }
+            else {
+                readWorker();
+            }
+
+            finish();
+            return outputChars;
+        }
+        finally {
+            close();
+        }
+    }
+
+
+    /**
+     * Decodes `bytes` into the chunk being filled, normalizing line breaks, and gives each chunk that fills up to an
+     * Operations Worker.<br><br>
+     *
+     * Helper to run.
+     *
+     * @param bytes the next bytes of the input, in read mode. Can't be null
+     * @param endOfInput true if no bytes come after `bytes`
+     * @throws IOException if a Worker fails, or the output can't be written
+     * @throws InterruptedException if interrupted while waiting for a Worker or a write
+     */
+    private void acceptBytes(ByteBuffer bytes, boolean endOfInput) throws IOException, InterruptedException {
+        do {
+            //Move as many bytes as fit behind the undecoded ones
+            int count = Math.min(pendingBytes.remaining(), bytes.remaining());
+            pendingBytes.put(pendingBytes.position(), bytes, bytes.position(), count);
+            pendingBytes.position(pendingBytes.position() + count);
+            bytes.position(bytes.position() + count);
+
+            pendingBytes.flip();
+            boolean lastBytes = endOfInput && !bytes.hasRemaining();
+            CoderResult result;
+            do {
+                result = decoder.decode(pendingBytes, window, lastBytes);
+                if(result.isError()) {
+                    result.throwException();
+                }
+                acceptWindow();
+            } while(result.isOverflow());
+            pendingBytes.compact();
+        } while(bytes.hasRemaining());
+
+        if(endOfInput) {
+            CoderResult result;
+            do {
+                result = decoder.flush(window);
+                acceptWindow();
+            } while(result.isOverflow());
+        }
+    }
+
+
+    /**
+     * Moves the decoded characters in `window` into the chunk being filled, normalizing line breaks, and gives the chunk
+     * to an Operations Worker each time it fills up.<br><br>
+     *
+     * Line breaks become "\n": "\r\n", "\r", "\u2028", "\u2029", and "\u0085" are line breaks.<br><br>
+     *
+     * Helper to acceptBytes.
+     *
+     * @throws IOException if a Worker fails, or the output can't be written
+     * @throws InterruptedException if interrupted while waiting for a Worker or a write
+     */
+    private void acceptWindow() throws IOException, InterruptedException {
+        int decodedLength = window.position();
+        if(decodedLength == 0) {
+            return;
+        }
+
+        char[] decodedChars = window.array();
+        boolean endsWithCarriageReturn = (decodedChars[decodedLength-1]=='\r');
+        int normalizedLength = ParsingDiacriticsWorker.normalizeLineBreaks(decodedChars, 0, decodedLength,
+                afterCarriageReturn);
+        afterCarriageReturn = endsWithCarriageReturn;
+
+        //Fill the chunk with as much of the window as fits, and dispatch it once it is full
+        int copied = 0;
+        while(copied < normalizedLength) {
+            if(chunk==null) {
+                chunk = takeChunk();
+            }
+            int count = Math.min(normalizedLength - copied, chunkCapacity - chunkEnd);
+            chunk.put(chunkEnd, decodedChars, copied, count);
+            chunkEnd += count;
+            copied += count;
+            lastChar = decodedChars[copied-1];
+
+            if(chunkEnd == chunkCapacity) {
+                dispatchChunk(false);
+            }
+        }
+        window.clear();
+    }
+
+
+    /**
+     * Waits for the read of `bytes` to finish, and reads the rest of its range if the read stopped short. Returns `bytes`
+     * in read mode.<br><br>
+     *
+     * Helper to run.
+     *
+     * @param input the input file. Can't be null
+     * @param bytes the buffer being read into. Can't be null
+     * @param position offset of the input file that the read started at
+     * @param read the read in flight. Can't be null
+     * @return `bytes`, flipped
+     * @throws IOException if the input can't be read
+     * @throws InterruptedException if interrupted while waiting for the read
+     */
+    private ByteBuffer awaitRead(AsynchronousFileChannel input, ByteBuffer bytes, long position, Future<Integer> read)
+            throws IOException, InterruptedException {
+        try {
+            int bytesRead = read.get();
+            while(bytesRead >= 0 && bytes.hasRemaining()) {
+                bytesRead = input.read(bytes, position + bytes.position()).get();
+            }
+        }
+        catch(ExecutionException e) {
+            throw new IOException("The input file could not be read", e.getCause());
+        }
+        return bytes.flip();
+    }
+
+
+    /**
+     * Cancels the running Workers, abandons the write in flight, gives every chunk buffer back to the arena, and drops
+     * the output blocks.<br><br>
+     *
+     * Helper to run.
+     */
+    private void close() {
+        for(ParsingOperationsWorker worker : workers) {
+            worker.cancel(true);
+        }
+        workers.clear();
+
+        for(ParsingStreamWorker streamWorker : new ParsingStreamWorker[] {inputWorker, outputWorker}) {
+            if(streamWorker!=null && !streamWorker.isDone()) {
+                streamWorker.cancel(true);
+            }
+        }
+        inputWorker = null;
+        outputWorker = null;
+
+        if(pendingWrite!=null) {
+            pendingWrite.cancel(false);
+            pendingWrite = null;
+        }
+
+        for(CharBuffer buffer : workerChunks) {
+            arena.release(buffer);
+        }
+        workerChunks.clear();
+        for(CharBuffer buffer : freeChunks) {
+            arena.release(buffer);
+        }
+        freeChunks.clear();
+        if(chunk!=null) {
+            arena.release(chunk);
+            chunk = null;
+        }
+        outputChannel = null;
+        encodingBytes = null;
+        writingBytes = null;
+    }
+
+
+    /**
+     * Classifies the chunk being filled, cuts it just after its last block-completing letter, and gives the chunk up to
+     * the cut to an Operations Worker. The rest is carried into a new chunk. If `last`, the whole chunk is given.<br><br>
+     *
+     * A cut always leaves at least one character behind, since the Worker needs the character after its range. If a full
+     * chunk has no place to cut, it is grown instead, and given later.<br>
+     * Once `threads` Workers are running, waits for the oldest and writes its output.<br><br>
+     *
+     * Helper to acceptWindow and finish.
+     *
+     * @param last true if the chunk ends the input
+     * @throws IOException if a Worker fails, the output can't be written, or a chunk can't grow any more
+     * @throws InterruptedException if interrupted while waiting for a Worker or a write
+     */
+    private void dispatchChunk(boolean last) throws IOException, InterruptedException {
+        ParsingCharIndex index = new ParsingCharIndex(chunkEnd);
+        boolean ascii = ParsingDiacriticsWorker.classifyNormalized(chunk, index, 0, chunkEnd);
+        index.updateRanks();
+
+        int cut = last ? chunkEnd : blockCut(index);
+        if(cut < 0) {
+            growChunk();
+            return;
+        }
+
+        //The Worker may overwrite its range as soon as it starts, so read its neighbors and carry the rest first
+        char nextChar = (cut < chunkEnd) ? ParsingDiacriticsWorker.normalize(chunk.get(cut)) : (char)0;
+        char lastCutChar = ParsingDiacriticsWorker.normalize(chunk.get(cut-1));
+
+        CharBuffer nextChunk = null;
+        if(cut < chunkEnd) {
+            nextChunk = takeChunk();
+            nextChunk.put(0, chunk, cut, chunkEnd - cut);
+        }
+
+        //Every chunk before this one holds whole blocks, and the number pass repeats with the flattened key
+        if(lettersBefore / StepperAppFields.BLOCK_LENGTH > Integer.MAX_VALUE) {
+            throw new IOException("The input file has too many letters to stream");
+        }
+        int startBlock = (int) (lettersBefore / StepperAppFields.BLOCK_LENGTH);
+        int numberStartIndex = (int) (digitsBefore % (StepperAppFields.BLOCK_COUNT * StepperAppFields.BLOCK_LENGTH));
+
+        ParsingOperationsWorker worker = new ParsingOperationsWorker(
+                chunk, index, 0, cut, previousChar, nextChar, !ascii, key, encrypting, punctMode,
+                startBlock, numberStartIndex, Long.toString(chunkNumber));
+        workers.add(worker);
+        workerChunks.add(chunk);
+        engine.execute(worker);
+        chunkNumber++;
+
+        lettersBefore += index.letterRank(cut);
+        digitsBefore += index.digitRank(cut);
+        previousChar = lastCutChar;
+        chunkEnd -= cut;
+        chunk = nextChunk;
+
+        while(workers.size() >= threads) {
+            writeOldest();
+        }
+    }
+
+
+    /**
+     * Returns the index just past the last letter of the chunk being filled that completes a block, with at least one
+     * character after it. Returns -1 if there is no such letter.<br><br>
+     *
+     * Helper to dispatchChunk.
+     *
+     * @param index the chunk's character index, with ranks up to date. Can't be null
+     * @return index to cut the chunk at, or -1
+     */
+    private int blockCut(ParsingCharIndex index) {
+        //Letters of the chunk up to the last block end, counting the blocks of the chunks before it
+        long letters = lettersBefore + index.letterCount();
+        int rank = (int) (letters - letters % StepperAppFields.BLOCK_LENGTH - lettersBefore) - 1;
+
+        while(rank >= 0) {
+            int cut = index.letterSelect(rank) + 1;
+            if(cut < chunkEnd) {
+                return cut;
+            }
+            rank -= StepperAppFields.BLOCK_LENGTH;
+        }
+        return -1;
+    }
+
+
+    /**
+     * Adds the "\n" that ends the last line, if missing, gives the last chunk to an Operations Worker, and writes the
+     * output of every Worker still running. Waits for the Writing Worker to finish its stream.<br><br>
+     *
+     * Helper to run.
+     *
+     * @throws IOException if a Worker fails, or the output can't be written
+     * @throws InterruptedException if interrupted while waiting for a Worker or a write
+     */
+    private void finish() throws IOException, InterruptedException {
+        acceptBytes(ByteBuffer.allocate(0), true);
+
+        //The last line ends with a line break, like every other line. The chunk always has room for one more character
+        if(lastChar!=0 && lastChar!='\n') {
+            if(chunk==null) {
+                chunk = takeChunk();
+            }
+            chunk.put(chunkEnd, '\n');
+            chunkEnd++;
+        }
+
+        if(chunkEnd > 0) {
+            dispatchChunk(true);
+        }
+        while(!workers.isEmpty()) {
+            writeOldest();
+        }
+        finishWrite();
+
+        //An empty block tells the Writing Worker to finish its stream
+        if(outputWorker!=null) {
+            outputWorker.give(ByteBuffer.allocate(0));
+            outputWorker.awaitResult();
+        }
+    }
+
+
+    /**
+     * Waits for the write in flight to finish, and writes the rest of its bytes if it stopped short.<br><br>
+     *
+     * Helper to writeOldest and finish.
+     *
+     * @throws IOException if the output can't be written
+     * @throws InterruptedException if interrupted while waiting for the write
+     */
+    private void finishWrite() throws IOException, InterruptedException {
+        if(pendingWrite==null) {
+            return;
+        }
+
+        try {
+            pendingWrite.get();
+            while(writingBytes.hasRemaining()) {
+                outputChannel.write(writingBytes, pendingWritePosition + writingBytes.position()).get();
+            }
+        }
+        catch(ExecutionException e) {
+            throw new IOException("The output file could not be written", e.getCause());
+        }
+        finally {
+            pendingWrite = null;
+        }
+    }
+
+
+    /**
+     * Doubles the length of the chunk being filled, keeping its characters.<br><br>
+     *
+     * Helper to dispatchChunk.
+     *
+     * @throws IOException if the chunk can't grow any more
+     */
+    private void growChunk() throws IOException {
+        if(chunkCapacity >= arena.maxBufferLength() - 1) {
+            throw new IOException("The input file has too long a run without letters to stream");
+        }
+
+        chunkCapacity = (int) Math.min(2L*chunkCapacity, arena.maxBufferLength() - 1);
+        CharBuffer grownChunk = arena.allocate(chunkCapacity + 1);
+        grownChunk.put(0, chunk, 0, chunkEnd);
+        arena.release(chunk);
+        chunk = grownChunk;
+    }
+
+
+    /**
+     * Starts reading the next bytes of the input into `bytes`, and records the read as read `i` of the ring. Records no
+     * read if the input was read up to `inputSize`. Returns the offset just past the bytes that will be read.<br><br>
+     *
+     * Helper to run.
+     *
+     * @param input the input file. Can't be null
+     * @param bytes buffer to read into. Can't be null
+     * @param readPositions offset of the input that each read of the ring starts at. Can't be null
+     * @param readFutures each read of the ring in flight, or null. Can't be null
+     * @param i index of the read in the ring
+     * @param position offset of the input to read from
+     * @param inputSize number of bytes of the input to read
+     * @return offset just past the bytes that will be read
+     */
+    private long issueRead(AsynchronousFileChannel input, ByteBuffer bytes, long[] readPositions,
+                           ArrayList<Future<Integer>> readFutures, int i, long position, long inputSize) {
+        if(position >= inputSize) {
+            readFutures.set(i, null);
+            return position;
+        }
+
+        bytes.clear().limit((int) Math.min(READ_LENGTH, inputSize - position));
+        readPositions[i] = position;
+        readFutures.set(i, input.read(bytes, position));
+        return position + bytes.limit();
+    }
+
+
+    /**
+     * Reads all of `input` ahead into the ring of read buffers, and decodes each read in order as it completes.
+     * Each read buffer is reused for the next read once it is decoded.<br><br>
+     *
+     * Helper to run.
+     *
+     * @param input the input file. Can't be null
+     * @throws IOException if the input can't be read, a Worker fails, or the output can't be written
+     * @throws InterruptedException if interrupted while waiting for a read, a Worker, or a write
+     */
+    private void readChannel(AsynchronousFileChannel input) throws IOException, InterruptedException {
+        long inputSize = input.size();
+
+        //Fill the read-ahead ring
+        ByteBuffer[] reads = new ByteBuffer[READ_BUFFERS];
+        long[] readPositions = new long[READ_BUFFERS];
+        ArrayList<Future<Integer>> readFutures = new ArrayList<>(READ_BUFFERS);
+        long nextReadPosition = 0;
+        for(int i=0; i<READ_BUFFERS; i++) {
+            reads[i] = ByteBuffer.allocate(READ_LENGTH);
+            readFutures.add(null);
+            nextReadPosition = issueRead(input, reads[i], readPositions, readFutures, i, nextReadPosition, inputSize);
+        }
+
+        //Decode each read in order, and reuse its buffer for the next read
+        for(int i=0; readFutures.get(i)!=null; i=(i+1)%READ_BUFFERS) {
+            ByteBuffer bytes = awaitRead(input, reads[i], readPositions[i], readFutures.get(i));
+            inputBytes.addAndGet(bytes.remaining());
+            acceptBytes(bytes, false);
+            nextReadPosition = issueRead(input, reads[i], readPositions, readFutures, i, nextReadPosition, inputSize);
+        }
+    }
+
+
+    /**
+     * Decodes each block that `inputWorker` reads, in order, and hands each block back once it is decoded.<br><br>
+     *
+     * Helper to run.
+     *
+     * @throws IOException if the input stream fails, a Worker fails, or the output can't be written
+     * @throws InterruptedException if interrupted while waiting for a block, a Worker, or a write
+     */
+    private void readWorker() throws IOException, InterruptedException {
+        for(ByteBuffer block = inputWorker.take(); block.hasRemaining(); block = inputWorker.take()) {
+            inputBytes.addAndGet(block.remaining());
+            acceptBytes(block, false);
+            inputWorker.give(block);
+        }
+
+        //The stream ended, or its Worker failed
+        inputWorker.awaitResult();
+    }
+
+
+    /**
+     * Returns a buffer that can hold a chunk of `chunkCapacity` characters, plus a final line break. Recycles the
+     * buffer of a written chunk if one is big enough.<br><br>
+     *
+     * Helper to acceptWindow, dispatchChunk, and finish.
+     *
+     * @return an empty chunk buffer
+     */
+    private CharBuffer takeChunk() {
+        while(!freeChunks.isEmpty()) {
+            CharBuffer buffer = freeChunks.poll();
+            if(buffer.capacity() > chunkCapacity) {
+                return buffer;
+            }
+            arena.release(buffer);
+        }
+        return arena.allocate(chunkCapacity + 1);
+    }
+
+
+    /**
+     * Waits for the oldest Operations Worker, encodes its output while the write before it is in flight, and starts writing
+     * it at the next offset of the output file, or hands it to the Writing Worker. The Worker's chunk buffer is then
+     * recycled.<br><br>
+     *
+     * Helper to dispatchChunk and finish.
+     *
+     * @throws IOException if the Worker failed, or the output can't be written
+     * @throws InterruptedException if interrupted while waiting for the Worker or a write
+     */
+    private void writeOldest() throws IOException, InterruptedException {
+        ParsingOperationsWorker worker = workers.peek();
+        int outputLength;
+        try {
+            outputLength = worker.get();
+        }
+        catch(ExecutionException e) {
+            throw new IOException("A chunk of the input could not be processed", e.getCause());
+        }
+        workers.poll();
+        CharBuffer output = workerChunks.poll();
+
+        //A Writing Worker hands back blocks that it wrote, which hold the next output instead. Only a chunk that grew
+        //can outgrow a block, so each block is replaced at most once per growth
+        ByteBuffer bytes = (outputWorker!=null) ? outputWorker.take() : encodingBytes;
+        if(bytes.capacity() < outputBlockLength()) {
+            bytes = ByteBuffer.allocate(outputBlockLength());
+        }
+
+        //A chunk never ends inside a surrogate pair, since it ends on a letter
+        CharBuffer outputRange = output.duplicate();
+        outputRange.limit(outputLength).position(0);
+        bytes.clear();
+        encoder.reset();
+        CoderResult result = encoder.encode(outputRange, bytes, true);
+        if(!result.isUnderflow()) {
+            throw new CharacterCodingException();
+        }
+        encoder.flush(bytes);
+        bytes.flip();
+        freeChunks.add(output);
+
+        if(outputWorker!=null) {
+            outputWorker.give(bytes);
+        }
+        else {
+            finishWrite();
+
+            encodingBytes = writingBytes;
+            writingBytes = bytes;
+
+            //The write consumes `writingBytes` as it goes, so take its length first
+            pendingWritePosition = outputPosition;
+            outputPosition += writingBytes.remaining();
+            pendingWrite = outputChannel.write(writingBytes, pendingWritePosition);
+        }
+        outputChars += outputLength;
+    }
+}
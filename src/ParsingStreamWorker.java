@@ -0,0 +1,261 @@
+import javax.swing.*;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Worker thread that moves a ParsingPipeline's bytes between the pipeline and a stream, such as a decompressing input file
+ * or a compressing output file. The Worker's result is the number of bytes it moved.<br><br>
+ *
+ * A Reading Worker reads its stream into free byte blocks and hands each filled block to the pipeline. A Writing Worker
+ * takes filled blocks from the pipeline, writes and flushes them to its stream, and hands each block back once it is
+ * written. Either way, a fixed set of blocks circulates between the two threads, so the stream's work (e.g. inflating
+ * or deflating) overlaps with the pipeline's, and no block is allocated per read or write.<br>
+ * An empty block marks the end of the bytes: a Reading Worker hands one over after the last block, and a Writing Worker
+ * finishes and closes its stream when it is given one.<br><br>
+ *
+ * Stream Workers block while waiting on the pipeline, so they run on their engine's stream threads with
+ * `ParsingEngine.executeStream`, one thread each, never on its worker pool. The Worker closes its stream when it is done.
+ */
+public class ParsingStreamWorker extends SwingWorker<Long,Void> {
+
+    /**
+     * Number of milliseconds between checks on the other side while waiting for a block. Must be positive
+     */
+    final private static long POLL_MILLIS = 100;
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * The blocks that the Worker hands to the pipeline: filled blocks if reading, written blocks if writing. Can't be null
+     */
+    final private ArrayBlockingQueue<ByteBuffer> fromWorker;
+
+    /**
+     * The stream to read from. Null if and only if `output` is not null
+     */
+    final private InputStream input;
+
+    /**
+     * The name of the Worker, mostly for debugging purposes. Cannot be null or the string "null".
+     */
+    final private String name;
+
+    /**
+     * The stream to write to. Null if and only if `input` is not null
+     */
+    final private OutputStream output;
+
+    /**
+     * The blocks that the pipeline hands to the Worker: free blocks if reading, filled blocks if writing. Can't be null
+     */
+    final private ArrayBlockingQueue<ByteBuffer> toWorker;
+
+
+    /**
+     * Creates a Reading ParsingStreamWorker called `name`, which reads `input` into `blocks` blocks of `blockLength` bytes.
+     * @param input the stream to read. Non-null
+     * @param blocks number of blocks to circulate. Must be positive
+     * @param blockLength length of each block, in bytes. Must be positive
+     * @param name custom name for this Worker. Non-null and cannot equal the string "null"
+     */
+    public ParsingStreamWorker(InputStream input, int blocks, int blockLength, String name) {
+        this(input, null, blocks, blockLength, name);
+
+        for(int i=0; i<blocks; i++) {
+            toWorker.add(ByteBuffer.allocate(blockLength));
+        }
+    }
+
+    /**
+     * Creates a Writing ParsingStreamWorker called `name`, which writes blocks to `output`. `blocks` blocks
+     * of `blockLength` bytes are ready for the pipeline to fill.
+     * @param output the stream to write. Non-null
+     * @param blocks number of blocks to circulate. Must be positive
+     * @param blockLength starting length of each block, in bytes. Must be positive
+     * @param name custom name for this Worker. Non-null and cannot equal the string "null"
+     */
+    public ParsingStreamWorker(OutputStream output, int blocks, int blockLength, String name) {
+        this(null, output, blocks, blockLength, name);
+
+        for(int i=0; i<blocks; i++) {
+            fromWorker.add(ByteBuffer.allocate(blockLength));
+        }
+    }
+
+    /**
+     * Loads the fields of either kind of ParsingStreamWorker, without adding its blocks.
+     * @param input the stream to read, or null if writing
+     * @param output the stream to write, or null if reading
+     * @param blocks number of blocks to circulate. Must be positive
+     * @param blockLength length of each block, in bytes. Must be positive
+     * @param name custom name for this Worker. Non-null and cannot equal the string "null"
+     */
+    private ParsingStreamWorker(InputStream input, OutputStream output, int blocks, int blockLength, String name) {
+        if((input==null) == (output==null)) {
+            throw new AssertionError("Exactly one of the input and output must be null");
+        }
+        if(blocks<=0 || blockLength<=0) {
+            throw new AssertionError("Block count and length must be positive");
+        }
+        if(name==null || name.equals("null")) {
+            throw new AssertionError("Name cannot be null or equal the string \"null\"");
+        }
+
+        this.input = input;
+        this.output = output;
+        this.name = name;
+
+        //One more than the blocks, so the empty block that ends the bytes always fits
+        this.toWorker = new ArrayBlockingQueue<>(blocks + 1);
+        this.fromWorker = new ArrayBlockingQueue<>(blocks + 1);
+    }
+
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Returns a String representation of the Worker.
+     * @return String representation of the Worker's fields
+     */
+    @Override
+    public String toString() {
+        return "Stream Worker \"" + name + "\", " + ((input!=null) ? "reading" : "writing")
+                + ", blocks waiting for the Worker=" + toWorker.size() + ", for the pipeline=" + fromWorker.size();
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Reads the whole stream into blocks for the pipeline, or writes the pipeline's blocks to the stream until given
+     * an empty block. Closes the stream.<br><br>
+     *
+     * A Reading Worker always hands over the empty block that ends the bytes, even if it fails, so the pipeline never
+     * waits forever. The pipeline finds out about the failure from `awaitResult()`.<br><br>
+     *
+     * WARNING: Any exceptions thrown in this method are SILENT. They will not stop the program and produce no error messages.
+     *
+     * @return number of bytes read or written
+     * @throws IOException if the stream can't be read or written
+     * @throws InterruptedException if interrupted while waiting for a block
+     */
+    @Override
+    protected Long doInBackground() throws IOException, InterruptedException {
+        long bytesMoved = 0;
+
+        if(input!=null) {
+            try(InputStream stream = input) {
+                while(!isCancelled()) {
+                    ByteBuffer block = toWorker.take();
+                    block.clear();
+                    int bytesRead = stream.read(block.array(), block.arrayOffset(), block.capacity());
+                    if(bytesRead < 0) {
+                        break;
+                    }
+
+                    block.limit(bytesRead);
+                    bytesMoved += bytesRead;
+                    if(bytesRead > 0) {
+                        fromWorker.put(block);
+                    }
+                    else {
+                        toWorker.put(block);
+                    }
+                }
+            }
+            finally {
+                fromWorker.offer(ByteBuffer.allocate(0));
+            }
+            return bytesMoved;
+        }
+
+        try(OutputStream stream = output) {
+            while(!isCancelled()) {
+                ByteBuffer block = toWorker.take();
+                if(!block.hasRemaining()) {
+                    break;
+                }
+
+                //Flushed, so a reader at the other end of a pipe gets each chunk's output as soon as it is done
+                stream.write(block.array(), block.arrayOffset() + block.position(), block.remaining());
+                stream.flush();
+                bytesMoved += block.remaining();
+                fromWorker.put(block.clear());
+            }
+        }
+        return bytesMoved;
+    }
+
+
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+
+
+    /**
+     * Called by the pipeline. Waits for the Worker to finish, and returns the number of bytes it moved.
+     * @return number of bytes read or written
+     * @throws IOException if the Worker failed, or was cancelled
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public long awaitResult() throws IOException, InterruptedException {
+        try {
+            return get();
+        }
+        catch(ExecutionException e) {
+            if(e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("The " + ((input!=null) ? "input" : "output") + " stream failed", e.getCause());
+        }
+        catch(CancellationException e) {
+            throw new IOException("The " + ((input!=null) ? "input" : "output") + " stream was cancelled");
+        }
+    }
+
+
+    /**
+     * Called by the pipeline. Hands `block` to the Worker: a block whose bytes were used, if reading, or a filled block
+     * in read mode, if writing. An empty block tells a Writing Worker to finish.
+     * @param block the block to hand over. Must be backed by an array. Can't be null
+     * @throws InterruptedException if interrupted while handing the block over
+     */
+    public void give(ByteBuffer block) throws InterruptedException {
+        if(block==null || !block.hasArray()) {
+            throw new AssertionError("Block cannot be null, and must be backed by an array");
+        }
+
+        toWorker.put(block);
+    }
+
+
+    /**
+     * Called by the pipeline. Waits for the Worker's next block and returns it: the next filled block in read mode,
+     * or an empty block once the stream ends, if reading, or a cleared block to fill, if writing.
+     * @return the next block
+     * @throws IOException if the Worker failed or stopped before handing over a block
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public ByteBuffer take() throws IOException, InterruptedException {
+        while(true) {
+            ByteBuffer block = fromWorker.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            if(block!=null) {
+                return block;
+            }
+
+            //A Worker that is done hands over nothing more, so find out why
+            if(isDone() && fromWorker.isEmpty()) {
+                awaitResult();
+                throw new IOException("The " + ((input!=null) ? "input" : "output") + " stream stopped early");
+            }
+        }
+    }
+}
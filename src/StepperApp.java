@@ -124,6 +124,11 @@ public class StepperApp extends JFrame {
      */
     final private StepperAppFields fields;
 
+    /**
+     * Runs the Workers of every job the App starts. Lives as long as the App, so its threads stay warm between jobs. Can't be null
+     */
+    final private ParsingEngine engine;
+
 
     /**
      * A thread to start execution of the user input.<br><br>
@@ -260,6 +265,11 @@ public class StepperApp extends JFrame {
         //Configure non-GUI field class
         fields = new StepperAppFields();
 
+        //Start the processing engine early, so it can warm up while the user logs in.
+        //Multi-gigabyte jobs can keep their text off the heap by running with -Dstepper.offHeap=true
+        engine = new ParsingEngine(Runtime.getRuntime().availableProcessors(),
+                Boolean.getBoolean(ParsingEngine.OFF_HEAP_PROPERTY));
+
         //Idiot check: all thread count choices in the default selection must be on the interval [1, MAX_THREADS]
         int previousValue = 0;
         for(int i=2; i<THREAD_SELECTION_OPTIONS.length; i++) {
@@ -302,9 +312,6 @@ public class StepperApp extends JFrame {
         requestFocus();
         setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
         setVisible(true);
-
-        //Run the garbage collector
-        System.gc();
     }
 
 
@@ -357,6 +364,16 @@ public class StepperApp extends JFrame {
     }
 
 
+    /**
+     * Returns the app's processing engine
+     *
+     * @return reference to (not a copy of) the app's engine
+     */
+    public ParsingEngine engine() {
+        return engine;
+    }
+
+
     /**
      * Returns the app's fields
      *
@@ -1242,10 +1259,22 @@ public class StepperApp extends JFrame {
 
 
     /**
-     * Creates a StepperApp and runs it.
-     * @param args program arguments (likely not used)
+     * Creates a StepperApp and runs it. With arguments, runs a command instead, without the App: "serve" runs a
+     * StepperServer, "load-test" runs a StepperLoadTest against one, "daemon" and "client" run a StepperDaemon and
+     * its client, and anything else runs a StepperBatch over a folder of files, or filters standard input to standard
+     * output.
+     * @param args program arguments. Empty to run the App. See each command's `USAGE` otherwise
      */
     public static void main(String[] args) {
+        if(args.length > 0) {
+            System.exit(switch(args[0]) {
+                case "serve" -> StepperServer.runCommand(args, System.out, System.err);
+                case "load-test" -> StepperLoadTest.runCommand(args, System.out, System.err);
+                case "daemon", "client" -> StepperDaemon.runCommand(args, System.in, System.out, System.err);
+                default -> StepperBatch.runCommand(args, System.in, System.out, System.err);
+            });
+        }
+
         SwingUtilities.invokeLater(() -> {
             StepperApp app = new StepperApp();
         });
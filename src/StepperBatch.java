@@ -0,0 +1,479 @@
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Encrypts or decrypts every text file in a directory tree into an output tree, from the command line.<br><br>
+ *
+ * StepperApp's main method runs a batch instead of the App when it is given arguments. See `USAGE`. Without folders,
+ * the command is a filter instead: it streams standard input to standard output, for use in shell pipelines.<br>
+ * Every file is processed with one shared ParsingEngine, so all jobs share one worker pool and one buffer pool.
+ * Small files are processed several at a time, each by one Operations Worker, on a fixed set of job threads. Large files
+ * are processed one at a time, each split between every pool thread, while the small files keep the pool busy around them.
+ * Very large and compressed files are streamed through a ParsingPipeline instead of being loaded whole.<br>
+ * Each output has the same path, relative to the output folder, as its input has relative to the input folder.
+ * A throughput summary is printed at the end.<br><br>
+ *
+ * Every file is processed with the same key. A key with too few letters is padded with random letters once,
+ * and the padded key is printed, so the outputs can be decrypted later.
+ */
+public class StepperBatch {
+
+    /**
+     * Inputs of at least this many bytes are split between every pool thread instead of sharing the pool with other
+     * files. Must be positive
+     */
+    final public static long LARGE_FILE_BYTES = 1 << 20;
+
+    /**
+     * Inputs of at least this many bytes are streamed in chunks instead of being loaded whole. Must be at least
+     * `LARGE_FILE_BYTES`
+     */
+    final public static long STREAMING_FILE_BYTES = 1 << 26;
+
+    /**
+     * How to run a batch from the command line
+     */
+    final public static String USAGE = "Usage: StepperApp (encrypt|decrypt) [<input folder> <output folder>] " +
+            "(--key <key> | --key-file <path>) [--punct 0|1|2] [--threads <count>]\n" +
+            "Processes every .txt, .gz, and .deflate file in the input folder's tree, or standard input to standard output " +
+            "if no folders are given. " +
+            "--punct: 0 includes punctuation (default), 1 excludes spaces, 2 keeps letters only";
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * True if encrypting, false if decrypting
+     */
+    final private boolean encrypting;
+
+    /**
+     * The engine that every file's Workers run on. Can't be null
+     */
+    final private ParsingEngine engine;
+
+    /**
+     * Stream that failures are reported to. Can't be null
+     */
+    final private PrintStream err;
+
+    /**
+     * Number of files that could not be processed
+     */
+    final private AtomicInteger filesFailed;
+
+    /**
+     * Number of files that were processed
+     */
+    final private AtomicInteger filesProcessed;
+
+    /**
+     * Number of bytes in the input files that were processed
+     */
+    final private AtomicLong inputBytes;
+
+    /**
+     * Number of small files that are processed at once. Must be positive
+     */
+    final private int jobThreads;
+
+    /**
+     * The key that every file is processed with. Must hold at least BLOCK_COUNT*BLOCK_LENGTH letters. Can't be null
+     */
+    final private String key;
+
+    /**
+     * Stream that progress and the summary are printed to. Can't be null
+     */
+    final private PrintStream out;
+
+    /**
+     * Number of bytes in the output files that were written
+     */
+    final private AtomicLong outputBytes;
+
+    /**
+     * 0 if including punctuation, 1 if excluding spaces, 2 if alphabetic characters only
+     */
+    final private byte punctMode;
+
+
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Creates a StepperBatch that processes files with `key` on `engine`.
+     * @param engine the engine to run every file's Workers on. Can't be null
+     * @param key the key. Must hold at least BLOCK_COUNT*BLOCK_LENGTH letters, so it needs no random padding. Can't be null
+     * @param encrypting true if encrypting, false if decrypting
+     * @param punctMode 0 if including punctuation, 1 if excluding spaces, 2 if alphabetic characters only
+     * @param jobThreads number of small files to process at once. Must be positive
+     * @param out stream to print the summary to. Can't be null
+     * @param err stream to report failures to. Can't be null
+     */
+    public StepperBatch(ParsingEngine engine, String key, boolean encrypting, byte punctMode, int jobThreads,
+                        PrintStream out, PrintStream err) {
+        if(engine==null || key==null || out==null || err==null) {
+            throw new AssertionError("Engine, key, and streams cannot be null");
+        }
+        if(punctMode<0 || punctMode>2 || jobThreads<=0) {
+            throw new AssertionError("Punctuation mode must be on [0,2] and job threads must be positive");
+        }
+        if(countKeyLetters(key) < StepperAppFields.BLOCK_COUNT * StepperAppFields.BLOCK_LENGTH) {
+            throw new AssertionError("The key must not need padding");
+        }
+
+        //The engine and streams are shared, so they are not copied
+        this.engine = engine;
+        this.key = key;
+        this.encrypting = encrypting;
+        this.punctMode = punctMode;
+        this.jobThreads = jobThreads;
+        this.out = out;
+        this.err = err;
+
+        this.filesProcessed = new AtomicInteger();
+        this.filesFailed = new AtomicInteger();
+        this.inputBytes = new AtomicLong();
+        this.outputBytes = new AtomicLong();
+    }
+
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Returns the number of files that could not be processed so far
+     * @return number of failed files
+     */
+    public int filesFailed() {
+        return filesFailed.get();
+    }
+
+    /**
+     * Returns the number of files that were processed so far
+     * @return number of processed files
+     */
+    public int filesProcessed() {
+        return filesProcessed.get();
+    }
+
+    /**
+     * Returns a String containing representations of the batch's fields.
+     * @return String representation of fields
+     */
+    @Override
+    public String toString() {
+        return "Batch with " + jobThreads + " job threads, encrypting=" + encrypting + ", punctuation=" + punctMode
+                + ", processed=" + filesProcessed + ", failed=" + filesFailed;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Returns the number of letters in `key` that the cipher uses: English letters once diacritics are removed.
+     * @param key the key, as the user would type it. Can't be null
+     * @return number of letters in the key
+     */
+    public static int countKeyLetters(String key) {
+        int letters = 0;
+        for(int i=0; i<key.length(); i++) {
+            char currentChar = ParsingDiacriticsWorker.normalize(key.charAt(i));
+            if(currentChar>='a' && currentChar<='z') {
+                letters++;
+            }
+        }
+        return letters;
+    }
+
+
+    /**
+     * Returns every file in the tree under `inputFolder` that can be processed, i.e. whose name ends with ".txt", ".gz",
+     * or ".deflate", skipping anything under `outputFolder`. Largest files come first.<br><br>
+     *
+     * Helper to processTree.
+     *
+     * @param inputFolder root of the input tree. Can't be null
+     * @param outputFolder root of the output tree. Can't be null
+     * @return the input files, largest first
+     * @throws IOException if the tree can't be listed
+     */
+    private ArrayList<Path> findInputFiles(Path inputFolder, Path outputFolder) throws IOException {
+        ArrayList<Path> inputFiles = new ArrayList<>();
+        try(Stream<Path> tree = Files.walk(inputFolder)) {
+            tree.filter(Files::isRegularFile)
+                    .filter(file -> !file.startsWith(outputFolder))
+                    .filter(file -> {
+                        String name = file.getFileName().toString();
+                        return name.endsWith(".txt") || name.endsWith(".gz") || name.endsWith(".deflate");
+                    })
+                    .forEach(inputFiles::add);
+        }
+
+        inputFiles.sort(Comparator.comparingLong((Path file) -> file.toFile().length()).reversed());
+        return inputFiles;
+    }
+
+
+    /**
+     * Prints the number of files and bytes processed in `elapsedNanos` nanoseconds, and the throughput, to `out`.<br><br>
+     *
+     * Helper to processTree.
+     *
+     * @param elapsedNanos time that the batch took, in nanoseconds. Cannot be negative
+     */
+    private void printSummary(long elapsedNanos) {
+        double seconds = Math.max(elapsedNanos, 1) / 1e9;
+        double inputMegabytes = inputBytes.get() / 1e6;
+
+        out.printf("Processed %d files (%d failed): %.2f MB in, %.2f MB out, in %.2f s%n",
+                filesProcessed.get(), filesFailed.get(), inputMegabytes, outputBytes.get() / 1e6, seconds);
+        out.printf("Throughput: %.2f MB/s, %.1f files/s, %d job threads, %d pool threads%n",
+                inputMegabytes / seconds, filesProcessed.get() / seconds, jobThreads, engine.poolSize());
+    }
+
+
+    /**
+     * Processes the file `inputFile` into `outputFile` with up to `threads` Operations Workers, creating the output's
+     * folder if needed, and counts it as processed or failed.<br><br>
+     *
+     * Files that `StepperJob.mustStream` picks, i.e. files of at least `STREAMING_FILE_BYTES` bytes and compressed
+     * files, are streamed. Others are loaded whole.
+     * Failures are reported to `err` instead of thrown, including a Boss's unexpected exceptions and assertion errors,
+     * so one bad file never stops the rest of the batch or its summary. An interrupted file is counted as failed, and
+     * the thread keeps its interrupt.<br><br>
+     *
+     * Helper to processTree.
+     *
+     * @param inputFile the file to process. Can't be null
+     * @param outputFile the file to write the output to. Can't be null
+     * @param threads number of Operations Workers to split the file between. Must be positive
+     */
+    private void processFile(Path inputFile, Path outputFile, int threads) {
+        try {
+            if(outputFile.getParent()!=null) {
+                Files.createDirectories(outputFile.getParent());
+            }
+
+            long inputLength = Files.size(inputFile);
+            if(StepperJob.mustStream(inputFile.toString(), outputFile.toString(), inputLength)) {
+                ParsingBoss.processFileStreaming(engine, inputFile.toString(), outputFile.toString(), key,
+                        encrypting, punctMode, threads);
+            }
+            else {
+                ParsingBoss.processFile(engine, inputFile.toString(), outputFile.toString(), key,
+                        encrypting, punctMode, threads);
+            }
+
+            inputBytes.addAndGet(inputLength);
+            outputBytes.addAndGet(Files.size(outputFile));
+            filesProcessed.incrementAndGet();
+        }
+        catch(InterruptedIOException e) {
+            filesFailed.incrementAndGet();
+            err.println("Interrupted while processing " + inputFile);
+        }
+        catch(IOException e) {
+            filesFailed.incrementAndGet();
+            err.println("Could not process " + inputFile + ": " + e.getMessage());
+        }
+        catch(InterruptedException e) {
+            filesFailed.incrementAndGet();
+            err.println("Interrupted while processing " + inputFile);
+            Thread.currentThread().interrupt();
+        }
+        catch(RuntimeException | AssertionError e) {
+            filesFailed.incrementAndGet();
+            err.println("Could not process " + inputFile + ": " + e);
+        }
+    }
+
+
+    /**
+     * Processes every input file in the tree under `inputFolder` into the same place in the tree under `outputFolder`,
+     * then prints a throughput summary to `out`. Returns true if every file was processed.<br><br>
+     *
+     * Files of at least `LARGE_FILE_BYTES` bytes are processed one at a time on this thread, each split between every pool
+     * thread. Meanwhile, `jobThreads` job threads process the smaller files, each with one Operations Worker.
+     * Existing output files are replaced. A file that fails, wherever it runs, is counted as failed in the summary.
+     *
+     * @param inputFolder root of the input tree. Must be a folder. Can't be null
+     * @param outputFolder root of the output tree. Created if missing. Can't be null
+     * @return true if every file was processed, false if any failed
+     * @throws IOException if the input tree can't be listed
+     * @throws InterruptedException if interrupted while waiting for the small files
+     */
+    public boolean processTree(Path inputFolder, Path outputFolder) throws IOException, InterruptedException {
+        if(inputFolder==null || outputFolder==null) {
+            throw new AssertionError("Folders cannot be null");
+        }
+
+        long startTime = System.nanoTime();
+        Path inputRoot = inputFolder.toAbsolutePath().normalize();
+        Path outputRoot = outputFolder.toAbsolutePath().normalize();
+        ArrayList<Path> inputFiles = findInputFiles(inputRoot, outputRoot);
+
+        //Job threads wait on their Workers, so they must not be the engine's pool threads
+        ExecutorService jobs = Executors.newFixedThreadPool(jobThreads, runnable -> {
+            Thread thread = new Thread(runnable, "Stepper batch job");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ArrayList<Future<?>> smallFiles = new ArrayList<>();
+        try {
+            for(Path inputFile : inputFiles) {
+                if(inputFile.toFile().length() < LARGE_FILE_BYTES) {
+                    Path outputFile = outputRoot.resolve(inputRoot.relativize(inputFile));
+                    smallFiles.add(jobs.submit(() -> processFile(inputFile, outputFile, 1)));
+                }
+            }
+
+            //The largest files come first, so they start while the small ones fill the gaps
+            for(Path inputFile : inputFiles) {
+                if(inputFile.toFile().length() >= LARGE_FILE_BYTES) {
+                    processFile(inputFile, outputRoot.resolve(inputRoot.relativize(inputFile)), engine.poolSize());
+                }
+            }
+
+            for(Future<?> smallFile : smallFiles) {
+                try {
+                    smallFile.get();
+                }
+                catch(ExecutionException e) {
+                    filesFailed.incrementAndGet();
+                    err.println("Could not process a file: " + e.getCause());
+                }
+            }
+        }
+        finally {
+            jobs.shutdownNow();
+        }
+
+        printSummary(System.nanoTime() - startTime);
+        return filesFailed.get() == 0;
+    }
+
+
+    /**
+     * Runs the batch or filter described by the command-line arguments `args`, on a new engine with one pool thread
+     * per processor unless `--threads` is given. Returns the program's exit code.<br><br>
+     *
+     * See `USAGE` for the arguments. Usage errors are reported to `err`.<br>
+     * Without folders, `in` is streamed through a ParsingPipeline to `out`, chunk by chunk, and both are closed.
+     * The filter only holds a few chunks at once, however long the input is, and writes each chunk's output as soon as
+     * it is done. A padded key is then printed to `err`, since `out` holds the output.
+     *
+     * @param args the command-line arguments. Can't be null
+     * @param in stream to filter if no folders are given, e.g. standard input. Can't be null
+     * @param out stream to print the summary to, or to write the filtered output to. Can't be null
+     * @param err stream to report errors to. Can't be null
+     * @return 0 if every file or the whole input was processed, 1 if any failed, 2 if the arguments are invalid
+     */
+    public static int runCommand(String[] args, InputStream in, PrintStream out, PrintStream err) {
+        if(args==null || in==null || out==null || err==null) {
+            throw new AssertionError("Arguments and streams cannot be null");
+        }
+
+        //Options start right after the mode when filtering, and after the folders otherwise
+        boolean filtering = args.length==1 || (args.length>1 && args[1].startsWith("--"));
+        if((!filtering && args.length < 3) || !(args[0].equals("encrypt") || args[0].equals("decrypt"))) {
+            err.println(USAGE);
+            return 2;
+        }
+        boolean encrypting = args[0].equals("encrypt");
+        Path inputFolder = filtering ? null : Path.of(args[1]);
+        Path outputFolder = filtering ? null : Path.of(args[2]);
+
+        String key = null;
+        byte punctMode = 0;
+        int threads = Runtime.getRuntime().availableProcessors();
+        try {
+            for(int i=filtering ? 1 : 3; i<args.length; i+=2) {
+                if(i+1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value for " + args[i]);
+                }
+                switch(args[i]) {
+                    case "--key" -> key = args[i+1];
+                    case "--key-file" -> key = Files.readString(Path.of(args[i+1]), Charset.defaultCharset());
+                    case "--punct" -> punctMode = Byte.parseByte(args[i+1]);
+                    case "--threads" -> threads = Integer.parseInt(args[i+1]);
+                    default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+            if(key==null) {
+                throw new IllegalArgumentException("A key is required");
+            }
+            if(punctMode<0 || punctMode>2 || threads<=0) {
+                throw new IllegalArgumentException("The punctuation mode must be 0, 1, or 2, and threads must be positive");
+            }
+            if(!filtering && !Files.isDirectory(inputFolder)) {
+                throw new FileNotFoundException("The input folder " + inputFolder + " does not exist");
+            }
+        }
+        catch(IllegalArgumentException | IOException e) {
+            err.println(e.getMessage());
+            err.println(USAGE);
+            return 2;
+        }
+
+        //Pad a short key once, so every file uses the same key
+        if(countKeyLetters(key) < StepperAppFields.BLOCK_COUNT * StepperAppFields.BLOCK_LENGTH) {
+            if(!encrypting) {
+                err.println("The key must hold at least " + StepperAppFields.BLOCK_COUNT * StepperAppFields.BLOCK_LENGTH
+                        + " letters to decrypt");
+                return 2;
+            }
+            key = ParsingBoss.formatKey(key);
+            (filtering ? err : out).println("Key: " + key);
+        }
+
+        ParsingEngine engine = new ParsingEngine(threads,
+                Boolean.getBoolean(ParsingEngine.OFF_HEAP_PROPERTY));
+        try {
+            if(filtering) {
+                ParsingBoss.processStream(engine, in, out, key, encrypting, punctMode, threads);
+
+                //A PrintStream keeps its errors, e.g. a closed pipe, instead of throwing them
+                if(out.checkError()) {
+                    err.println("Could not write the output");
+                    return 1;
+                }
+                return 0;
+            }
+
+            StepperBatch batch = new StepperBatch(engine, key, encrypting, punctMode, threads, out, err);
+            return batch.processTree(inputFolder, outputFolder) ? 0 : 1;
+        }
+        catch(IOException e) {
+            err.println((filtering ? "Could not process the input: " : "Could not list the input folder: ") + e.getMessage());
+            return 1;
+        }
+        catch(InterruptedException e) {
+            err.println("Interrupted");
+            return 1;
+        }
+        finally {
+            engine.shutdown();
+        }
+    }
+}
@@ -0,0 +1,643 @@
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.SequenceInputStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps one warm ParsingEngine resident behind a Unix domain socket, so scripts that run the cipher many times on small
+ * texts don't pay for a new JVM, engine, and key each time. Also has the thin client that talks to it.<br><br>
+ *
+ * Each connection carries one request. The client sends one line, "encrypt", "decrypt", or "stats", followed for the
+ * first two by the punctuation mode and the key, separated by spaces, e.g. "encrypt 0 my key". The text follows the line,
+ * and ends when the client shuts down its side of the connection. The daemon answers with "OK" and the output's length
+ * in bytes, followed by the padded key if a short key was padded, on one line, and then the output. A client can tell
+ * a whole answer from one cut short by the length. A failed request is answered with one line, "ERROR" and the reason.
+ * Lines are UTF-8, and the text and output are in the platform's default charset.<br>
+ * Any Unix socket tool can be a client, e.g. `(echo "encrypt 0 $KEY"; cat input.txt) | nc -NU stepper.sock`.<br><br>
+ *
+ * A StepperService processes the texts, and keeps the blocks of the keys it has seen, so repeated keys are ready.
+ * Texts of at most `StepperService.BATCH_BODY_BYTES` bytes are batched with the other requests queued at the time.
+ * Larger ones, of at most `MAX_BODY_BYTES` bytes, are read whole, streamed through a ParsingPipeline, and held until
+ * their output is whole, so the status line can hold its length. Each request is read to its end before anything is
+ * written back, so the daemon never reads and writes one connection at once. Larger texts are refused, and the client filters them itself instead, since startup is then small next to the work.
+ * <br><br>
+ *
+ * Client threads wait on their requests, so they are the daemon's own handler threads, never the engine's pool threads.
+ */
+public class StepperDaemon {
+
+    /**
+     * Number of threads that handle connections. Each waits on one request at a time. Must be positive
+     */
+    final private static int HANDLER_THREADS = 64;
+
+    /**
+     * Maximum number of texts larger than `StepperService.BATCH_BODY_BYTES` that are held in memory at once, each of up
+     * to `MAX_BODY_BYTES` bytes. Must be positive
+     */
+    final private static int MAX_LARGE_BODIES = 4;
+
+    /**
+     * Maximum length of a text that the daemon processes, in bytes. Must be at least `StepperService.BATCH_BODY_BYTES`
+     */
+    final public static int MAX_BODY_BYTES = 1 << 24;
+
+    /**
+     * Maximum length of a request's first line, in bytes. Must be positive
+     */
+    final private static int MAX_LINE_BYTES = 1 << 12;
+
+    /**
+     * Name of the socket file in the temporary folder, where the daemon listens unless told otherwise
+     */
+    final public static String SOCKET_NAME = "stepper.sock";
+
+    /**
+     * How to run the daemon and its client from the command line
+     */
+    final public static String USAGE = "Usage: StepperApp daemon [--socket <path>] [--threads <count>]\n" +
+            "       StepperApp client (encrypt|decrypt) (--key <key> | --key-file <path>) [--punct 0|1|2] " +
+            "[--socket <path>]\n" +
+            "       StepperApp client stats [--socket <path>]\n" +
+            "The daemon serves requests on a Unix domain socket, " + SOCKET_NAME + " in the temporary folder by default. " +
+            "The client filters standard input to standard output through it";
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Thread that accepts connections and hands them to the handlers. Can't be null
+     */
+    final private Thread acceptor;
+
+    /**
+     * Number of requests that were answered with an error, or whose connection failed
+     */
+    final private AtomicLong failedRequests;
+
+    /**
+     * Threads that handle connections. Can't be null
+     */
+    final private ExecutorService handlers;
+
+    /**
+     * One permit for each text larger than `StepperService.BATCH_BODY_BYTES` that may be held at once. Can't be null
+     */
+    final private Semaphore largeBodies;
+
+    /**
+     * The socket that the daemon listens on. Can't be null
+     */
+    final private ServerSocketChannel server;
+
+    /**
+     * The service that processes every request's text. Can't be null
+     */
+    final private StepperService service;
+
+    /**
+     * Path of the socket file. Can't be null
+     */
+    final private Path socketPath;
+
+
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Creates a StepperDaemon that listens on the Unix domain socket at `socketPath`, and runs every request on `engine`.
+     * A socket file left there by a daemon that is no longer running is replaced. The daemon doesn't answer until
+     * `start()` is called.
+     * @param engine the engine to run the Workers on. Shared, and not shut down by the daemon. Can't be null
+     * @param socketPath path of the socket file. Can't be null
+     * @throws IOException if a daemon is already listening at `socketPath`, or the socket can't be bound
+     */
+    public StepperDaemon(ParsingEngine engine, Path socketPath) throws IOException {
+        if(engine==null || socketPath==null) {
+            throw new AssertionError("Engine and socket path cannot be null");
+        }
+
+        //A socket file that nothing answers on is left over from a daemon that didn't stop cleanly
+        if(Files.exists(socketPath)) {
+            boolean running;
+            try {
+                SocketChannel.open(UnixDomainSocketAddress.of(socketPath)).close();
+                running = true;
+            }
+            catch(IOException e) {
+                running = false;
+            }
+            if(running) {
+                throw new IOException("A daemon is already listening on " + socketPath);
+            }
+            Files.delete(socketPath);
+        }
+
+        //The engine is shared, so it is not copied
+        this.service = new StepperService(engine);
+        this.socketPath = socketPath.toAbsolutePath();
+        this.failedRequests = new AtomicLong();
+        this.largeBodies = new Semaphore(MAX_LARGE_BODIES);
+
+        AtomicInteger threadNumber = new AtomicInteger(1);
+        this.handlers = Executors.newFixedThreadPool(HANDLER_THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "Stepper daemon handler " + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        this.server.bind(UnixDomainSocketAddress.of(this.socketPath));
+
+        this.acceptor = new Thread(this::runAcceptor, "Stepper daemon acceptor");
+        this.acceptor.setDaemon(true);
+    }
+
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Returns the path of the socket file that the daemon listens on
+     * @return the daemon's socket path
+     */
+    public Path socketPath() {
+        return socketPath;
+    }
+
+    /**
+     * Returns a one-line report of the requests served so far, as the "stats" request sends it.
+     * @return the daemon's counters
+     */
+    public String stats() {
+        return service.stats() + " failed=" + failedRequests.get();
+    }
+
+    /**
+     * Returns a String representation of the daemon.
+     * @return String representation of the daemon's fields
+     */
+    @Override
+    public String toString() {
+        return "Daemon on " + socketPath + ", " + stats();
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Answers the one request on `channel`, and closes it.<br><br>
+     *
+     * Helper to runAcceptor.
+     *
+     * @param channel the client's connection. Can't be null
+     */
+    private void handleConnection(SocketChannel channel) {
+        try(channel) {
+            InputStream input = new BufferedInputStream(Channels.newInputStream(channel));
+            OutputStream output = Channels.newOutputStream(channel);
+
+            String line = readLine(input);
+            String[] fields = (line==null) ? new String[0] : line.split(" ", 3);
+            if(fields.length==1 && fields[0].equals("stats")) {
+                output.write(("OK " + stats() + "\n").getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            if(fields.length!=3 || !(fields[0].equals("encrypt") || fields[0].equals("decrypt"))
+                    || !(fields[1].equals("0") || fields[1].equals("1") || fields[1].equals("2"))) {
+                sendError(output, "The request must start with a line of encrypt or decrypt, the punctuation mode " +
+                        "0, 1, or 2, and the key");
+                return;
+            }
+            boolean encrypting = fields[0].equals("encrypt");
+            byte punctMode = Byte.parseByte(fields[1]);
+            String key = fields[2];
+
+            //Pad a short key, and send it back so the output can be decrypted
+            String paddedKey = null;
+            if(StepperBatch.countKeyLetters(key) < StepperAppFields.BLOCK_COUNT * StepperAppFields.BLOCK_LENGTH) {
+                if(!encrypting) {
+                    sendError(output, "The key must hold at least "
+                            + StepperAppFields.BLOCK_COUNT * StepperAppFields.BLOCK_LENGTH + " letters to decrypt");
+                    return;
+                }
+                key = ParsingBoss.formatKey(key);
+                paddedKey = key;
+            }
+
+            byte[] text = input.readNBytes(StepperService.BATCH_BODY_BYTES + 1);
+            if(text.length <= StepperService.BATCH_BODY_BYTES) {
+                processBatched(text, output, paddedKey, key, encrypting, punctMode);
+            }
+            else {
+                processLarge(text, input, output, paddedKey, key, encrypting, punctMode);
+            }
+        }
+        catch(IOException e) {
+            failedRequests.incrementAndGet();
+        }
+        catch(InterruptedException e) {
+            failedRequests.incrementAndGet();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    /**
+     * Queues the small `text` to be batched, and writes the status line and its output to `output` once it is done.
+     * <br><br>
+     *
+     * Helper to handleConnection.
+     *
+     * @param text the whole text. At most `StepperService.BATCH_BODY_BYTES` long. Can't be null
+     * @param output stream to the client. Can't be null
+     * @param paddedKey the padded key to send back, or null if the key wasn't padded
+     * @param key the key. Must hold at least BLOCK_COUNT*BLOCK_LENGTH letters. Can't be null
+     * @param encrypting true if encrypting, false if decrypting
+     * @param punctMode 0 if including punctuation, 1 if excluding spaces, 2 if alphabetic characters only
+     * @throws IOException if the answer can't be sent
+     * @throws InterruptedException if interrupted while waiting for the output
+     */
+    private void processBatched(byte[] text, OutputStream output, String paddedKey, String key, boolean encrypting,
+                                byte punctMode) throws IOException, InterruptedException {
+        StepperRequest request = service.submit(text, key, encrypting, punctMode);
+
+        byte[] processed;
+        try {
+            processed = request.output().get();
+        }
+        catch(ExecutionException e) {
+            sendError(output, "The text could not be processed: " + e.getCause());
+            return;
+        }
+
+        //One write for the whole answer
+        byte[] statusBytes = statusLine(processed.length, paddedKey);
+        byte[] answer = new byte[statusBytes.length + processed.length];
+        System.arraycopy(statusBytes, 0, answer, 0, statusBytes.length);
+        System.arraycopy(processed, 0, answer, statusBytes.length, processed.length);
+        output.write(answer);
+    }
+
+
+    /**
+     * Reads the rest of a text larger than `StepperService.BATCH_BODY_BYTES` bytes from `input`, streams all of it
+     * through a ParsingPipeline, and writes the status line and the output to `output` once the output is whole.
+     * Refuses texts longer than `MAX_BODY_BYTES` bytes. Waits if `MAX_LARGE_BODIES` large texts are already held.<br><br>
+     *
+     * A text that fails partway is answered with an error, never with part of its output.<br><br>
+     *
+     * Helper to handleConnection.
+     *
+     * @param start the start of the text, as read so far. Can't be null
+     * @param input stream of the rest of the text. Can't be null
+     * @param output stream to the client. Can't be null
+     * @param paddedKey the padded key to send back, or null if the key wasn't padded
+     * @param key the key. Must hold at least BLOCK_COUNT*BLOCK_LENGTH letters. Can't be null
+     * @param encrypting true if encrypting, false if decrypting
+     * @param punctMode 0 if including punctuation, 1 if excluding spaces, 2 if alphabetic characters only
+     * @throws IOException if the text can't be read, or the answer can't be sent
+     * @throws InterruptedException if interrupted while waiting to stream, or while streaming
+     */
+    private void processLarge(byte[] start, InputStream input, OutputStream output, String paddedKey, String key,
+                              boolean encrypting, byte punctMode) throws IOException, InterruptedException {
+        largeBodies.acquire();
+        try {
+            byte[] rest = input.readNBytes(MAX_BODY_BYTES + 1 - start.length);
+            if(start.length + rest.length > MAX_BODY_BYTES) {
+                sendError(output, "Texts longer than " + MAX_BODY_BYTES + " bytes must be filtered without the daemon");
+                return;
+            }
+
+            ByteArrayOutputStream processed = new ByteArrayOutputStream(start.length + rest.length);
+            try {
+                service.processStream(new SequenceInputStream(new ByteArrayInputStream(start), new ByteArrayInputStream(rest)),
+                        processed, key, encrypting, punctMode);
+            }
+            catch(IOException e) {
+                sendError(output, "The text could not be processed: " + e);
+                return;
+            }
+
+            //The whole text was read, so only the answer is left on the connection
+            output.write(statusLine(processed.size(), paddedKey));
+            processed.writeTo(output);
+        }
+        finally {
+            largeBodies.release();
+        }
+    }
+
+
+    /**
+     * Returns the line at the start of `input`, without its line break, or null if it has no line break in its first
+     * `MAX_LINE_BYTES` bytes. A "\r" before the "\n" is dropped too.<br><br>
+     *
+     * Helper to handleConnection and runClient.
+     *
+     * @param input stream to read the line from. Can't be null
+     * @return the line, decoded as UTF-8, or null
+     * @throws IOException if the stream can't be read
+     */
+    private static String readLine(InputStream input) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        for(int b = input.read(); b!='\n'; b = input.read()) {
+            if(b < 0 || line.size() >= MAX_LINE_BYTES) {
+                return null;
+            }
+            line.write(b);
+        }
+
+        String decoded = line.toString(StandardCharsets.UTF_8);
+        return decoded.endsWith("\r") ? decoded.substring(0, decoded.length()-1) : decoded;
+    }
+
+
+    /**
+     * Accepts connections and hands each to a handler thread, until the socket is closed.<br><br>
+     *
+     * Helper to the constructor.
+     */
+    private void runAcceptor() {
+        while(server.isOpen()) {
+            try {
+                SocketChannel channel = server.accept();
+                handlers.execute(() -> handleConnection(channel));
+            }
+            catch(ClosedChannelException e) {
+                return;
+            }
+            catch(IOException e) {
+                failedRequests.incrementAndGet();
+            }
+        }
+    }
+
+
+    /**
+     * Sends standard input, read from `in`, through the daemon at `socketPath`, and writes the output to `out`.
+     * Returns the program's exit code.<br><br>
+     *
+     * An input longer than `MAX_BODY_BYTES` bytes is filtered by this program instead, as StepperBatch's filter mode
+     * does, since the daemon would refuse it.<br>
+     * An answer shorter or longer than the length in its status line fails, so a daemon that stops partway never looks
+     * like a success.<br><br>
+     *
+     * Helper to runCommand.
+     *
+     * @param socketPath path of the daemon's socket file. Can't be null
+     * @param line the request's first line, without its line break. Can't be null
+     * @param in stream of the text to process, or null to send none. Closed once read
+     * @param out stream to write the output to. Can't be null
+     * @param err stream to report errors, and a padded key, to. Can't be null
+     * @return 0 if the input was processed, 1 otherwise
+     */
+    private static int runClient(Path socketPath, String line, InputStream in, PrintStream out, PrintStream err) {
+        byte[] lineBytes = (line + "\n").getBytes(StandardCharsets.UTF_8);
+        byte[] text;
+        try {
+            text = (in==null) ? new byte[0] : in.readNBytes(MAX_BODY_BYTES + 1);
+        }
+        catch(IOException e) {
+            err.println("Could not read the input: " + e.getMessage());
+            return 1;
+        }
+
+        if(text.length > MAX_BODY_BYTES) {
+            String[] fields = line.split(" ", 3);
+            return StepperBatch.runCommand(new String[]{fields[0], "--key", fields[2], "--punct", fields[1]},
+                    new SequenceInputStream(new ByteArrayInputStream(text), in), out, err);
+        }
+
+        try(SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(socketPath))) {
+            //The daemon may refuse the request before reading the text, and its reason is still worth reading
+            try {
+                ByteBuffer request = ByteBuffer.allocate(lineBytes.length + text.length).put(lineBytes).put(text).flip();
+                while(request.hasRemaining()) {
+                    channel.write(request);
+                }
+                channel.shutdownOutput();
+            }
+            catch(IOException e) {
+                //Read the answer anyway
+            }
+
+            InputStream answer = new BufferedInputStream(Channels.newInputStream(channel));
+            String status = readLine(answer);
+            if(status==null || !(status.equals("OK") || status.startsWith("OK "))) {
+                err.println((status==null) ? "The daemon did not answer" : status);
+                return 1;
+            }
+            if(line.equals("stats")) {
+                out.println(status.substring("OK ".length()));
+            }
+            else {
+                String[] fields = status.split(" ", 3);
+                if(fields.length<2 || !fields[1].matches("[0-9]{1,18}")) {
+                    err.println("The daemon's answer was not understood: " + status);
+                    return 1;
+                }
+                long length = Long.parseLong(fields[1]);
+                if(fields.length==3) {
+                    err.println("Key: " + fields[2]);
+                }
+
+                //A daemon that fails or stops partway leaves the answer short of its length
+                long received = answer.transferTo(out);
+                if(received != length) {
+                    out.flush();
+                    err.println("The daemon's answer was cut short: " + received + " of " + length + " bytes");
+                    return 1;
+                }
+            }
+        }
+        catch(IOException e) {
+            err.println("Could not reach a daemon on " + socketPath + ": " + e.getMessage());
+            return 1;
+        }
+
+        out.flush();
+        if(out.checkError()) {
+            err.println("Could not write the output");
+            return 1;
+        }
+        return 0;
+    }
+
+
+    /**
+     * Runs the daemon or client described by the command-line arguments `args`, and returns the program's exit code.
+     * The daemon runs on a new engine with one pool thread per processor unless `--threads` is given, until the
+     * program is stopped.<br><br>
+     *
+     * See `USAGE` for the arguments. `args[0]` is "daemon" or "client". Usage errors are reported to `err`.<br>
+     * A key file's line breaks become spaces, since the key is sent on one line.
+     *
+     * @param args the command-line arguments. Can't be null
+     * @param in stream of the client's text, e.g. standard input. Can't be null
+     * @param out stream to print the daemon's socket, or the client's output, to. Can't be null
+     * @param err stream to report errors to. Can't be null
+     * @return 0 if the client's request was processed, 1 if it failed or the daemon can't start, 2 if the arguments
+     * are invalid
+     */
+    public static int runCommand(String[] args, InputStream in, PrintStream out, PrintStream err) {
+        if(args==null || in==null || out==null || err==null) {
+            throw new AssertionError("Arguments and streams cannot be null");
+        }
+
+        //The client's request comes before its options
+        boolean daemon = args.length > 0 && args[0].equals("daemon");
+        String request = daemon ? null : (args.length > 1) ? args[1] : "";
+        if(!daemon && !(request.equals("encrypt") || request.equals("decrypt") || request.equals("stats"))) {
+            err.println(USAGE);
+            return 2;
+        }
+
+        Path socketPath = Path.of(System.getProperty("java.io.tmpdir"), SOCKET_NAME);
+        int threads = Runtime.getRuntime().availableProcessors();
+        String key = null;
+        byte punctMode = 0;
+        try {
+            for(int i=daemon ? 1 : 2; i<args.length; i+=2) {
+                if(i+1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value for " + args[i]);
+                }
+
+                //The daemon takes only its socket and thread count, and the client only its socket, key, and mode
+                boolean known = args[i].equals("--socket") || (daemon ? args[i].equals("--threads")
+                        : (args[i].equals("--key") || args[i].equals("--key-file") || args[i].equals("--punct")));
+                if(!known) {
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+                switch(args[i]) {
+                    case "--socket" -> socketPath = Path.of(args[i+1]);
+                    case "--threads" -> threads = Integer.parseInt(args[i+1]);
+                    case "--key" -> key = args[i+1];
+                    case "--key-file" -> key = Files.readString(Path.of(args[i+1]), Charset.defaultCharset());
+                    case "--punct" -> punctMode = Byte.parseByte(args[i+1]);
+                }
+            }
+            if(!daemon && !request.equals("stats") && key==null) {
+                throw new IllegalArgumentException("A key is required");
+            }
+            if(punctMode<0 || punctMode>2 || threads<=0) {
+                throw new IllegalArgumentException("The punctuation mode must be 0, 1, or 2, and threads must be positive");
+            }
+        }
+        catch(IllegalArgumentException | IOException e) {
+            err.println(e.getMessage());
+            err.println(USAGE);
+            return 2;
+        }
+
+        if(!daemon) {
+            return request.equals("stats") ? runClient(socketPath, "stats", null, out, err)
+                    : runClient(socketPath, request + " " + punctMode + " " + key.replaceAll("[\r\n]", " "), in, out, err);
+        }
+
+        ParsingEngine engine = new ParsingEngine(threads,
+                Boolean.getBoolean(ParsingEngine.OFF_HEAP_PROPERTY));
+        try {
+            StepperDaemon stepperDaemon = new StepperDaemon(engine, socketPath);
+            Runtime.getRuntime().addShutdownHook(new Thread(stepperDaemon::stop));
+            stepperDaemon.start();
+            out.println("Listening on " + stepperDaemon.socketPath());
+
+            //Serve until the program is stopped
+            new CountDownLatch(1).await();
+            return 0;
+        }
+        catch(IOException e) {
+            err.println("Could not start the daemon: " + e.getMessage());
+            return 1;
+        }
+        catch(InterruptedException e) {
+            return 0;
+        }
+        finally {
+            engine.shutdown();
+        }
+    }
+
+
+    /**
+     * Returns the status line of an answer whose output is `length` bytes long, with its line break, in UTF-8.<br><br>
+     *
+     * Helper to processBatched and processLarge.
+     *
+     * @param length length of the output, in bytes. Cannot be negative
+     * @param paddedKey the padded key to send back, or null if the key wasn't padded
+     * @return the status line's bytes
+     */
+    private static byte[] statusLine(long length, String paddedKey) {
+        String status = (paddedKey==null) ? "OK " + length : "OK " + length + " " + paddedKey;
+        return (status + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+
+    /**
+     * Answers the client on `output` with the one-line error `message`, and counts the request as failed.<br><br>
+     *
+     * Helper to handleConnection, processBatched, and processLarge.
+     *
+     * @param output stream to the client. Can't be null
+     * @param message the error message. Can't be null
+     * @throws IOException if the answer can't be sent
+     */
+    private void sendError(OutputStream output, String message) throws IOException {
+        failedRequests.incrementAndGet();
+        output.write(("ERROR " + message + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+
+    /**
+     * Starts answering requests.
+     */
+    public void start() {
+        service.start();
+        acceptor.start();
+    }
+
+
+    /**
+     * Stops answering requests, deletes the socket file, and fails the requests that are still queued. Requests being
+     * answered are cut off. The engine is left running.
+     */
+    public void stop() {
+        try {
+            server.close();
+            Files.deleteIfExists(socketPath);
+        }
+        catch(IOException e) {
+            //The socket is closed as far as it can be
+        }
+        service.stop();
+        handlers.shutdownNow();
+    }
+}
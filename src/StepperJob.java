@@ -0,0 +1,389 @@
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A file to encrypt or decrypt, submitted to a StepperScheduler, with its progress.<br><br>
+ *
+ * The job waits in the scheduler's queue until a job slot is free. The scheduler then gives it a share of the engine's
+ * pool threads and picks whether it is processed whole or streamed, and processes it with ParsingBoss on the slot's
+ * thread. `output()` is completed with the output's length in characters, or with the reason the job failed.<br><br>
+ *
+ * A short key is padded once, when the job is created, so `key()` holds the key that the output can be decrypted with.
+ * <br><br>
+ *
+ * An interactive job is one that someone is waiting on, like a short text. It starts ahead of queued batch jobs, and its
+ * Workers run in the engine's interactive lane.<br><br>
+ *
+ * `estimatedBytes` gives the memory that the job's text takes at its peak, so the scheduler can admit only the jobs that
+ * fit its budget.
+ */
+public class StepperJob {
+
+    /**
+     * Memory that each of a job's Workers holds besides the text, in bytes: its copy of the key, and the windows that it
+     * decodes, packs, or encodes through. Rounded up from an Assembly Worker's byte and character windows, the largest
+     * of them. Must be positive
+     */
+    final public static long WORKER_BYTES = 1 << 18;
+
+    /**
+     * Length of a streamed job's output blocks, in bytes, for outputs in the platform's default charset
+     */
+    final private static long OUTPUT_BLOCK_BYTES = ParsingPipeline.outputBlockLength(ParsingPipeline.CHUNK_LENGTH,
+            Charset.defaultCharset().newEncoder().maxBytesPerChar());
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * True if encrypting, false if decrypting
+     */
+    final private boolean encrypting;
+
+    /**
+     * Length of the input file when the job was created, in bytes. Cannot be negative
+     */
+    final private long inputBytes;
+
+    /**
+     * Path of the input file. Can't be null
+     */
+    final private String inputPath;
+
+    /**
+     * True if the job is interactive, false if it is a batch job
+     */
+    final private boolean interactive;
+
+    /**
+     * The key, padded if it was short. Holds at least BLOCK_COUNT*BLOCK_LENGTH letters. Can't be null
+     */
+    final private String key;
+
+    /**
+     * The job's name, for reports. Can't be null
+     */
+    final private String name;
+
+    /**
+     * Completed with the output's length, in characters, once the job is done. Can't be null
+     */
+    final private CompletableFuture<Long> output;
+
+    /**
+     * Path of the output file. Can't be null
+     */
+    final private String outputPath;
+
+    /**
+     * 0 if including punctuation, 1 if excluding spaces, 2 if alphabetic characters only
+     */
+    final private byte punctMode;
+
+    /**
+     * Time that the job started, from `System.nanoTime()`. Only meaningful once `threads` is positive
+     */
+    private volatile long startNanos;
+
+    /**
+     * True if the job is streamed in chunks, false if it is processed whole. Only meaningful once `threads` is positive
+     */
+    private volatile boolean streaming;
+
+    /**
+     * Number of input bytes that the job's stream has read so far. Shared with the stream, which adds to it from the
+     * stream's own thread. Its share of `inputBytes` is the job's progress
+     */
+    final private AtomicLong streamedBytes;
+
+    /**
+     * Time that the job was created, from `System.nanoTime()`
+     */
+    final private long submitNanos;
+
+    /**
+     * Number of Workers that the job's stages are split between. 0 while the job is queued
+     */
+    private volatile int threads;
+
+
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Creates a batch StepperJob that processes the file at `inputPath` into the file at `outputPath` with `key`.
+     * @param name the job's name, for reports. Can't be null
+     * @param inputPath path of the input file. Can't be null
+     * @param outputPath path of the output file. Can't be null
+     * @param key the key, as the user would type it. Padded if it holds too few letters. Can't be null
+     * @param encrypting true if encrypting, false if decrypting
+     * @param punctMode 0 if including punctuation, 1 if excluding spaces, 2 if alphabetic characters only
+     */
+    public StepperJob(String name, String inputPath, String outputPath, String key, boolean encrypting, byte punctMode) {
+        this(name, inputPath, outputPath, key, encrypting, punctMode, false);
+    }
+
+    /**
+     * Creates a StepperJob that processes the file at `inputPath` into the file at `outputPath` with `key`.
+     * @param name the job's name, for reports. Can't be null
+     * @param inputPath path of the input file. Can't be null
+     * @param outputPath path of the output file. Can't be null
+     * @param key the key, as the user would type it. Padded if it holds too few letters. Can't be null
+     * @param encrypting true if encrypting, false if decrypting
+     * @param punctMode 0 if including punctuation, 1 if excluding spaces, 2 if alphabetic characters only
+     * @param interactive true if someone is waiting on the job, false for a batch job
+     */
+    public StepperJob(String name, String inputPath, String outputPath, String key, boolean encrypting, byte punctMode,
+                      boolean interactive) {
+        if(name==null || inputPath==null || outputPath==null || key==null) {
+            throw new AssertionError("Name, paths, and key cannot be null");
+        }
+        if(punctMode<0 || punctMode>2) {
+            throw new AssertionError("Punctuation mode must be on [0,2]");
+        }
+
+        this.name = name;
+        this.inputPath = inputPath;
+        this.outputPath = outputPath;
+        this.key = (StepperBatch.countKeyLetters(key) < StepperAppFields.BLOCK_COUNT * StepperAppFields.BLOCK_LENGTH) ?
+                ParsingBoss.formatKey(key) : key;
+        this.encrypting = encrypting;
+        this.punctMode = punctMode;
+        this.interactive = interactive;
+        this.streamedBytes = new AtomicLong();
+        this.inputBytes = new File(inputPath).length();
+        this.output = new CompletableFuture<>();
+        this.submitNanos = System.nanoTime();
+    }
+
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Returns true if the job is to encrypt, false if to decrypt
+     * @return true if encrypting
+     */
+    public boolean encrypting() {
+        return encrypting;
+    }
+
+    /**
+     * Returns the most memory that the job's text should take at once, in bytes, if the job is processed whole or
+     * streamed, and split between `threads` Workers.<br><br>
+     *
+     * A job processed whole holds its text, 2 bytes per character, and the text's index. The output goes straight to the
+     * output file. A letters-only output also packs the text's letters, 3 to a character. An input holds at most one
+     * character per byte. The text is held once however it is split, so only the Workers' own `WORKER_BYTES` grow with
+     * `threads`.<br>
+     * A streamed job holds a chunk, and its index, for each Worker, for the chunk being filled, and for the chunk being
+     * written, whatever the input's length. It also holds blocks that fit a chunk's encoded output: two in the pipeline
+     * for an output file, or `ParsingBoss.STREAM_BLOCKS` in the Stream Worker for a compressed output.<br><br>
+     *
+     * The estimate is the same for either of the engine's buffer modes. An off-heap engine holds the same 2 bytes per
+     * character as an on-heap one, only in direct memory, which the JVM limits to the heap's maximum size unless told
+     * otherwise. So a budget that a job's memory fits on the heap also bounds it off the heap. The index and the Workers'
+     * windows stay on the heap in both modes.
+     *
+     * @param streaming true if the job is streamed, false if it is processed whole
+     * @param threads number of Workers that the job is split between. Must be positive
+     * @return the job's estimated peak memory
+     */
+    public long estimatedBytes(boolean streaming, int threads) {
+        if(threads<=0) {
+            throw new AssertionError("Threads must be positive");
+        }
+
+        if(streaming) {
+            int outputBlocks = ParsingBoss.isCompressed(outputPath) ? ParsingBoss.STREAM_BLOCKS : 2;
+            return (threads + 2L) * (ParsingPipeline.CHUNK_LENGTH * 2L + ParsingPipeline.CHUNK_LENGTH / 4)
+                    + threads * WORKER_BYTES + outputBlocks * OUTPUT_BLOCK_BYTES;
+        }
+        long bytes = inputBytes * 2 + inputBytes / 4 + threads * WORKER_BYTES;
+        if(punctMode==2) {
+            bytes += inputBytes * 2 / 3;
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns the length of the input file when the job was created, in bytes
+     * @return the input's length
+     */
+    public long inputBytes() {
+        return inputBytes;
+    }
+
+    /**
+     * Returns the path of the input file
+     * @return the job's input path
+     */
+    public String inputPath() {
+        return inputPath;
+    }
+
+    /**
+     * Returns true if the job is interactive, false if it is a batch job
+     * @return true if interactive
+     */
+    public boolean interactive() {
+        return interactive;
+    }
+
+    /**
+     * Returns the key that the job is processed with, padded if it was short
+     * @return the job's key
+     */
+    public String key() {
+        return key;
+    }
+
+    /**
+     * Returns the job's name
+     * @return the job's name
+     */
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Returns the output's length, which is completed once the job is done, or completed exceptionally if it failed
+     * @return the job's output length
+     */
+    public CompletableFuture<Long> output() {
+        return output;
+    }
+
+    /**
+     * Returns the path of the output file
+     * @return the job's output path
+     */
+    public String outputPath() {
+        return outputPath;
+    }
+
+    /**
+     * Returns the fraction of the job that is done, on the interval [0, 1].<br><br>
+     *
+     * A streamed job's progress is the fraction of its input that was read, and reaches 1 once it is done. A job that is
+     * processed whole only has a stage, not a fraction, so it stays at 0 until it is done. A compressed input counts its
+     * inflated bytes against its compressed length, so its progress is only a rough one.
+     *
+     * @return the job's progress
+     */
+    public double progress() {
+        if(output.isDone()) {
+            return 1;
+        }
+        if(threads==0 || !streaming) {
+            return 0;
+        }
+        return Math.min(0.99, streamedBytes.get() / (double) Math.max(inputBytes, 1));
+    }
+
+    /**
+     * Returns the job's punctuation mode
+     * @return 0 if including punctuation, 1 if excluding spaces, 2 if alphabetic characters only
+     */
+    public byte punctMode() {
+        return punctMode;
+    }
+
+    /**
+     * Returns the time that the job started, from `System.nanoTime()`, or 0 if it is still queued
+     * @return the job's start time
+     */
+    public long startNanos() {
+        return (threads==0) ? 0 : startNanos;
+    }
+
+    /**
+     * Returns true if the job is streamed in chunks, false if it is processed whole or still queued
+     * @return true if streaming
+     */
+    public boolean streaming() {
+        return threads!=0 && streaming;
+    }
+
+    /**
+     * Returns the counter of input bytes that the job's stream has read. Shared, not a copy, so the stream can add to it
+     * @return the job's streamed byte counter
+     */
+    public AtomicLong streamedBytes() {
+        return streamedBytes;
+    }
+
+    /**
+     * Returns the time that the job was created, from `System.nanoTime()`
+     * @return the job's creation time
+     */
+    public long submitNanos() {
+        return submitNanos;
+    }
+
+    /**
+     * Returns the number of Workers that the job's stages are split between, or 0 while it is queued
+     * @return the job's thread count
+     */
+    public int threads() {
+        return threads;
+    }
+
+    /**
+     * Returns a String representation of the job, with its state and progress.
+     * @return String representation of the job's fields
+     */
+    @Override
+    public String toString() {
+        String state = output.isCompletedExceptionally() ? "failed" : output.isDone() ? "done"
+                : (threads==0) ? "queued" : (streaming ? "streaming" : "processing whole") + " on " + threads + " threads";
+        return "Job \"" + name + "\" (" + inputBytes + " bytes, " + (interactive ? "interactive" : "batch") + "), " + state + String.format(", %.0f%%", progress() * 100);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Returns true if the file at `inputPath`, of `inputBytes` bytes, must be streamed into the file at `outputPath`
+     * instead of being processed whole: if it has at least `StepperBatch.STREAMING_FILE_BYTES` bytes, or either file
+     * is compressed.<br><br>
+     *
+     * Every front end picks between `ParsingBoss.processFile` and `processFileStreaming` with this, so a file takes the
+     * same path whichever one runs it.
+     *
+     * @param inputPath path of the input file. Can't be null
+     * @param outputPath path of the output file. Can't be null
+     * @param inputBytes length of the input file, in bytes. Cannot be negative
+     * @return true if the file must be streamed
+     */
+    public static boolean mustStream(String inputPath, String outputPath, long inputBytes) {
+        return inputBytes >= StepperBatch.STREAMING_FILE_BYTES
+                || ParsingBoss.isCompressed(inputPath) || ParsingBoss.isCompressed(outputPath);
+    }
+
+
+    /**
+     * Marks the job as started, split between `threads` Workers, and streamed if `streaming` is true. Called once, by the
+     * scheduler, when the job leaves the queue.
+     * @param threads number of Workers to split the job's stages between. Must be positive
+     * @param streaming true to stream the job in chunks, false to process it whole
+     */
+    public void start(int threads, boolean streaming) {
+        if(threads<=0) {
+            throw new AssertionError("Threads must be positive");
+        }
+        if(this.threads!=0) {
+            throw new AssertionError("The job already started");
+        }
+
+        this.streaming = streaming;
+        this.startNanos = System.nanoTime();
+        this.threads = threads;
+    }
+}
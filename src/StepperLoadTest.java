@@ -0,0 +1,275 @@
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.Charset;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures a running StepperServer's latency and throughput by sending it many requests at once, from the command
+ * line.<br><br>
+ *
+ * `concurrency` client threads each send their share of `requests` requests, one after another, as soon as the last
+ * one is answered, so the server always has `concurrency` requests in flight. Every request encrypts the same random
+ * text of `bodyBytes` bytes. The report gives the requests per second, and the 50th and 99th percentile and maximum
+ * latencies, over the requests that succeeded.
+ */
+public class StepperLoadTest {
+
+    /**
+     * Characters of the random request text
+     */
+    final private static String CHARACTERS = "abcdefghijklmnopqrstuvwxyz ABCDEFGHIJKLMNOPQRSTUVWXYZ 0123456789 ,.;:!?'-\n";
+
+    /**
+     * Key that every request is encrypted with. Long enough to need no padding
+     */
+    final private static String KEY = "thequickbrownfoxjumpsoverthelazydogthequickbrownfoxjumpsoverthelazydog" +
+            "thequickbrownfoxjumpsoverthelazydogandmoreletters";
+
+    /**
+     * How to run a load test from the command line
+     */
+    final public static String USAGE = "Usage: StepperApp load-test [--port <port>] [--requests <count>] " +
+            "[--concurrency <count>] [--bytes <count>]\n" +
+            "Sends encrypt requests to a server on localhost, and reports the latency percentiles and requests per second";
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * The text that every request sends. Can't be null
+     */
+    final private byte[] body;
+
+    /**
+     * Number of client threads, i.e. requests in flight at once. Must be positive
+     */
+    final private int concurrency;
+
+    /**
+     * Number of requests that failed in the last run
+     */
+    final private AtomicInteger failedRequests;
+
+    /**
+     * Number of requests to send. Must be positive
+     */
+    final private int requests;
+
+    /**
+     * The server's encrypt endpoint. Can't be null
+     */
+    final private URI uri;
+
+
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Creates a StepperLoadTest that sends `requests` requests of `bodyBytes` bytes to the server on `port` of localhost,
+     * `concurrency` at a time.
+     * @param port the server's port. Must be on the interval [1, 65535]
+     * @param requests number of requests to send. Must be positive
+     * @param concurrency number of requests in flight at once. Must be positive
+     * @param bodyBytes length of each request's text, in bytes. Cannot be negative
+     */
+    public StepperLoadTest(int port, int requests, int concurrency, int bodyBytes) {
+        if(port<1 || port>65535) {
+            throw new AssertionError("Port must be on [1, 65535]");
+        }
+        if(requests<=0 || concurrency<=0 || bodyBytes<0) {
+            throw new AssertionError("Request and client counts must be positive, and the body length cannot be negative");
+        }
+
+        this.uri = URI.create("http://127.0.0.1:" + port + "/encrypt");
+        this.requests = requests;
+        this.concurrency = concurrency;
+        this.failedRequests = new AtomicInteger();
+
+        Random random = new Random(46);
+        StringBuilder text = new StringBuilder(bodyBytes);
+        for(int i=0; i<bodyBytes; i++) {
+            text.append(CHARACTERS.charAt(random.nextInt(CHARACTERS.length())));
+        }
+        this.body = text.toString().getBytes(Charset.defaultCharset());
+    }
+
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Returns the number of requests that failed in the last run, or 0 before the first
+     * @return number of failed requests
+     */
+    public int failedRequests() {
+        return failedRequests.get();
+    }
+
+    /**
+     * Returns a String representation of the load test.
+     * @return String representation of the load test's fields
+     */
+    @Override
+    public String toString() {
+        return "Load test of " + uri + ": " + requests + " requests of " + body.length + " bytes, " + concurrency + " at once";
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Returns the latency at the `percentile`th percentile of `sortedNanos`, in milliseconds, by the nearest-rank method.
+     * <br><br>
+     *
+     * Helper to run.
+     *
+     * @param sortedNanos the latencies, in nanoseconds, in ascending order. Can't be null or empty
+     * @param percentile the percentile. Must be on the interval (0, 100]
+     * @return the percentile's latency, in milliseconds
+     */
+    private double percentileMillis(long[] sortedNanos, double percentile) {
+        int rank = (int) Math.ceil(percentile / 100 * sortedNanos.length);
+        return sortedNanos[Math.max(rank, 1) - 1] / 1e6;
+    }
+
+
+    /**
+     * Sends every request and returns the report: the number of requests that succeeded and failed, the requests per
+     * second, and the 50th and 99th percentile and maximum latencies.<br><br>
+     *
+     * A request fails if it can't be sent, or if the server answers with anything but 200.
+     *
+     * @return the report, one line each for the throughput and the latencies
+     * @throws InterruptedException if interrupted while waiting for the clients
+     */
+    public String run() throws InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .header(StepperServer.KEY_HEADER, KEY)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+
+        long[] latencies = new long[requests];
+        AtomicInteger nextRequest = new AtomicInteger();
+        failedRequests.set(0);
+
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+        ArrayList<Future<?>> clientResults = new ArrayList<>();
+        long startTime = System.nanoTime();
+        try {
+            for(int c=0; c<concurrency; c++) {
+                clientResults.add(clients.submit(() -> {
+                    for(int r = nextRequest.getAndIncrement(); r < requests; r = nextRequest.getAndIncrement()) {
+                        long requestStart = System.nanoTime();
+                        try {
+                            HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                            latencies[r] = (response.statusCode()==200) ? System.nanoTime() - requestStart : -1;
+                        }
+                        catch(IOException e) {
+                            latencies[r] = -1;
+                        }
+                        if(latencies[r] < 0) {
+                            failedRequests.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for(Future<?> clientResult : clientResults) {
+                clientResult.get();
+            }
+        }
+        catch(ExecutionException e) {
+            throw new AssertionError("A client failed", e.getCause());
+        }
+        finally {
+            clients.shutdownNow();
+        }
+        double seconds = Math.max(System.nanoTime() - startTime, 1) / 1e9;
+
+        long[] succeeded = Arrays.stream(latencies).filter(latency -> latency >= 0).sorted().toArray();
+        String report = String.format("Requests: %d succeeded, %d failed, in %.2f s, %.1f requests/s%n",
+                succeeded.length, failedRequests.get(), seconds, succeeded.length / seconds);
+        if(succeeded.length == 0) {
+            return report + "Latency: no requests succeeded" + System.lineSeparator();
+        }
+        return report + String.format("Latency: p50 %.3f ms, p99 %.3f ms, max %.3f ms%n",
+                percentileMillis(succeeded, 50), percentileMillis(succeeded, 99), succeeded[succeeded.length-1] / 1e6);
+    }
+
+
+    /**
+     * Runs the load test described by the command-line arguments `args` against a server on localhost, prints its report
+     * to `out`, and returns the program's exit code.<br><br>
+     *
+     * See `USAGE` for the arguments. `args[0]` is "load-test". Usage errors are reported to `err`.
+     *
+     * @param args the command-line arguments. Can't be null
+     * @param out stream to print the report to. Can't be null
+     * @param err stream to report errors to. Can't be null
+     * @return 0 if every request succeeded, 1 if any failed, 2 if the arguments are invalid
+     */
+    public static int runCommand(String[] args, PrintStream out, PrintStream err) {
+        if(args==null || out==null || err==null) {
+            throw new AssertionError("Arguments and streams cannot be null");
+        }
+
+        int port = 8080;
+        int requests = 10000;
+        int concurrency = 32;
+        int bodyBytes = 1000;
+        try {
+            for(int i=1; i<args.length; i+=2) {
+                if(i+1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value for " + args[i]);
+                }
+                int value = Integer.parseInt(args[i+1]);
+                switch(args[i]) {
+                    case "--port" -> port = value;
+                    case "--requests" -> requests = value;
+                    case "--concurrency" -> concurrency = value;
+                    case "--bytes" -> bodyBytes = value;
+                    default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+            if(port<1 || port>65535 || requests<=0 || concurrency<=0 || bodyBytes<0) {
+                throw new IllegalArgumentException("The port must be on [1, 65535], counts must be positive, " +
+                        "and the body length cannot be negative");
+            }
+        }
+        catch(IllegalArgumentException e) {
+            err.println(e.getMessage());
+            err.println(USAGE);
+            return 2;
+        }
+
+        try {
+            StepperLoadTest loadTest = new StepperLoadTest(port, requests, concurrency, bodyBytes);
+            out.print(loadTest.run());
+            return (loadTest.failedRequests()==0) ? 0 : 1;
+        }
+        catch(InterruptedException e) {
+            err.println("Interrupted");
+            return 1;
+        }
+    }
+}
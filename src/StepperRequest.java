@@ -0,0 +1,141 @@
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A small text that a client sent to be processed, waiting in a StepperServer's queue to be batched.<br><br>
+ *
+ * A Batch Worker processes the text, and completes `output()` with the encoded output, or with the reason it failed.
+ * The client's thread waits on `output()` meanwhile.
+ */
+public class StepperRequest {
+
+    /**
+     * True if encrypting, false if decrypting
+     */
+    final private boolean encrypting;
+
+    /**
+     * The text to process, in the platform's default charset. Can't be null
+     */
+    final private byte[] input;
+
+    /**
+     * The key to process the text with. Dimensions are `StepperAppFields.BLOCK_COUNT` by `StepperAppFields.BLOCK_LENGTH`
+     */
+    final private byte[][] key;
+
+    /**
+     * Completed with the output, in the platform's default charset, once the text is processed. Can't be null
+     */
+    final private CompletableFuture<byte[]> output;
+
+    /**
+     * 0 if including punctuation, 1 if excluding spaces, 2 if alphabetic characters only
+     */
+    final private byte punctMode;
+
+    /**
+     * Time that the request was created, from `System.nanoTime()`
+     */
+    final private long submitNanos;
+
+
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Creates a StepperRequest to process `input` with `key`.
+     * @param input the text to process, in the platform's default charset. Can't be null
+     * @param key the key. Dimensions must be `StepperAppFields.BLOCK_COUNT` by `StepperAppFields.BLOCK_LENGTH`
+     * @param encrypting true if encrypting, false if decrypting
+     * @param punctMode 0 if including punctuation, 1 if excluding spaces, 2 if alphabetic characters only
+     */
+    public StepperRequest(byte[] input, byte[][] key, boolean encrypting, byte punctMode) {
+        if(input==null || key==null) {
+            throw new AssertionError("Input and key cannot be null");
+        }
+        if(key.length!=StepperAppFields.BLOCK_COUNT) {
+            throw new AssertionError("Key must have BLOCK_COUNT blocks");
+        }
+        if(punctMode<0 || punctMode>2) {
+            throw new AssertionError("Punctuation mode must be on [0,2]");
+        }
+
+        this.input = input.clone();
+        this.key = new byte[key.length][];
+        for(int a=0; a<key.length; a++) {
+            if(key[a]==null || key[a].length!=StepperAppFields.BLOCK_LENGTH) {
+                throw new AssertionError("Each key block must have BLOCK_LENGTH letters");
+            }
+            this.key[a] = key[a].clone();
+        }
+        this.encrypting = encrypting;
+        this.punctMode = punctMode;
+        this.output = new CompletableFuture<>();
+        this.submitNanos = System.nanoTime();
+    }
+
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Returns true if the request is to encrypt, false if to decrypt
+     * @return true if encrypting
+     */
+    public boolean encrypting() {
+        return encrypting;
+    }
+
+    /**
+     * Returns the text to process, in the platform's default charset. Not a copy, so it must not be modified
+     * @return the request's text
+     */
+    public byte[] input() {
+        return input;
+    }
+
+    /**
+     * Returns the key to process the text with. Not a copy, so it must not be modified
+     * @return the request's key blocks
+     */
+    public byte[][] key() {
+        return key;
+    }
+
+    /**
+     * Returns the output, which is completed once the text is processed, or completed exceptionally if it failed
+     * @return the request's output
+     */
+    public CompletableFuture<byte[]> output() {
+        return output;
+    }
+
+    /**
+     * Returns the request's punctuation mode
+     * @return 0 if including punctuation, 1 if excluding spaces, 2 if alphabetic characters only
+     */
+    public byte punctMode() {
+        return punctMode;
+    }
+
+    /**
+     * Returns the time that the request was created, from `System.nanoTime()`
+     * @return the request's creation time
+     */
+    public long submitNanos() {
+        return submitNanos;
+    }
+
+    /**
+     * Returns a String representation of the request.
+     * @return String representation of the request's fields
+     */
+    @Override
+    public String toString() {
+        return "Request of " + input.length + " bytes, encrypting=" + encrypting + ", punctuation=" + punctMode
+                + ", done=" + output.isDone();
+    }
+}
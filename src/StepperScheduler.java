@@ -0,0 +1,445 @@
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs many file jobs at once on one ParsingEngine, and splits the engine's pool threads between them fairly.<br><br>
+ *
+ * The pool's threads are the core budget, which no number of jobs can exceed. Jobs wait in a queue, oldest first, until
+ * one of `jobSlots` job slots is free. A job that starts is split between its share of the budget: the pool's threads
+ * over the number of jobs that will run at once, counting the queued jobs that are waiting for a slot. So a job alone
+ * gets every pool thread, and jobs started under load are split less finely instead of each splitting N ways.<br>
+ * Each job's thread is bound to the job in the engine, so the jobs' Workers take turns on the pool. A job whose stage
+ * queues many Workers doesn't make the others wait behind all of them.<br><br>
+ *
+ * Interactive jobs start ahead of queued batch jobs, and run in the engine's interactive lane. One job thread more than
+ * `jobSlots` is kept for them, so an interactive job never waits for a batch job to finish. A queued batch job that
+ * `ParsingEngine.MAX_INTERACTIVE_TURNS` interactive jobs in a row have passed starts next, so batch jobs are never
+ * starved.<br><br>
+ *
+ * Files of at least `StepperBatch.STREAMING_FILE_BYTES` bytes, and compressed files, are streamed through a
+ * ParsingPipeline. So are batch files of at least `SEGMENTED_BATCH_BYTES` bytes, so that each of their Workers holds a
+ * pool thread for one chunk, not a whole piece of the file, and interactive Workers get a pool thread soon.
+ * Smaller ones are processed whole. `stats()` reports the queue depth, and `jobs()` each job's progress.
+ * <br><br>
+ *
+ * Jobs are only admitted while their text fits the memory budget, by `StepperJob.estimatedBytes`. The memory in use is
+ * whichever is larger: the estimates of the running jobs, or the engine's live buffers, which also count the engine's
+ * other users. A job that doesn't fit is split between fewer Workers, since each of them holds memory of its own. A job
+ * that would be processed whole but doesn't fit even on one Worker is streamed instead, and a streamed job that doesn't
+ * fit is split between fewer Workers, since each of them holds a chunk. A job that still doesn't fit stays queued until
+ * running jobs free their memory, unless no job is running. `memoryStats()` reports the budget and the jobs that were
+ * downgraded or throttled.<br><br>
+ *
+ * Job threads wait on their Workers, so they are the scheduler's own threads, never the engine's pool threads.
+ */
+public class StepperScheduler {
+
+    /**
+     * Number of job slots of a scheduler that isn't given a number. Any positive number of slots works, since each
+     * job's Stream Workers get threads of their own from the engine. Must be positive
+     */
+    final public static int DEFAULT_JOB_SLOTS = 4;
+
+    /**
+     * Batch files of at least this many bytes are streamed in chunks. Must be positive
+     */
+    final public static long SEGMENTED_BATCH_BYTES = 1 << 24;
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Sum of the running jobs' estimated memory, in bytes. Cannot be negative
+     */
+    private long admittedBytes;
+
+    /**
+     * Number of jobs that finished
+     */
+    private long completedJobs;
+
+    /**
+     * Number of jobs that were streamed to fit the memory budget, instead of being processed whole
+     */
+    private long downgradedJobs;
+
+    /**
+     * The engine that every job's Workers run on. Can't be null
+     */
+    final private ParsingEngine engine;
+
+    /**
+     * Number of jobs that failed or were cancelled
+     */
+    private long failedJobs;
+
+    /**
+     * Number of interactive jobs that started in a row while a batch job could have started. Must be on the interval
+     * [0, ParsingEngine.MAX_INTERACTIVE_TURNS]
+     */
+    private int interactiveStarts;
+
+    /**
+     * Number of batch jobs that run at once. Must be positive
+     */
+    final private int jobSlots;
+
+    /**
+     * Most memory that the running jobs' text may take at once, in bytes. Must be positive
+     */
+    final private long memoryBudget;
+
+    /**
+     * Threads that run the jobs, one per job slot and one more for interactive jobs. Can't be null
+     */
+    final private ExecutorService jobThreads;
+
+    /**
+     * Batch jobs waiting for a slot, oldest first. Can't be null
+     */
+    final private ArrayDeque<StepperJob> queuedBatchJobs;
+
+    /**
+     * Interactive jobs waiting for a slot, oldest first. Can't be null
+     */
+    final private ArrayDeque<StepperJob> queuedInteractiveJobs;
+
+    /**
+     * Number of batch jobs in `runningJobs`. Must be on the interval [0, jobSlots]
+     */
+    private int runningBatchJobs;
+
+    /**
+     * Jobs that are running. Can't be null
+     */
+    final private ArrayList<StepperJob> runningJobs;
+
+    /**
+     * True once the scheduler is shut down
+     */
+    private boolean stopped;
+
+    /**
+     * Number of jobs that were split between fewer Workers than their share of the pool, to fit the memory budget
+     */
+    private long throttledJobs;
+
+
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Creates a StepperScheduler that runs up to `DEFAULT_JOB_SLOTS` batch jobs at once on `engine`.
+     * @param engine the engine to run the Workers on. Shared, and not shut down by the scheduler. Can't be null
+     */
+    public StepperScheduler(ParsingEngine engine) {
+        this(engine, DEFAULT_JOB_SLOTS);
+    }
+
+    /**
+     * Creates a StepperScheduler that runs up to `jobSlots` batch jobs at once on `engine`, and up to `jobSlots+1` jobs
+     * in all, within half of the JVM's maximum heap.
+     * @param engine the engine to run the Workers on. Shared, and not shut down by the scheduler. Can't be null
+     * @param jobSlots number of batch jobs that run at once. Must be positive
+     */
+    public StepperScheduler(ParsingEngine engine, int jobSlots) {
+        this(engine, jobSlots, Runtime.getRuntime().maxMemory() / 2);
+    }
+
+    /**
+     * Creates a StepperScheduler that runs up to `jobSlots` batch jobs at once on `engine`, and up to `jobSlots+1` jobs
+     * in all, while their text fits in `memoryBudget` bytes.
+     * @param engine the engine to run the Workers on. Shared, and not shut down by the scheduler. Can't be null
+     * @param jobSlots number of batch jobs that run at once. Must be positive
+     * @param memoryBudget most memory that the running jobs' text may take at once, in bytes. Must be positive
+     */
+    public StepperScheduler(ParsingEngine engine, int jobSlots, long memoryBudget) {
+        if(engine==null) {
+            throw new AssertionError("Engine cannot be null");
+        }
+        if(jobSlots<1) {
+            throw new AssertionError("Job slots must be positive");
+        }
+        if(memoryBudget<=0) {
+            throw new AssertionError("Memory budget must be positive");
+        }
+
+        //The engine is shared, so it is not copied
+        this.engine = engine;
+        this.jobSlots = jobSlots;
+        this.memoryBudget = memoryBudget;
+        this.queuedBatchJobs = new ArrayDeque<>();
+        this.queuedInteractiveJobs = new ArrayDeque<>();
+        this.runningJobs = new ArrayList<>();
+
+        AtomicInteger threadNumber = new AtomicInteger(1);
+        this.jobThreads = Executors.newFixedThreadPool(jobSlots + 1, runnable -> {
+            Thread thread = new Thread(runnable, "Stepper scheduler job " + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Returns the jobs that are running, then the interactive and the batch jobs that are queued, oldest first. Each job
+     * reports its own progress
+     * @return the scheduler's unfinished jobs
+     */
+    public synchronized StepperJob[] jobs() {
+        ArrayList<StepperJob> jobs = new ArrayList<>(runningJobs);
+        jobs.addAll(queuedInteractiveJobs);
+        jobs.addAll(queuedBatchJobs);
+        return jobs.toArray(new StepperJob[0]);
+    }
+
+    /**
+     * Returns a one-line report of the memory budget and the running jobs' estimated memory, in bytes, and of the jobs
+     * that were streamed or split between fewer Workers to fit the budget
+     * @return the scheduler's memory counters
+     */
+    public synchronized String memoryStats() {
+        return "budget=" + memoryBudget + " admitted=" + admittedBytes + " downgraded=" + downgradedJobs
+                + " throttled=" + throttledJobs;
+    }
+
+    /**
+     * Returns a one-line report of the scheduler's queue depth and jobs, and of the Workers waiting for the pool
+     * @return the scheduler's counters
+     */
+    public synchronized String stats() {
+        return "queued=" + (queuedInteractiveJobs.size() + queuedBatchJobs.size()) + " running=" + runningJobs.size() + " completed=" + completedJobs
+                + " failed=" + failedJobs + " queuedWorkers=" + engine.queuedWorkers();
+    }
+
+    /**
+     * Returns a String representation of the scheduler.
+     * @return String representation of the scheduler's fields
+     */
+    @Override
+    public String toString() {
+        return "Scheduler with " + jobSlots + " batch job slots on " + engine.poolSize() + " pool threads, " + stats();
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Starts `job` if its memory fits the budget, split between at most `share` Workers.<br><br>
+     *
+     * A job that doesn't fit is split between fewer Workers, since each Worker holds memory of its own. A job that would
+     * be processed whole but doesn't fit even on one Worker is streamed instead, on its full share, and split between
+     * fewer Workers only if it still doesn't fit, since each of them holds a chunk. A job that still doesn't fit isn't
+     * started, unless no job is running, since it would otherwise never start.<br><br>
+     *
+     * Helper to startJobs.
+     *
+     * @param job the queued job. Can't be null
+     * @param share the job's share of the pool's threads. Must be positive
+     * @return true if the job started, false if it must wait for running jobs to free memory
+     */
+    private boolean admitJob(StepperJob job, int share) {
+        //The engine's live buffers include any text of its other users, and of running jobs that outgrew their estimates
+        long freeBytes = memoryBudget - Math.max(admittedBytes, 2 * engine.liveBufferChars());
+
+        boolean streaming = mustStream(job);
+        int threads = share;
+        if(!streaming) {
+            while(threads > 1 && job.estimatedBytes(false, threads) > freeBytes) {
+                threads--;
+            }
+            if(job.estimatedBytes(false, threads) > freeBytes) {
+                streaming = true;
+                threads = share;
+            }
+        }
+        while(streaming && threads > 1 && job.estimatedBytes(true, threads) > freeBytes) {
+            threads--;
+        }
+        if(job.estimatedBytes(streaming, threads) > freeBytes && !runningJobs.isEmpty()) {
+            return false;
+        }
+
+        if(streaming && !mustStream(job)) {
+            downgradedJobs++;
+        }
+        if(threads < share) {
+            throttledJobs++;
+        }
+        job.start(threads, streaming);
+        admittedBytes += job.estimatedBytes(streaming, threads);
+        return true;
+    }
+
+
+    /**
+     * Counts the finished `job` and gives its slot to the next queued job.<br><br>
+     *
+     * Helper to runJob.
+     *
+     * @param job the job that finished. Can't be null
+     * @param failed true if the job failed
+     */
+    private synchronized void finishJob(StepperJob job, boolean failed) {
+        runningJobs.remove(job);
+        admittedBytes -= job.estimatedBytes(job.streaming(), job.threads());
+        if(!job.interactive()) {
+            runningBatchJobs--;
+        }
+        if(failed) {
+            failedJobs++;
+        }
+        else {
+            completedJobs++;
+        }
+        startJobs();
+    }
+
+
+    /**
+     * Returns true if `job` must be streamed: `StepperJob.mustStream` says so for its files, or it is a batch job
+     * large enough to be split into segments.<br><br>
+     *
+     * Helper to admitJob.
+     *
+     * @param job the job. Can't be null
+     * @return true to stream the job, false to process it whole
+     */
+    private boolean mustStream(StepperJob job) {
+        return StepperJob.mustStream(job.inputPath(), job.outputPath(), job.inputBytes())
+                || (!job.interactive() && job.inputBytes() >= SEGMENTED_BATCH_BYTES);
+    }
+
+
+    /**
+     * Processes `job` on the calling job thread, frees its slot, and completes its output. The slot is freed first, so
+     * a client that waits on the output sees the scheduler's counters already updated.<br><br>
+     *
+     * A job that is interrupted, i.e. by `shutdown`, is completed with a CancellationException instead of its failure.<br><br>
+     *
+     * Helper to startJobs.
+     *
+     * @param job the job to run. Must have started. Can't be null
+     */
+    private void runJob(StepperJob job) {
+        long outputLength = 0;
+        Throwable failure = null;
+
+        //The job's Workers take turns with the other jobs' Workers in its lane
+        engine.bindJob(job, job.interactive());
+        try {
+            outputLength = job.streaming() ?
+                    ParsingBoss.processFileStreaming(engine, job.inputPath(), job.outputPath(), job.key(),
+                            job.encrypting(), job.punctMode(), job.threads(), job.streamedBytes()) :
+                    ParsingBoss.processFile(engine, job.inputPath(), job.outputPath(), job.key(),
+                            job.encrypting(), job.punctMode(), job.threads());
+        }
+        catch(Throwable t) {
+            failure = t;
+        }
+        finally {
+            engine.bindJob(null, false);
+        }
+
+        finishJob(job, failure!=null);
+        if(failure==null) {
+            job.output().complete(outputLength);
+        }
+        else if(failure instanceof InterruptedException || failure instanceof InterruptedIOException) {
+            CancellationException cancellation = new CancellationException("The scheduler was shut down");
+            cancellation.initCause(failure);
+            job.output().completeExceptionally(cancellation);
+        }
+        else {
+            job.output().completeExceptionally(failure);
+        }
+    }
+
+
+    /**
+     * Stops the scheduler. Queued jobs are cancelled, and running jobs are interrupted. The engine is left running.
+     */
+    public synchronized void shutdown() {
+        stopped = true;
+        for(ArrayDeque<StepperJob> queuedJobs : List.of(queuedInteractiveJobs, queuedBatchJobs)) {
+            for(StepperJob job = queuedJobs.poll(); job!=null; job = queuedJobs.poll()) {
+                job.output().completeExceptionally(new CancellationException("The scheduler was shut down"));
+                failedJobs++;
+            }
+        }
+        jobThreads.shutdownNow();
+    }
+
+
+    /**
+     * Starts queued jobs while a slot is free and their memory fits, interactive jobs first and each lane oldest first.
+     * Each job is split between its share of the pool's threads.<br><br>
+     *
+     * Helper to finishJob and submit.
+     */
+    private synchronized void startJobs() {
+        while(!stopped) {
+            //Batch jobs take up to jobSlots job threads. Interactive jobs may also take the last one
+            boolean threadFree = runningJobs.size() < jobSlots + 1;
+            boolean interactiveReady = threadFree && !queuedInteractiveJobs.isEmpty();
+            boolean batchReady = threadFree && runningBatchJobs < jobSlots && !queuedBatchJobs.isEmpty();
+            if(!interactiveReady && !batchReady) {
+                break;
+            }
+
+            //Share the pool between the jobs that will run at once, this one and any waiting for a slot included
+            int jobsAtOnce = Math.min(jobSlots, runningJobs.size() + queuedInteractiveJobs.size() + queuedBatchJobs.size());
+            int share = Math.max(1, engine.poolSize() / jobsAtOnce);
+
+            //Interactive jobs go first, unless a batch job that could start was passed too many times in a row
+            boolean batchTurn = batchReady && (!interactiveReady || interactiveStarts >= ParsingEngine.MAX_INTERACTIVE_TURNS);
+            if(!admitJob((batchTurn ? queuedBatchJobs : queuedInteractiveJobs).peek(), share)) {
+                //A small interactive job may still fit while a batch job waits for memory
+                if(!batchTurn || !interactiveReady || !admitJob(queuedInteractiveJobs.peek(), share)) {
+                    break;
+                }
+                batchTurn = false;
+            }
+            interactiveStarts = (!batchTurn && batchReady) ? interactiveStarts+1 : 0;
+            StepperJob job = batchTurn ? queuedBatchJobs.poll() : queuedInteractiveJobs.poll();
+
+            runningJobs.add(job);
+            if(!job.interactive()) {
+                runningBatchJobs++;
+            }
+            jobThreads.execute(() -> runJob(job));
+        }
+    }
+
+
+    /**
+     * Queues `job`, and starts it right away if a slot is free. The job's output is completed once it is done.
+     * @param job the job to run. Must not have been submitted before. Can't be null
+     */
+    public synchronized void submit(StepperJob job) {
+        if(job==null) {
+            throw new AssertionError("Job cannot be null");
+        }
+        if(stopped) {
+            job.output().completeExceptionally(new CancellationException("The scheduler was shut down"));
+            failedJobs++;
+            return;
+        }
+
+        (job.interactive() ? queuedInteractiveJobs : queuedBatchJobs).add(job);
+        startJobs();
+    }
+}
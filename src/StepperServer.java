@@ -0,0 +1,409 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serves the cipher over HTTP on the local machine, with one warm ParsingEngine shared by every request.<br><br>
+ *
+ * `POST /encrypt` and `POST /decrypt` process the request's body and respond with the output. Both sides are text in the
+ * platform's default charset, processed like a file: line breaks become "\n", and the last line ends with one.
+ * The key goes in the `X-Stepper-Key` header. A key with too few letters is padded when encrypting, and the padded key
+ * is sent back in the same header. The punctuation mode goes in the `punct` query parameter, and is 0 by default.
+ * `GET /stats` reports the requests served so far.<br><br>
+ *
+ * A StepperService processes the bodies. Small bodies, of at most `StepperService.BATCH_BODY_BYTES` bytes, are batched
+ * with the other requests queued at the time.<br>
+ * Larger bodies, and bodies of unknown length, are streamed through a ParsingPipeline instead, and the response is sent
+ * chunk by chunk as it is processed, so no body is held whole. If a streamed request fails after its response started,
+ * the connection is closed without finishing the response.<br><br>
+ *
+ * Client threads wait on their requests, so they are the server's own handler threads, never the engine's pool threads.
+ */
+public class StepperServer {
+
+    /**
+     * Number of threads that handle connections. Each waits on one request at a time. Must be positive
+     */
+    final private static int HANDLER_THREADS = 64;
+
+    /**
+     * Name of the header that holds the key, in a request, and the padded key, in a response
+     */
+    final public static String KEY_HEADER = "X-Stepper-Key";
+
+    /**
+     * How to run the server from the command line
+     */
+    final public static String USAGE = "Usage: StepperApp serve [--port <port>] [--threads <count>]\n" +
+            "Serves POST /encrypt and POST /decrypt on localhost, with the key in the " + KEY_HEADER + " header " +
+            "and the punctuation mode in the punct query parameter. GET /stats reports the requests served";
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Number of requests that were answered with an error
+     */
+    final private AtomicLong failedRequests;
+
+    /**
+     * Threads that handle connections. Can't be null
+     */
+    final private ExecutorService handlers;
+
+    /**
+     * The HTTP server. Can't be null
+     */
+    final private HttpServer server;
+
+    /**
+     * The service that processes every request's body. Can't be null
+     */
+    final private StepperService service;
+
+
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Creates a StepperServer that listens on `port` of the loopback address, and runs every request on `engine`.
+     * The server doesn't answer until `start()` is called.
+     * @param engine the engine to run the Workers on. Shared, and not shut down by the server. Can't be null
+     * @param port the port to listen on, or 0 for any free port. Must be on the interval [0, 65535]
+     * @throws IOException if the port can't be bound
+     */
+    public StepperServer(ParsingEngine engine, int port) throws IOException {
+        if(engine==null) {
+            throw new AssertionError("Engine cannot be null");
+        }
+        if(port<0 || port>65535) {
+            throw new AssertionError("Port must be on [0, 65535]");
+        }
+
+        //The engine is shared, so it is not copied
+        this.service = new StepperService(engine);
+        this.failedRequests = new AtomicLong();
+
+        AtomicInteger threadNumber = new AtomicInteger(1);
+        this.handlers = Executors.newFixedThreadPool(HANDLER_THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "Stepper server handler " + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.server.setExecutor(handlers);
+        this.server.createContext("/encrypt", exchange -> handleProcess(exchange, true));
+        this.server.createContext("/decrypt", exchange -> handleProcess(exchange, false));
+        this.server.createContext("/stats", this::handleStats);
+    }
+
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Returns the port that the server listens on
+     * @return the server's port
+     */
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Returns a one-line report of the requests served so far, as `GET /stats` sends it.
+     * @return the server's counters
+     */
+    public String stats() {
+        return service.stats() + " failed=" + failedRequests.get();
+    }
+
+    /**
+     * Returns a String representation of the server.
+     * @return String representation of the server's fields
+     */
+    @Override
+    public String toString() {
+        return "Server on port " + port() + ", " + stats();
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Processes the body of `exchange` and responds with the output, by batching the body if it is small, or
+     * streaming it otherwise. Responds with an error if the request is invalid.<br><br>
+     *
+     * Helper to the constructor.
+     *
+     * @param exchange the request to answer. Can't be null
+     * @param encrypting true if encrypting, false if decrypting
+     * @throws IOException if the request can't be read, or the response can't be sent
+     */
+    private void handleProcess(HttpExchange exchange, boolean encrypting) throws IOException {
+        try(exchange) {
+            if(!exchange.getRequestMethod().equals("POST")) {
+                sendError(exchange, 405, "Use POST");
+                return;
+            }
+
+            String key = exchange.getRequestHeaders().getFirst(KEY_HEADER);
+            byte punctMode = parsePunctMode(exchange.getRequestURI().getRawQuery());
+            if(key==null || punctMode<0) {
+                sendError(exchange, 400, "A key is required in the " + KEY_HEADER + " header, and punct must be 0, 1, or 2");
+                return;
+            }
+
+            //Pad a short key, and send it back so the output can be decrypted
+            if(StepperBatch.countKeyLetters(key) < StepperAppFields.BLOCK_COUNT * StepperAppFields.BLOCK_LENGTH) {
+                if(!encrypting) {
+                    sendError(exchange, 400, "The key must hold at least "
+                            + StepperAppFields.BLOCK_COUNT * StepperAppFields.BLOCK_LENGTH + " letters to decrypt");
+                    return;
+                }
+                key = ParsingBoss.formatKey(key);
+                exchange.getResponseHeaders().set(KEY_HEADER, key);
+            }
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=" + Charset.defaultCharset().name());
+
+            String lengthHeader = exchange.getRequestHeaders().getFirst("Content-Length");
+            long bodyLength = (lengthHeader==null) ? -1 : Long.parseLong(lengthHeader);
+            if(bodyLength >= 0 && bodyLength <= StepperService.BATCH_BODY_BYTES) {
+                processBatched(exchange, key, encrypting, punctMode);
+            }
+            else {
+                processStreamed(exchange, key, encrypting, punctMode);
+            }
+        }
+        catch(InterruptedException e) {
+            failedRequests.incrementAndGet();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    /**
+     * Responds to `exchange` with the server's counters, as one line of text.<br><br>
+     *
+     * Helper to the constructor.
+     *
+     * @param exchange the request to answer. Can't be null
+     * @throws IOException if the response can't be sent
+     */
+    private void handleStats(HttpExchange exchange) throws IOException {
+        try(exchange) {
+            byte[] body = (stats() + "\n").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+        }
+    }
+
+
+    /**
+     * Returns the punctuation mode in the query string `query`, 0 if it has none, or -1 if it is invalid.<br><br>
+     *
+     * Helper to handleProcess.
+     *
+     * @param query the request's raw query string, or null if it has none
+     * @return the punctuation mode, or -1
+     */
+    private byte parsePunctMode(String query) {
+        if(query==null) {
+            return 0;
+        }
+
+        for(String parameter : query.split("&")) {
+            if(parameter.startsWith("punct=")) {
+                String value = URLDecoder.decode(parameter.substring("punct=".length()), StandardCharsets.UTF_8);
+                return switch(value) {
+                    case "0" -> 0;
+                    case "1" -> 1;
+                    case "2" -> 2;
+                    default -> -1;
+                };
+            }
+        }
+        return 0;
+    }
+
+
+    /**
+     * Reads the small body of `exchange`, queues it to be batched, and responds with its output once it is done.<br><br>
+     *
+     * Helper to handleProcess.
+     *
+     * @param exchange the request to answer. Its body must be at most `BATCH_BODY_BYTES` long. Can't be null
+     * @param key the key. Must hold at least BLOCK_COUNT*BLOCK_LENGTH letters. Can't be null
+     * @param encrypting true if encrypting, false if decrypting
+     * @param punctMode 0 if including punctuation, 1 if excluding spaces, 2 if alphabetic characters only
+     * @throws IOException if the body can't be read, or the response can't be sent
+     * @throws InterruptedException if interrupted while waiting for the output
+     */
+    private void processBatched(HttpExchange exchange, String key, boolean encrypting, byte punctMode)
+            throws IOException, InterruptedException {
+        StepperRequest request = service.submit(exchange.getRequestBody().readAllBytes(), key, encrypting, punctMode);
+
+        byte[] output;
+        try {
+            output = request.output().get();
+        }
+        catch(ExecutionException e) {
+            sendError(exchange, 500, "The text could not be processed: " + e.getCause());
+            return;
+        }
+
+        exchange.sendResponseHeaders(200, (output.length==0) ? -1 : output.length);
+        try(OutputStream body = exchange.getResponseBody()) {
+            body.write(output);
+        }
+    }
+
+
+    /**
+     * Streams the body of `exchange` through a ParsingPipeline, and sends the output as a chunked response as it is
+     * processed.<br><br>
+     *
+     * Helper to handleProcess.
+     *
+     * @param exchange the request to answer. Can't be null
+     * @param key the key. Must hold at least BLOCK_COUNT*BLOCK_LENGTH letters. Can't be null
+     * @param encrypting true if encrypting, false if decrypting
+     * @param punctMode 0 if including punctuation, 1 if excluding spaces, 2 if alphabetic characters only
+     * @throws IOException if the body can't be read or processed, or the response can't be sent
+     * @throws InterruptedException if interrupted while streaming
+     */
+    private void processStreamed(HttpExchange exchange, String key, boolean encrypting, byte punctMode)
+            throws IOException, InterruptedException {
+        exchange.sendResponseHeaders(200, 0);
+        try {
+            service.processStream(exchange.getRequestBody(), exchange.getResponseBody(), key, encrypting, punctMode);
+        }
+        catch(IOException e) {
+            failedRequests.incrementAndGet();
+            throw e;
+        }
+    }
+
+
+    /**
+     * Runs the server described by the command-line arguments `args`, on a new engine with one pool thread per processor
+     * unless `--threads` is given, until the program is stopped. Returns the program's exit code if the server
+     * can't start.<br><br>
+     *
+     * See `USAGE` for the arguments. `args[0]` is "serve". Usage errors are reported to `err`.
+     *
+     * @param args the command-line arguments. Can't be null
+     * @param out stream to print the server's address to. Can't be null
+     * @param err stream to report errors to. Can't be null
+     * @return 1 if the server can't start, 2 if the arguments are invalid
+     */
+    public static int runCommand(String[] args, PrintStream out, PrintStream err) {
+        if(args==null || out==null || err==null) {
+            throw new AssertionError("Arguments and streams cannot be null");
+        }
+
+        int port = 8080;
+        int threads = Runtime.getRuntime().availableProcessors();
+        try {
+            for(int i=1; i<args.length; i+=2) {
+                if(i+1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value for " + args[i]);
+                }
+                switch(args[i]) {
+                    case "--port" -> port = Integer.parseInt(args[i+1]);
+                    case "--threads" -> threads = Integer.parseInt(args[i+1]);
+                    default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+            if(port<0 || port>65535 || threads<=0) {
+                throw new IllegalArgumentException("The port must be on [0, 65535], and threads must be positive");
+            }
+        }
+        catch(IllegalArgumentException e) {
+            err.println(e.getMessage());
+            err.println(USAGE);
+            return 2;
+        }
+
+        ParsingEngine engine = new ParsingEngine(threads,
+                Boolean.getBoolean(ParsingEngine.OFF_HEAP_PROPERTY));
+        try {
+            StepperServer server = new StepperServer(engine, port);
+            server.start();
+            out.println("Listening on http://" + InetAddress.getLoopbackAddress().getHostAddress() + ":" + server.port());
+
+            //Serve until the program is stopped
+            new CountDownLatch(1).await();
+            return 0;
+        }
+        catch(IOException e) {
+            err.println("Could not start the server: " + e.getMessage());
+            return 1;
+        }
+        catch(InterruptedException e) {
+            return 0;
+        }
+        finally {
+            engine.shutdown();
+        }
+    }
+
+
+    /**
+     * Responds to `exchange` with `status` and the one-line `message`, and counts the request as failed.<br><br>
+     *
+     * Helper to handleProcess and processBatched.
+     *
+     * @param exchange the request to answer. Can't be null
+     * @param status the HTTP status code
+     * @param message the error message. Can't be null
+     * @throws IOException if the response can't be sent
+     */
+    private void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        failedRequests.incrementAndGet();
+
+        byte[] body = (message + "\n").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+
+    /**
+     * Starts answering requests.
+     */
+    public void start() {
+        service.start();
+        server.start();
+    }
+
+
+    /**
+     * Stops answering requests, and fails the requests that are still queued. Waits up to `delaySeconds` seconds
+     * for the requests being answered to finish. The engine is left running.
+     * @param delaySeconds seconds to wait for the requests being answered. Cannot be negative
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        service.stop();
+        handlers.shutdownNow();
+    }
+}
@@ -0,0 +1,347 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Processes texts for any number of clients at once on one warm ParsingEngine, whatever carries the texts to it.
+ * StepperServer and StepperDaemon both answer their clients through one.<br><br>
+ *
+ * Small texts, of at most `BATCH_BODY_BYTES` bytes, are batched with `submit`. Each is queued, and a batcher thread
+ * takes everything that is queued once a pool thread is free, and spreads it over every free pool thread as Batch
+ * Workers. While the pool is busy, requests pile up, so the batches grow with the load instead of each request waiting
+ * for its own turn.<br>
+ * Batches run in the engine's interactive lane, so a large text never holds them up for long.<br>
+ * Larger texts are streamed through a ParsingPipeline with `processStream`. Any number of them may stream at once,
+ * since each pipeline's Stream Workers get threads of their own from the engine.<br><br>
+ *
+ * Key blocks are made once per key and cached, so clients that keep sending the same key don't pay to lay it out again.
+ * <br><br>
+ *
+ * Clients wait on their requests, so they call from their own threads, never the engine's pool threads.
+ */
+public class StepperService {
+
+    /**
+     * Texts of at most this many bytes are batched instead of streamed. Must be positive
+     */
+    final public static int BATCH_BODY_BYTES = 1 << 16;
+
+    /**
+     * Maximum number of keys whose blocks are cached. The least recently used key is dropped when the cache is full.
+     * Must be positive
+     */
+    final public static int KEY_CACHE_SIZE = 256;
+
+    /**
+     * Maximum number of requests that one Batch Worker processes. Must be positive
+     */
+    final public static int MAX_BATCH_REQUESTS = 256;
+
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Number of requests that were processed in batches
+     */
+    final private AtomicLong batchedRequests;
+
+    /**
+     * Thread that takes the queued requests and starts their Batch Workers. Can't be null
+     */
+    final private Thread batcher;
+
+    /**
+     * Number of Batch Workers that were started
+     */
+    final private AtomicLong batches;
+
+    /**
+     * The engine that every request's Workers run on. Can't be null
+     */
+    final private ParsingEngine engine;
+
+    /**
+     * One permit for each pool thread that isn't running a Batch Worker. Can't be null
+     */
+    final private Semaphore freeBatches;
+
+    /**
+     * Key blocks of the most recently used keys, by key, least recently used first. Never modified once cached.
+     * Guarded by its own lock. Can't be null
+     */
+    final private LinkedHashMap<String, byte[][]> keyBlocks;
+
+    /**
+     * Requests waiting to be batched, oldest first. Can't be null
+     */
+    final private LinkedBlockingQueue<StepperRequest> pending;
+
+    /**
+     * True once `stop()` was called. Requests submitted afterward fail instead of being queued
+     */
+    private volatile boolean stopped;
+
+    /**
+     * Number of texts that were streamed
+     */
+    final private AtomicLong streamedRequests;
+
+
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Creates a StepperService that runs every request on `engine`. Batched requests wait until `start()` is called.
+     * @param engine the engine to run the Workers on. Shared, and not shut down by the service. Can't be null
+     */
+    public StepperService(ParsingEngine engine) {
+        if(engine==null) {
+            throw new AssertionError("Engine cannot be null");
+        }
+
+        //The engine is shared, so it is not copied
+        this.engine = engine;
+        this.pending = new LinkedBlockingQueue<>();
+        this.freeBatches = new Semaphore(engine.poolSize());
+        this.keyBlocks = new LinkedHashMap<>(16, 0.75f, true);
+        this.batchedRequests = new AtomicLong();
+        this.batches = new AtomicLong();
+        this.streamedRequests = new AtomicLong();
+
+        this.batcher = new Thread(this::runBatcher, "Stepper service batcher");
+        this.batcher.setDaemon(true);
+    }
+
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Returns the engine that the service runs on. Shared, not a copy
+     * @return the service's engine
+     */
+    public ParsingEngine engine() {
+        return engine;
+    }
+
+    /**
+     * Returns a report of the requests processed so far, as space-separated counters
+     * @return the service's counters
+     */
+    public String stats() {
+        long batchCount = batches.get();
+        int keys;
+        synchronized(keyBlocks) {
+            keys = keyBlocks.size();
+        }
+        return "batched=" + batchedRequests.get() + " batches=" + batchCount
+                + String.format(" meanBatch=%.2f", (batchCount==0) ? 0.0 : batchedRequests.get() / (double) batchCount)
+                + " streamed=" + streamedRequests.get() + " queued=" + pending.size() + " keys=" + keys;
+    }
+
+    /**
+     * Returns a String representation of the service.
+     * @return String representation of the service's fields
+     */
+    @Override
+    public String toString() {
+        return "Service on " + engine.poolSize() + " pool threads, " + stats();
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Batches `first` with the requests queued after it, and starts the batch on the engine's pool as Batch Workers of
+     * at most `MAX_BATCH_REQUESTS` requests each, in order. One free pool thread was already taken for the first Worker.
+     * A long queue is spread over as many more free pool threads as there are.<br><br>
+     *
+     * Each Worker gives its pool thread back once its last request is done. If a Worker can't be started, e.g. because the
+     * engine was shut down, its requests fail instead, which gives its pool thread back too, so the batcher keeps going
+     * and no client waits forever.<br><br>
+     *
+     * Helper to runBatcher.
+     *
+     * @param first the oldest request. Can't be null
+     */
+    private void dispatchBatch(StepperRequest first) {
+        //Everything that arrived while the pool was busy joins the batch
+        ArrayList<StepperRequest> batch = new ArrayList<>();
+        batch.add(first);
+        pending.drainTo(batch, MAX_BATCH_REQUESTS - 1);
+
+        int workers = 1;
+        while(workers < batch.size() && freeBatches.tryAcquire()) {
+            workers++;
+            pending.drainTo(batch, MAX_BATCH_REQUESTS);
+        }
+
+        for(int w=0; w<workers; w++) {
+            int start = (int) ((long) batch.size() * w / workers);
+            int end = (int) ((long) batch.size() * (w+1) / workers);
+            StepperRequest[] requests = batch.subList(start, end).toArray(new StepperRequest[0]);
+
+            //Requests are done in order, so the last one ends the Worker
+            requests[requests.length-1].output().whenComplete((output, failure) -> freeBatches.release());
+
+            batches.incrementAndGet();
+            batchedRequests.addAndGet(requests.length);
+            try {
+                engine.execute(new ParsingBatchWorker(requests, "batch " + batches.get()));
+            }
+            catch(RuntimeException | AssertionError e) {
+                for(StepperRequest request : requests) {
+                    request.output().completeExceptionally(new IOException("The batch could not be started", e));
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Fails every request that is still queued, since the service stopped.<br><br>
+     *
+     * Helper to runBatcher and submit.
+     */
+    private void failPending() {
+        for(StepperRequest request = pending.poll(); request!=null; request = pending.poll()) {
+            request.output().completeExceptionally(new IOException("The service stopped"));
+        }
+    }
+
+
+    /**
+     * Returns the key blocks of `key`, from the cache if it was used recently. A new key's blocks are made and cached, and
+     * the least recently used key is dropped if the cache is over `KEY_CACHE_SIZE` keys.<br><br>
+     *
+     * The lookup, the insertion, and the eviction happen under one lock, so each key's blocks are made once and the cache
+     * never holds more than `KEY_CACHE_SIZE` keys. Making a key's blocks is cheap next to a batch, so holding the lock
+     * while they are made costs little.<br><br>
+     *
+     * Helper to submit.
+     *
+     * @param key the key. Must hold at least BLOCK_COUNT*BLOCK_LENGTH letters. Can't be null
+     * @return the key's blocks. Shared with the cache, so they must not be modified
+     */
+    private byte[][] keyBlocks(String key) {
+        synchronized(keyBlocks) {
+            byte[][] blocks = keyBlocks.get(key);
+            if(blocks==null) {
+                blocks = ParsingBoss.keyBlocks(key);
+                keyBlocks.put(key, blocks);
+
+                //Access order keeps the least recently used key first
+                if(keyBlocks.size() > KEY_CACHE_SIZE) {
+                    Iterator<String> eldest = keyBlocks.keySet().iterator();
+                    eldest.next();
+                    eldest.remove();
+                }
+            }
+            return blocks;
+        }
+    }
+
+
+    /**
+     * Streams `input` through a ParsingPipeline to `output`, chunk by chunk, and closes both.
+     * @param input stream of the text, in the platform's default charset. Can't be null
+     * @param output stream to write the output to, in the platform's default charset. Can't be null
+     * @param key the key. Must hold at least BLOCK_COUNT*BLOCK_LENGTH letters. Can't be null
+     * @param encrypting true if encrypting, false if decrypting
+     * @param punctMode 0 if including punctuation, 1 if excluding spaces, 2 if alphabetic characters only
+     * @throws IOException if the text can't be read or processed, or the output can't be written
+     * @throws InterruptedException if interrupted while streaming
+     */
+    public void processStream(InputStream input, OutputStream output, String key, boolean encrypting, byte punctMode)
+            throws IOException, InterruptedException {
+        streamedRequests.incrementAndGet();
+        ParsingBoss.processStream(engine, input, output, key, encrypting, punctMode, engine.poolSize());
+    }
+
+
+    /**
+     * Takes the oldest queued request, waits for a free pool thread, and starts it in a batch with the requests queued
+     * behind it, until interrupted.<br><br>
+     *
+     * Clients wait on batched requests, so the batches' Workers run in the engine's interactive lane.<br><br>
+     *
+     * Helper to the constructor.
+     */
+    private void runBatcher() {
+        engine.bindJob(this, true);
+
+        //The oldest request is taken before a pool thread is free, so it fails with the rest if the wait is interrupted
+        StepperRequest first = null;
+        try {
+            while(true) {
+                first = pending.take();
+                freeBatches.acquire();
+                dispatchBatch(first);
+                first = null;
+            }
+        }
+        catch(InterruptedException e) {
+            if(first!=null) {
+                first.output().completeExceptionally(new IOException("The service stopped"));
+            }
+            failPending();
+        }
+    }
+
+
+    /**
+     * Starts batching requests.
+     */
+    public void start() {
+        batcher.start();
+    }
+
+
+    /**
+     * Stops batching requests, and fails the requests that are still queued or submitted later. The engine is left running.
+     */
+    public void stop() {
+        stopped = true;
+        batcher.interrupt();
+        failPending();
+    }
+
+
+    /**
+     * Queues the small text `input` to be batched, and returns its request, whose output is completed once it is done.
+     * If the service was stopped, the request's output fails right away instead.
+     * @param input the text, in the platform's default charset. At most `BATCH_BODY_BYTES` long. Can't be null
+     * @param key the key. Must hold at least BLOCK_COUNT*BLOCK_LENGTH letters. Can't be null
+     * @param encrypting true if encrypting, false if decrypting
+     * @param punctMode 0 if including punctuation, 1 if excluding spaces, 2 if alphabetic characters only
+     * @return the queued request
+     */
+    public StepperRequest submit(byte[] input, String key, boolean encrypting, byte punctMode) {
+        if(input==null || key==null) {
+            throw new AssertionError("Input and key cannot be null");
+        }
+        if(input.length > BATCH_BODY_BYTES) {
+            throw new AssertionError("Batched texts can hold at most BATCH_BODY_BYTES bytes");
+        }
+
+        StepperRequest request = new StepperRequest(input, keyBlocks(key), encrypting, punctMode);
+        pending.add(request);
+
+        //Checked after queueing, so a request queued while the service stops is failed here or by stop
+        if(stopped) {
+            failPending();
+        }
+        return request;
+    }
+}
@@ -0,0 +1,195 @@
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+
+/**
+ * Class to test that a StepperBatch processes every file in a folder tree exactly as one file job would.<br><br>
+ *
+ * The tree holds many small files, which share the job threads, a file large enough to be split between every pool
+ * thread, a compressed file, and files that must be skipped. Each output is compared with processing its input alone.
+ * Without folders, the command filters its input stream, which must give the same output as processing it as one file.
+ */
+public class BatchTest {
+
+    //UTILITIES
+
+    /**
+     * Key to process the inputs with. Long enough to need no padding
+     */
+    final private String KEY = TestInputs.KEY;
+
+    /**
+     * Standard input for the batches, which don't read it
+     */
+    final private InputStream NO_INPUT = InputStream.nullInputStream();
+
+    /**
+     * Folder for the test's files. Deleted after each test
+     */
+    @TempDir
+    Path folder;
+
+
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //TESTS
+
+    @DisplayName("Every file in the tree should be processed into the same place in the output tree")
+    @Test
+    void testTree() throws Exception {
+        Random random = new Random(44);
+        Path inputFolder = folder.resolve("in");
+        Path outputFolder = folder.resolve("out");
+
+        //Small files in nested folders, one large file, one compressed file, and files that aren't inputs
+        Files.createDirectories(inputFolder.resolve("a/b"));
+        for(int i=0; i<60; i++) {
+            Path file = inputFolder.resolve((i%3==0) ? "a/b" : (i%3==1) ? "a" : "").resolve("small" + i + ".txt");
+            Files.writeString(file, TestInputs.randomText(random.nextInt(3000), random), Charset.defaultCharset());
+        }
+        Files.writeString(inputFolder.resolve("large.txt"),
+                TestInputs.randomText((int) StepperBatch.LARGE_FILE_BYTES + 5000, random), Charset.defaultCharset());
+        String compressedText = TestInputs.randomText(20000, random);
+        try(OutputStream output = new GZIPOutputStream(Files.newOutputStream(inputFolder.resolve("a/packed.txt.gz")))) {
+            output.write(compressedText.getBytes(Charset.defaultCharset()));
+        }
+        Files.writeString(inputFolder.resolve("notes.md"), "not an input");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        int exitCode = StepperBatch.runCommand(new String[] {"encrypt", inputFolder.toString(), outputFolder.toString(),
+                "--key", KEY, "--punct", "1", "--threads", "3"}, NO_INPUT, new PrintStream(out), new PrintStream(err));
+
+        Assertions.assertEquals(0, exitCode, err.toString());
+        Assertions.assertTrue(out.toString().contains("Processed 62 files (0 failed)"), out.toString());
+        Assertions.assertTrue(out.toString().contains("MB/s"));
+        Assertions.assertFalse(Files.exists(outputFolder.resolve("notes.md")));
+
+        ParsingEngine engine = new ParsingEngine(2, false);
+        try {
+            try(Stream<Path> inputs = Files.walk(inputFolder)) {
+                for(Path inputFile : inputs.filter(file -> file.toString().endsWith(".txt")).toList()) {
+                    Path outputFile = outputFolder.resolve(inputFolder.relativize(inputFile));
+                    Assertions.assertArrayEquals(TestInputs.expectedOutput(engine, inputFile, KEY, true, (byte)1),
+                            Files.readAllBytes(outputFile), inputFile.toString());
+                }
+            }
+
+            Path compressedInput = folder.resolve("packed.txt");
+            Files.writeString(compressedInput, compressedText, Charset.defaultCharset());
+            byte[] output;
+            try(InputStream stream = new GZIPInputStream(Files.newInputStream(outputFolder.resolve("a/packed.txt.gz")))) {
+                output = stream.readAllBytes();
+            }
+            Assertions.assertArrayEquals(TestInputs.expectedOutput(engine, compressedInput, KEY, true, (byte)1),
+                    output);
+        }
+        finally {
+            engine.shutdown();
+        }
+    }
+
+
+    @DisplayName("Short keys should be padded once for every file, and rejected when decrypting")
+    @Test
+    void testShortKey() throws Exception {
+        Random random = new Random(45);
+        Path inputFolder = folder.resolve("in");
+        Path outputFolder = folder.resolve("out");
+        Files.createDirectories(inputFolder);
+        String text = TestInputs.randomText(5000, random);
+        Files.writeString(inputFolder.resolve("one.txt"), text, Charset.defaultCharset());
+        Files.writeString(inputFolder.resolve("two.txt"), text, Charset.defaultCharset());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Assertions.assertEquals(0, StepperBatch.runCommand(new String[] {"encrypt", inputFolder.toString(),
+                outputFolder.toString(), "--key", "short key"}, NO_INPUT, new PrintStream(out),
+                new PrintStream(new ByteArrayOutputStream())));
+
+        //Both files were encrypted with the same padded key, which was printed
+        Assertions.assertTrue(out.toString().startsWith("Key: shortkey"), out.toString());
+        Assertions.assertArrayEquals(Files.readAllBytes(outputFolder.resolve("one.txt")),
+                Files.readAllBytes(outputFolder.resolve("two.txt")));
+
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        Assertions.assertEquals(2, StepperBatch.runCommand(new String[] {"decrypt", inputFolder.toString(),
+                outputFolder.toString(), "--key", "short key"}, NO_INPUT, new PrintStream(new ByteArrayOutputStream()),
+                new PrintStream(err)));
+        Assertions.assertTrue(err.toString().contains("letters to decrypt"));
+    }
+
+
+    @DisplayName("Invalid arguments should print the usage, and failed files should be reported without stopping the batch")
+    @Test
+    void testErrors() throws Exception {
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        PrintStream quiet = new PrintStream(new ByteArrayOutputStream());
+        Assertions.assertEquals(2, StepperBatch.runCommand(new String[] {"scramble", "a", "b"}, NO_INPUT, quiet,
+                new PrintStream(err)));
+        Assertions.assertTrue(err.toString().contains("Usage"));
+        Assertions.assertEquals(2, StepperBatch.runCommand(new String[] {"encrypt", "a", "b", "--key"}, NO_INPUT, quiet, quiet));
+        Assertions.assertEquals(2, StepperBatch.runCommand(new String[] {"encrypt", folder.resolve("missing").toString(),
+                "b", "--key", KEY}, NO_INPUT, quiet, quiet));
+
+        //A corrupt compressed file fails, but the other file is still processed
+        Path inputFolder = folder.resolve("in");
+        Files.createDirectories(inputFolder);
+        Files.writeString(inputFolder.resolve("good.txt"), "Hello, world!\n");
+        Files.writeString(inputFolder.resolve("bad.gz"), "not gzip");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        err = new ByteArrayOutputStream();
+        Assertions.assertEquals(1, StepperBatch.runCommand(new String[] {"encrypt", inputFolder.toString(),
+                folder.resolve("out").toString(), "--key", KEY}, NO_INPUT, new PrintStream(out), new PrintStream(err)));
+        Assertions.assertTrue(out.toString().contains("Processed 1 files (1 failed)"), out.toString());
+        Assertions.assertTrue(err.toString().contains("bad.gz"));
+        Assertions.assertTrue(Files.exists(folder.resolve("out/good.txt")));
+    }
+
+
+    @DisplayName("Without folders, the command should filter its input stream into its output stream, chunk by chunk")
+    @Test
+    void testFilter() throws Exception {
+        Random random = new Random(46);
+        String text = TestInputs.randomText(ParsingPipeline.CHUNK_LENGTH * 2 + 777, random);
+        Path inputFile = folder.resolve("input.txt");
+        Files.writeString(inputFile, text, Charset.defaultCharset());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        int exitCode = StepperBatch.runCommand(new String[] {"decrypt", "--key", KEY, "--punct", "2", "--threads", "3"},
+                new ByteArrayInputStream(text.getBytes(Charset.defaultCharset())), new PrintStream(out), new PrintStream(err));
+        Assertions.assertEquals(0, exitCode, err.toString());
+
+        ParsingEngine engine = new ParsingEngine(2, false);
+        try {
+            Assertions.assertArrayEquals(TestInputs.expectedOutput(engine, inputFile, KEY, false, (byte)2),
+                    out.toByteArray());
+        }
+        finally {
+            engine.shutdown();
+        }
+
+        //A padded key goes to the error stream, so it doesn't mix with the output
+        out = new ByteArrayOutputStream();
+        err = new ByteArrayOutputStream();
+        Assertions.assertEquals(0, StepperBatch.runCommand(new String[] {"encrypt", "--key", "short key"},
+                new ByteArrayInputStream("Hello, world!".getBytes()), new PrintStream(out), new PrintStream(err)));
+        Assertions.assertTrue(err.toString().startsWith("Key: shortkey"), err.toString());
+        Assertions.assertEquals("Hello, world!\n".length(), out.toString(Charset.defaultCharset()).length());
+    }
+}
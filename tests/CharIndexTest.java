@@ -0,0 +1,250 @@
+import org.junit.jupiter.api.*;
+import java.nio.CharBuffer;
+import java.util.Random;
+
+/**
+ * Class to test the rank and select methods of a ParsingCharIndex.<br><br>
+ *
+ * Every answer is checked against a scan of the text, at lengths around the index's word and superblock sizes.
+ * Indexes built by Diacritics Workers while they normalize must match a scan of the normalized text bit for bit.
+ * Classifying must also report whether the text is pure ASCII, and classifying the normalized view of a raw text
+ * must match classifying the normalized text.
+ */
+public class CharIndexTest {
+
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //UTILITY METHODS
+
+    /**
+     * Text lengths to test. Includes lengths just around one word (64 characters) and one superblock (512 characters)
+     */
+    final private int[] LENGTHS = new int[] {0, 1, 2, 63, 64, 65, 127, 128, 511, 512, 513, 1024, 1025, 5000};
+
+    /**
+     * Returns a random text of `length` characters, holding letters of both cases, digits, punctuation, and spaces
+     * @param length length of the output
+     * @param random random number generator to use
+     * @return random text
+     */
+    private String randomText(int length, Random random) {
+        final String CHARACTERS = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ    0123456789,.;:!?'`-\n";
+
+        StringBuilder output = new StringBuilder(length);
+        for(int i=0; i<length; i++) {
+            output.append(CHARACTERS.charAt(random.nextInt(CHARACTERS.length())));
+        }
+        return output.toString();
+    }
+
+    /**
+     * Checks every rank and select of `index` against a scan of `text`.
+     * @param text the indexed text
+     * @param index index of `text`, with ranks up to date
+     */
+    private void assertMatchesText(String text, ParsingCharIndex index) {
+        Assertions.assertEquals(text.length(), index.length());
+
+        int letters = 0;
+        int digits = 0;
+        for(int i=0; i<=text.length(); i++) {
+            Assertions.assertEquals(letters, index.letterRank(i), "letter rank at " + i);
+            Assertions.assertEquals(digits, index.digitRank(i), "digit rank at " + i);
+
+            if(i < text.length()) {
+                char c = text.charAt(i);
+                if(c>='a' && c<='z') {
+                    Assertions.assertEquals(i, index.letterSelect(letters), "select of letter " + letters);
+                    letters++;
+                }
+                else if(c>='0' && c<='9') {
+                    digits++;
+                }
+            }
+        }
+
+        Assertions.assertEquals(letters, index.letterCount());
+        Assertions.assertEquals(digits, index.digitCount());
+    }
+
+
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //TESTS
+
+    @DisplayName("Rank and select should match a scan of the text, counting only lowercase letters as letters")
+    @Test
+    void testWholeText() {
+        Random random = new Random(32);
+        for(int length : LENGTHS) {
+            String text = randomText(length, random);
+
+            ParsingCharIndex index = new ParsingCharIndex(length);
+            index.classify(CharBuffer.wrap(text), 0, length);
+            index.updateRanks();
+
+            assertMatchesText(text, index);
+        }
+    }
+
+
+    @DisplayName("Classifying a text in word-aligned ranges should give the same index as classifying it at once")
+    @Test
+    void testRanges() {
+        Random random = new Random(33);
+        for(int length : LENGTHS) {
+            String text = randomText(length, random);
+            ParsingCharIndex index = new ParsingCharIndex(length);
+
+            for(int start=0; start<length; start+=3*ParsingCharIndex.CHARS_PER_WORD) {
+                index.classify(CharBuffer.wrap(text), start, Math.min(length, start + 3*ParsingCharIndex.CHARS_PER_WORD));
+            }
+            index.updateRanks();
+
+            assertMatchesText(text, index);
+        }
+    }
+
+
+    @DisplayName("Classifying a text again should replace what was recorded for it before")
+    @Test
+    void testReclassify() {
+        Random random = new Random(34);
+        String before = randomText(1000, random);
+        String after = before.toLowerCase().replace('7', 'x').replace('.', '5');
+
+        ParsingCharIndex index = new ParsingCharIndex(before.length());
+        index.classify(CharBuffer.wrap(before), 0, before.length());
+        index.updateRanks();
+        assertMatchesText(before, index);
+
+        index.classify(CharBuffer.wrap(after), 0, after.length());
+        index.updateRanks();
+        assertMatchesText(after, index);
+    }
+
+
+    @DisplayName("Classifying should report whether the classified range is pure 7-bit ASCII")
+    @Test
+    void testAsciiDetection() {
+        Random random = new Random(36);
+        for(int length : LENGTHS) {
+            String text = randomText(length, random);
+            ParsingCharIndex index = new ParsingCharIndex(length);
+            Assertions.assertTrue(index.classify(CharBuffer.wrap(text), 0, length), "length=" + length);
+
+            //One character just past ASCII, anywhere in the text, makes it not ASCII
+            for(char nonAscii : new char[] {(char)128, 'é', '—'}) {
+                if(length == 0) {
+                    continue;
+                }
+                char[] chars = text.toCharArray();
+                chars[random.nextInt(length)] = nonAscii;
+                Assertions.assertFalse(index.classify(CharBuffer.wrap(chars), 0, length), "length=" + length);
+            }
+        }
+
+        //Only the classified range counts
+        String text = "a".repeat(2*ParsingCharIndex.CHARS_PER_WORD) + "é";
+        ParsingCharIndex index = new ParsingCharIndex(text.length());
+        Assertions.assertTrue(index.classify(CharBuffer.wrap(text), 0, 2*ParsingCharIndex.CHARS_PER_WORD));
+        Assertions.assertFalse(index.classify(CharBuffer.wrap(text), 2*ParsingCharIndex.CHARS_PER_WORD, text.length()));
+    }
+
+
+    @DisplayName("Classifying the normalized view of a text should match a scan of the normalized text, " +
+            "and leave the text unchanged")
+    @Test
+    void testClassifyNormalized() {
+        final String CHARACTERS = "abcXYZ 019,.'éÉàçñßÖø⁰₉—ǹ\n";
+
+        Random random = new Random(37);
+        for(int length : LENGTHS) {
+            StringBuilder input = new StringBuilder(length);
+            for(int i=0; i<length; i++) {
+                //Mostly ASCII, so both pure-ASCII and mixed words occur
+                input.append((random.nextInt(8) == 0) ?
+                        CHARACTERS.charAt(random.nextInt(CHARACTERS.length())) :
+                        randomText(1, random).charAt(0));
+            }
+            String raw = input.toString();
+
+            CharBuffer text = CharBuffer.wrap(raw.toCharArray());
+            ParsingCharIndex index = new ParsingCharIndex(length);
+            boolean ascii = ParsingDiacriticsWorker.classifyNormalized(text, index, 0, length);
+            index.updateRanks();
+
+            Assertions.assertEquals(raw, text.toString());
+            Assertions.assertEquals(raw.chars().allMatch(c -> c < 128), ascii);
+            assertMatchesText(new ParsingDiacriticsWorker().removeDiacritics_Testing(raw), index);
+        }
+    }
+
+
+    @DisplayName("Classifying Diacritics Workers on word-aligned pieces should build the same index as one pass, " +
+            "report ASCII per piece, and leave the text unchanged")
+    @Test
+    void testClassifyingWorkers() throws Exception {
+        Random random = new Random(38);
+        for(int length : LENGTHS) {
+            //All uppercase and accented, the case that letter-balanced pieces used to handle worst
+            String raw = randomText(length, random).toUpperCase().replace('E', 'É');
+            CharBuffer text = CharBuffer.wrap(raw.toCharArray());
+
+            int wholeWords = length / ParsingCharIndex.CHARS_PER_WORD;
+            int[] bounds = new int[] {0, random.nextInt(wholeWords+1) * ParsingCharIndex.CHARS_PER_WORD, length};
+
+            ParsingCharIndex index = new ParsingCharIndex(length);
+            boolean ascii = true;
+            for(int i=0; i<bounds.length-1; i++) {
+                ParsingDiacriticsWorker worker = new ParsingDiacriticsWorker(text, index, bounds[i], bounds[i+1], false, "test");
+                worker.run();
+                ascii &= worker.get();
+            }
+            index.updateRanks();
+
+            Assertions.assertEquals(raw, text.toString());
+            Assertions.assertEquals(raw.indexOf('É') < 0, ascii);
+            assertMatchesText(new ParsingDiacriticsWorker().removeDiacritics_Testing(raw), index);
+        }
+    }
+
+
+    @DisplayName("Diacritics Workers should classify their pieces exactly as a scan of the normalized text would")
+    @Test
+    void testDiacriticsWorkers() throws Exception {
+        final String CHARACTERS = "abcXYZ 019,.'éÉàçñßÖø⁰₉—ǹ\n";
+
+        Random random = new Random(35);
+        for(int length : LENGTHS) {
+            StringBuilder input = new StringBuilder(length);
+            for(int i=0; i<length; i++) {
+                input.append(CHARACTERS.charAt(random.nextInt(CHARACTERS.length())));
+            }
+
+            //Piece boundaries at random places, most of them inside index words
+            int[] bounds = new int[] {0, random.nextInt(length+1), 0, length};
+            bounds[2] = bounds[1] + random.nextInt(length - bounds[1] + 1);
+
+            CharBuffer text = CharBuffer.wrap(input.toString().toCharArray());
+            ParsingCharIndex index = new ParsingCharIndex(length);
+            for(int i=0; i<bounds.length-1; i++) {
+                ParsingDiacriticsWorker worker = new ParsingDiacriticsWorker(text, index, bounds[i], bounds[i+1], "test");
+                worker.run();
+                worker.get();
+            }
+
+            //Words shared by two pieces are left for the Boss
+            for(int i=1; i<bounds.length-1; i++) {
+                int wordStart = bounds[i] - bounds[i] % ParsingCharIndex.CHARS_PER_WORD;
+                index.classify(text, wordStart, Math.min(length, wordStart + ParsingCharIndex.CHARS_PER_WORD));
+            }
+            index.updateRanks();
+
+            String normalized = new ParsingDiacriticsWorker().removeDiacritics_Testing(input.toString());
+            Assertions.assertEquals(normalized, text.toString());
+            assertMatchesText(normalized, index);
+        }
+    }
+}
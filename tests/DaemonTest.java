@@ -0,0 +1,237 @@
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+
+/**
+ * Class to test that a StepperDaemon, and its client, answer like one file job would, whether a text is batched or
+ * streamed.<br><br>
+ *
+ * Requests are sent over a raw socket, as any Unix socket tool would send them, and through the client command.
+ */
+public class DaemonTest {
+
+    //UTILITIES
+
+    /**
+     * Key to process the inputs with. Long enough to need no padding
+     */
+    final private String KEY = TestInputs.KEY;
+
+    /**
+     * Folder for the test's files and socket. Deleted after each test
+     */
+    @TempDir
+    Path folder;
+
+    /**
+     * The engine that the daemon runs on. Created before each test
+     */
+    ParsingEngine engine;
+
+    /**
+     * The daemon under test. Started before each test
+     */
+    StepperDaemon daemon;
+
+
+    @BeforeEach
+    void startDaemon() throws Exception {
+        engine = new ParsingEngine(4, false);
+        daemon = new StepperDaemon(engine, folder.resolve("stepper.sock"));
+        daemon.start();
+    }
+
+
+    @AfterEach
+    void stopDaemon() {
+        daemon.stop();
+        engine.shutdown();
+    }
+
+
+    /**
+     * Sends `line` and `text` to the daemon over a raw socket, and returns the whole answer
+     * @param line the request's first line, without its line break
+     * @param text the text to process
+     * @return the answer's bytes, status line included
+     */
+    private byte[] send(String line, byte[] text) throws IOException {
+        try(SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(daemon.socketPath()))) {
+            byte[] lineBytes = (line + "\n").getBytes(StandardCharsets.UTF_8);
+            ByteBuffer request = ByteBuffer.allocate(lineBytes.length + text.length).put(lineBytes).put(text).flip();
+            while(request.hasRemaining()) {
+                channel.write(request);
+            }
+            channel.shutdownOutput();
+            return Channels.newInputStream(channel).readAllBytes();
+        }
+    }
+
+
+    /**
+     * Returns the status line of an unpadded key's answer, followed by `output`, as the daemon answers
+     * @param output the answer's output
+     * @return the answer's bytes
+     */
+    private byte[] answer(byte[] output) {
+        ByteArrayOutputStream answer = new ByteArrayOutputStream();
+        answer.writeBytes(("OK " + output.length + "\n").getBytes(StandardCharsets.UTF_8));
+        answer.writeBytes(output);
+        return answer.toByteArray();
+    }
+
+
+    /**
+     * Runs `args` as a command with `in` as its standard input, and returns its exit code, output, and errors
+     * @param args the command-line arguments
+     * @param in the standard input
+     * @return the exit code, the output, and the errors, in that order
+     */
+    private Object[] runCommand(String[] args, InputStream in) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        int exitCode = StepperDaemon.runCommand(args, in, new PrintStream(out, true), new PrintStream(err, true));
+        return new Object[]{exitCode, out.toByteArray(), err.toString()};
+    }
+
+
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //TESTS
+
+    @DisplayName("Small, large, and empty texts should be answered like files processed whole")
+    @Test
+    void testTexts() throws Exception {
+        Random random = new Random(47);
+        String small = TestInputs.randomText(5000, random);
+        String large = TestInputs.randomText(StepperService.BATCH_BODY_BYTES * 3, random);
+
+        Assertions.assertArrayEquals(answer(TestInputs.expectedOutput(engine, folder, small, KEY, true, (byte)1)),
+                send("encrypt 1 " + KEY, small.getBytes(Charset.defaultCharset())));
+        Assertions.assertArrayEquals(answer(TestInputs.expectedOutput(engine, folder, large, KEY, false, (byte)2)),
+                send("decrypt 2 " + KEY, large.getBytes(Charset.defaultCharset())));
+        Assertions.assertArrayEquals(answer(new byte[0]), send("encrypt 0 " + KEY, new byte[0]));
+
+        //The same key again is taken from the cache
+        Assertions.assertArrayEquals(answer(TestInputs.expectedOutput(engine, folder, small, KEY, false, (byte)0)),
+                send("decrypt 0 " + KEY, small.getBytes(Charset.defaultCharset())));
+
+        String stats = new String(send("stats", new byte[0]), StandardCharsets.UTF_8);
+        Assertions.assertTrue(stats.startsWith("OK batched=3 "), stats);
+        Assertions.assertTrue(stats.contains("streamed=1") && stats.contains("keys=1"), stats);
+        Assertions.assertEquals(0, engine.liveBufferChars());
+    }
+
+
+    @DisplayName("The client should filter its input through the daemon, and report a padded key")
+    @Test
+    void testClient() throws Exception {
+        String socket = daemon.socketPath().toString();
+        String text = TestInputs.randomText(3000, new Random(48));
+        Path keyFile = folder.resolve("key.txt");
+        Files.writeString(keyFile, KEY.substring(0, 55) + "\n" + KEY.substring(55) + "\n", Charset.defaultCharset());
+
+        Object[] result = runCommand(new String[]{"client", "encrypt", "--key-file", keyFile.toString(), "--punct", "1",
+                "--socket", socket}, new ByteArrayInputStream(text.getBytes(Charset.defaultCharset())));
+        Assertions.assertEquals(0, result[0], (String) result[2]);
+        Assertions.assertArrayEquals(TestInputs.expectedOutput(engine, folder, text, KEY, true, (byte)1),
+                (byte[]) result[1]);
+
+        //A short key is padded, and the padded key decrypts the output
+        result = runCommand(new String[]{"client", "encrypt", "--key", "short key", "--socket", socket},
+                new ByteArrayInputStream("Hello, world!".getBytes(Charset.defaultCharset())));
+        Assertions.assertEquals(0, result[0], (String) result[2]);
+        String paddedKey = ((String) result[2]).strip().substring("Key: ".length());
+        Assertions.assertTrue(paddedKey.startsWith("shortkey"));
+        Assertions.assertEquals(StepperAppFields.BLOCK_COUNT * StepperAppFields.BLOCK_LENGTH, paddedKey.length());
+
+        result = runCommand(new String[]{"client", "decrypt", "--key", paddedKey, "--socket", socket},
+                new ByteArrayInputStream((byte[]) result[1]));
+        Assertions.assertEquals(0, result[0], (String) result[2]);
+        Assertions.assertEquals("hello, world!\n", new String((byte[]) result[1], Charset.defaultCharset()).toLowerCase());
+
+        result = runCommand(new String[]{"client", "stats", "--socket", socket}, InputStream.nullInputStream());
+        Assertions.assertEquals(0, result[0]);
+        Assertions.assertTrue(new String((byte[]) result[1], StandardCharsets.UTF_8).startsWith("batched=3 "));
+    }
+
+
+    @DisplayName("Invalid requests should get errors, and a second daemon should not take over the socket")
+    @Test
+    void testErrors() throws Exception {
+        byte[] text = "Hello, world!".getBytes(Charset.defaultCharset());
+        Assertions.assertTrue(new String(send("shift 0 " + KEY, text), StandardCharsets.UTF_8).startsWith("ERROR "));
+        Assertions.assertTrue(new String(send("encrypt 7 " + KEY, text), StandardCharsets.UTF_8).startsWith("ERROR "));
+        Assertions.assertTrue(new String(send("decrypt 0 short key", text), StandardCharsets.UTF_8).startsWith("ERROR "));
+        Assertions.assertTrue(daemon.stats().endsWith("failed=3"), daemon.stats());
+
+        Object[] result = runCommand(new String[]{"client", "decrypt", "--key", "short key",
+                "--socket", daemon.socketPath().toString()}, new ByteArrayInputStream(text));
+        Assertions.assertEquals(1, result[0]);
+        Assertions.assertTrue(((String) result[2]).startsWith("ERROR "));
+
+        Assertions.assertEquals(2, runCommand(new String[]{"client", "encrypt"}, InputStream.nullInputStream())[0]);
+        Assertions.assertEquals(2, runCommand(new String[]{"daemon", "--key", KEY}, InputStream.nullInputStream())[0]);
+
+        Assertions.assertThrows(IOException.class, () -> new StepperDaemon(engine, daemon.socketPath()));
+
+        //Once the daemon stops, the client can't reach it, and a new daemon can take its place
+        daemon.stop();
+        result = runCommand(new String[]{"client", "encrypt", "--key", KEY, "--socket", daemon.socketPath().toString()},
+                new ByteArrayInputStream(text));
+        Assertions.assertEquals(1, result[0]);
+        Assertions.assertTrue(((String) result[2]).startsWith("Could not reach a daemon"), (String) result[2]);
+
+        daemon = new StepperDaemon(engine, daemon.socketPath());
+        daemon.start();
+        Assertions.assertArrayEquals(
+                answer(TestInputs.expectedOutput(engine, folder, "Hello, world!", KEY, true, (byte)0)),
+                send("encrypt 0 " + KEY, text));
+    }
+
+
+    @DisplayName("The client should fail on an answer cut short of the length in its status line")
+    @Test
+    void testShortAnswer() throws Exception {
+        Path socket = folder.resolve("short.sock");
+        try(ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(socket));
+
+            //A daemon that stops after part of its answer
+            Thread fakeDaemon = new Thread(() -> {
+                try(SocketChannel channel = server.accept()) {
+                    Channels.newInputStream(channel).readAllBytes();
+                    channel.write(ByteBuffer.wrap("OK 100\nonly part".getBytes(StandardCharsets.UTF_8)));
+                }
+                catch(IOException e) {
+                    throw new AssertionError(e);
+                }
+            });
+            fakeDaemon.start();
+
+            Object[] result = runCommand(new String[]{"client", "encrypt", "--key", KEY, "--socket", socket.toString()},
+                    new ByteArrayInputStream("Hello, world!".getBytes(Charset.defaultCharset())));
+            fakeDaemon.join();
+            Assertions.assertEquals(1, result[0]);
+            Assertions.assertTrue(((String) result[2]).startsWith("The daemon's answer was cut short"), (String) result[2]);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+
+/**
+ * Class to test that large UTF-8 input files, which are loaded in parallel, give the same output as when read serially.<br><br>
+ *
+ * One thread reads a file serially, and more threads load it with Loading Workers, so the outputs of each thread count are
+ * compared to the single-threaded one. The inputs hold multi-byte characters and every kind of line break, so that splits
+ * land next to them. A file that isn't valid UTF-8 must fall back to the serial loader, and an interrupted load must
+ * stop the job.
+ */
+public class FileLoadingTest {
+
+    //UTILITIES
+
+    /**
+     * Key to process the inputs with. Long enough to need no padding
+     */
+    final private String KEY = TestInputs.KEY;
+
+    /**
+     * Length of the random inputs, in bytes. Over the size from which files are loaded in parallel
+     */
+    final private int INPUT_BYTES = (1 << 20) + 12345;
+
+    /**
+     * Thread counts to load each input with, after loading it with one thread
+     */
+    final private int[] THREAD_COUNTS = new int[] {2, 3, 7};
+
+    /**
+     * Folder for the test's files. Deleted after each test
+     */
+    @TempDir
+    Path folder;
+
+
+    /**
+     * Checks that processing the file `input` gives the same output file with every thread count as with one thread.
+     * @param input the input file's contents
+     * @param encrypting true if encrypting, false if decrypting
+     * @param punctMode punctuation mode to process with
+     */
+    private void assertLoadsMatch(byte[] input, boolean encrypting, byte punctMode) throws Exception {
+        ParsingEngine engine = new ParsingEngine(4, false);
+        try {
+            Path inputFile = folder.resolve("input.txt");
+            Path expectedFile = folder.resolve("expected.txt");
+            Path outputFile = folder.resolve("output.txt");
+            Files.write(inputFile, input);
+
+            int expectedLength = ParsingBoss.processFile(engine, inputFile.toString(), expectedFile.toString(), KEY,
+                    encrypting, punctMode, 1);
+            byte[] expected = Files.readAllBytes(expectedFile);
+
+            for(int threads : THREAD_COUNTS) {
+                int outputLength = ParsingBoss.processFile(engine, inputFile.toString(), outputFile.toString(), KEY,
+                        encrypting, punctMode, threads);
+
+                String message = "punctMode=" + punctMode + ", encrypting=" + encrypting + ", threads=" + threads;
+                Assertions.assertEquals(expectedLength, outputLength, message);
+                Assertions.assertArrayEquals(expected, Files.readAllBytes(outputFile), message);
+                Assertions.assertEquals(0, engine.liveBufferChars());
+            }
+        }
+        finally {
+            engine.shutdown();
+        }
+    }
+
+
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //TESTS
+
+    @DisplayName("Files loaded in parallel should give the same output as files read serially")
+    @Test
+    void testParallelLoad() throws Exception {
+        Random random = new Random(41);
+        byte[] input = TestInputs.randomInput(INPUT_BYTES, StandardCharsets.UTF_8, random);
+
+        assertLoadsMatch(input, true, (byte)0);
+        assertLoadsMatch(input, true, (byte)2);
+        assertLoadsMatch(input, false, (byte)1);
+    }
+
+
+    @DisplayName("Files that end without a line break, or with each kind of line break, should load like they are read serially")
+    @Test
+    void testLastLineBreak() throws Exception {
+        Random random = new Random(42);
+        byte[] body = TestInputs.randomInput(INPUT_BYTES, StandardCharsets.UTF_8, random);
+
+        for(String ending : new String[] {"x", "é", "😀", "\n", "\r", "\r\n", "\u2028", "\u2029", "\u0085"}) {
+            byte[] endingBytes = ending.getBytes(StandardCharsets.UTF_8);
+            byte[] input = new byte[body.length + endingBytes.length];
+            System.arraycopy(body, 0, input, 0, body.length);
+            System.arraycopy(endingBytes, 0, input, body.length, endingBytes.length);
+
+            assertLoadsMatch(input, true, (byte)0);
+        }
+    }
+
+
+    @DisplayName("Files that aren't valid UTF-8 should be read serially, replacing the bad bytes")
+    @Test
+    void testInvalidUtf8() throws Exception {
+        Random random = new Random(43);
+        byte[] input = TestInputs.randomInput(INPUT_BYTES, StandardCharsets.UTF_8, random);
+
+        //A lone continuation byte, and a cut three-byte sequence
+        input[input.length/3] = (byte) 0x80;
+        input[2*input.length/3] = (byte) 0xE2;
+        input[2*input.length/3 + 1] = 'a';
+
+        assertLoadsMatch(input, true, (byte)0);
+    }
+
+
+    @DisplayName("A file job interrupted while loading in parallel should throw an InterruptedIOException and keep the interrupt")
+    @Test
+    void testInterruptedLoad() throws Exception {
+        ParsingEngine engine = new ParsingEngine(4, false);
+        try {
+            Path inputFile = folder.resolve("input.txt");
+            Path outputFile = folder.resolve("output.txt");
+            Files.write(inputFile, TestInputs.randomInput(INPUT_BYTES, StandardCharsets.UTF_8, new Random(44)));
+
+            Thread.currentThread().interrupt();
+            try {
+                Assertions.assertThrows(InterruptedIOException.class, () -> ParsingBoss.processFile(
+                        engine, inputFile.toString(), outputFile.toString(), KEY, true, (byte)0, 3));
+                Assertions.assertTrue(Thread.currentThread().isInterrupted());
+            }
+            finally {
+                Thread.interrupted();
+            }
+            Assertions.assertEquals(0, engine.liveBufferChars());
+        }
+        finally {
+            engine.shutdown();
+        }
+    }
+}
@@ -0,0 +1,212 @@
+import org.junit.jupiter.api.*;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+
+/**
+ * Memory benchmark for a ParsingBoss's processing stages.<br><br>
+ *
+ * A job may keep at most about twice its input's size alive at once. The App's copy of the output takes one input's worth,
+ * so the processing stages must fit in the other. These tests check the engine's buffer accounting and the bytes that
+ * the job's threads actually allocate, across punctuation modes and thread counts.<br><br>
+ *
+ * Off-heap engines keep the text out of the Java heap entirely, so their jobs may only allocate the output String on the heap.<br>
+ * Jobs whose output is letters only hold their letters packed, so they must stay within a third more than their input.
+ */
+public class MemoryBudgetTest {
+
+    //UTILITIES
+
+    /**
+     * Key to process the inputs with. Long enough to need no padding
+     */
+    final private String KEY = TestInputs.KEY;
+
+    /**
+     * Length of the benchmark input, in characters
+     */
+    final private int INPUT_LENGTH = 1 << 21;
+
+    /**
+     * Bytes that a job may allocate beyond its budget for small objects, like Workers and the key
+     */
+    final private long ALLOCATION_SLACK = 1 << 20;
+
+    /**
+     * Thread counts to run each benchmark with
+     */
+    final private int[] THREAD_COUNTS = new int[] {1, 2, 4, 7};
+
+    /**
+     * Characters of the random benchmark input: letters, numbers, punctuation, spaces, and diacritics
+     */
+    final private String CHARACTERS = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ      0123456789,.;:!?'`’-()\"éÉàçñßÖø\n";
+
+    /**
+     * Characters of the random benchmark input for letter-only outputs. Holds no numbers or diacritics
+     */
+    final private String LETTER_CHARACTERS = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ      ,.;:!?'`’-()\"\n";
+
+
+    /**
+     * Returns the total number of bytes allocated so far by the calling thread and every engine pool thread
+     * @return bytes allocated
+     */
+    private long allocatedBytes() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        long output = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        for(Thread thread : Thread.getAllStackTraces().keySet()) {
+            if(thread.getName().startsWith("Stepper worker")) {
+                output += Math.max(0, threads.getThreadAllocatedBytes(thread.getId()));
+            }
+        }
+        return output;
+    }
+
+
+    /**
+     * Processes the benchmark input with every thread count, checking that all thread counts give the same result
+     * and that each run stays in the memory budget.
+     *
+     * @param encrypting true if encrypting, false if decrypting
+     * @param punctMode punctuation mode to process with
+     * @param offHeap true to run the jobs on an off-heap engine
+     * @return the result of processing the benchmark input
+     */
+    private String assertWithinBudget(boolean encrypting, byte punctMode, boolean offHeap) throws Exception {
+        String input = TestInputs.randomText(INPUT_LENGTH, CHARACTERS, new Random(2024));
+        return assertWithinBudget(input, encrypting, punctMode, offHeap, 2L*INPUT_LENGTH);
+    }
+
+
+    /**
+     * Processes `input` with every thread count, checking that all thread counts give the same result
+     * and that each run stays in the memory budget.
+     *
+     * @param input text to process. Must be at most `INPUT_LENGTH` characters long
+     * @param encrypting true if encrypting, false if decrypting
+     * @param punctMode punctuation mode to process with
+     * @param offHeap true to run the jobs on an off-heap engine
+     * @param peakBudget most characters that the job's buffers may hold at once
+     * @return the result of processing `input`
+     */
+    private String assertWithinBudget(String input, boolean encrypting, byte punctMode, boolean offHeap, long peakBudget)
+            throws Exception {
+        ParsingEngine engine = new ParsingEngine(4, offHeap);
+        try {
+            engine.awaitWarmUp();
+
+            String expected = null;
+
+            for(int threads : THREAD_COUNTS) {
+                ParsingBoss b = new ParsingBoss();
+
+                long allocatedBefore = allocatedBytes();
+                String result = b.processText_Testing(engine, input, KEY, encrypting, punctMode, threads);
+                long allocated = allocatedBytes() - allocatedBefore;
+
+                //The text buffer and the output String. Each one holds at most 2 bytes per input character.
+                //Off-heap text buffers don't count, since they are not on the heap
+                long allocationBudget = (offHeap ? 2L : 4L)*INPUT_LENGTH + ALLOCATION_SLACK;
+                if(allocated > allocationBudget) {
+                    throw new AssertionError("Job allocated " + allocated + " bytes, budget is " + allocationBudget +
+                            " (encrypting=" + encrypting + ", punctMode=" + punctMode + ", threads=" + threads +
+                            ", offHeap=" + offHeap + ")");
+                }
+
+                if(engine.peakBufferChars() > peakBudget) {
+                    throw new AssertionError("Peak buffer size " + engine.peakBufferChars() + " chars is over " + peakBudget +
+                            " (encrypting=" + encrypting + ", punctMode=" + punctMode + ", threads=" + threads +
+                            ", offHeap=" + offHeap + ")");
+                }
+                Assertions.assertEquals(0, engine.liveBufferChars());
+
+                if(expected == null) {
+                    expected = result;
+                    Assertions.assertFalse(expected.isEmpty());
+                }
+                else {
+                    Assertions.assertEquals(expected, result);
+                }
+            }
+
+            return expected;
+        }
+        finally {
+            engine.shutdown();
+        }
+    }
+
+
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //TESTS
+
+    @DisplayName("Encrypting with punctuation should stay within twice the input's size")
+    @Test
+    void testEncryptPunctuation() throws Exception {
+        assertWithinBudget(true, (byte)0, false);
+    }
+
+
+    @DisplayName("Encrypting without spaces should stay within twice the input's size")
+    @Test
+    void testEncryptNoSpaces() throws Exception {
+        assertWithinBudget(true, (byte)1, false);
+    }
+
+
+    @DisplayName("Encrypting alphabetic characters only should stay within twice the input's size")
+    @Test
+    void testEncryptAlphabeticOnly() throws Exception {
+        assertWithinBudget(true, (byte)2, false);
+    }
+
+
+    @DisplayName("Decrypting should stay within twice the input's size")
+    @Test
+    void testDecrypt() throws Exception {
+        assertWithinBudget(false, (byte)0, false);
+    }
+
+
+    @DisplayName("Encrypting on an off-heap engine should give the same result without allocating the text on the heap")
+    @Test
+    void testEncryptOffHeap() throws Exception {
+        for(byte punctMode=0; punctMode<=2; punctMode++) {
+            Assertions.assertEquals(
+                    assertWithinBudget(true, punctMode, false),
+                    assertWithinBudget(true, punctMode, true));
+        }
+    }
+
+
+    @DisplayName("Decrypting on an off-heap engine should give the same result without allocating the text on the heap")
+    @Test
+    void testDecryptOffHeap() throws Exception {
+        Assertions.assertEquals(
+                assertWithinBudget(false, (byte)0, false),
+                assertWithinBudget(false, (byte)0, true));
+    }
+
+
+    @DisplayName("Letter-only outputs should be packed, staying within a third more than the input's size")
+    @Test
+    void testLettersOnlyPacked() throws Exception {
+        String input = TestInputs.randomText(INPUT_LENGTH, LETTER_CHARACTERS, new Random(2024));
+        long peakBudget = INPUT_LENGTH + ParsingPackedLetters.wordsFor(INPUT_LENGTH);
+
+        //Unpacked outputs with punctuation hold the same letters, in the same order
+        String punctuated = assertWithinBudget(input, true, (byte)0, false, 2L*INPUT_LENGTH);
+        String encrypted = assertWithinBudget(input, true, (byte)2, false, peakBudget);
+        Assertions.assertEquals(punctuated.replaceAll("[^a-z]", ""), encrypted);
+        Assertions.assertEquals(encrypted, assertWithinBudget(input, true, (byte)2, true, peakBudget));
+
+        //Decrypting the packed letters gives the input's letters back
+        String decrypted = assertWithinBudget(encrypted, false, (byte)2, false, peakBudget);
+        Assertions.assertEquals(input.toLowerCase().replaceAll("[^a-z]", ""), decrypted);
+    }
+}
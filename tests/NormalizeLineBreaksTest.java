@@ -0,0 +1,61 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Class to test the method `normalizeLineBreaks` of a `ParsingDiacriticsWorker`.
+ */
+public class NormalizeLineBreaksTest {
+
+    /**
+     * Helper to the tests. Returns the result of normalizing `input` in pieces of `pieceLength` characters, the way
+     * a loader normalizes a text as it is read
+     */
+    private String normalizeInPieces(String input, int pieceLength) {
+        StringBuilder output = new StringBuilder();
+        boolean afterCarriageReturn = false;
+        for(int start=0; start<input.length(); start+=pieceLength) {
+            char[] piece = input.substring(start, Math.min(start + pieceLength, input.length())).toCharArray();
+            boolean endsWithCarriageReturn = (piece[piece.length-1]=='\r');
+            int end = ParsingDiacriticsWorker.normalizeLineBreaks(piece, 0, piece.length, afterCarriageReturn);
+            afterCarriageReturn = endsWithCarriageReturn;
+            output.append(piece, 0, end);
+        }
+        return output.toString();
+    }
+
+
+    @DisplayName("normalizeLineBreaks should turn every kind of line break into one \"\\n\"")
+    @Test
+    void testLineBreaks() {
+        char[] chars = "a\r\nb\rc\nd\u2028e\u2029f\u0085g\r\r\n\n".toCharArray();
+        int end = ParsingDiacriticsWorker.normalizeLineBreaks(chars, 0, chars.length, false);
+        Assertions.assertEquals("a\nb\nc\nd\ne\nf\ng\n\n\n", new String(chars, 0, end));
+
+        //Text without line breaks is unchanged
+        chars = "No line breaks, éÖß’".toCharArray();
+        end = ParsingDiacriticsWorker.normalizeLineBreaks(chars, 0, chars.length, false);
+        Assertions.assertEquals("No line breaks, éÖß’", new String(chars, 0, end));
+
+        //Only the given range is normalized, and it stays in place
+        chars = "\r\n\r\n\r\n".toCharArray();
+        end = ParsingDiacriticsWorker.normalizeLineBreaks(chars, 2, 4, false);
+        Assertions.assertEquals(3, end);
+        Assertions.assertEquals("\r\n\n", new String(chars, 0, end));
+    }
+
+
+    @DisplayName("normalizeLineBreaks should join a \"\\r\\n\" split between two pieces")
+    @Test
+    void testPieces() {
+        char[] chars = "\nabc".toCharArray();
+        int end = ParsingDiacriticsWorker.normalizeLineBreaks(chars, 0, chars.length, true);
+        Assertions.assertEquals("abc", new String(chars, 0, end));
+
+        String input = "one\r\ntwo\r\r\nthree\n\rfour\u2028\n\r";
+        String expected = "one\ntwo\n\nthree\n\nfour\n\n\n";
+        for(int pieceLength=1; pieceLength<=input.length(); pieceLength++) {
+            Assertions.assertEquals(expected, normalizeInPieces(input, pieceLength), "Piece length " + pieceLength);
+        }
+    }
+}
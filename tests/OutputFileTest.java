@@ -0,0 +1,146 @@
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.FileNotFoundException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+
+/**
+ * Class to test that a Boss writing its output to a file writes exactly what it would give in memory.<br><br>
+ *
+ * Each piece's output is written at its own offset of the file. Pure-ASCII outputs are placed by character count,
+ * outputs with other characters are measured first, and letter-only outputs are written from packed letters, so all three
+ * are tested, with several thread counts.
+ */
+public class OutputFileTest {
+
+    //UTILITIES
+
+    /**
+     * Key to process the inputs with. Long enough to need no padding
+     */
+    final private String KEY = TestInputs.KEY;
+
+    /**
+     * Characters of the random ASCII inputs: letters, numbers, punctuation, and spaces
+     */
+    final private String ASCII_CHARACTERS = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ      0123456789,.;:!?'`-\n";
+
+    /**
+     * Characters of the random inputs with diacritics, and with punctuation that takes more than one byte in UTF-8
+     */
+    final private String OTHER_CHARACTERS = ASCII_CHARACTERS + "éÉàçñßÖø’«»€😀";
+
+    /**
+     * Thread counts to run each input with
+     */
+    final private int[] THREAD_COUNTS = new int[] {1, 2, 5};
+
+    /**
+     * Folder for the test's files. Deleted after each test
+     */
+    @TempDir
+    Path folder;
+
+
+    /**
+     * Checks that processing `input` into a file gives the same bytes as processing it in memory and encoding the result,
+     * with every thread count.
+     * @param input text to process. Must end with a line break, and hold no line breaks but "\n"
+     * @param encrypting true if encrypting, false if decrypting
+     * @param punctMode punctuation mode to process with
+     */
+    private void assertFileMatches(String input, boolean encrypting, byte punctMode) throws Exception {
+        ParsingEngine engine = new ParsingEngine(4, false);
+        try {
+            Path inputFile = folder.resolve("input.txt");
+            Path outputFile = folder.resolve("output.txt");
+            Files.writeString(inputFile, input, Charset.defaultCharset());
+
+            for(int threads : THREAD_COUNTS) {
+                String expected = new ParsingBoss().processText_Testing(engine, input, KEY, encrypting, punctMode, threads);
+
+                int outputLength = ParsingBoss.processFile(engine, inputFile.toString(), outputFile.toString(), KEY,
+                        encrypting, punctMode, threads);
+
+                String message = "punctMode=" + punctMode + ", encrypting=" + encrypting + ", threads=" + threads;
+                Assertions.assertEquals(expected.length(), outputLength, message);
+                Assertions.assertTrue(Arrays.equals(expected.getBytes(Charset.defaultCharset()), Files.readAllBytes(outputFile)),
+                        message);
+                Assertions.assertEquals(0, engine.liveBufferChars());
+            }
+        }
+        finally {
+            engine.shutdown();
+        }
+    }
+
+
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //TESTS
+
+    @DisplayName("Pure-ASCII outputs should be written to the file exactly as they are given in memory")
+    @Test
+    void testAsciiOutput() throws Exception {
+        Random random = new Random(40);
+        String input = TestInputs.randomText(200000, ASCII_CHARACTERS, random) + "\n";
+
+        for(byte punctMode=0; punctMode<=2; punctMode++) {
+            assertFileMatches(input, true, punctMode);
+        }
+        assertFileMatches(input, false, (byte)0);
+    }
+
+
+    @DisplayName("Outputs with multi-byte characters should be measured, then written exactly as they are given in memory")
+    @Test
+    void testOtherOutput() throws Exception {
+        Random random = new Random(41);
+        String input = TestInputs.randomText(200000, OTHER_CHARACTERS, random) + "\n";
+
+        for(byte punctMode=0; punctMode<=2; punctMode++) {
+            assertFileMatches(input, true, punctMode);
+        }
+        assertFileMatches(input, false, (byte)0);
+    }
+
+
+    @DisplayName("Letter-only outputs should be written from the packed letters, and replace an existing output file")
+    @Test
+    void testLetterOutput() throws Exception {
+        Random random = new Random(42);
+        Files.writeString(folder.resolve("output.txt"), "x".repeat(500000));
+
+        String input = TestInputs.randomText(200000, OTHER_CHARACTERS.replaceAll("[0-9]", ""), random) + "\n";
+        assertFileMatches(input, true, (byte)2);
+        assertFileMatches(input, false, (byte)2);
+    }
+
+
+    @DisplayName("A missing input file should give the App's error message, and an empty input an empty output file")
+    @Test
+    void testEdgeFiles() throws Exception {
+        ParsingEngine engine = new ParsingEngine(2, false);
+        try {
+            Path outputFile = folder.resolve("output.txt");
+            Exception e = Assertions.assertThrows(FileNotFoundException.class, () -> ParsingBoss.processFile(
+                    engine, folder.resolve("missing.txt").toString(), outputFile.toString(), KEY, true, (byte)0, 2));
+            Assertions.assertTrue(e.getMessage().contains("does not exist"));
+
+            Path inputFile = folder.resolve("empty.txt");
+            Files.writeString(inputFile, "");
+            Assertions.assertEquals(0, ParsingBoss.processFile(
+                    engine, inputFile.toString(), outputFile.toString(), KEY, true, (byte)0, 2));
+            Assertions.assertEquals(0, Files.size(outputFile));
+        }
+        finally {
+            engine.shutdown();
+        }
+    }
+}
@@ -0,0 +1,406 @@
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import javax.swing.*;
+import java.io.FileInputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.zip.GZIPInputStream;
+
+
+/**
+ * Class to test that a StepperScheduler gives every job the output it would get alone, splits the engine's threads
+ * between the jobs, and that the engine's jobs take turns on its pool.
+ */
+public class SchedulerTest {
+
+    //UTILITIES
+
+    /**
+     * Key to process the inputs with. Long enough to need no padding
+     */
+    final private String KEY = TestInputs.KEY;
+
+    /**
+     * Folder for the test's files. Deleted after each test
+     */
+    @TempDir
+    Path folder;
+
+    /**
+     * The engine that the jobs run on. Created before each test
+     */
+    ParsingEngine engine;
+
+
+    @BeforeEach
+    void startEngine() {
+        engine = new ParsingEngine(4, false);
+    }
+
+
+    @AfterEach
+    void stopEngine() {
+        engine.shutdown();
+    }
+
+
+    /**
+     * Writes a random text of `length` characters, taken from `TestInputs.CHARACTERS`, to a new file in `folder`
+     * @param name the file's name
+     * @param length length of the text
+     * @param random random number generator to use
+     * @return the file's path
+     */
+    private Path randomFile(String name, int length, Random random) throws Exception {
+        return Files.writeString(folder.resolve(name), TestInputs.randomText(length, random), Charset.defaultCharset());
+    }
+
+
+    /**
+     * Returns a Worker that adds `label` to `order` when it runs, after waiting for `gate`, if any
+     * @param label the Worker's label
+     * @param order list to add the label to
+     * @param gate latch to wait for before adding the label, or null
+     * @return the Worker
+     */
+    private SwingWorker<Void,Void> recordingWorker(String label, List<String> order, CountDownLatch gate) {
+        return new SwingWorker<>() {
+            @Override
+            protected Void doInBackground() throws Exception {
+                if(gate!=null) {
+                    gate.await();
+                }
+                order.add(label);
+                return null;
+            }
+        };
+    }
+
+
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //TESTS
+
+    @DisplayName("Many jobs at once, processed whole or streamed, should each get the output they would get alone")
+    @Test
+    void testJobs() throws Exception {
+        Random random = new Random(48);
+        StepperScheduler scheduler = new StepperScheduler(engine, 3);
+        try {
+            ArrayList<StepperJob> jobs = new ArrayList<>();
+            ArrayList<byte[]> expected = new ArrayList<>();
+            for(int i=0; i<12; i++) {
+                Path inputFile = randomFile("input" + i + ".txt", 1000 + random.nextInt(300000), random);
+                boolean encrypting = i%4!=3;
+                byte punctMode = (byte) (i%3);
+                String outputName = (i%5==0) ? "output" + i + ".txt.gz" : "output" + i + ".txt";
+
+                StepperJob job = new StepperJob("job " + i, inputFile.toString(), folder.resolve(outputName).toString(),
+                        KEY, encrypting, punctMode);
+                jobs.add(job);
+                expected.add(TestInputs.expectedOutput(engine, inputFile, KEY, encrypting, punctMode));
+                scheduler.submit(job);
+            }
+
+            for(int i=0; i<jobs.size(); i++) {
+                StepperJob job = jobs.get(i);
+                job.output().get();
+                Assertions.assertTrue(job.threads() >= 1 && job.threads() <= engine.poolSize(), job.toString());
+                Assertions.assertEquals(1.0, job.progress());
+
+                if(job.outputPath().endsWith(".gz")) {
+                    Assertions.assertTrue(job.streaming(), job.toString());
+                    try(GZIPInputStream output = new GZIPInputStream(new FileInputStream(job.outputPath()))) {
+                        Assertions.assertArrayEquals(expected.get(i), output.readAllBytes(), job.toString());
+                    }
+                }
+                else {
+                    Assertions.assertFalse(job.streaming(), job.toString());
+                    Assertions.assertArrayEquals(expected.get(i), Files.readAllBytes(Path.of(job.outputPath())), job.toString());
+                }
+            }
+
+            Assertions.assertEquals("queued=0 running=0 completed=12 failed=0 queuedWorkers=0", scheduler.stats());
+            Assertions.assertEquals(0, scheduler.jobs().length);
+            Assertions.assertEquals(0, engine.liveBufferChars());
+        }
+        finally {
+            scheduler.shutdown();
+        }
+    }
+
+
+    @DisplayName("Jobs should split the pool between the jobs that run at once, and report their queue and failures")
+    @Test
+    void testSharesAndQueue() throws Exception {
+        Random random = new Random(49);
+        Path inputFile = randomFile("input.txt", 200000, random);
+        StepperScheduler scheduler = new StepperScheduler(engine, 2);
+        try {
+            StepperJob[] jobs = new StepperJob[5];
+            for(int i=0; i<jobs.length; i++) {
+                jobs[i] = new StepperJob("job " + i, inputFile.toString(), folder.resolve("output" + i + ".txt").toString(),
+                        "short key", true, (byte)0);
+            }
+            Assertions.assertEquals(0, jobs[0].progress());
+            Assertions.assertTrue(jobs[0].toString().contains("queued"));
+
+            //The first job is alone, and the second shares the pool with it. The rest wait for a slot
+            for(StepperJob job : jobs) {
+                scheduler.submit(job);
+            }
+            Assertions.assertEquals(4, jobs[0].threads());
+            Assertions.assertEquals(2, jobs[1].threads());
+
+            StepperJob missing = new StepperJob("missing", folder.resolve("missing.txt").toString(),
+                    folder.resolve("missing output.txt").toString(), KEY, true, (byte)0);
+            scheduler.submit(missing);
+
+            for(StepperJob job : jobs) {
+                job.output().get();
+                Assertions.assertTrue(job.threads() <= 2 || job==jobs[0], job.toString());
+
+                //Each job pads its short key once, and the output is what that key gives alone
+                Assertions.assertEquals(StepperAppFields.BLOCK_COUNT * StepperAppFields.BLOCK_LENGTH, job.key().length());
+                Assertions.assertArrayEquals(TestInputs.expectedOutput(engine, inputFile, job.key(), true, (byte)0),
+                        Files.readAllBytes(Path.of(job.outputPath())), job.toString());
+            }
+            Assertions.assertThrows(ExecutionException.class, () -> missing.output().get());
+            Assertions.assertEquals("queued=0 running=0 completed=5 failed=1 queuedWorkers=0", scheduler.stats());
+
+            //Once shut down, queued and new jobs are cancelled
+            scheduler.shutdown();
+            StepperJob late = new StepperJob("late", inputFile.toString(), folder.resolve("late.txt").toString(),
+                    KEY, true, (byte)0);
+            scheduler.submit(late);
+            Assertions.assertThrows(CancellationException.class, () -> late.output().join());
+        }
+        finally {
+            scheduler.shutdown();
+        }
+    }
+
+
+    @DisplayName("Workers of different jobs should take turns on the pool, whatever order they were queued in")
+    @Test
+    void testTurns() throws Exception {
+        ParsingEngine singleThreaded = new ParsingEngine(1, false);
+        try {
+            singleThreaded.awaitWarmUp();
+            List<String> order = Collections.synchronizedList(new ArrayList<>());
+
+            //Hold the only pool thread while both jobs queue their Workers
+            CountDownLatch gate = new CountDownLatch(1);
+            SwingWorker<Void,Void> blocker = recordingWorker("blocker", order, gate);
+            singleThreaded.execute(blocker);
+
+            Object jobA = new Object();
+            Object jobB = new Object();
+            singleThreaded.bindJob(jobA, false);
+            for(int i=0; i<3; i++) {
+                singleThreaded.execute(recordingWorker("A" + i, order, null));
+            }
+            singleThreaded.bindJob(jobB, false);
+            SwingWorker<Void,Void> lastWorker = null;
+            for(int i=0; i<3; i++) {
+                lastWorker = recordingWorker("B" + i, order, null);
+                singleThreaded.execute(lastWorker);
+            }
+            singleThreaded.bindJob(null, false);
+            Assertions.assertTrue(singleThreaded.queuedWorkers() >= 6);
+
+            gate.countDown();
+            lastWorker.get();
+            Assertions.assertEquals(List.of("blocker", "A0", "B0", "A1", "B1", "A2", "B2"), order);
+            Assertions.assertEquals(0, singleThreaded.queuedWorkers());
+        }
+        finally {
+            singleThreaded.shutdown();
+        }
+    }
+
+
+    @DisplayName("An interactive job should start ahead of queued batch jobs, and large batch jobs should be streamed")
+    @Test
+    void testInteractiveJobs() throws Exception {
+        Random random = new Random(50);
+        Path largeFile = randomFile("large.txt", (int) StepperScheduler.SEGMENTED_BATCH_BYTES, random);
+        Path smallFile = randomFile("small.txt", 2000, random);
+        StepperScheduler scheduler = new StepperScheduler(engine, 1);
+        try {
+            StepperJob[] batchJobs = new StepperJob[3];
+            for(int i=0; i<batchJobs.length; i++) {
+                batchJobs[i] = new StepperJob("batch " + i, largeFile.toString(), folder.resolve("batch" + i + ".txt").toString(),
+                        KEY, true, (byte)0);
+                scheduler.submit(batchJobs[i]);
+            }
+            StepperJob interactiveJob = new StepperJob("interactive", smallFile.toString(),
+                    folder.resolve("interactive.txt").toString(), KEY, false, (byte)1, true);
+            Assertions.assertTrue(interactiveJob.toString().contains("interactive"));
+
+            //The only batch slot is taken, but the interactive job's thread is free
+            scheduler.submit(interactiveJob);
+            Assertions.assertTrue(interactiveJob.threads() > 0, interactiveJob.toString());
+            Assertions.assertFalse(interactiveJob.streaming());
+            interactiveJob.output().get();
+            Assertions.assertArrayEquals(TestInputs.expectedOutput(engine, smallFile, KEY, false, (byte)1),
+                    Files.readAllBytes(Path.of(interactiveJob.outputPath())));
+
+            byte[] expected = TestInputs.expectedOutput(engine, largeFile, KEY, true, (byte)0);
+            for(StepperJob job : batchJobs) {
+                job.output().get();
+                Assertions.assertTrue(job.streaming(), job.toString());
+                Assertions.assertArrayEquals(expected, Files.readAllBytes(Path.of(job.outputPath())), job.toString());
+            }
+            Assertions.assertEquals("queued=0 running=0 completed=4 failed=0 queuedWorkers=0", scheduler.stats());
+        }
+        finally {
+            scheduler.shutdown();
+        }
+    }
+
+
+    @DisplayName("Interactive Workers should run ahead of batch Workers, but let a batch Worker through every few turns")
+    @Test
+    void testLanes() throws Exception {
+        ParsingEngine singleThreaded = new ParsingEngine(1, false);
+        try {
+            singleThreaded.awaitWarmUp();
+            List<String> order = Collections.synchronizedList(new ArrayList<>());
+
+            //Hold the only pool thread while both lanes queue their Workers
+            CountDownLatch gate = new CountDownLatch(1);
+            singleThreaded.execute(recordingWorker("blocker", order, gate));
+            while(singleThreaded.queuedWorkers() > 0) {
+                Thread.sleep(1);
+            }
+
+            singleThreaded.bindJob(new Object(), false);
+            SwingWorker<Void,Void> lastWorker = null;
+            for(int i=0; i<4; i++) {
+                lastWorker = recordingWorker("B" + i, order, null);
+                singleThreaded.execute(lastWorker);
+            }
+            singleThreaded.bindJob(new Object(), true);
+            for(int i=0; i<6; i++) {
+                singleThreaded.execute(recordingWorker("I" + i, order, null));
+            }
+            singleThreaded.bindJob(null, false);
+
+            gate.countDown();
+            lastWorker.get();
+            Assertions.assertEquals(List.of("blocker", "I0", "I1", "I2", "I3", "B0", "I4", "I5", "B1", "B2", "B3"), order);
+            Assertions.assertTrue(singleThreaded.laneStats().startsWith("interactive=6 "), singleThreaded.laneStats());
+        }
+        finally {
+            singleThreaded.shutdown();
+        }
+    }
+
+
+    @DisplayName("Each job's memory estimate should bound what it takes, whether processed whole or streamed")
+    @Test
+    void testEstimates() throws Exception {
+        Random random = new Random(51);
+        Path inputFile = randomFile("input.txt", 3000000, random);
+        for(byte punctMode=0; punctMode<=2; punctMode++) {
+            for(boolean streaming : new boolean[]{false, true}) {
+                ParsingEngine fresh = new ParsingEngine(4, false);
+                try {
+                    StepperJob job = new StepperJob("job", inputFile.toString(), folder.resolve("output.txt").toString(),
+                            KEY, true, punctMode);
+                    if(streaming) {
+                        ParsingBoss.processFileStreaming(fresh, job.inputPath(), job.outputPath(), KEY, true, punctMode, 4);
+                    }
+                    else {
+                        ParsingBoss.processFile(fresh, job.inputPath(), job.outputPath(), KEY, true, punctMode, 4);
+                    }
+                    Assertions.assertTrue(2 * fresh.peakBufferChars() <= job.estimatedBytes(streaming, 4),
+                            "Punctuation mode " + punctMode + (streaming ? ", streamed: " : ", whole: ") + fresh.peakBufferChars());
+                }
+                finally {
+                    fresh.shutdown();
+                }
+            }
+        }
+    }
+
+
+    @DisplayName("Jobs that don't fit the memory budget should be split between fewer Workers, streamed, or queued")
+    @Test
+    void testAdmission() throws Exception {
+        Random random = new Random(52);
+        Path inputFile = randomFile("input.txt", 8000000, random);
+        byte[] expected = TestInputs.expectedOutput(engine, inputFile, KEY, true, (byte)0);
+        StepperJob[] jobs = new StepperJob[3];
+        for(int i=0; i<jobs.length; i++) {
+            jobs[i] = new StepperJob("job " + i, inputFile.toString(), folder.resolve("output" + i + ".txt").toString(),
+                    KEY, true, (byte)0);
+        }
+
+        //The first job fits whole, the second only streamed, and the third must wait for memory even with a slot free
+        long budget = jobs[0].estimatedBytes(false, 4) + jobs[1].estimatedBytes(true, 2) + 1000;
+        StepperScheduler scheduler = new StepperScheduler(engine, 3, budget);
+        try {
+            for(StepperJob job : jobs) {
+                scheduler.submit(job);
+            }
+            Assertions.assertFalse(jobs[0].streaming(), jobs[0].toString());
+            Assertions.assertTrue(jobs[1].streaming(), jobs[1].toString());
+            Assertions.assertEquals(2, jobs[1].threads());
+            Assertions.assertEquals(0, jobs[2].threads());
+            Assertions.assertTrue(scheduler.memoryStats().contains(" downgraded=1 throttled=0"), scheduler.memoryStats());
+
+            for(StepperJob job : jobs) {
+                job.output().get();
+                Assertions.assertArrayEquals(expected, Files.readAllBytes(Path.of(job.outputPath())), job.toString());
+            }
+            Assertions.assertTrue(scheduler.memoryStats().contains(" admitted=0 "), scheduler.memoryStats());
+        }
+        finally {
+            scheduler.shutdown();
+        }
+
+        //A job alone that doesn't fit streamed on its full share is split between fewer Workers
+        StepperJob throttled = new StepperJob("throttled", inputFile.toString(), folder.resolve("throttled.txt").toString(),
+                KEY, true, (byte)0);
+        scheduler = new StepperScheduler(engine, 1, throttled.estimatedBytes(true, 2));
+        try {
+            scheduler.submit(throttled);
+            Assertions.assertTrue(throttled.streaming());
+            Assertions.assertEquals(2, throttled.threads());
+            throttled.output().get();
+            Assertions.assertArrayEquals(expected, Files.readAllBytes(Path.of(throttled.outputPath())));
+            Assertions.assertTrue(scheduler.memoryStats().endsWith(" downgraded=1 throttled=1"), scheduler.memoryStats());
+        }
+        finally {
+            scheduler.shutdown();
+        }
+
+        //A job alone that fits whole only on fewer Workers is split between fewer Workers, and still processed whole
+        StepperJob narrowed = new StepperJob("narrowed", inputFile.toString(), folder.resolve("narrowed.txt").toString(),
+                KEY, true, (byte)0);
+        scheduler = new StepperScheduler(engine, 1, narrowed.estimatedBytes(false, 2));
+        try {
+            scheduler.submit(narrowed);
+            Assertions.assertFalse(narrowed.streaming());
+            Assertions.assertEquals(2, narrowed.threads());
+            narrowed.output().get();
+            Assertions.assertArrayEquals(expected, Files.readAllBytes(Path.of(narrowed.outputPath())));
+            Assertions.assertTrue(scheduler.memoryStats().endsWith(" downgraded=0 throttled=1"), scheduler.memoryStats());
+        }
+        finally {
+            scheduler.shutdown();
+        }
+    }
+}
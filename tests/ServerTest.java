@@ -0,0 +1,259 @@
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Class to test that a StepperServer answers like one file job would, whether a request is batched or streamed.<br><br>
+ *
+ * Many small requests are sent at once, with different keys and modes, so batches mix them. Large bodies, and bodies
+ * of unknown length, are streamed. The load test is run against the server too.
+ */
+public class ServerTest {
+
+    //UTILITIES
+
+    /**
+     * Key to process the inputs with. Long enough to need no padding
+     */
+    final private String KEY = TestInputs.KEY;
+
+    /**
+     * Folder for the test's files. Deleted after each test
+     */
+    @TempDir
+    Path folder;
+
+    /**
+     * The engine that the server runs on. Created before each test
+     */
+    ParsingEngine engine;
+
+    /**
+     * The server under test, on a free port. Started before each test
+     */
+    StepperServer server;
+
+    /**
+     * Client to send the requests with
+     */
+    HttpClient client;
+
+
+    @BeforeEach
+    void startServer() throws Exception {
+        engine = new ParsingEngine(4, false);
+        server = new StepperServer(engine, 0);
+        server.start();
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    }
+
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+        engine.shutdown();
+    }
+
+
+    /**
+     * Returns a request to process `body` with `key` on the server's `endpoint`
+     * @param endpoint "encrypt" or "decrypt", followed by the query string if any
+     * @param key the key
+     * @param body the request's body publisher
+     * @return the request
+     */
+    private HttpRequest request(String endpoint, String key, HttpRequest.BodyPublisher body) {
+        return HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.port() + "/" + endpoint))
+                .header(StepperServer.KEY_HEADER, key)
+                .POST(body)
+                .build();
+    }
+
+
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //TESTS
+
+    @DisplayName("Small, large, and unknown-length bodies should be answered like files processed whole")
+    @Test
+    void testBodies() throws Exception {
+        Random random = new Random(46);
+        String small = TestInputs.randomText(5000, random);
+        String large = TestInputs.randomText(StepperService.BATCH_BODY_BYTES * 3, random);
+
+        HttpResponse<byte[]> response = client.send(request("encrypt?punct=1", KEY,
+                HttpRequest.BodyPublishers.ofString(small, Charset.defaultCharset())), HttpResponse.BodyHandlers.ofByteArray());
+        Assertions.assertEquals(200, response.statusCode());
+        Assertions.assertArrayEquals(TestInputs.expectedOutput(engine, folder, small, KEY, true, (byte)1),
+                response.body());
+
+        response = client.send(request("decrypt?punct=2", KEY,
+                HttpRequest.BodyPublishers.ofString(large, Charset.defaultCharset())), HttpResponse.BodyHandlers.ofByteArray());
+        Assertions.assertEquals(200, response.statusCode());
+        Assertions.assertArrayEquals(TestInputs.expectedOutput(engine, folder, large, KEY, false, (byte)2),
+                response.body());
+
+        //Without a length, even a small body is streamed
+        byte[] smallBytes = small.getBytes(Charset.defaultCharset());
+        response = client.send(request("encrypt", KEY, HttpRequest.BodyPublishers.ofInputStream(
+                () -> new ByteArrayInputStream(smallBytes))), HttpResponse.BodyHandlers.ofByteArray());
+        Assertions.assertEquals(200, response.statusCode());
+        Assertions.assertArrayEquals(TestInputs.expectedOutput(engine, folder, small, KEY, true, (byte)0),
+                response.body());
+
+        response = client.send(request("encrypt", KEY, HttpRequest.BodyPublishers.noBody()),
+                HttpResponse.BodyHandlers.ofByteArray());
+        Assertions.assertEquals(200, response.statusCode());
+        Assertions.assertEquals(0, response.body().length);
+
+        Assertions.assertTrue(server.stats().contains("streamed=2"), server.stats());
+        Assertions.assertEquals(0, engine.liveBufferChars());
+    }
+
+
+    @DisplayName("Many requests at once, with different keys and modes, should each get their own output")
+    @Test
+    void testConcurrentRequests() throws Exception {
+        Random random = new Random(47);
+        String[] texts = new String[24];
+        String[] keys = new String[texts.length];
+        byte[][] expected = new byte[texts.length][];
+        for(int i=0; i<texts.length; i++) {
+            texts[i] = TestInputs.randomText(random.nextInt(4000), random);
+            keys[i] = (i%2==0) ? KEY : new StringBuilder(KEY).reverse().toString();
+            expected[i] = TestInputs.expectedOutput(engine, folder, texts[i], keys[i], i%3!=0, (byte)(i%3));
+        }
+
+        int requests = 480;
+        ExecutorService clients = Executors.newFixedThreadPool(32);
+        try {
+            ArrayList<Future<HttpResponse<byte[]>>> responses = new ArrayList<>();
+            for(int r=0; r<requests; r++) {
+                int i = r % texts.length;
+                HttpRequest request = request(((i%3!=0) ? "encrypt" : "decrypt") + "?punct=" + (i%3), keys[i],
+                        HttpRequest.BodyPublishers.ofString(texts[i], Charset.defaultCharset()));
+                responses.add(clients.submit(() -> client.send(request, HttpResponse.BodyHandlers.ofByteArray())));
+            }
+
+            for(int r=0; r<requests; r++) {
+                HttpResponse<byte[]> response = responses.get(r).get();
+                Assertions.assertEquals(200, response.statusCode());
+                Assertions.assertArrayEquals(expected[r % texts.length], response.body(), "request " + r);
+            }
+        }
+        finally {
+            clients.shutdownNow();
+        }
+
+        Assertions.assertTrue(server.stats().startsWith("batched=" + requests + " "), server.stats());
+    }
+
+
+    @DisplayName("Invalid requests should get errors, and short keys should be padded and sent back when encrypting")
+    @Test
+    void testErrorsAndKeys() throws Exception {
+        HttpRequest.BodyPublisher body = HttpRequest.BodyPublishers.ofString("Hello, world!");
+
+        Assertions.assertEquals(405, client.send(HttpRequest.newBuilder(
+                URI.create("http://127.0.0.1:" + server.port() + "/encrypt")).GET().build(),
+                HttpResponse.BodyHandlers.discarding()).statusCode());
+        Assertions.assertEquals(400, client.send(HttpRequest.newBuilder(
+                URI.create("http://127.0.0.1:" + server.port() + "/encrypt")).POST(body).build(),
+                HttpResponse.BodyHandlers.discarding()).statusCode());
+        Assertions.assertEquals(400, client.send(request("encrypt?punct=7", KEY, body),
+                HttpResponse.BodyHandlers.discarding()).statusCode());
+        Assertions.assertEquals(400, client.send(request("decrypt", "short key", body),
+                HttpResponse.BodyHandlers.discarding()).statusCode());
+
+        HttpResponse<String> response = client.send(request("encrypt", "short key", body), HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode());
+        String paddedKey = response.headers().firstValue(StepperServer.KEY_HEADER).orElseThrow();
+        Assertions.assertTrue(paddedKey.startsWith("shortkey"));
+        Assertions.assertEquals(StepperAppFields.BLOCK_COUNT * StepperAppFields.BLOCK_LENGTH, paddedKey.length());
+
+        //The padded key decrypts the output
+        response = client.send(request("decrypt", paddedKey, HttpRequest.BodyPublishers.ofString(response.body())),
+                HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals("hello, world!\n", response.body().toLowerCase());
+    }
+
+
+    @DisplayName("The service's key cache should hold at most KEY_CACHE_SIZE keys, however many keys are used")
+    @Test
+    void testKeyCache() {
+        StepperService service = new StepperService(engine);
+        byte[] text = "Hello, world!".getBytes(Charset.defaultCharset());
+        try {
+            for(int k=0; k<StepperService.KEY_CACHE_SIZE + 40; k++) {
+                service.submit(text, KEY + "x".repeat(k), true, (byte)0);
+                Assertions.assertTrue(service.stats().endsWith(" keys=" + Math.min(k+1, StepperService.KEY_CACHE_SIZE)),
+                        service.stats());
+            }
+        }
+        finally {
+            service.stop();
+        }
+    }
+
+
+    @DisplayName("The load test should report the throughput and latency percentiles of the server")
+    @Test
+    void testLoadTest() throws Exception {
+        StepperLoadTest loadTest = new StepperLoadTest(server.port(), 300, 12, 800);
+        String report = loadTest.run();
+
+        Assertions.assertEquals(0, loadTest.failedRequests(), report);
+        Assertions.assertTrue(report.contains("300 succeeded, 0 failed"), report);
+        Assertions.assertTrue(report.contains("requests/s"));
+        Assertions.assertTrue(report.contains("p50") && report.contains("p99"));
+    }
+
+
+    @DisplayName("A service should fail requests that it can't batch, instead of leaving their clients waiting")
+    @Test
+    void testFailedRequests() throws Exception {
+        byte[] text = "Hello, world!".getBytes(Charset.defaultCharset());
+
+        //Requests submitted after the service stopped fail right away
+        StepperService service = new StepperService(engine);
+        service.start();
+        Assertions.assertNotNull(service.submit(text, KEY, true, (byte)0).output().get(30, TimeUnit.SECONDS));
+        service.stop();
+        ExecutionException e = Assertions.assertThrows(ExecutionException.class,
+                () -> service.submit(text, KEY, true, (byte)0).output().get(30, TimeUnit.SECONDS));
+        Assertions.assertTrue(e.getCause() instanceof IOException);
+
+        //Batches that a shut down engine can't start fail, and the batcher keeps failing the next ones
+        ParsingEngine stoppedEngine = new ParsingEngine(2, false);
+        stoppedEngine.shutdown();
+        StepperService stranded = new StepperService(stoppedEngine);
+        stranded.start();
+        try {
+            for(int r=0; r<2*stoppedEngine.poolSize()+1; r++) {
+                e = Assertions.assertThrows(ExecutionException.class,
+                        () -> stranded.submit(text, KEY, true, (byte)0).output().get(30, TimeUnit.SECONDS), "request " + r);
+                Assertions.assertTrue(e.getCause() instanceof IOException);
+            }
+        }
+        finally {
+            stranded.stop();
+        }
+    }
+}
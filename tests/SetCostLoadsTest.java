@@ -0,0 +1,250 @@
+import org.junit.jupiter.api.*;
+import java.util.Random;
+
+/**
+ * Class to test the setCostLoads method of a ParsingBoss.<br><br>
+ *
+ * Pieces must still hold whole blocks of letters, and end on a letter, so every Worker starts on a block. Within that,
+ * the pieces' costs must be close to even, even when the text's digits or punctuation are bunched in one region.<br><br>
+ *
+ * Note: On small texts, a leftover block goes to whichever piece's boundary is closest to its even share, so it may
+ * land on any piece, and empty pieces may fall anywhere in the output.
+ */
+public class SetCostLoadsTest {
+
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //UTILITY METHODS
+
+    /**
+     * Returns a random text of `length` characters, taken from `characters`
+     * @param length length of the output
+     * @param characters characters to build the output from
+     * @param random random number generator to use
+     * @return random text
+     */
+    private String randomText(int length, String characters, Random random) {
+        StringBuilder output = new StringBuilder(length);
+        for(int i=0; i<length; i++) {
+            output.append(characters.charAt(random.nextInt(characters.length())));
+        }
+        return output.toString();
+    }
+
+    /**
+     * Returns the cost of processing `text`, weighted by the Boss's cost model
+     * @param text text to cost
+     * @return total cost of the text's characters
+     */
+    private long cost(String text) {
+        long output = 0;
+        for(int i=0; i<text.length(); i++) {
+            char c = text.charAt(i);
+            if(c>='a' && c<='z') {
+                output += ParsingBoss.LETTER_COST;
+            }
+            else if(c>='0' && c<='9') {
+                output += ParsingBoss.DIGIT_COST;
+            }
+            else {
+                output += ParsingBoss.OTHER_COST;
+            }
+        }
+        return output;
+    }
+
+    /**
+     * Checks that `pieces` split `text` in order into `threads` pieces, and that every piece but the last holds
+     * a multiple of `blockLength` letters and ends on a letter. If `threads` is zero, checks that there is one empty piece.
+     *
+     * @param text the text that was split
+     * @param pieces the pieces of `text`
+     * @param threads number of pieces that `text` was split into
+     * @param blockLength number of letters in each block
+     */
+    private void assertWholeBlocks(String text, String[] pieces, int threads, int blockLength) {
+        //Zero threads give one empty piece
+        if(threads == 0) {
+            Assertions.assertArrayEquals(new String[] {""}, pieces);
+            return;
+        }
+
+        Assertions.assertEquals(threads, pieces.length);
+        Assertions.assertEquals(text, String.join("", pieces));
+
+        for(int i=0; i<pieces.length-1; i++) {
+            Assertions.assertEquals(0, pieces[i].chars().filter(c -> c>='a' && c<='z').count() % blockLength,
+                    "piece " + i + " must hold whole blocks");
+
+            if(!pieces[i].isEmpty()) {
+                char last = pieces[i].charAt(pieces[i].length()-1);
+                Assertions.assertTrue(last>='a' && last<='z', "piece " + i + " must end on a letter");
+            }
+        }
+    }
+
+
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //TESTS
+
+    @DisplayName("Pieces should hold whole blocks and end on a letter, for any text, thread count, and block length")
+    @Test
+    void testWholeBlocks() {
+        ParsingBoss b = new ParsingBoss();
+        Random random = new Random(38);
+
+        for(int length : new int[] {0, 1, 5, 22, 100, 1000, 10000}) {
+            for(String characters : new String[] {"abc", "abc012 ,.", "0123456789 ,.", "a0000000000------"}) {
+                String text = randomText(length, characters, random);
+
+                for(int threads : new int[] {0, 1, 2, 3, 8}) {
+                    for(int blockLength : new int[] {1, 3, 22}) {
+                        assertWholeBlocks(text, b.setCostLoads_Testing(text, threads, blockLength), threads, blockLength);
+                    }
+                }
+            }
+        }
+    }
+
+
+    @DisplayName("Pieces should cost about the same, even when digits and punctuation are bunched at one end of the text")
+    @Test
+    void testBalancedCost() {
+        ParsingBoss b = new ParsingBoss();
+        Random random = new Random(39);
+
+        //Letters first, then a region of tables, then trailing punctuation that follows the last letter
+        String text = randomText(60000, "abcdefghijklmnopqrstuvwxyz ", random) +
+                randomText(30000, "abc0123456789  ,.|", random) +
+                randomText(10000, " -=.\n", random);
+        final int THREADS = 4;
+        final int BLOCK_LENGTH = StepperAppFields.BLOCK_LENGTH;
+
+        String[] pieces = b.setCostLoads_Testing(text, THREADS, BLOCK_LENGTH);
+        assertWholeBlocks(text, pieces, THREADS, BLOCK_LENGTH);
+
+        //Each boundary can only move by whole blocks, so allow a little over the even share
+        long evenShare = cost(text) / THREADS;
+        for(String piece : pieces) {
+            Assertions.assertTrue(Math.abs(cost(piece) - evenShare) < evenShare / 50,
+                    "piece cost " + cost(piece) + " is far from the even share " + evenShare);
+        }
+    }
+
+
+    @DisplayName("When threads is 1, setCostLoads should return the whole text in one piece, regardless of the block length")
+    @Test
+    void testOneThread() {
+        ParsingBoss b = new ParsingBoss();
+
+        Assertions.assertArrayEquals(new String[] {"abcdefabcdefabcdefabcdef"}, b.setCostLoads_Testing("abcdefabcdefabcdefabcdef", 1, 8));
+        Assertions.assertArrayEquals(new String[] {"abcdefgh"}, b.setCostLoads_Testing("abcdefgh", 1, 2));
+        Assertions.assertArrayEquals(new String[] {"abcde"}, b.setCostLoads_Testing("abcde", 1, 1));
+        Assertions.assertArrayEquals(new String[] {""}, b.setCostLoads_Testing("", 1, 999));
+    }
+
+
+    @DisplayName("When the text's letters split into the same number of blocks for every thread, each piece should hold the same blocks")
+    @Test
+    void testEvenSplit() {
+        ParsingBoss b = new ParsingBoss();
+
+        //One block per thread
+        Assertions.assertArrayEquals(new String[] {"abcdefgh", "abcdefgh", "abcdefgh"},
+                b.setCostLoads_Testing("abcdefghabcdefghabcdefgh", 3, 8));
+        Assertions.assertArrayEquals(new String[] {"abcdefgh", "abcdefgh", "abcdefgh", "abcdefgh", "abcdefgh"},
+                b.setCostLoads_Testing("abcdefghabcdefghabcdefghabcdefghabcdefgh", 5, 8));
+        Assertions.assertArrayEquals(new String[] {"abcd", "abcd", "abcd", "abcd", "abcd", "abcd"},
+                b.setCostLoads_Testing("abcdabcdabcdabcdabcdabcd", 6, 4));
+        Assertions.assertArrayEquals(new String[] {"abcdef", "abcdef"}, b.setCostLoads_Testing("abcdefabcdef", 2, 6));
+        Assertions.assertArrayEquals(new String[] {"abc", "abc", "abc", "abc"}, b.setCostLoads_Testing("abcabcabcabc", 4, 3));
+
+        //Several blocks per thread
+        Assertions.assertArrayEquals(new String[] {"abcdabcdabcdabcd", "efghefghefghefgh"},
+                b.setCostLoads_Testing("abcdabcdabcdabcdefghefghefghefgh", 2, 8));
+        Assertions.assertArrayEquals(new String[] {"aaaaaaaaaaaaaaaa", "bbbbbbbbbbbbbbbb", "cccccccccccccccc", "dddddddddddddddd"},
+                b.setCostLoads_Testing("aaaaaaaaaaaaaaaabbbbbbbbbbbbbbbbccccccccccccccccdddddddddddddddd", 4, 8));
+        Assertions.assertArrayEquals(new String[] {"abcdefghijklmna", "bcdefghijklmnab", "cdefghijklmn"},
+                b.setCostLoads_Testing("abcdefghijklmnabcdefghijklmnabcdefghijklmn", 3, 5));
+        Assertions.assertArrayEquals(new String[] {"abababababab", "abababababab", "abababababab", "abababababab"},
+                b.setCostLoads_Testing("abababababababababababababababababababababababab", 4, 2));
+    }
+
+
+    @DisplayName("When the text's blocks don't split evenly among the threads, the leftover letters should go to the last piece " +
+            "and the leftover blocks to the pieces whose boundaries are closest to their even share")
+    @Test
+    void testUnevenSplit() {
+        ParsingBoss b = new ParsingBoss();
+
+        //Two threads
+        Assertions.assertArrayEquals(new String[] {"aaaaaaaa", "bbbbbbbbbbbb"}, b.setCostLoads_Testing("aaaaaaaabbbbbbbbbbbb", 2, 8));
+        Assertions.assertArrayEquals(new String[] {"aaaaaaaa", "cccccccceeeeeeee"}, b.setCostLoads_Testing("aaaaaaaacccccccceeeeeeee", 2, 8));
+        Assertions.assertArrayEquals(new String[] {"aaaaaabbbbbb", "ccccccd"}, b.setCostLoads_Testing("aaaaaabbbbbbccccccd", 2, 6));
+        Assertions.assertArrayEquals(new String[] {"aaabbb", "cccdddeee"}, b.setCostLoads_Testing("aaabbbcccdddeee", 2, 3));
+
+        //More threads. The leftover block goes to the piece that holds the even share's closest block end
+        Assertions.assertArrayEquals(new String[] {"abcdefgh", "abcdefgh", "abcdefghabcdefgh", "abcdefgh"},
+                b.setCostLoads_Testing("abcdefghabcdefghabcdefghabcdefghabcdefgh", 4, 8));
+        Assertions.assertArrayEquals(new String[] {"abcdefghabcdefgh", "abcdefghabcdefgh", "abcdefghabcdefghabcde"},
+                b.setCostLoads_Testing("abcdefghabcdefghabcdefghabcdefghabcdefghabcdefghabcde", 3, 8));
+        Assertions.assertArrayEquals(new String[] {"abcdeabcdeabcde", "abcdeabcdeabcde", "abcdeabcdeabc"},
+                b.setCostLoads_Testing("abcdeabcdeabcdeabcdeabcdeabcdeabcdeabcdeabc", 3, 5));
+        Assertions.assertArrayEquals(new String[] {"abcdefghijklmnopabcdefghijklmnop", "abcdefghijklmnop", "abcdefghijklmnopabcdefghijkl"},
+                b.setCostLoads_Testing("abcdefghijklmnopabcdefghijklmnopabcdefghijklmnopabcdefghijklmnopabcdefghijkl", 3, 16));
+        Assertions.assertArrayEquals(new String[] {"abcdabcd", "abcd", "abcdabcd", "abcdabcd", "abcdabc"},
+                b.setCostLoads_Testing("abcdabcdabcdabcdabcdabcdabcdabcdabc", 5, 4));
+    }
+
+
+    @DisplayName("When there are more threads than blocks, the unused threads should get empty (non-null) pieces")
+    @Test
+    void testUnderflow() {
+        ParsingBoss b = new ParsingBoss();
+
+        Assertions.assertArrayEquals(new String[] {"abcdefgh", "", "abcdefgh", "", "abcdefgh"},
+                b.setCostLoads_Testing("abcdefghabcdefghabcdefgh", 5, 8));
+        Assertions.assertArrayEquals(new String[] {"", "abcdefgh", "a"}, b.setCostLoads_Testing("abcdefgha", 3, 8));
+        Assertions.assertArrayEquals(new String[] {"", "abcdefgh", ""}, b.setCostLoads_Testing("abcdefgh", 3, 8));
+        Assertions.assertArrayEquals(new String[] {"", "abcdefg"}, b.setCostLoads_Testing("abcdefg", 2, 8));
+        Assertions.assertArrayEquals(new String[] {"abc", "abc", "", "abc", "abc", "abc"}, b.setCostLoads_Testing("abcabcabcabcabc", 6, 3));
+        Assertions.assertArrayEquals(new String[] {"", "", "abcdefghijabcdefghijabcdefghij", "", ""},
+                b.setCostLoads_Testing("abcdefghijabcdefghijabcdefghij", 5, 30));
+    }
+
+
+    @DisplayName("Each piece should hold `blockLength` English lowercase ASCII characters, or a multiple thereof, and end in one. " +
+            "Other characters are weighed but never counted towards a block")
+    @Test
+    void testIgnoreNonAlphas() {
+        ParsingBoss b = new ParsingBoss();
+
+        //Non-alphanumeric characters
+        Assertions.assertArrayEquals(new String[] {"abcdefgh", "-abcdefgh", "-abcdefgh"},
+                b.setCostLoads_Testing("abcdefgh-abcdefgh-abcdefgh", 3, 8));
+
+        //Numeric characters and uppercase letters
+        Assertions.assertArrayEquals(new String[] {"aZbc", "0abc", "A1abc", "2abc9Z"}, b.setCostLoads_Testing("aZbc0abcA1abc2abc9Z", 4, 3));
+
+        //Mix
+        Assertions.assertArrayEquals(new String[] {"---abcd*e", "123f00gh[]ij", "===k"},
+                b.setCostLoads_Testing("---abcd*e123f00gh[]ij===k", 3, 5));
+
+        //Runs of non-alphabetic characters longer than a block weigh more than the letters around them
+        Assertions.assertArrayEquals(new String[] {"=======================abcde", "", "-------------------fghi;;;;;;;;;;;;;;;;;jk"},
+                b.setCostLoads_Testing("=======================abcde-------------------fghi;;;;;;;;;;;;;;;;;jk", 3, 5));
+
+        //Same as above, but with blocks that spill over the runs
+        String s = "===============abc-------------de000000000000000abcd;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;e" +
+                "            ab          cd        e[[[[[[[[[]]]]]]abc----------dea---";
+        Assertions.assertArrayEquals(new String[] {"===============abc-------------de",
+                "000000000000000abcd;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;e",
+                "            ab          cd        e[[[[[[[[[]]]]]]abc----------dea---"}, b.setCostLoads_Testing(s, 3, 5));
+
+        //Uneven split with non-alphabetic characters included
+        Assertions.assertArrayEquals(new String[] {"abc-AAA-------  d", "abcd", "ab   cdabcdabcd", "ab   cdabcd", "abc     dabc "},
+                b.setCostLoads_Testing("abc-AAA-------  dabcdab   cdabcdabcdab   cdabcdabc     dabc ", 5, 4));
+    }
+}
@@ -0,0 +1,290 @@
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+
+/**
+ * Class to test that streaming a file through a ParsingPipeline gives the same output file as processing it whole.<br><br>
+ *
+ * Chunks are cut at block ends, and the text around each cut is carried into the next chunk, so small chunk lengths
+ * are used to put many cuts next to digits, spaces, apostrophes, line breaks, and multi-byte characters. Inputs with
+ * long runs without letters make chunks grow. Compressed files are streamed through Stream Workers, in both directions,
+ * and more streams than the SwingWorker executor has threads are streamed at once.
+ */
+public class StreamingTest {
+
+    //UTILITIES
+
+    /**
+     * Key to process the inputs with. Long enough to need no padding
+     */
+    final private String KEY = TestInputs.KEY;
+
+    /**
+     * Chunk lengths to stream each input with. The shortest can't hold a whole block, so it always grows
+     */
+    final private int[] CHUNK_LENGTHS = new int[] {7, 64, 1000, 4099};
+
+    /**
+     * Thread counts to stream each input with
+     */
+    final private int[] THREAD_COUNTS = new int[] {1, 3};
+
+    /**
+     * Folder for the test's files. Deleted after each test
+     */
+    @TempDir
+    Path folder;
+
+
+    /**
+     * Checks that streaming the file `input` gives the same output file as processing it whole, with every chunk length
+     * and thread count.
+     * @param input the input file's contents
+     * @param encrypting true if encrypting, false if decrypting
+     * @param punctMode punctuation mode to process with
+     */
+    private void assertStreamMatches(byte[] input, boolean encrypting, byte punctMode) throws Exception {
+        ParsingEngine engine = new ParsingEngine(4, false);
+        try {
+            Path inputFile = folder.resolve("input.txt");
+            Path expectedFile = folder.resolve("expected.txt");
+            Path outputFile = folder.resolve("output.txt");
+            Files.write(inputFile, input);
+
+            int expectedLength = ParsingBoss.processFile(engine, inputFile.toString(), expectedFile.toString(), KEY,
+                    encrypting, punctMode, 1);
+            byte[] expected = Files.readAllBytes(expectedFile);
+            byte[][] key = new ParsingBoss().createKeyBlocks_Testing(KEY, StepperAppFields.BLOCK_COUNT, StepperAppFields.BLOCK_LENGTH);
+
+            for(int chunkLength : CHUNK_LENGTHS) {
+                for(int threads : THREAD_COUNTS) {
+                    long outputLength;
+                    try(ParsingArena arena = new ParsingArena(engine);
+                        AsynchronousFileChannel inputChannel = AsynchronousFileChannel.open(inputFile, StandardOpenOption.READ);
+                        AsynchronousFileChannel outputChannel = AsynchronousFileChannel.open(outputFile, StandardOpenOption.CREATE,
+                                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                        outputLength = new ParsingPipeline(engine, arena, key, encrypting, punctMode, threads, chunkLength, new AtomicLong())
+                                .run(inputChannel, outputChannel);
+                    }
+
+                    String message = "punctMode=" + punctMode + ", encrypting=" + encrypting + ", chunk length=" + chunkLength
+                            + ", threads=" + threads;
+                    Assertions.assertEquals(expectedLength, outputLength, message);
+                    Assertions.assertArrayEquals(expected, Files.readAllBytes(outputFile), message);
+                    Assertions.assertEquals(0, engine.liveBufferChars());
+                }
+            }
+        }
+        finally {
+            engine.shutdown();
+        }
+    }
+
+
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //TESTS
+
+    @DisplayName("Streamed files should give the same output as files processed whole, in every punctuation mode")
+    @Test
+    void testStreamedOutput() throws Exception {
+        Random random = new Random(42);
+        byte[] input = TestInputs.randomInput(30000, Charset.defaultCharset(), random);
+
+        for(byte punctMode=0; punctMode<=2; punctMode++) {
+            assertStreamMatches(input, true, punctMode);
+            assertStreamMatches(input, false, punctMode);
+        }
+    }
+
+
+    @DisplayName("Files that end without a line break, or with a line break, should stream like they are processed whole")
+    @Test
+    void testLastLineBreak() throws Exception {
+        Random random = new Random(43);
+        byte[] body = TestInputs.randomInput(3000, Charset.defaultCharset(), random);
+
+        for(String ending : new String[] {"x", "é", "😀", "7", "'", "\n", "\r", "\r\n", "\u2029"}) {
+            byte[] endingBytes = ending.getBytes(Charset.defaultCharset());
+            byte[] input = new byte[body.length + endingBytes.length];
+            System.arraycopy(body, 0, input, 0, body.length);
+            System.arraycopy(endingBytes, 0, input, body.length, endingBytes.length);
+
+            assertStreamMatches(input, true, (byte)1);
+        }
+    }
+
+
+    @DisplayName("Long runs without letters should make chunks grow, and empty files should give empty outputs")
+    @Test
+    void testEdgeInputs() throws Exception {
+        Random random = new Random(44);
+        String input = "ab'c 12" + "9, 8 '".repeat(3000)
+                + new String(TestInputs.randomInput(2000, Charset.defaultCharset(), random), Charset.defaultCharset())
+                + "0".repeat(9000) + "'z";
+        assertStreamMatches(input.getBytes(Charset.defaultCharset()), true, (byte)0);
+        assertStreamMatches(input.getBytes(Charset.defaultCharset()), false, (byte)2);
+
+        assertStreamMatches(new byte[0], true, (byte)0);
+        assertStreamMatches("\r\n".getBytes(Charset.defaultCharset()), true, (byte)0);
+    }
+
+
+    @DisplayName("The Boss should stream files with the default chunk length, and give the App's error for missing files")
+    @Test
+    void testBossStreaming() throws Exception {
+        ParsingEngine engine = new ParsingEngine(2, false);
+        try {
+            Path inputFile = folder.resolve("input.txt");
+            Path expectedFile = folder.resolve("expected.txt");
+            Path outputFile = folder.resolve("output.txt");
+            Files.write(inputFile, TestInputs.randomInput(50000, Charset.defaultCharset(), new Random(45)));
+            Files.writeString(outputFile, "x".repeat(200000));
+
+            int expectedLength = ParsingBoss.processFile(engine, inputFile.toString(), expectedFile.toString(), KEY,
+                    true, (byte)0, 2);
+            long outputLength = ParsingBoss.processFileStreaming(engine, inputFile.toString(), outputFile.toString(), KEY,
+                    true, (byte)0, 2);
+
+            Assertions.assertEquals(expectedLength, outputLength);
+            Assertions.assertArrayEquals(Files.readAllBytes(expectedFile), Files.readAllBytes(outputFile));
+            Assertions.assertEquals(0, engine.liveBufferChars());
+
+            Exception e = Assertions.assertThrows(FileNotFoundException.class, () -> ParsingBoss.processFileStreaming(
+                    engine, folder.resolve("missing.txt").toString(), outputFile.toString(), KEY, true, (byte)0, 2));
+            Assertions.assertTrue(e.getMessage().contains("does not exist"));
+        }
+        finally {
+            engine.shutdown();
+        }
+    }
+
+
+    @DisplayName("Compressed inputs should be inflated and compressed outputs deflated, giving the same text")
+    @Test
+    void testCompressedFiles() throws Exception {
+        ParsingEngine engine = new ParsingEngine(2, false);
+        try {
+            byte[] input = TestInputs.randomInput(300000, Charset.defaultCharset(), new Random(46));
+            Path inputFile = folder.resolve("input.txt");
+            Path expectedFile = folder.resolve("expected.txt");
+            Files.write(inputFile, input);
+            int expectedLength = ParsingBoss.processFile(engine, inputFile.toString(), expectedFile.toString(), KEY,
+                    false, (byte)0, 2);
+            byte[] expected = Files.readAllBytes(expectedFile);
+
+            Path gzipFile = folder.resolve("input.txt.gz");
+            try(OutputStream output = new GZIPOutputStream(Files.newOutputStream(gzipFile))) {
+                output.write(input);
+            }
+            Path zlibFile = folder.resolve("input.deflate");
+            try(OutputStream output = new DeflaterOutputStream(Files.newOutputStream(zlibFile))) {
+                output.write(input);
+            }
+
+            for(Path source : new Path[] {inputFile, gzipFile, zlibFile}) {
+                for(String outputName : new String[] {"output.txt", "output.txt.gz", "output.deflate"}) {
+                    Path outputFile = folder.resolve(outputName);
+                    long outputLength = ParsingBoss.processFileStreaming(engine, source.toString(), outputFile.toString(),
+                            KEY, false, (byte)0, 2);
+
+                    byte[] output;
+                    try(InputStream stream = outputName.endsWith(".gz") ? new GZIPInputStream(Files.newInputStream(outputFile)) :
+                            outputName.endsWith(".deflate") ? new InflaterInputStream(Files.newInputStream(outputFile)) :
+                            Files.newInputStream(outputFile)) {
+                        output = stream.readAllBytes();
+                    }
+
+                    String message = source.getFileName() + " to " + outputName;
+                    Assertions.assertEquals(expectedLength, outputLength, message);
+                    Assertions.assertArrayEquals(expected, output, message);
+                    Assertions.assertEquals(0, engine.liveBufferChars());
+                }
+            }
+
+            //A file that isn't gzip fails, and leaves no buffers behind
+            Path badFile = folder.resolve("bad.gz");
+            Files.write(badFile, input);
+            Assertions.assertThrows(IOException.class, () -> ParsingBoss.processFileStreaming(
+                    engine, badFile.toString(), folder.resolve("output.txt").toString(), KEY, true, (byte)0, 2));
+            Assertions.assertEquals(0, engine.liveBufferChars());
+        }
+        finally {
+            engine.shutdown();
+        }
+    }
+
+
+    @DisplayName("More streams than the SwingWorker executor has threads should all be read at once")
+    @Test
+    void testManyStreams() throws Exception {
+        final int STREAMS = 8;
+        ParsingEngine engine = new ParsingEngine(2, false);
+        ExecutorService callers = Executors.newFixedThreadPool(STREAMS);
+        try {
+            byte[] input = TestInputs.randomInput(40000, Charset.defaultCharset(), new Random(47));
+            ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            ParsingBoss.processStream(engine, new ByteArrayInputStream(input), expected, KEY, true, (byte)0, 1);
+
+            //Each pipe holds less than half of the input, so its Reading Worker must be running to take each half
+            ArrayList<PipedOutputStream> pipes = new ArrayList<>();
+            ArrayList<ByteArrayOutputStream> outputs = new ArrayList<>();
+            ArrayList<Future<Long>> results = new ArrayList<>();
+            for(int i=0; i<STREAMS; i++) {
+                PipedInputStream pipeInput = new PipedInputStream(1024);
+                pipes.add(new PipedOutputStream(pipeInput));
+                ByteArrayOutputStream output = new ByteArrayOutputStream();
+                outputs.add(output);
+                results.add(callers.submit(() ->
+                        ParsingBoss.processStream(engine, pipeInput, output, KEY, true, (byte)0, 1)));
+            }
+
+            //Every stream's first half is written before any second half, so every stream's Workers run at once.
+            //With two Stream Workers per stream, the SwingWorker executor's 10 threads would leave some waiting forever
+            Assertions.assertTimeoutPreemptively(Duration.ofSeconds(60), () -> {
+                for(PipedOutputStream pipe : pipes) {
+                    pipe.write(input, 0, input.length/2);
+                }
+                for(PipedOutputStream pipe : pipes) {
+                    pipe.write(input, input.length/2, input.length - input.length/2);
+                    pipe.close();
+                }
+                for(int i=0; i<STREAMS; i++) {
+                    results.get(i).get();
+                    Assertions.assertArrayEquals(expected.toByteArray(), outputs.get(i).toByteArray(), "stream " + i);
+                }
+            });
+            Assertions.assertEquals(0, engine.liveBufferChars());
+        }
+        finally {
+            callers.shutdownNow();
+            engine.shutdown();
+        }
+    }
+}
@@ -0,0 +1,127 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Inputs shared by the tests that process whole texts and files: the key, random texts and inputs, and the output that
+ * processing a text file alone writes.<br><br>
+ *
+ * Each test compares its own way of processing an input with `expectedOutput`, so every way is held to the same output.
+ */
+public class TestInputs {
+
+    /**
+     * Key to process the inputs with. Long enough to need no padding
+     */
+    final public static String KEY = "thequickbrownfoxjumpsoverthelazydogthequickbrownfoxjumpsoverthelazydog" +
+            "thequickbrownfoxjumpsoverthelazydogandmoreletters";
+
+    /**
+     * Characters of the random texts: letters, numbers, punctuation, spaces, diacritics, and line breaks of one character
+     */
+    final public static String CHARACTERS =
+            "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ      0123456789,.;:!?'`-\n\r\u2029éÖß’";
+
+    /**
+     * Pieces of the random inputs: letters, numbers, punctuation, spaces, diacritics, characters of two, three and four
+     * bytes, and every line break
+     */
+    final public static String[] PIECES = new String[] {"a", "b", "Z", "q", "e", "t", " ", " ", "7", "0", ",", "'", "é",
+            "Ö", "ß", "’", "€", "😀", "\n", "\r\n", "\r", "\u2028", "\u2029", "\u0085"};
+
+
+    /**
+     * Returns a random text of `length` characters, taken from `CHARACTERS`
+     * @param length length of the output
+     * @param random random number generator to use
+     * @return random text
+     */
+    public static String randomText(int length, Random random) {
+        return randomText(length, CHARACTERS, random);
+    }
+
+
+    /**
+     * Returns a random text of about `length` characters, taken from `characters`. Surrogate pairs are never split,
+     * so the text is `length` characters long unless `characters` holds any
+     * @param length length of the output
+     * @param characters characters to build the output from
+     * @param random random number generator to use
+     * @return random text
+     */
+    public static String randomText(int length, String characters, Random random) {
+        StringBuilder output = new StringBuilder(length + 1);
+        while(output.length() < length) {
+            int i = random.nextInt(characters.length());
+            if(Character.isLowSurrogate(characters.charAt(i))) {
+                i--;
+            }
+            output.append(characters.charAt(i));
+            if(Character.isHighSurrogate(characters.charAt(i))) {
+                output.append(characters.charAt(i+1));
+            }
+        }
+        return output.toString();
+    }
+
+
+    /**
+     * Returns a random input of about `length` bytes in `charset`, taken from `PIECES`
+     * @param length minimum length of the output, in bytes
+     * @param charset charset to encode the pieces in
+     * @param random random number generator to use
+     * @return random input, encoded in `charset`
+     */
+    public static byte[] randomInput(int length, Charset charset, Random random) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(length + 8);
+        while(output.size() < length) {
+            output.writeBytes(PIECES[random.nextInt(PIECES.length)].getBytes(charset));
+        }
+        return output.toByteArray();
+    }
+
+
+    /**
+     * Returns the bytes that processing the text file `inputFile` alone, on one thread, writes. The output file is a
+     * temporary file, deleted once read
+     * @param engine the engine to run the Workers on
+     * @param inputFile the input file
+     * @param key the key
+     * @param encrypting true if encrypting, false if decrypting
+     * @param punctMode punctuation mode to process with
+     * @return the output file's bytes
+     */
+    public static byte[] expectedOutput(ParsingEngine engine, Path inputFile, String key, boolean encrypting,
+                                        byte punctMode) throws IOException {
+        Path outputFile = Files.createTempFile("expected", ".txt");
+        try {
+            ParsingBoss.processFile(engine, inputFile.toString(), outputFile.toString(), key, encrypting, punctMode, 1);
+            return Files.readAllBytes(outputFile);
+        }
+        finally {
+            Files.deleteIfExists(outputFile);
+        }
+    }
+
+
+    /**
+     * Returns the bytes that processing `text`, written to a text file in `folder` in the default charset, alone on
+     * one thread, writes
+     * @param engine the engine to run the Workers on
+     * @param folder folder to write the files to
+     * @param text the input file's text
+     * @param key the key
+     * @param encrypting true if encrypting, false if decrypting
+     * @param punctMode punctuation mode to process with
+     * @return the output file's bytes
+     */
+    public static byte[] expectedOutput(ParsingEngine engine, Path folder, String text, String key, boolean encrypting,
+                                        byte punctMode) throws IOException {
+        Path inputFile = Files.createTempFile(folder, "input", ".txt");
+        Files.writeString(inputFile, text, Charset.defaultCharset());
+        return expectedOutput(engine, inputFile, key, encrypting, punctMode);
+    }
+}
@@ -0,0 +1,94 @@
+import org.junit.jupiter.api.*;
+import java.util.Random;
+
+
+/**
+ * Class to test that processing a text gives the same output on every thread count, and that decrypting
+ * undoes encrypting.<br><br>
+ *
+ * Each input is processed at lengths around the block length and one round of block positions, in every punctuation
+ * mode, encrypting and decrypting, on several thread counts.
+ */
+public class ThreadCountRoundTripTest {
+
+    //UTILITIES
+
+    /**
+     * Key to process the inputs with. Long enough to need no padding
+     */
+    final private String KEY = TestInputs.KEY;
+
+    /**
+     * Characters of the random inputs: letters, numbers, punctuation, spaces, and diacritics
+     */
+    final private String CHARACTERS = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ      0123456789,.;:!?'`-éÉàçñ\n";
+
+    /**
+     * Input lengths to test. Includes lengths around one block (22 letters) and one round of block positions (484 letters)
+     */
+    final private int[] LENGTHS = new int[] {1, 7, 8, 9, 21, 22, 23, 44, 100, 483, 484, 485, 1000, 10000};
+
+    /**
+     * Thread counts to run each input with, besides the single thread that every output is compared to
+     */
+    final private int[] THREAD_COUNTS = new int[] {3, 8};
+
+
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //TESTS
+
+    @DisplayName("Every thread count should give the single-threaded output for every input, mode, and direction")
+    @Test
+    void testThreadCountsMatch() throws Exception {
+        ParsingEngine engine = new ParsingEngine(4, false);
+        try {
+            engine.awaitWarmUp();
+
+            Random random = new Random(34);
+            for(int length : LENGTHS) {
+                String input = TestInputs.randomText(length, CHARACTERS, random);
+
+                for(byte punctMode=0; punctMode<=2; punctMode++) {
+                    for(boolean encrypting : new boolean[] {true, false}) {
+                        String expected = new ParsingBoss().processText_Testing(engine, input, KEY, encrypting, punctMode, 1);
+
+                        for(int threads : THREAD_COUNTS) {
+                            Assertions.assertEquals(expected,
+                                    new ParsingBoss().processText_Testing(engine, input, KEY, encrypting, punctMode, threads),
+                                    "length=" + length + ", punctMode=" + punctMode + ", encrypting=" + encrypting + ", threads=" + threads);
+                        }
+                    }
+                }
+            }
+        }
+        finally {
+            engine.shutdown();
+        }
+    }
+
+
+    @DisplayName("Decrypting a letter-only ciphertext should give back its plaintext, for every length")
+    @Test
+    void testRoundTrip() throws Exception {
+        ParsingEngine engine = new ParsingEngine(4, false);
+        try {
+            engine.awaitWarmUp();
+
+            Random random = new Random(2024);
+            for(int length : LENGTHS) {
+                String input = TestInputs.randomText(length, "abcdefghijklmnopqrstuvwxyz", random);
+                String ciphertext = new ParsingBoss().processText_Testing(engine, input, KEY, true, (byte)2, 3);
+                Assertions.assertNotEquals(input.strip(), ciphertext.strip(), "length=" + length);
+                Assertions.assertEquals(input.strip(),
+                        new ParsingBoss().processText_Testing(engine, ciphertext, KEY, false, (byte)2, 3).strip(),
+                        "length=" + length);
+            }
+        }
+        finally {
+            engine.shutdown();
+        }
+    }
+}